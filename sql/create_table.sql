@@ -59,3 +59,22 @@ create table if not exists chat_history
     INDEX idx_createTime (createTime),             -- 提升基于时间的查询性能
     INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
 ) comment '对话历史' collate = utf8mb4_unicode_ci;
+
+-- 生成用量表（每次生成一条，异步批量写入）
+create table if not exists generation_usage
+(
+    id             bigint auto_increment comment 'id' primary key,
+    appId          bigint                             not null comment '应用id',
+    userId         bigint                             null comment '发起生成的用户id（工作流调用时为空）',
+    codeGenType    varchar(64)                        not null comment '代码生成类型（枚举）',
+    modelName      varchar(128)                       null comment '模型名称（多轮时取最后一轮）',
+    inputTokens    bigint   default 0                 not null comment '输入 token 数（各轮之和）',
+    outputTokens   bigint   default 0                 not null comment '输出 token 数（各轮之和）',
+    cachedTokens   bigint   default 0                 not null comment '命中缓存的输入 token 数（各轮之和）',
+    toolRounds     int      default 0                 not null comment '工具调用轮数',
+    durationMillis bigint   default 0                 not null comment '生成耗时（毫秒）',
+    status         varchar(32)                        not null comment 'success/error/cancelled',
+    createTime     datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    INDEX idx_appId_createTime (appId, createTime),  -- 按应用统计用量
+    INDEX idx_userId_createTime (userId, createTime) -- 按用户统计用量
+) comment '生成用量' collate = utf8mb4_unicode_ci;
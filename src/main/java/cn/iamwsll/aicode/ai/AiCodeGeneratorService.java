@@ -6,7 +6,6 @@ import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
-import reactor.core.publisher.Flux;
 
 public interface AiCodeGeneratorService {
     /**
@@ -27,19 +26,21 @@ public interface AiCodeGeneratorService {
 
     /**
      * 生成HTML代码(流式调用)
+     * 返回 TokenStream 而不是 Flux,取消订阅时可以中止模型调用
      * @param userMessage 用户提示词
      * @return AI生成结果
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    Flux<String> generateHTMLCodeStream(String userMessage);
+    TokenStream generateHTMLCodeStream(String userMessage);
 
     /**
      * 生成多文件代码(流式调用)
+     * 返回 TokenStream 而不是 Flux,取消订阅时可以中止模型调用
      * @param userMessage 用户提示词
      * @return AI生成结果
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    Flux<String> generateMultiFileCodeStream(String userMessage);
+    TokenStream generateMultiFileCodeStream(String userMessage);
 
     /**
      * 生成 Vue 项目代码（流式）
@@ -1,25 +1,41 @@
 package cn.iamwsll.aicode.ai;
 
 import cn.iamwsll.aicode.ai.guardrail.PromptSafetyInputGuardrail;
+import cn.iamwsll.aicode.ai.memory.LocalTokenEstimator;
+import cn.iamwsll.aicode.ai.memory.PrefixStableChatMemory;
+import cn.iamwsll.aicode.ai.memory.TokenBudgetChatMemory;
+import cn.iamwsll.aicode.ai.memory.TurnBufferedChatMemoryStore;
 import cn.iamwsll.aicode.ai.tools.ToolManager;
+import cn.iamwsll.aicode.config.AiServiceCacheProperties;
+import cn.iamwsll.aicode.config.ChatMemoryProperties;
+import cn.iamwsll.aicode.config.ReasoningStreamingChatModelConfig;
+import cn.iamwsll.aicode.config.StreamingChatModelConfig;
 import cn.iamwsll.aicode.exception.BusinessException;
 import cn.iamwsll.aicode.exception.ErrorCode;
+import cn.iamwsll.aicode.manager.GenerationUsageRecorder;
 import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
 import cn.iamwsll.aicode.service.ChatHistoryService;
 import cn.iamwsll.aicode.utils.SpringContextUtil;
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * AI服务创建工厂类
@@ -32,28 +48,86 @@ public class AiCodeGeneratorServiceFactory {
     private ChatModel chatModel;
 
     @Resource
-    private RedisChatMemoryStore redisChatMemoryStore;
+    private TurnBufferedChatMemoryStore turnBufferedChatMemoryStore;
 
     @Resource
     private ChatHistoryService chatHistoryService;
 
     @Resource
     private ToolManager toolManager;
+
+    @Resource
+    private ChatMemoryProperties chatMemoryProperties;
+
+    @Resource
+    private StreamingChatModelConfig streamingChatModelConfig;
+
+    @Resource
+    private ReasoningStreamingChatModelConfig reasoningStreamingChatModelConfig;
+
+    @Resource
+    private GenerationUsageRecorder generationUsageRecorder;
+
+    @Resource
+    private AiServiceCacheProperties aiServiceCacheProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 缓存键
+     */
+    private record ServiceKey(long appId, CodeGenTypeEnum codeGenType) {
+    }
+
+    /**
+     * 创建实例（查询数据库、构建代理）的线程，不占用调用方线程
+     */
+    private ExecutorService loaderExecutor;
+
     /**
      * AI 服务实例缓存
      * 缓存策略：
-     * - 最大缓存 1000 个实例
-     * - 写入后 30 分钟过期
-     * - 访问后 10 分钟过期
+     * - 按实例个数限制容量：实例本身只有代理、工具规格和记忆的引用，大小基本固定；
+     *   记忆的内容在 Redis 和记忆存储自己的本地缓存里，由它们各自限制
+     * - 写入一段时间后再次访问时在后台重建（refresh-ahead），访问方继续使用旧实例，热点应用不会因过期而同步等待创建；
+     *   重建只替换实例，不同步对话记忆
+     * - 一段时间没有访问后过期
+     * - 同一个键并发获取时共享同一次创建，预热中的实例被获取时等待预热完成，不会重复创建
+     * 命中、未命中、创建耗时、淘汰等指标以 cache.* 导出（标签 cache=ai.service）
      */
-    private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener((key, value, cause) -> {
-                log.info("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
-            })
-            .build();
+    private AsyncLoadingCache<ServiceKey, AiCodeGeneratorService> serviceCache;
+
+    @PostConstruct
+    public void init() {
+        loaderExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-service-loader-", 0).factory());
+        serviceCache = Caffeine.newBuilder()
+                .maximumSize(aiServiceCacheProperties.getMaximumSize())
+                .refreshAfterWrite(Duration.ofMinutes(aiServiceCacheProperties.getRefreshAfterWriteMinutes()))
+                .expireAfterAccess(Duration.ofMinutes(aiServiceCacheProperties.getExpireAfterAccessMinutes()))
+                .executor(loaderExecutor)
+                .recordStats()
+                .removalListener((key, value, cause) -> {
+                    log.info("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
+                })
+                .buildAsync(new CacheLoader<>() {
+                    @Override
+                    public AiCodeGeneratorService load(ServiceKey key) {
+                        return createAiCodeGeneratorService(key.appId(), key.codeGenType(), false);
+                    }
+
+                    @Override
+                    public AiCodeGeneratorService reload(ServiceKey key, AiCodeGeneratorService oldValue) {
+                        return createAiCodeGeneratorService(key.appId(), key.codeGenType(), true);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, serviceCache, "ai.service");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        loaderExecutor.shutdownNow();
+    }
 
 
 //    /**
@@ -81,15 +155,19 @@ public class AiCodeGeneratorServiceFactory {
      * 这里的cache.get是:如果缓存中有,就返回缓存中的实例,没有就调用后面的createAiCodeGeneratorService方法创建一个新的实例并缓存起来
      */
     public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        String cacheKey = buildCacheKey(appId, codeGenType);
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
+        // 同步视图会把创建时抛出的异常原样抛出，不包装成 CompletionException
+        return serviceCache.synchronous().get(new ServiceKey(appId, codeGenType));
     }
 
     /**
-     * 构建缓存键
+     * 预热：在后台创建 AI 服务实例，不等待
+     * 用户打开应用后、发送消息之前调用，发送消息时直接命中缓存；已缓存或正在创建时什么都不做
      */
-    private String buildCacheKey(long appId, CodeGenTypeEnum codeGenType) {
-        return appId + "_" + codeGenType.getValue();
+    public void prewarm(long appId, CodeGenTypeEnum codeGenType) {
+        if (!aiServiceCacheProperties.isPrewarm()) {
+            return;
+        }
+        serviceCache.get(new ServiceKey(appId, codeGenType));
     }
 
     /**
@@ -97,18 +175,23 @@ public class AiCodeGeneratorServiceFactory {
      *
      * @Param appId 应用 ID
      * @Param codeGenType 代码生成类型
+     * @Param refresh 是否是后台刷新
      */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        log.info("为 appId: {} 创建新的 AI 服务实例", appId);
+    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType, boolean refresh) {
+        log.info("为 appId: {} {} AI 服务实例", appId, refresh ? "刷新" : "创建新的");
         // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(20)
-                .build();
-        //从数据库的聊天记录中加载历史消息
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+        ChatMemory chatMemory = createChatMemory(appId, codeGenType);
+        // 同步数据库的聊天记录到记忆:Redis 中的记忆有同步标记时直接沿用,不访问数据库(数据库里没有工具调用消息,重载反而丢上下文、
+        // 改变请求前缀),记忆或同步标记不存在时全量加载,前缀稳定模式下加载起点按淘汰块对齐
+        // 全量加载会先清空记忆,正在生成时不能同步(会清掉本轮的工具调用消息)
+        // 后台刷新不同步:触发刷新的请求拿着旧实例继续执行,刷新与它的 beginTurn 没有先后,检查之后清空记忆可能落在本轮中;
+        // 记忆在 Redis 中、与实例无关,刷新只需要重建实例,记忆过期后由下次创建实例时加载
+        if (!refresh && !turnBufferedChatMemoryStore.isInTurn(appId)) {
+            boolean memoryPresent = !turnBufferedChatMemoryStore.getMessages(appId).isEmpty();
+            int loadAlignment = chatMemoryProperties.isPrefixStable() ? chatMemoryProperties.getEvictBlockSize() : 1;
+            chatHistoryService.syncChatHistoryToMemory(appId, chatMemory, memoryPresent,
+                    chatMemoryProperties.getMaxMessages(), loadAlignment);
+        }
         // 根据代码生成类型选择不同的模型配置
         return switch (codeGenType) {
             // Vue 项目生成使用推理模型
@@ -142,4 +225,31 @@ public class AiCodeGeneratorServiceFactory {
                     "不支持的代码生成类型: " + codeGenType.getValue());
         };
     }
+
+    /**
+     * 创建对话记忆
+     * 配置了 token 预算时按本地估算的 token 数控制记忆大小,估算比例按该类型使用的模型系列选择
+     * 前缀稳定模式下消息只追加、按块淘汰,多轮之间请求前缀不变,可以命中服务端的前缀缓存
+     */
+    private ChatMemory createChatMemory(long appId, CodeGenTypeEnum codeGenType) {
+        if (chatMemoryProperties.getMaxInputTokens() > 0) {
+            String modelName = codeGenType == CodeGenTypeEnum.VUE_PROJECT
+                    ? reasoningStreamingChatModelConfig.getModelName()
+                    : streamingChatModelConfig.getModelName();
+            return new TokenBudgetChatMemory(appId, turnBufferedChatMemoryStore, LocalTokenEstimator.forModel(modelName),
+                    chatMemoryProperties.getMaxInputTokens(), chatMemoryProperties.getTokenLowWaterRatio(),
+                    chatMemoryProperties.getMaxMessageTokens(),
+                    estimated -> generationUsageRecorder.recordEstimate(appId, estimated));
+        }
+        if (chatMemoryProperties.isPrefixStable()) {
+            return new PrefixStableChatMemory(appId, turnBufferedChatMemoryStore,
+                    chatMemoryProperties.getMaxMessages(), chatMemoryProperties.getEvictBlockSize());
+        }
+        return MessageWindowChatMemory
+                .builder()
+                .id(appId)
+                .chatMemoryStore(turnBufferedChatMemoryStore)
+                .maxMessages(chatMemoryProperties.getMaxMessages())
+                .build();
+    }
 }
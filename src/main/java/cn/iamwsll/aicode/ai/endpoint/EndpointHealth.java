@@ -0,0 +1,93 @@
+package cn.iamwsll.aicode.ai.endpoint;
+
+import java.util.Arrays;
+
+/**
+ * 端点健康状况
+ * 1. 首 token 延迟的 EWMA，以及最近若干次延迟样本（用于计算对冲截止时间的百分位）
+ * 2. 错误率的 EWMA，按半衰期随时间衰减，端点一段时间不出错后评分自然恢复
+ * 同一个端点被多个原型模型共用，方法都在对象锁内执行
+ */
+class EndpointHealth {
+
+    private static final int SAMPLE_SIZE = 128;
+
+    /**
+     * 计算百分位所需的最少样本数，不足时对冲使用截止时间上限
+     */
+    private static final int MIN_PERCENTILE_SAMPLES = 20;
+
+    private final double alpha;
+
+    private final long errorHalfLifeNanos;
+
+    private double latencyMillis = Double.NaN;
+
+    private double errorRate;
+
+    private long errorRateUpdatedNanos = System.nanoTime();
+
+    private final long[] samples = new long[SAMPLE_SIZE];
+
+    private int sampleCount;
+
+    private int nextSample;
+
+    EndpointHealth(double alpha, long errorHalfLifeNanos) {
+        this.alpha = alpha;
+        this.errorHalfLifeNanos = errorHalfLifeNanos;
+    }
+
+    /**
+     * 记录一次成功（收到首 token），也用于记录对冲中落败请求已等待的时间
+     */
+    synchronized void recordLatency(long millis, boolean success) {
+        latencyMillis = Double.isNaN(latencyMillis) ? millis : latencyMillis + alpha * (millis - latencyMillis);
+        samples[nextSample] = millis;
+        nextSample = (nextSample + 1) % SAMPLE_SIZE;
+        sampleCount = Math.min(sampleCount + 1, SAMPLE_SIZE);
+        if (success) {
+            errorRate = decayedErrorRate() * (1 - alpha);
+            errorRateUpdatedNanos = System.nanoTime();
+        }
+    }
+
+    synchronized void recordFailure() {
+        errorRate = decayedErrorRate() * (1 - alpha) + alpha;
+        errorRateUpdatedNanos = System.nanoTime();
+    }
+
+    /**
+     * 评分，越小越好；还没有延迟样本的端点延迟按 0 计，会被优先尝试一次
+     */
+    synchronized double score(long errorPenaltyMillis) {
+        double latency = Double.isNaN(latencyMillis) ? 0 : latencyMillis;
+        return latency + decayedErrorRate() * errorPenaltyMillis;
+    }
+
+    /**
+     * 最近延迟样本的百分位，样本不足时返回 -1
+     */
+    synchronized long latencyPercentile(double percentile) {
+        if (sampleCount < MIN_PERCENTILE_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    synchronized double latencyMillis() {
+        return Double.isNaN(latencyMillis) ? 0 : latencyMillis;
+    }
+
+    synchronized double errorRate() {
+        return decayedErrorRate();
+    }
+
+    private double decayedErrorRate() {
+        long elapsed = System.nanoTime() - errorRateUpdatedNanos;
+        return errorRate * Math.pow(0.5, (double) elapsed / errorHalfLifeNanos);
+    }
+}
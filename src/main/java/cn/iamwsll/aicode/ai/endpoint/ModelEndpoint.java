@@ -0,0 +1,22 @@
+package cn.iamwsll.aicode.ai.endpoint;
+
+import lombok.Data;
+
+/**
+ * 模型的备用端点（OpenAI 兼容接口）
+ * apiKey、modelName 不配置时沿用主端点的配置
+ */
+@Data
+public class ModelEndpoint {
+
+    /**
+     * 端点名称，用于日志和监控，不配置时使用 baseUrl
+     */
+    private String name;
+
+    private String baseUrl;
+
+    private String apiKey;
+
+    private String modelName;
+}
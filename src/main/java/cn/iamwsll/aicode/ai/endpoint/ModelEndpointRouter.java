@@ -0,0 +1,207 @@
+package cn.iamwsll.aicode.ai.endpoint;
+
+import cn.hutool.core.util.StrUtil;
+import cn.iamwsll.aicode.config.ModelRoutingProperties;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RetriableException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 多端点模型路由
+ * 每个角色（streaming、reasoning、routing）可以在主端点之外配置备用端点，这里负责：
+ * 1. 把各端点上的模型组合成一个路由模型，对 AI 服务透明（AiCodeGeneratorService 和工厂都不需要改动）
+ * 2. 维护各端点的健康评分（首 token 延迟和错误率的 EWMA），每次调用按评分排序端点
+ * 3. 判断错误是否可以故障转移（连接失败、超时、5xx、429），以及计算对冲截止时间
+ * 健康状况按"角色/端点"保存在这里，所有原型模型共享
+ */
+@Slf4j
+@Component
+public class ModelEndpointRouter {
+
+    /**
+     * 主端点的名称
+     */
+    public static final String PRIMARY = "primary";
+
+    @Resource
+    private ModelRoutingProperties modelRoutingProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, EndpointHealth> healthMap = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService hedgeScheduler;
+
+    @PostConstruct
+    public void init() {
+        hedgeScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("model-hedge").daemon().factory());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hedgeScheduler.shutdownNow();
+    }
+
+    /**
+     * 组合流式模型：没有备用端点时直接返回主端点模型
+     *
+     * @param role      角色
+     * @param primary   主端点模型
+     * @param endpoints 备用端点
+     * @param factory   按端点创建模型
+     * @return 流式模型
+     */
+    public StreamingChatModel streaming(String role, StreamingChatModel primary, List<ModelEndpoint> endpoints,
+                                        Function<ModelEndpoint, StreamingChatModel> factory) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            return primary;
+        }
+        return new RoutingStreamingChatModel(role, routedModels(primary, endpoints, factory), this);
+    }
+
+    /**
+     * 组合非流式模型（只做故障转移，不对冲）：没有备用端点时直接返回主端点模型
+     *
+     * @param role      角色
+     * @param primary   主端点模型
+     * @param endpoints 备用端点
+     * @param factory   按端点创建模型
+     * @return 模型
+     */
+    public ChatModel chat(String role, ChatModel primary, List<ModelEndpoint> endpoints,
+                          Function<ModelEndpoint, ChatModel> factory) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            return primary;
+        }
+        return new RoutingChatModel(role, routedModels(primary, endpoints, factory), this);
+    }
+
+    /**
+     * 按健康评分排序，评分相同时保持配置顺序（主端点在前）
+     */
+    <M> List<RoutedModel<M>> rank(String role, List<RoutedModel<M>> models) {
+        long errorPenaltyMillis = modelRoutingProperties.getErrorPenaltyMillis();
+        List<RoutedModel<M>> ranked = new ArrayList<>(models);
+        ranked.sort(Comparator.comparingDouble(model -> health(role, model.name()).score(errorPenaltyMillis)));
+        return ranked;
+    }
+
+    void recordSuccess(String role, String endpoint, long firstTokenMillis) {
+        health(role, endpoint).recordLatency(firstTokenMillis, true);
+    }
+
+    /**
+     * 对冲中落败的请求：已等待的时间作为一个延迟样本，不计为错误
+     */
+    void recordSlow(String role, String endpoint, long waitedMillis) {
+        health(role, endpoint).recordLatency(waitedMillis, false);
+    }
+
+    void recordFailure(String role, String endpoint) {
+        health(role, endpoint).recordFailure();
+    }
+
+    void countFailover(String role) {
+        Counter.builder("ai.model.route.failover")
+                .description("模型调用故障转移次数")
+                .tag("role", role)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void countHedge(String role) {
+        Counter.builder("ai.model.route.hedge")
+                .description("首 token 超时后发出的对冲请求次数")
+                .tag("role", role)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 是否可以换一个端点重试：连接失败、超时、5xx、429
+     * 参数错误、鉴权失败等换端点也不会成功，直接返回给调用方
+     */
+    boolean isFailoverError(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetriableException || cause instanceof IOException) {
+                return true;
+            }
+            if (cause instanceof HttpException httpException) {
+                return httpException.statusCode() >= 500 || httpException.statusCode() == 429;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    boolean isHedgeEnabled() {
+        return modelRoutingProperties.isHedgeEnabled();
+    }
+
+    /**
+     * 对冲截止时间：端点近期首 token 延迟的百分位，限制在上下限之间
+     */
+    long hedgeDelayMillis(String role, String endpoint) {
+        long percentile = health(role, endpoint).latencyPercentile(modelRoutingProperties.getHedgePercentile());
+        if (percentile < 0) {
+            return modelRoutingProperties.getHedgeMaxDelayMillis();
+        }
+        return Math.max(modelRoutingProperties.getHedgeMinDelayMillis(),
+                Math.min(percentile, modelRoutingProperties.getHedgeMaxDelayMillis()));
+    }
+
+    ScheduledExecutorService hedgeScheduler() {
+        return hedgeScheduler;
+    }
+
+    private <M> List<RoutedModel<M>> routedModels(M primary, List<ModelEndpoint> endpoints,
+                                                  Function<ModelEndpoint, M> factory) {
+        List<RoutedModel<M>> models = new ArrayList<>();
+        models.add(new RoutedModel<>(PRIMARY, primary));
+        for (ModelEndpoint endpoint : endpoints) {
+            models.add(new RoutedModel<>(StrUtil.blankToDefault(endpoint.getName(), endpoint.getBaseUrl()),
+                    factory.apply(endpoint)));
+        }
+        return models;
+    }
+
+    private EndpointHealth health(String role, String endpoint) {
+        return healthMap.computeIfAbsent(role + "/" + endpoint, key -> {
+            EndpointHealth health = new EndpointHealth(modelRoutingProperties.getEwmaAlpha(),
+                    TimeUnit.SECONDS.toNanos(modelRoutingProperties.getErrorHalfLifeSeconds()));
+            Gauge.builder("ai.model.endpoint.latency", health, EndpointHealth::latencyMillis)
+                    .description("端点首 token 延迟的 EWMA（毫秒）")
+                    .tags("role", role, "endpoint", endpoint)
+                    .register(meterRegistry);
+            Gauge.builder("ai.model.endpoint.error.rate", health, EndpointHealth::errorRate)
+                    .description("端点近期错误率")
+                    .tags("role", role, "endpoint", endpoint)
+                    .register(meterRegistry);
+            return health;
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package cn.iamwsll.aicode.ai.endpoint;
+
+/**
+ * 参与路由的一个端点上的模型
+ *
+ * @param name  端点名称
+ * @param model 模型
+ */
+public record RoutedModel<M>(String name, M model) {
+}
@@ -0,0 +1,76 @@
+package cn.iamwsll.aicode.ai.endpoint;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多端点路由的非流式模型（用于生成类型路由这类短请求）
+ * 按健康评分选择端点，可故障转移的错误换下一个端点重试；请求很短，不做对冲
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel {
+
+    private final String role;
+
+    private final List<RoutedModel<ChatModel>> models;
+
+    private final ModelEndpointRouter router;
+
+    RoutingChatModel(String role, List<RoutedModel<ChatModel>> models, ModelEndpointRouter router) {
+        this.role = role;
+        this.models = models;
+        this.router = router;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        RuntimeException lastError = null;
+        for (RoutedModel<ChatModel> candidate : router.rank(role, models)) {
+            if (lastError != null) {
+                log.warn("模型 {} 调用失败，转移到端点 {}: {}", role, candidate.name(), lastError.getMessage());
+                router.countFailover(role);
+            }
+            long start = System.nanoTime();
+            try {
+                ChatResponse chatResponse = candidate.model().chat(chatRequest);
+                router.recordSuccess(role, candidate.name(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return chatResponse;
+            } catch (RuntimeException e) {
+                router.recordFailure(role, candidate.name());
+                if (!router.isFailoverError(e)) {
+                    throw e;
+                }
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return primary().defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return primary().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return primary().supportedCapabilities();
+    }
+
+    private ChatModel primary() {
+        return models.get(0).model();
+    }
+}
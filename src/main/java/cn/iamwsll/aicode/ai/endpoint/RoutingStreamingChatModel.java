@@ -0,0 +1,280 @@
+package cn.iamwsll.aicode.ai.endpoint;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多端点路由的流式模型
+ * 每次调用按健康评分选择端点，第一个回调（首 token、工具调用或完整响应）到达前：
+ * 1. 可故障转移的错误（连接失败、超时、5xx、429）换下一个端点重试
+ * 2. 开启对冲时，超过截止时间还没有首 token 就向下一个端点再发一次请求，先出 token 的胜出，
+ *    落败的请求通过 isCancelled 通知模型关闭连接
+ * 首 token 之后出错不再重试：部分输出已经发给了调用方
+ * 各端点上的模型自己合并默认参数、通知监听器，这里直接转发请求
+ */
+@Slf4j
+public class RoutingStreamingChatModel implements StreamingChatModel {
+
+    private final String role;
+
+    private final List<RoutedModel<StreamingChatModel>> models;
+
+    private final ModelEndpointRouter router;
+
+    RoutingStreamingChatModel(String role, List<RoutedModel<StreamingChatModel>> models, ModelEndpointRouter router) {
+        this.role = role;
+        this.models = models;
+        this.router = router;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new RoutedCall(chatRequest, handler, router.rank(role, models)).start();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return primary().defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return primary().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return primary().supportedCapabilities();
+    }
+
+    private StreamingChatModel primary() {
+        return models.get(0).model();
+    }
+
+    /**
+     * 一次调用，可能先后（故障转移）或同时（对冲）发给多个端点
+     */
+    private final class RoutedCall {
+
+        private final ChatRequest chatRequest;
+
+        private final StreamingChatResponseHandler handler;
+
+        private final List<RoutedModel<StreamingChatModel>> candidates;
+
+        private final List<Attempt> attempts = new ArrayList<>();
+
+        private int nextCandidate;
+
+        private int inFlight;
+
+        /**
+         * 胜出的请求：第一个回调到达的请求，或最终把错误交给调用方的请求
+         */
+        private volatile Attempt winner;
+
+        private ScheduledFuture<?> hedgeTimer;
+
+        RoutedCall(ChatRequest chatRequest, StreamingChatResponseHandler handler,
+                   List<RoutedModel<StreamingChatModel>> candidates) {
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+            this.candidates = candidates;
+        }
+
+        void start() {
+            Attempt first;
+            synchronized (this) {
+                first = nextAttempt();
+                if (router.isHedgeEnabled() && candidates.size() > 1) {
+                    long delay = router.hedgeDelayMillis(role, first.endpoint.name());
+                    hedgeTimer = router.hedgeScheduler().schedule(this::hedge, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+            launch(first);
+        }
+
+        private Attempt nextAttempt() {
+            if (nextCandidate >= candidates.size()) {
+                return null;
+            }
+            Attempt attempt = new Attempt(candidates.get(nextCandidate++));
+            attempts.add(attempt);
+            inFlight++;
+            return attempt;
+        }
+
+        private void launch(Attempt attempt) {
+            try {
+                attempt.endpoint.model().chat(chatRequest, attempt);
+            } catch (Exception e) {
+                attempt.onError(e);
+            }
+        }
+
+        private void hedge() {
+            Attempt hedged;
+            synchronized (this) {
+                if (winner != null || inFlight == 0 || handler.isCancelled()) {
+                    return;
+                }
+                hedged = nextAttempt();
+            }
+            if (hedged == null) {
+                return;
+            }
+            log.info("模型 {} 首 token 超时，对冲请求发往端点 {}", role, hedged.endpoint.name());
+            router.countHedge(role);
+            launch(hedged);
+        }
+
+        /**
+         * 收到第一个回调的请求胜出，其他请求落败
+         *
+         * @return 该请求是否是胜出的请求
+         */
+        private boolean claim(Attempt attempt) {
+            Attempt current = winner;
+            if (current != null) {
+                return current == attempt;
+            }
+            synchronized (this) {
+                if (winner != null) {
+                    return winner == attempt;
+                }
+                winner = attempt;
+                cancelHedgeTimer();
+                router.recordSuccess(role, attempt.endpoint.name(), attempt.elapsedMillis());
+                for (Attempt other : attempts) {
+                    if (other != attempt && !other.failed) {
+                        // 落败的请求至少比胜出的慢这么多
+                        router.recordSlow(role, other.endpoint.name(), other.elapsedMillis());
+                    }
+                }
+                return true;
+            }
+        }
+
+        private void onAttemptError(Attempt attempt, Throwable error) {
+            Attempt next;
+            synchronized (this) {
+                attempt.failed = true;
+                inFlight--;
+                if (winner != null && winner != attempt) {
+                    // 落败请求关闭连接后的错误
+                    return;
+                }
+                router.recordFailure(role, attempt.endpoint.name());
+                if (winner == null && router.isFailoverError(error) && !handler.isCancelled()) {
+                    if (inFlight > 0) {
+                        // 对冲的请求还在进行，由它决定结果
+                        log.warn("模型 {} 端点 {} 调用失败，等待对冲请求: {}", role, attempt.endpoint.name(), error.getMessage());
+                        return;
+                    }
+                    next = nextAttempt();
+                } else {
+                    next = null;
+                }
+                if (next == null) {
+                    winner = attempt;
+                    cancelHedgeTimer();
+                }
+            }
+            if (next == null) {
+                handler.onError(error);
+                return;
+            }
+            log.warn("模型 {} 端点 {} 调用失败，转移到端点 {}: {}", role, attempt.endpoint.name(), next.endpoint.name(), error.getMessage());
+            router.countFailover(role);
+            launch(next);
+        }
+
+        private void cancelHedgeTimer() {
+            if (hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+            }
+        }
+
+        /**
+         * 发往一个端点的请求，只有胜出的请求把回调转发给调用方
+         */
+        private final class Attempt implements StreamingChatResponseHandler {
+
+            private final RoutedModel<StreamingChatModel> endpoint;
+
+            private final long startNanos = System.nanoTime();
+
+            private volatile boolean failed;
+
+            private Attempt(RoutedModel<StreamingChatModel> endpoint) {
+                this.endpoint = endpoint;
+            }
+
+            private long elapsedMillis() {
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            }
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (claim(this)) {
+                    handler.onPartialResponse(partialResponse);
+                }
+            }
+
+            @Override
+            public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+                if (claim(this)) {
+                    handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+                }
+            }
+
+            @Override
+            public void onPartialToolCall(int index, String id, String name, CharSequence partialArguments) {
+                if (claim(this)) {
+                    handler.onPartialToolCall(index, id, name, partialArguments);
+                }
+            }
+
+            @Override
+            public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+                if (claim(this)) {
+                    handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                if (claim(this)) {
+                    handler.onCompleteResponse(completeResponse);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                onAttemptError(this, error);
+            }
+
+            /**
+             * 调用方已取消，或者另一个请求已胜出
+             */
+            @Override
+            public boolean isCancelled() {
+                Attempt current = winner;
+                return (current != null && current != this) || handler.isCancelled();
+            }
+        }
+    }
+}
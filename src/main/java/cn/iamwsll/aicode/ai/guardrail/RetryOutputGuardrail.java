@@ -6,6 +6,7 @@ import dev.langchain4j.guardrail.OutputGuardrailResult;
 
 /**
  * 注意:这个护轨会导致流式输出的方式不能正常运行,可能会等到部分AI消息结束才会返回.
+ * 流式生成使用 SensitiveContentStreamingGuardrail,边输出边检查.
  */
 public class RetryOutputGuardrail implements OutputGuardrail {
 
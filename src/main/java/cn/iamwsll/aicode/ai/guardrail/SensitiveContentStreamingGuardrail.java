@@ -0,0 +1,29 @@
+package cn.iamwsll.aicode.ai.guardrail;
+
+import dev.langchain4j.service.StreamingOutputGuardrail;
+import dev.langchain4j.service.StreamingOutputGuardrailResult;
+
+/**
+ * 流式输出护轨：检查最近输出的滑动窗口中是否包含敏感信息
+ * 不需要等完整响应生成后再校验，流式输出只延迟一小段字符；工具调用的参数（写入的文件内容）在执行前同样检查
+ * 流式输出的主要内容是生成的代码，RetryOutputGuardrail 中的 password、token、密码 等词在登录表单、接口调用里很常见，
+ * 这里只检查真正的密钥内容，避免正常代码频繁触发
+ * 为空、过短这类只能在响应结束时判断的检查不在这里做
+ */
+public class SensitiveContentStreamingGuardrail implements StreamingOutputGuardrail {
+
+    private static final String[] SENSITIVE_WORDS = {
+            "私钥", "api key", "private key-----"
+    };
+
+    @Override
+    public StreamingOutputGuardrailResult validate(CharSequence window) {
+        String lowerWindow = window.toString().toLowerCase();
+        for (String word : SENSITIVE_WORDS) {
+            if (lowerWindow.contains(word)) {
+                return StreamingOutputGuardrailResult.reprompt("包含敏感信息", "请重新生成内容，避免包含敏感信息");
+            }
+        }
+        return StreamingOutputGuardrailResult.pass();
+    }
+}
@@ -0,0 +1,62 @@
+package cn.iamwsll.aicode.ai.http;
+
+import cn.iamwsll.aicode.config.AiHttpClientProperties;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 模型调用共享的 HTTP 客户端
+ * 原型模型 Bean（流式、推理流式、路由）每次创建都会新建 HTTP 客户端，各自握手、各自维护连接池。
+ * 这里只创建一个 JDK HttpClient：优先 HTTP/2（同一个模型服务的并发请求在一条连接上多路复用），
+ * 连接由客户端的连接池保持长连接并复用，所有原型模型都通过 newBuilder() 使用它
+ */
+@Slf4j
+@Component
+public class AiHttpClientProvider {
+
+    @Resource
+    private AiHttpClientProperties aiHttpClientProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService executor;
+
+    private HttpClient sharedHttpClient;
+
+    @PostConstruct
+    public void init() {
+        // SSE 响应体在客户端的执行器上逐行阻塞读取，读取期间还会执行工具调用，使用虚拟线程
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-http-", 0).factory());
+        sharedHttpClient = HttpClient.newBuilder()
+                .version(aiHttpClientProperties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(aiHttpClientProperties.getConnectTimeoutSeconds()))
+                .sslContext(HandshakeCountingSslContext.create(meterRegistry))
+                .executor(executor)
+                .build();
+        log.info("模型调用共享 HTTP 客户端已创建，HTTP/2: {}", aiHttpClientProperties.isHttp2());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sharedHttpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 为一个模型创建 HttpClientBuilder，底层共用同一个客户端
+     */
+    public HttpClientBuilder newBuilder() {
+        return new SharedHttpClientBuilder(sharedHttpClient, meterRegistry);
+    }
+}
@@ -0,0 +1,101 @@
+package cn.iamwsll.aicode.ai.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * 统计 TLS 握手次数的 SSLContext
+ * JDK HttpClient 每建立一条 TLS 连接就创建一个 SSLEngine，创建次数即新建连接（握手）次数，
+ * 和请求数对比就能看出连接复用情况
+ */
+final class HandshakeCountingSslContext extends SSLContext {
+
+    private HandshakeCountingSslContext(SSLContext delegate, MeterRegistry meterRegistry) {
+        super(new CountingSpi(delegate, meterRegistry), delegate.getProvider(), delegate.getProtocol());
+    }
+
+    /**
+     * 包装 JDK 默认的 SSLContext
+     */
+    static SSLContext create(MeterRegistry meterRegistry) {
+        try {
+            return new HandshakeCountingSslContext(SSLContext.getDefault(), meterRegistry);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("获取默认 SSLContext 失败", e);
+        }
+    }
+
+    private static final class CountingSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+
+        private final MeterRegistry meterRegistry;
+
+        private CountingSpi(SSLContext delegate, MeterRegistry meterRegistry) {
+            this.delegate = delegate;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            Counter.builder("ai.http.client.tls.handshakes")
+                    .description("与模型服务新建 TLS 连接（握手）的次数")
+                    .tag("host", host == null ? "unknown" : host)
+                    .register(meterRegistry)
+                    .increment();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return engineCreateSSLEngine(null, -1);
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) {
+            // 默认 SSLContext 已经初始化
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
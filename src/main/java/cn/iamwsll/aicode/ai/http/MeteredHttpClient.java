@@ -0,0 +1,50 @@
+package cn.iamwsll.aicode.ai.http;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.net.URI;
+
+/**
+ * 统计模型请求数的 HttpClient
+ * ai.http.client.requests 与 ai.http.client.tls.handshakes 的比值即连接复用情况：
+ * 每个请求都握手说明没有复用，握手数远小于请求数说明连接池（HTTP/2 多路复用）在起作用
+ */
+class MeteredHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+
+    private final MeterRegistry meterRegistry;
+
+    MeteredHttpClient(HttpClient delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        countRequest(request, "sync");
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        countRequest(request, "stream");
+        delegate.execute(request, parser, listener);
+    }
+
+    private void countRequest(HttpRequest request, String mode) {
+        String host = URI.create(request.url()).getHost();
+        Counter.builder("ai.http.client.requests")
+                .description("发往模型服务的 HTTP 请求数")
+                .tag("host", host == null ? "unknown" : host)
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .increment();
+    }
+}
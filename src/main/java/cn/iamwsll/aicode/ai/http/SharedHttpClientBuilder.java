@@ -0,0 +1,131 @@
+package cn.iamwsll.aicode.ai.http;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * 使用共享 JDK HttpClient 的 HttpClientBuilder
+ * 每个原型模型都会拿到一个新的 builder（超时设置互不影响），但 build 出来的客户端底层是同一个 java.net.http.HttpClient，
+ * 共用连接池和 HTTP/2 连接，新建模型不再重新做 DNS、TCP 和 TLS 握手
+ */
+class SharedHttpClientBuilder implements HttpClientBuilder {
+
+    private final java.net.http.HttpClient sharedHttpClient;
+
+    private final MeterRegistry meterRegistry;
+
+    private Duration connectTimeout;
+
+    private Duration readTimeout;
+
+    SharedHttpClientBuilder(java.net.http.HttpClient sharedHttpClient, MeterRegistry meterRegistry) {
+        this.sharedHttpClient = sharedHttpClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Duration connectTimeout() {
+        return connectTimeout;
+    }
+
+    @Override
+    public HttpClientBuilder connectTimeout(Duration connectTimeout) {
+        // 连接超时属于共享客户端，在 AiHttpClientProperties 中统一配置，这里只记录
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+        return readTimeout;
+    }
+
+    @Override
+    public HttpClientBuilder readTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        // JdkHttpClient 会调用 builder.build() 创建底层客户端，这里直接返回共享的实例；读超时按请求设置，仍然各自生效
+        HttpClient jdkHttpClient = JdkHttpClient.builder()
+                .httpClientBuilder(new SharedJdkClientBuilder(sharedHttpClient))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .build();
+        return new MeteredHttpClient(jdkHttpClient, meterRegistry);
+    }
+
+    /**
+     * build 时返回共享实例的 java.net.http.HttpClient.Builder，其余设置全部忽略
+     */
+    private record SharedJdkClientBuilder(java.net.http.HttpClient sharedHttpClient)
+            implements java.net.http.HttpClient.Builder {
+
+        @Override
+        public java.net.http.HttpClient.Builder cookieHandler(CookieHandler cookieHandler) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder connectTimeout(Duration duration) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder sslContext(SSLContext sslContext) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder sslParameters(SSLParameters sslParameters) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder executor(Executor executor) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder followRedirects(java.net.http.HttpClient.Redirect policy) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder version(java.net.http.HttpClient.Version version) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder priority(int priority) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder proxy(ProxySelector proxySelector) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder authenticator(Authenticator authenticator) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient build() {
+            return sharedHttpClient;
+        }
+    }
+}
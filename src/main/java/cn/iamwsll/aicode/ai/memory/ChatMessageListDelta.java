@@ -0,0 +1,87 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 消息列表的增量修改
+ * 对话记忆的修改几乎都是这两种形式：末尾追加消息；或者保留开头几条（系统消息）、淘汰其后的一段、再追加消息。
+ * 两种都可以表示为：保留开头 keep 条，删除其后 drop 条，剩余的旧消息原样保留，末尾追加 tail，
+ * 在 Redis 列表上对应 LTRIM 去掉前 keep + drop 条、LPUSH 放回开头 keep 条、RPUSH 追加，写入量与列表长度无关。
+ * 其他形式（例如修改中间的消息、替换系统消息）退化为删除相同开头之后的全部消息再追加，写入量与整体重写相同
+ *
+ * @param trimFrom 旧列表中从该下标开始保留，0 表示不删除
+ * @param head     删除后需要放回开头的消息（JSON），trimFrom 为 0 时为空
+ * @param tail     追加到末尾的消息（JSON）
+ * @param json     修改后完整列表的 JSON，未改动的消息复用旧 JSON，不重复序列化
+ */
+record ChatMessageListDelta(int trimFrom, List<String> head, List<String> tail, List<String> json) {
+
+    /**
+     * 计算从旧列表到新列表的增量修改
+     *
+     * @param oldMessages 旧消息列表
+     * @param oldJson     旧消息列表中每条消息的 JSON
+     * @param newMessages 新消息列表
+     * @return 增量修改
+     */
+    static ChatMessageListDelta diff(List<ChatMessage> oldMessages, List<String> oldJson, List<ChatMessage> newMessages) {
+        int oldSize = oldMessages.size();
+        int newSize = newMessages.size();
+        // 相同的开头
+        int keep = 0;
+        while (keep < oldSize && keep < newSize && same(oldMessages.get(keep), newMessages.get(keep))) {
+            keep++;
+        }
+        if (keep == oldSize) {
+            return of(0, List.of(), oldJson, newMessages, oldSize);
+        }
+        // 找到最少的删除条数 drop，使旧列表剩余的消息正好是新列表 keep 之后的开头，最多删除 keep 之后的全部消息
+        int drop = 1;
+        int retained = oldSize - keep - drop;
+        while (retained > 0 && (retained > newSize - keep
+                || !regionMatches(oldMessages, keep + drop, newMessages, keep, retained))) {
+            drop++;
+            retained--;
+        }
+        List<String> json = new ArrayList<>(newSize);
+        json.addAll(oldJson.subList(0, keep));
+        json.addAll(oldJson.subList(keep + drop, oldSize));
+        return of(keep + drop, oldJson.subList(0, keep), json, newMessages, keep + retained);
+    }
+
+    /**
+     * @param reused    修改后列表开头可以复用的 JSON
+     * @param tailStart 新列表中从该下标开始是追加的消息
+     */
+    private static ChatMessageListDelta of(int trimFrom, List<String> head, List<String> reused,
+                                           List<ChatMessage> newMessages, int tailStart) {
+        List<String> tail = new ArrayList<>(newMessages.size() - tailStart);
+        for (ChatMessage message : newMessages.subList(tailStart, newMessages.size())) {
+            tail.add(ChatMessageSerializer.messageToJson(message));
+        }
+        List<String> json = new ArrayList<>(reused.size() + tail.size());
+        json.addAll(reused);
+        json.addAll(tail);
+        return new ChatMessageListDelta(trimFrom, List.copyOf(head), tail, json);
+    }
+
+    private static boolean regionMatches(List<ChatMessage> a, int aFrom, List<ChatMessage> b, int bFrom, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!same(a.get(aFrom + i), b.get(bFrom + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 记忆读出的列表与写回的列表大多是同一批对象，先比较引用
+     */
+    private static boolean same(ChatMessage a, ChatMessage b) {
+        return a == b || a.equals(b);
+    }
+}
@@ -0,0 +1,140 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 本地 token 数估算
+ * 不加载分词器词表，按字符类别和模型系列的经验比例估算，一次线性扫描，用于在调用模型之前控制上下文大小：
+ * ASCII 字母数字按模型系列的比例计算（英文和代码大约 3~4 个字符一个 token），标点符号大多单独成 token，
+ * 中日韩字符按模型系列的比例计算。估算值与实际值的比例通过指标观察，用于校准
+ */
+public class LocalTokenEstimator {
+
+    /**
+     * 每条消息的固定开销（角色、分隔符）
+     */
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    /**
+     * 模型系列及其经验比例（每个字符对应的 token 数）
+     */
+    public enum ModelFamily {
+        /** DeepSeek 官方说明：1 个英文字符约 0.3 个 token，1 个中文字符约 0.6 个 token */
+        DEEPSEEK(0.3, 0.6),
+        QWEN(0.28, 0.7),
+        GLM(0.28, 0.7),
+        /** OpenAI o200k 系列词表，也是未知模型的默认值（中文按偏大的比例估算） */
+        GPT(0.25, 0.9);
+
+        private final double asciiWeight;
+
+        private final double cjkWeight;
+
+        ModelFamily(double asciiWeight, double cjkWeight) {
+            this.asciiWeight = asciiWeight;
+            this.cjkWeight = cjkWeight;
+        }
+
+        /**
+         * 根据模型名称判断模型系列，无法判断时按 GPT 估算
+         */
+        public static ModelFamily of(String modelName) {
+            String name = modelName == null ? "" : modelName.toLowerCase(Locale.ROOT);
+            if (name.contains("deepseek")) {
+                return DEEPSEEK;
+            }
+            if (name.contains("qwen")) {
+                return QWEN;
+            }
+            if (name.contains("glm")) {
+                return GLM;
+            }
+            return GPT;
+        }
+    }
+
+    private final ModelFamily family;
+
+    public LocalTokenEstimator(ModelFamily family) {
+        this.family = family;
+    }
+
+    public static LocalTokenEstimator forModel(String modelName) {
+        return new LocalTokenEstimator(ModelFamily.of(modelName));
+    }
+
+    public ModelFamily family() {
+        return family;
+    }
+
+    /**
+     * 估算一段文本的 token 数
+     */
+    public int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        double tokens = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                tokens += Character.isLetterOrDigit(c) || Character.isWhitespace(c) ? family.asciiWeight : 0.5;
+            } else if (c >= 0x2E80 && c <= 0x9FFF || c >= 0xAC00 && c <= 0xD7AF || c >= 0xF900 && c <= 0xFAFF) {
+                tokens += family.cjkWeight;
+            } else if (!Character.isLowSurrogate(c)) {
+                tokens += 1;
+            }
+        }
+        return (int) Math.ceil(tokens);
+    }
+
+    /**
+     * 估算一条消息的 token 数（含工具调用的名称和参数）
+     */
+    public int estimate(ChatMessage message) {
+        int tokens = MESSAGE_OVERHEAD;
+        switch (message) {
+            case SystemMessage systemMessage -> tokens += estimate(systemMessage.text());
+            case UserMessage userMessage -> {
+                for (Content content : userMessage.contents()) {
+                    if (content instanceof TextContent textContent) {
+                        tokens += estimate(textContent.text());
+                    }
+                }
+            }
+            case AiMessage aiMessage -> {
+                tokens += estimate(aiMessage.text());
+                if (aiMessage.hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                        tokens += MESSAGE_OVERHEAD + estimate(request.name()) + estimate(request.arguments());
+                    }
+                }
+            }
+            case ToolExecutionResultMessage resultMessage -> tokens += estimate(resultMessage.text());
+            default -> {
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 估算一组消息的 token 数
+     */
+    public int estimate(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimate(message);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,270 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import cn.hutool.core.util.IdUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.StringCodec;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对话记忆的本地近端缓存（两级缓存）
+ * 一个应用的会话几乎总是由同一个实例处理，每次读取记忆都访问 Redis 是多余的往返。
+ * RedisListChatMemoryStore 已经在本地保留了每个记忆的快照（带版本号），这里不再保存第二份消息，只记录哪个版本仍是最新的：
+ * 1. 本地记录的版本与快照一致时直接返回快照，不访问 Redis
+ * 2. 写入同步写到 Redis（写穿），成功后记录新版本，再通过 Redis 发布订阅通知其他实例，通知中带上新版本号
+ * 3. 收到其他实例的通知时，本地记录的版本与通知中的不同就替换为失效标记；未命中时从 Redis 加载，
+ *    只有加载期间条目没有变化（没有收到失效通知、本地也没有写入）才记录加载到的版本，避免把旧版本覆盖到新的失效标记或写入上
+ * 4. 订阅建立（包括断线重连后重新订阅）时清空本地记录，断线期间错过的失效通知不会导致读到旧内容
+ * 本地只占用快照缓存的内存（snapshot-cache-mb）。关闭时只做透传，仍统计 Redis 往返次数。
+ * 按轮次统计 Redis 往返次数和本地命中节省的往返次数，见 {@link #recordTurn}
+ */
+@Slf4j
+public class NearCacheChatMemoryStore implements ChatMemoryStore, AutoCloseable {
+
+    private static final String INVALIDATION_TOPIC = "chat_memory:invalidation";
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * 条目只有版本号，数量上限只是兜底
+     */
+    private static final long MAX_ENTRIES = 100_000;
+
+    private final RedisListChatMemoryStore delegate;
+
+    private final boolean enabled;
+
+    private final RTopic topic;
+
+    /**
+     * 实例标识，忽略自己发出的失效通知
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    /**
+     * 本地记录的最新版本，键统一为记忆ID的字符串形式（失效通知中只有字符串）
+     */
+    private final Cache<String, Entry> entries;
+
+    /**
+     * 每个记忆自上次 recordTurn 以来的统计
+     */
+    private final Cache<String, TurnStats> turnStats = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Counter roundTripCounter;
+
+    private final DistributionSummary roundTripsPerTurn;
+
+    private final DistributionSummary savedRoundTripsPerTurn;
+
+    private int messageListenerId;
+
+    private int statusListenerId;
+
+    /**
+     * 本地条目，version 为 null 表示失效标记；条目对象本身用于判断加载期间是否有变化
+     */
+    private record Entry(String version) {
+    }
+
+    private static final class TurnStats {
+
+        private final LongAdder roundTrips = new LongAdder();
+
+        private final LongAdder saved = new LongAdder();
+    }
+
+    /**
+     * @param delegate       Redis 存储，命中时读取它的本地快照
+     * @param redissonClient Redis 客户端，用于发布和订阅失效通知
+     * @param meterRegistry  指标注册表
+     * @param enabled        是否开启本地缓存，关闭时只透传
+     * @param expireMinutes  本地条目写入后多少分钟过期，兜底发布订阅通知丢失的情况
+     */
+    public NearCacheChatMemoryStore(RedisListChatMemoryStore delegate, RedissonClient redissonClient,
+                                    MeterRegistry meterRegistry, boolean enabled, long expireMinutes) {
+        this.delegate = delegate;
+        this.enabled = enabled;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .build();
+        this.hitCounter = Counter.builder("chat.memory.near.cache.requests")
+                .description("对话记忆本地缓存的读取次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("chat.memory.near.cache.requests")
+                .description("对话记忆本地缓存的读取次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.roundTripCounter = Counter.builder("chat.memory.redis.round.trips")
+                .description("对话记忆读写 Redis 的往返次数（不含异步的失效通知）")
+                .register(meterRegistry);
+        this.roundTripsPerTurn = DistributionSummary.builder("chat.memory.redis.round.trips.per.turn")
+                .description("每轮生成（含生成前的准备）对话记忆读写 Redis 的往返次数")
+                .register(meterRegistry);
+        this.savedRoundTripsPerTurn = DistributionSummary.builder("chat.memory.near.cache.saved.per.turn")
+                .description("每轮生成中本地缓存命中节省的 Redis 往返次数")
+                .register(meterRegistry);
+        this.topic = redissonClient.getTopic(INVALIDATION_TOPIC, StringCodec.INSTANCE);
+        if (enabled) {
+            this.messageListenerId = topic.addListener(String.class, (channel, message) -> onInvalidation(message));
+            this.statusListenerId = topic.addListener(new BaseStatusListener() {
+                @Override
+                public void onSubscribe(String channel) {
+                    entries.invalidateAll();
+                    log.info("对话记忆失效通知已订阅，清空本地缓存");
+                }
+            });
+        }
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = String.valueOf(memoryId);
+        if (!enabled) {
+            countRoundTrip(key);
+            return delegate.getMessages(memoryId);
+        }
+        Entry before = entries.getIfPresent(key);
+        if (before != null && before.version() != null) {
+            // 快照被淘汰或已被替换成其他版本时按未命中处理
+            List<ChatMessage> cached = delegate.getSnapshotMessages(memoryId, before.version());
+            if (cached != null) {
+                hitCounter.increment();
+                getTurnStats(key).saved.increment();
+                return cached;
+            }
+        }
+        missCounter.increment();
+        countRoundTrip(key);
+        List<ChatMessage> messages = delegate.getMessages(memoryId);
+        String version = delegate.getSnapshotVersion(memoryId);
+        if (version != null) {
+            Entry loaded = new Entry(version);
+            entries.asMap().compute(key, (k, current) -> current == before ? loaded : current);
+        }
+        return messages;
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String key = String.valueOf(memoryId);
+        countRoundTrip(key);
+        if (!enabled) {
+            delegate.updateMessages(memoryId, messages);
+            return;
+        }
+        try {
+            delegate.updateMessages(memoryId, messages);
+        } catch (RuntimeException e) {
+            entries.invalidate(key);
+            throw e;
+        }
+        recordWrite(key, memoryId);
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = String.valueOf(memoryId);
+        countRoundTrip(key);
+        if (!enabled) {
+            delegate.deleteMessages(memoryId);
+            return;
+        }
+        try {
+            delegate.deleteMessages(memoryId);
+        } catch (RuntimeException e) {
+            entries.invalidate(key);
+            throw e;
+        }
+        recordWrite(key, memoryId);
+    }
+
+    /**
+     * 一轮生成结束，记录本轮（从上一轮结束起）的 Redis 往返次数和本地命中节省的往返次数
+     *
+     * @param memoryId 记忆ID
+     */
+    public void recordTurn(Object memoryId) {
+        TurnStats stats = turnStats.asMap().remove(String.valueOf(memoryId));
+        if (stats == null) {
+            return;
+        }
+        roundTripsPerTurn.record(stats.roundTrips.sum());
+        savedRoundTripsPerTurn.record(stats.saved.sum());
+    }
+
+    @Override
+    public void close() {
+        if (enabled) {
+            topic.removeListener(messageListenerId, statusListenerId);
+        }
+    }
+
+    /**
+     * 写入成功后记录快照的新版本，并通知其他实例
+     */
+    private void recordWrite(String key, Object memoryId) {
+        String version = delegate.getSnapshotVersion(memoryId);
+        if (version == null) {
+            entries.invalidate(key);
+            return;
+        }
+        entries.put(key, new Entry(version));
+        publishInvalidation(key, version);
+    }
+
+    /**
+     * 通知格式：实例标识|记忆ID|新版本号
+     */
+    private void onInvalidation(String message) {
+        int first = message.indexOf(SEPARATOR);
+        int last = message.lastIndexOf(SEPARATOR);
+        if (first < 0 || first == last || nodeId.equals(message.substring(0, first))) {
+            return;
+        }
+        String key = message.substring(first + 1, last);
+        String version = message.substring(last + 1);
+        // 本地记录的已经是通知中的版本时不用失效；否则放入新的失效标记而不是直接移除，
+        // 正在进行的加载发现条目已变化，不会记录加载到的旧版本
+        entries.asMap().compute(key, (k, current) ->
+                current != null && version.equals(current.version()) ? current : new Entry(null));
+    }
+
+    private void publishInvalidation(String key, String version) {
+        // 异步发布，不增加写入的往返；发布失败时其他实例的条目最晚在过期后更新
+        topic.publishAsync(nodeId + SEPARATOR + key + SEPARATOR + version).whenComplete((receivers, e) -> {
+            if (e != null) {
+                log.warn("发布对话记忆失效通知失败，memoryId: {}", key, e);
+            }
+        });
+    }
+
+    private void countRoundTrip(String key) {
+        roundTripCounter.increment();
+        getTurnStats(key).roundTrips.increment();
+    }
+
+    private TurnStats getTurnStats(String key) {
+        return turnStats.get(key, k -> new TurnStats());
+    }
+}
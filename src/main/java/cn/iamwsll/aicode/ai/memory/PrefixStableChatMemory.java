@@ -0,0 +1,105 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 前缀稳定的对话记忆（为服务端前缀缓存设计）
+ * 服务端的前缀缓存只有在请求前缀逐字节相同时才能命中，而 MessageWindowChatMemory 每超出一条就淘汰最老的一条，
+ * 多轮工具调用时几乎每次请求的前缀都不同。这里：
+ * 1. 系统消息固定在第一条，内容不变时不做任何改动
+ * 2. 其余消息只追加，不修改
+ * 3. 超出上限时一次淘汰一大块（至少 evictBlockSize 条），并对齐到用户消息（轮次开头），
+ *    之后的 evictBlockSize 次追加都不会再淘汰，这期间每次请求都共享同一个前缀
+ * 消息保存在 ChatMemoryStore 中，与 MessageWindowChatMemory 的存储格式相同，两种模式可以切换
+ */
+public class PrefixStableChatMemory implements ChatMemory {
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final int maxMessages;
+
+    private final int evictBlockSize;
+
+    /**
+     * @param id             记忆ID
+     * @param store          消息存储
+     * @param maxMessages    最多保留的消息条数（含系统消息）
+     * @param evictBlockSize 每次淘汰的最少条数，取值 1 到 maxMessages - 1，为 1 时与滑动窗口相同
+     */
+    public PrefixStableChatMemory(Object id, ChatMemoryStore store, int maxMessages, int evictBlockSize) {
+        if (maxMessages < 2 || evictBlockSize < 1 || evictBlockSize >= maxMessages) {
+            throw new IllegalArgumentException("maxMessages 至少为 2，evictBlockSize 取值 1 到 maxMessages - 1");
+        }
+        this.id = id;
+        this.store = store;
+        this.maxMessages = maxMessages;
+        this.evictBlockSize = evictBlockSize;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            if (!messages.isEmpty() && messages.getFirst() instanceof SystemMessage existing) {
+                if (existing.equals(message)) {
+                    return;
+                }
+                messages.set(0, message);
+            } else {
+                messages.addFirst(message);
+            }
+        } else {
+            messages.add(message);
+        }
+        if (messages.size() > maxMessages) {
+            evict(messages);
+        }
+        store.updateMessages(id, messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 淘汰到 maxMessages - evictBlockSize 条以内，再继续淘汰到下一条用户消息，
+     * 保证保留的消息从一轮对话的开头开始，不会留下失去对应工具调用的工具执行结果
+     */
+    private void evict(List<ChatMessage> messages) {
+        int start = messages.getFirst() instanceof SystemMessage ? 1 : 0;
+        int end = start + messages.size() - (maxMessages - evictBlockSize);
+        int aligned = end;
+        while (aligned < messages.size() && !(messages.get(aligned) instanceof UserMessage)) {
+            aligned++;
+        }
+        if (aligned >= messages.size()) {
+            // 剩余消息都在同一轮里（连续的工具调用），退而对齐到非工具执行结果的消息
+            aligned = end;
+            while (aligned < messages.size() - 1 && messages.get(aligned) instanceof ToolExecutionResultMessage) {
+                aligned++;
+            }
+        }
+        messages.subList(start, aligned).clear();
+    }
+}
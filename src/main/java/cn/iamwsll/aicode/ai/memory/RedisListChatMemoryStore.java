@@ -0,0 +1,304 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 Redis 列表的对话记忆存储（只写增量）
+ * RedisChatMemoryStore 把一个记忆序列化成一个字符串，每次写入都重写整个列表，写入量随对话长度增长。这里：
+ * 1. 每条消息是列表中的一个元素，另有一个版本号键，每次写入生成新的版本号
+ * 2. 写入时与本地快照（上次读写的列表）比较，末尾追加用 RPUSH，淘汰用 LTRIM，见 {@link ChatMessageListDelta}，
+ *    版本号检查和修改在一个 Lua 脚本里完成；没有快照或版本号不一致（其他实例写过）时整体重写
+ * 3. 读取时版本号与本地快照一致就直接返回快照，否则同一个脚本里返回整个列表，都只需一次往返
+ * 4. 旧格式（RedisChatMemoryStore 写入的字符串）在第一次读取时迁移为列表
+ * 工具调用每一轮写入 Redis 的字节数和往返次数都与对话长度无关
+ */
+@Slf4j
+public class RedisListChatMemoryStore implements ChatMemoryStore {
+
+    /**
+     * 列表和版本号使用同一个 hash tag，集群模式下在同一个槽里，可以在一个脚本中操作
+     */
+    private static final String KEY_PREFIX = "chat_memory:{";
+
+    /**
+     * RedisChatMemoryStore 的键就是记忆ID
+     */
+    private static final String LEGACY_KEY_PREFIX = "";
+
+    /**
+     * 分批推入，避免超出 Lua unpack 的参数个数限制
+     */
+    private static final String LUA_FUNCTIONS = """
+            local function push(command, from, to)
+                for i = from, to, 1000 do
+                    redis.call(command, KEYS[1], unpack(ARGV, i, math.min(i + 999, to)))
+                end
+            end
+            local function expire(ttl)
+                if tonumber(ttl) > 0 then
+                    redis.call('EXPIRE', KEYS[1], ttl)
+                    redis.call('EXPIRE', KEYS[2], ttl)
+                end
+            end
+            """;
+
+    /**
+     * 读取：版本号与参数一致时只返回版本号，否则返回版本号和整个列表，记忆不存在时返回空
+     */
+    private static final String READ_SCRIPT = """
+            local version = redis.call('GET', KEYS[2])
+            if not version then
+                return {}
+            end
+            if version == ARGV[1] then
+                return {version}
+            end
+            local messages = redis.call('LRANGE', KEYS[1], 0, -1)
+            table.insert(messages, 1, version)
+            return messages
+            """;
+
+    /**
+     * 增量写入，版本号与预期不一致时不做修改，返回 0
+     * ARGV: 预期版本号、新版本号、过期秒数、LTRIM 起点（0 表示不删除）、放回开头的条数、放回开头的消息（倒序）、追加的消息
+     */
+    private static final String DELTA_SCRIPT = LUA_FUNCTIONS + """
+            if redis.call('GET', KEYS[2]) ~= ARGV[1] then
+                return 0
+            end
+            local headCount = tonumber(ARGV[5])
+            if tonumber(ARGV[4]) > 0 then
+                redis.call('LTRIM', KEYS[1], ARGV[4], -1)
+                push('LPUSH', 6, 5 + headCount)
+            end
+            push('RPUSH', 6 + headCount, #ARGV)
+            redis.call('SET', KEYS[2], ARGV[2])
+            expire(ARGV[3])
+            return 1
+            """;
+
+    /**
+     * 整体重写，ARGV: 新版本号、过期秒数、全部消息
+     */
+    private static final String REWRITE_SCRIPT = LUA_FUNCTIONS + """
+            redis.call('DEL', KEYS[1])
+            push('RPUSH', 3, #ARGV)
+            redis.call('SET', KEYS[2], ARGV[1])
+            expire(ARGV[2])
+            return 1
+            """;
+
+    private static final String READ_SHA = DigestUtil.sha1Hex(READ_SCRIPT);
+
+    private static final String DELTA_SHA = DigestUtil.sha1Hex(DELTA_SCRIPT);
+
+    private static final String REWRITE_SHA = DigestUtil.sha1Hex(REWRITE_SCRIPT);
+
+    private final RedissonClient redissonClient;
+
+    private final long ttlSeconds;
+
+    /**
+     * 本地快照，按 JSON 的大小（KB）计算权重
+     */
+    private final Cache<Object, Snapshot> snapshots;
+
+    /**
+     * 上次读写后的列表
+     *
+     * @param version  对应的版本号
+     * @param messages 消息
+     * @param json     每条消息的 JSON，与 Redis 列表中的元素相同
+     */
+    private record Snapshot(String version, List<ChatMessage> messages, List<String> json) {
+
+        int weightKb() {
+            long chars = 0;
+            for (String item : json) {
+                chars += item.length();
+            }
+            return (int) Math.min(Integer.MAX_VALUE, chars * 2 / 1024 + 1);
+        }
+    }
+
+    /**
+     * @param redissonClient  Redis 客户端
+     * @param ttlSeconds      记忆的过期时间（秒），每次写入后重新计时，小于等于 0 时不过期
+     * @param snapshotCacheMb 本地快照最多占用的内存（MB）
+     */
+    public RedisListChatMemoryStore(RedissonClient redissonClient, long ttlSeconds, long snapshotCacheMb) {
+        this.redissonClient = redissonClient;
+        this.ttlSeconds = ttlSeconds;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumWeight(snapshotCacheMb * 1024)
+                .weigher((Object memoryId, Snapshot snapshot) -> snapshot.weightKb())
+                .build();
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        Snapshot snapshot = snapshots.getIfPresent(memoryId);
+        List<Object> result = eval(READ_SCRIPT, READ_SHA, RScript.ReturnType.MULTI, memoryId,
+                snapshot == null ? "" : snapshot.version());
+        if (CollUtil.isEmpty(result)) {
+            snapshots.invalidate(memoryId);
+            return migrateLegacy(memoryId);
+        }
+        String version = (String) result.getFirst();
+        if (snapshot != null && snapshot.version().equals(version)) {
+            return new ArrayList<>(snapshot.messages());
+        }
+        List<String> json = new ArrayList<>(result.size() - 1);
+        List<ChatMessage> messages = new ArrayList<>(result.size() - 1);
+        for (Object item : result.subList(1, result.size())) {
+            json.add((String) item);
+            messages.add(ChatMessageDeserializer.messageFromJson((String) item));
+        }
+        snapshots.put(memoryId, new Snapshot(version, List.copyOf(messages), json));
+        return messages;
+    }
+
+    /**
+     * 本地快照的版本号，不访问 Redis
+     *
+     * @param memoryId 记忆ID
+     * @return 版本号，没有快照时返回 null
+     */
+    public String getSnapshotVersion(Object memoryId) {
+        Snapshot snapshot = snapshots.getIfPresent(memoryId);
+        return snapshot == null ? null : snapshot.version();
+    }
+
+    /**
+     * 直接读取本地快照，不访问 Redis，由调用方保证该版本仍是最新的（见 {@link NearCacheChatMemoryStore}）
+     *
+     * @param memoryId        记忆ID
+     * @param expectedVersion 期望的版本号
+     * @return 快照中的消息，没有快照或版本号不同时返回 null
+     */
+    public List<ChatMessage> getSnapshotMessages(Object memoryId, String expectedVersion) {
+        Snapshot snapshot = snapshots.getIfPresent(memoryId);
+        if (snapshot == null || !snapshot.version().equals(expectedVersion)) {
+            return null;
+        }
+        return new ArrayList<>(snapshot.messages());
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            deleteMessages(memoryId);
+            return;
+        }
+        String version = IdUtil.fastSimpleUUID();
+        Snapshot snapshot = snapshots.getIfPresent(memoryId);
+        List<String> json = snapshot == null ? null : writeDelta(memoryId, snapshot, messages, version);
+        if (json == null) {
+            json = new ArrayList<>(messages.size());
+            for (ChatMessage message : messages) {
+                json.add(ChatMessageSerializer.messageToJson(message));
+            }
+            rewrite(memoryId, version, json);
+            if (snapshot == null) {
+                // 可能是升级后第一次写入，删除旧格式，避免新格式过期后又被迁移回来
+                getLegacyBucket(memoryId).deleteAsync();
+            }
+        }
+        snapshots.put(memoryId, new Snapshot(version, List.copyOf(messages), json));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        // 保留版本号键（更新为新版本），其他实例的快照随之失效
+        String version = IdUtil.fastSimpleUUID();
+        rewrite(memoryId, version, List.of());
+        getLegacyBucket(memoryId).deleteAsync();
+        snapshots.put(memoryId, new Snapshot(version, List.of(), List.of()));
+    }
+
+    /**
+     * 按增量写入
+     *
+     * @return 写入后完整列表的 JSON，版本号不一致时返回 null
+     */
+    private List<String> writeDelta(Object memoryId, Snapshot snapshot, List<ChatMessage> messages, String version) {
+        ChatMessageListDelta delta = ChatMessageListDelta.diff(snapshot.messages(), snapshot.json(), messages);
+        List<Object> args = new ArrayList<>(5 + delta.head().size() + delta.tail().size());
+        args.add(snapshot.version());
+        args.add(version);
+        args.add(String.valueOf(ttlSeconds));
+        args.add(String.valueOf(delta.trimFrom()));
+        args.add(String.valueOf(delta.head().size()));
+        // LPUSH 逐个推到开头，倒序推入后顺序与原来相同
+        args.addAll(delta.head().reversed());
+        args.addAll(delta.tail());
+        Long applied = eval(DELTA_SCRIPT, DELTA_SHA, RScript.ReturnType.INTEGER, memoryId, args.toArray());
+        if (applied == null || applied == 0) {
+            log.debug("对话记忆已被其他实例修改，整体重写，memoryId: {}", memoryId);
+            return null;
+        }
+        return delta.json();
+    }
+
+    private void rewrite(Object memoryId, String version, List<String> json) {
+        List<Object> args = new ArrayList<>(2 + json.size());
+        args.add(version);
+        args.add(String.valueOf(ttlSeconds));
+        args.addAll(json);
+        eval(REWRITE_SCRIPT, REWRITE_SHA, RScript.ReturnType.INTEGER, memoryId, args.toArray());
+    }
+
+    /**
+     * 把 RedisChatMemoryStore 写入的旧格式迁移为列表
+     */
+    private List<ChatMessage> migrateLegacy(Object memoryId) {
+        RBucket<String> legacyBucket = getLegacyBucket(memoryId);
+        String legacyJson = legacyBucket.get();
+        if (StrUtil.isBlank(legacyJson)) {
+            return new ArrayList<>();
+        }
+        List<ChatMessage> messages = ChatMessageDeserializer.messagesFromJson(legacyJson);
+        // 写入列表（没有快照时整体重写，同时删除旧格式）
+        updateMessages(memoryId, messages);
+        log.info("对话记忆已迁移为列表格式，memoryId: {}, 消息数: {}", memoryId, messages.size());
+        return new ArrayList<>(messages);
+    }
+
+    /**
+     * 执行脚本，先按 SHA 执行，Redis 中没有缓存该脚本时（首次执行或 Redis 重启后）再发送脚本内容
+     */
+    private <R> R eval(String script, String sha, RScript.ReturnType returnType, Object memoryId, Object... args) {
+        RScript rScript = redissonClient.getScript(StringCodec.INSTANCE);
+        List<Object> keys = List.of(KEY_PREFIX + memoryId + "}:messages", KEY_PREFIX + memoryId + "}:version");
+        try {
+            return rScript.evalSha(RScript.Mode.READ_WRITE, sha, returnType, keys, args);
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+            return rScript.eval(RScript.Mode.READ_WRITE, script, returnType, keys, args);
+        }
+    }
+
+    private RBucket<String> getLegacyBucket(Object memoryId) {
+        return redissonClient.getBucket(LEGACY_KEY_PREFIX + memoryId, StringCodec.INSTANCE);
+    }
+}
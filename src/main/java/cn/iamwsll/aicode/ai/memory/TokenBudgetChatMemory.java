@@ -0,0 +1,239 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import cn.iamwsll.aicode.exception.BusinessException;
+import cn.iamwsll.aicode.exception.ErrorCode;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * 按 token 预算控制的对话记忆
+ * MessageWindowChatMemory 按条数计数，而一条 AI 历史消息或一次 writeFile 调用就可能包含整个文件，条数再少也可能超出模型的上下文。
+ * 这里用 LocalTokenEstimator 在本地估算 token 数，追加消息后超出预算时：
+ * 1. 先压缩当前轮次之前的超长消息（文本和工具参数中的长字符串只保留首尾，中间替换为省略说明）
+ * 2. 仍超出时按轮次（对齐到用户消息）淘汰最老的消息，直到降到低水位，之后一段时间的追加都不会再改动前缀
+ * 3. 仍超出时压缩当前轮次中较早的超长工具调用和结果
+ * 读取消息（即将发送请求）时估算值仍超出预算，说明当前轮次本身放不下，直接拒绝，不再调用模型
+ * 与 PrefixStableChatMemory 一样，系统消息固定在第一条，其余消息只追加
+ */
+@Slf4j
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final LocalTokenEstimator estimator;
+
+    private final int maxInputTokens;
+
+    private final int lowWaterTokens;
+
+    private final int maxMessageTokens;
+
+    private final IntConsumer estimateListener;
+
+    /**
+     * @param id               记忆ID
+     * @param store            消息存储
+     * @param estimator        token 估算器
+     * @param maxInputTokens   输入 token 预算
+     * @param lowWaterRatio    超出预算时淘汰到预算的多少比例
+     * @param maxMessageTokens 超出预算时，单条消息超过该 token 数的会被压缩
+     * @param estimateListener 每次读取消息时接收估算的 token 数，可以为空
+     */
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store, LocalTokenEstimator estimator, int maxInputTokens,
+                                 double lowWaterRatio, int maxMessageTokens, IntConsumer estimateListener) {
+        if (maxInputTokens <= 0 || lowWaterRatio <= 0 || lowWaterRatio > 1 || maxMessageTokens <= 0) {
+            throw new IllegalArgumentException("maxInputTokens、maxMessageTokens 必须大于 0，lowWaterRatio 取值 (0, 1]");
+        }
+        this.id = id;
+        this.store = store;
+        this.estimator = estimator;
+        this.maxInputTokens = maxInputTokens;
+        this.lowWaterTokens = (int) (maxInputTokens * lowWaterRatio);
+        this.maxMessageTokens = maxMessageTokens;
+        this.estimateListener = estimateListener;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            if (!messages.isEmpty() && messages.getFirst() instanceof SystemMessage existing) {
+                if (existing.equals(message)) {
+                    return;
+                }
+                messages.set(0, message);
+            } else {
+                messages.addFirst(message);
+            }
+        } else {
+            messages.add(message);
+        }
+        int[] tokens = new int[messages.size()];
+        int total = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = estimator.estimate(messages.get(i));
+            total += tokens[i];
+        }
+        if (total > maxInputTokens) {
+            fit(messages, tokens, total);
+        }
+        store.updateMessages(id, messages);
+    }
+
+    /**
+     * 读取将要发送的消息，估算值超出预算时拒绝请求
+     */
+    @Override
+    public List<ChatMessage> messages() {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        int estimated = estimator.estimate(messages);
+        if (estimateListener != null) {
+            estimateListener.accept(estimated);
+        }
+        if (estimated > maxInputTokens) {
+            log.warn("对话上下文超出 token 预算，拒绝请求，memoryId: {}, 估算: {}, 预算: {}", id, estimated, maxInputTokens);
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,
+                    "对话上下文约 " + estimated + " token，超出 " + maxInputTokens + " token 的预算，请精简需求或新建应用");
+        }
+        return messages;
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    private void fit(List<ChatMessage> messages, int[] tokens, int total) {
+        int start = messages.getFirst() instanceof SystemMessage ? 1 : 0;
+        // 当前轮次从最后一条用户消息开始，没有用户消息时只保护最后一条
+        int turnStart = messages.size() - 1;
+        for (int i = messages.size() - 1; i >= start; i--) {
+            if (messages.get(i) instanceof UserMessage) {
+                turnStart = i;
+                break;
+            }
+        }
+        // 1. 压缩当前轮次之前的超长消息
+        for (int i = start; i < turnStart && total > lowWaterTokens; i++) {
+            total -= compress(messages, tokens, i);
+        }
+        // 2. 按轮次淘汰最老的消息
+        int drop = start;
+        while (drop < turnStart && total > lowWaterTokens) {
+            total -= tokens[drop++];
+        }
+        // 保留部分从用户消息开始，不留下孤立的工具调用结果
+        if (drop > start) {
+            while (drop < turnStart && !(messages.get(drop) instanceof UserMessage)) {
+                total -= tokens[drop++];
+            }
+        }
+        if (drop > start) {
+            messages.subList(start, drop).clear();
+            System.arraycopy(tokens, drop, tokens, start, tokens.length - drop);
+            turnStart -= drop - start;
+        }
+        // 3. 压缩当前轮次中较早的工具调用和结果，最后一条消息原样保留
+        for (int i = turnStart + 1; i < messages.size() - 1 && total > maxInputTokens; i++) {
+            total -= compress(messages, tokens, i);
+        }
+        if (total > maxInputTokens) {
+            log.warn("对话记忆压缩后仍超出 token 预算，memoryId: {}, 估算: {}, 预算: {}", id, total, maxInputTokens);
+        }
+    }
+
+    /**
+     * 压缩一条超长消息
+     *
+     * @return 减少的 token 数
+     */
+    private int compress(List<ChatMessage> messages, int[] tokens, int index) {
+        if (tokens[index] <= maxMessageTokens) {
+            return 0;
+        }
+        ChatMessage compressed = switch (messages.get(index)) {
+            case AiMessage aiMessage when aiMessage.hasToolExecutionRequests() -> {
+                List<ToolExecutionRequest> requests = aiMessage.toolExecutionRequests().stream()
+                        .map(request -> ToolExecutionRequest.builder()
+                                .id(request.id())
+                                .name(request.name())
+                                .arguments(compressArguments(request.arguments()))
+                                .build())
+                        .toList();
+                yield aiMessage.text() == null
+                        ? AiMessage.from(requests)
+                        : AiMessage.from(compressText(aiMessage.text()), requests);
+            }
+            case AiMessage aiMessage -> AiMessage.from(compressText(aiMessage.text()));
+            case ToolExecutionResultMessage resultMessage -> ToolExecutionResultMessage.from(
+                    resultMessage.id(), resultMessage.toolName(), compressText(resultMessage.text()));
+            case UserMessage userMessage when userMessage.hasSingleText() ->
+                    UserMessage.from(compressText(userMessage.singleText()));
+            default -> null;
+        };
+        if (compressed == null) {
+            return 0;
+        }
+        int before = tokens[index];
+        messages.set(index, compressed);
+        tokens[index] = estimator.estimate(compressed);
+        return before - tokens[index];
+    }
+
+    /**
+     * 工具参数是 JSON，只压缩其中的长字符串（如 writeFile 的文件内容），保证压缩后仍是合法的参数
+     */
+    private String compressArguments(String arguments) {
+        if (arguments == null || estimator.estimate(arguments) <= maxMessageTokens) {
+            return arguments;
+        }
+        try {
+            JSONObject jsonObject = JSONUtil.parseObj(arguments);
+            for (Map.Entry<String, Object> entry : jsonObject.entrySet()) {
+                if (entry.getValue() instanceof String value) {
+                    entry.setValue(compressText(value));
+                }
+            }
+            return jsonObject.toString();
+        } catch (Exception e) {
+            return arguments;
+        }
+    }
+
+    /**
+     * 只保留首尾，中间替换为省略说明
+     */
+    private String compressText(String text) {
+        int textTokens = estimator.estimate(text);
+        if (textTokens <= maxMessageTokens) {
+            return text;
+        }
+        int keepChars = (int) ((long) text.length() * maxMessageTokens / textTokens);
+        int headChars = keepChars * 2 / 3;
+        int tailChars = keepChars - headChars;
+        return text.substring(0, headChars)
+                + "\n...[已省略约 " + (textTokens - maxMessageTokens) + " 个 token]...\n"
+                + text.substring(text.length() - tailChars);
+    }
+}
@@ -0,0 +1,133 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按轮次缓冲的对话记忆存储
+ * 工具调用循环中每追加一条消息，记忆都会读出整个列表、再把整个列表写回存储；RedisChatMemoryStore 每次写入都重新序列化整个列表，
+ * 一轮生成有上百次工具调用、每次都带着大段 writeFile 参数时，写入 Redis 的字节数与轮数成平方关系。这里：
+ * 1. 生成开始时 beginTurn，之后该记忆的读写都在本地工作列表上进行，不访问 Redis
+ * 2. 每 checkpointUpdates 次写入提交一次（检查点），生成结束时 endTurn 提交剩余的修改
+ * 3. 不在生成中的记忆直接读写底层存储
+ * 实例宕机时最多丢失一个检查点间隔内的工具调用消息，对话历史表不受影响
+ */
+public class TurnBufferedChatMemoryStore implements ChatMemoryStore {
+
+    private final ChatMemoryStore delegate;
+
+    private final int checkpointUpdates;
+
+    private final Map<Object, Turn> turns = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate          底层存储
+     * @param checkpointUpdates 生成中每累计多少次写入提交一次，小于等于 0 时只在生成结束时提交
+     */
+    public TurnBufferedChatMemoryStore(ChatMemoryStore delegate, int checkpointUpdates) {
+        this.delegate = delegate;
+        this.checkpointUpdates = checkpointUpdates;
+    }
+
+    /**
+     * 开始一轮生成，之后该记忆的读写都在本地进行
+     *
+     * @param memoryId 记忆ID
+     */
+    public void beginTurn(Object memoryId) {
+        turns.computeIfAbsent(memoryId, id -> new Turn());
+    }
+
+    /**
+     * 结束一轮生成，把本地的修改提交到底层存储
+     *
+     * @param memoryId 记忆ID
+     */
+    public void endTurn(Object memoryId) {
+        Turn turn = turns.remove(memoryId);
+        if (turn != null) {
+            turn.commit(memoryId);
+        }
+    }
+
+    /**
+     * 该记忆是否正在一轮生成中
+     *
+     * @param memoryId 记忆ID
+     */
+    public boolean isInTurn(Object memoryId) {
+        return turns.containsKey(memoryId);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        Turn turn = turns.get(memoryId);
+        if (turn == null) {
+            return delegate.getMessages(memoryId);
+        }
+        return turn.getMessages(memoryId);
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        Turn turn = turns.get(memoryId);
+        if (turn == null) {
+            delegate.updateMessages(memoryId, messages);
+            return;
+        }
+        turn.update(memoryId, messages);
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        Turn turn = turns.get(memoryId);
+        if (turn != null) {
+            turn.clear();
+        }
+        delegate.deleteMessages(memoryId);
+    }
+
+    /**
+     * 一轮生成中的工作列表，第一次读取时从底层存储加载
+     * 工具并行执行时结果仍在一个线程上按顺序写入记忆，这里加锁只是为了检查点提交和结束提交互斥
+     */
+    private final class Turn {
+
+        private List<ChatMessage> messages;
+
+        private int pendingUpdates;
+
+        synchronized List<ChatMessage> getMessages(Object memoryId) {
+            if (messages == null) {
+                messages = new ArrayList<>(delegate.getMessages(memoryId));
+            }
+            return new ArrayList<>(messages);
+        }
+
+        synchronized void update(Object memoryId, List<ChatMessage> updated) {
+            messages = new ArrayList<>(updated);
+            pendingUpdates++;
+            if (checkpointUpdates > 0 && pendingUpdates >= checkpointUpdates) {
+                commit(memoryId);
+            }
+        }
+
+        synchronized void commit(Object memoryId) {
+            if (pendingUpdates == 0) {
+                return;
+            }
+            delegate.updateMessages(memoryId, messages);
+            pendingUpdates = 0;
+        }
+
+        synchronized void clear() {
+            messages = new ArrayList<>();
+            pendingUpdates = 0;
+        }
+    }
+}
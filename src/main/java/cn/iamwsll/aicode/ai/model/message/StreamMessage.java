@@ -6,11 +6,12 @@ import lombok.NoArgsConstructor;
 
 /**
  * 流式消息响应基类
+ * 密封类型：门面直接产出这些类型化事件，处理器用模式匹配消费，只在 SSE 出口序列化一次
  */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class StreamMessage {
+public abstract sealed class StreamMessage permits AiResponseMessage, ToolRequestMessage, ToolExecutedMessage {
     /**
      * 消息类型
      */
@@ -11,7 +11,7 @@ import lombok.NoArgsConstructor;
 @Data
 @EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
-public class ToolExecutedMessage extends StreamMessage {
+public final class ToolExecutedMessage extends StreamMessage {
 
     private String id;
 
@@ -21,6 +21,11 @@ public class ToolExecutedMessage extends StreamMessage {
 
     private String result;
 
+    /**
+     * 展示内容（前端展示和对话历史共用），生成方格式化一次后随消息传递
+     */
+    private String formattedResult;
+
     public ToolExecutedMessage(ToolExecution toolExecution) {
         super(StreamMessageTypeEnum.TOOL_EXECUTED.getValue());
         this.id = toolExecution.request().id();
@@ -11,7 +11,7 @@ import lombok.NoArgsConstructor;
 @Data
 @EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
-public class ToolRequestMessage extends StreamMessage {
+public final class ToolRequestMessage extends StreamMessage {
 
     /**
      * 工具调用的唯一id
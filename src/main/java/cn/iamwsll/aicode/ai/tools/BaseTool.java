@@ -1,7 +1,10 @@
 package cn.iamwsll.aicode.ai.tools;
 
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 
+import java.nio.file.Paths;
+
 /**
  * 工具基类
  * 定义所有工具的通用接口
@@ -39,4 +42,29 @@ public abstract class BaseTool {
      * @return 格式化的工具执行结果
      */
     public abstract String generateToolExecutedResult(JSONObject arguments);
+
+    /**
+     * 获取工具调用的并发键（同一轮的多个工具调用并行执行时使用）
+     * 键不同的调用可以同时执行，键相同的调用按顺序执行；空字符串表示与任何调用都不冲突，
+     * null 表示不能与其他调用同时执行。默认不可并行，按文件隔离的工具（包括读取）覆盖此方法
+     *
+     * @param arguments 工具执行参数
+     * @return 并发键
+     */
+    public String getConcurrencyKey(JSONObject arguments) {
+        return null;
+    }
+
+    /**
+     * 按文件路径生成并发键，同一文件的写操作按顺序执行
+     *
+     * @param relativeFilePath 文件的相对路径
+     * @return 并发键，路径为空时为 null
+     */
+    protected static String fileConcurrencyKey(String relativeFilePath) {
+        if (StrUtil.isBlank(relativeFilePath)) {
+            return null;
+        }
+        return "file:" + Paths.get(relativeFilePath).normalize();
+    }
 }
@@ -88,4 +88,12 @@ public class FileDeleteTool  extends BaseTool {
         String relativeFilePath = arguments.getStr("relativeFilePath");
         return String.format("[工具调用] %s %s", getDisplayName(), relativeFilePath);
     }
+
+    /**
+     * 不同文件的删除可以并行，同一文件的操作按顺序执行
+     */
+    @Override
+    public String getConcurrencyKey(JSONObject arguments) {
+        return fileConcurrencyKey(arguments.getStr("relativeFilePath"));
+    }
 }
@@ -124,4 +124,13 @@ public class FileDirReadTool extends BaseTool {
         }
         return String.format("[工具调用] %s %s", getDisplayName(), relativeDirPath);
     }
+
+    /**
+     * 目录结构涉及目录下的所有文件，无法与按文件隔离的写操作区分，所以单独执行，
+     * 能看到同一轮里在它之前的所有写入
+     */
+    @Override
+    public String getConcurrencyKey(JSONObject arguments) {
+        return null;
+    }
 }
@@ -90,4 +90,12 @@ public class FileModifyTool extends BaseTool {
                 ```
                 """, getDisplayName(), relativeFilePath, oldContent, newContent);
     }
+
+    /**
+     * 不同文件的修改可以并行，同一文件按顺序修改
+     */
+    @Override
+    public String getConcurrencyKey(JSONObject arguments) {
+        return fileConcurrencyKey(arguments.getStr("relativeFilePath"));
+    }
 }
@@ -60,4 +60,12 @@ public class FileReadTool extends BaseTool {
         String relativeFilePath = arguments.getStr("relativeFilePath");
         return String.format("[工具调用] %s %s", getDisplayName(), relativeFilePath);
     }
+
+    /**
+     * 与写入、修改、删除使用同一个文件键，不会读到同一轮里正在写的文件；不同文件的读取可以并行
+     */
+    @Override
+    public String getConcurrencyKey(JSONObject arguments) {
+        return fileConcurrencyKey(arguments.getStr("relativeFilePath"));
+    }
 }
@@ -10,19 +10,68 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 文件写入工具
  * 支持 AI 通过工具调用的方式写入文件
+ * 参数流式到达时可以先写入暂存文件（见 {@link StreamingFileWriteStager}），工具执行时内容一致就直接使用暂存结果
  */
 @Slf4j
 @Component
 public class FileWriteTool extends BaseTool {
 
+    /**
+     * 暂存文件目录，与项目目录在同一个文件系统上，提交时可以原子重命名
+     */
+    private static final Path STAGING_DIR = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, ".staging");
+
+    /**
+     * 参数流式到达时已经写入暂存文件、等待工具执行的写入，键为目标文件路径
+     */
+    private final Map<Path, StagedWrite> stagedWrites = new ConcurrentHashMap<>();
+
+    /**
+     * 一次暂存写入
+     *
+     * @param path     目标文件路径
+     * @param tempFile 暂存文件，已经提前提交到目标路径时为 null
+     * @param length   内容长度
+     * @param sha256   内容 UTF-8 字节的 SHA-256
+     */
+    public record StagedWrite(Path path, Path tempFile, int length, byte[] sha256) {
+
+        boolean matches(String content) {
+            if (content == null || content.length() != length) {
+                return false;
+            }
+            MessageDigest digest = newContentDigest();
+            return MessageDigest.isEqual(sha256, digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * 计算暂存内容摘要的 SHA-256
+     */
+    static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 每个 Java 平台都必须支持 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Tool("写入文件到指定路径")
     public String writeFile(
             @P("文件的相对路径")
@@ -32,12 +81,10 @@ public class FileWriteTool extends BaseTool {
             @ToolMemoryId Long appId
     ) {
         try {
-            Path path = Paths.get(relativeFilePath);
-            if (!path.isAbsolute()) {
-                // 相对路径处理，创建基于 appId 的项目目录
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
-                path = projectRoot.resolve(relativeFilePath);
+            Path path = resolvePath(relativeFilePath, appId);
+            if (applyStagedWrite(path, content)) {
+                log.info("成功写入文件（参数流式到达时已暂存）: {}", path.toAbsolutePath());
+                return "文件写入成功: " + relativeFilePath;
             }
             // 创建父目录（如果不存在）
             Path parentDir = path.getParent();
@@ -45,7 +92,7 @@ public class FileWriteTool extends BaseTool {
                 Files.createDirectories(parentDir);
             }
             // 写入文件内容
-            Files.write(path, content.getBytes(),
+            Files.write(path, content.getBytes(StandardCharsets.UTF_8),
                     StandardOpenOption.CREATE,
                     StandardOpenOption.TRUNCATE_EXISTING);
             log.info("成功写入文件: {}", path.toAbsolutePath());
@@ -58,6 +105,127 @@ public class FileWriteTool extends BaseTool {
         }
     }
 
+    /**
+     * 为一次生成创建 writeFile 参数的流式落盘器
+     *
+     * @param appId 应用ID
+     */
+    public StreamingFileWriteStager newStager(Long appId) {
+        return new StreamingFileWriteStager(this, appId, STAGING_DIR);
+    }
+
+    /**
+     * 登记一个内容已经完整写入暂存文件的 writeFile 调用
+     * 目标文件不存在时立即提交到目标路径；已存在时等到工具执行再提交，避免同一轮中先执行的工具看到新内容
+     */
+    StagedWrite stage(Long appId, String relativeFilePath, Path tempFile, int length, byte[] sha256) throws IOException {
+        Path path = resolvePath(relativeFilePath, appId);
+        StagedWrite previous = stagedWrites.remove(path);
+        if (previous != null) {
+            deleteTempFile(previous);
+        }
+        StagedWrite stagedWrite;
+        // 上一次提前提交的写入还没有执行，目标文件视为不存在，撤销时整个删除
+        if (Files.notExists(path) || (previous != null && previous.tempFile() == null)) {
+            moveAtomically(tempFile, path);
+            log.info("参数流式到达时已提前写入新文件: {}", path.toAbsolutePath());
+            stagedWrite = new StagedWrite(path, null, length, sha256);
+        } else {
+            stagedWrite = new StagedWrite(path, tempFile, length, sha256);
+        }
+        stagedWrites.put(path, stagedWrite);
+        return stagedWrite;
+    }
+
+    /**
+     * 撤销没有执行的暂存写入（生成被取消、出错或护轨要求重新生成）
+     * 已经提前提交到目标路径的新文件一并删除，项目目录中只留下工具实际执行过的写入
+     */
+    void discardStagedWrite(StagedWrite stagedWrite) {
+        if (!stagedWrites.remove(stagedWrite.path(), stagedWrite)) {
+            return;
+        }
+        if (stagedWrite.tempFile() != null) {
+            deleteTempFile(stagedWrite);
+            return;
+        }
+        Path path = stagedWrite.path();
+        try {
+            // 内容已经被其他写入改变时保留
+            if (Files.exists(path) && stagedWrite.matches(Files.readString(path))) {
+                Files.delete(path);
+                log.info("工具调用没有执行，删除提前写入的新文件: {}", path.toAbsolutePath());
+            }
+        } catch (IOException e) {
+            log.warn("删除提前写入的新文件失败: {}", path, e);
+        }
+    }
+
+    /**
+     * 使用内容一致的暂存写入，未提交的暂存文件在这里提交
+     * 暂存写入无论是否一致都在这里用掉：不一致时删除暂存文件，提前写入的新文件由随后的直接写入覆盖
+     *
+     * @return 是否已经使用暂存写入，否则按原方式写入
+     */
+    private boolean applyStagedWrite(Path path, String content) {
+        StagedWrite stagedWrite = stagedWrites.get(path);
+        if (stagedWrite == null || !stagedWrites.remove(path, stagedWrite)) {
+            return false;
+        }
+        if (!stagedWrite.matches(content)) {
+            log.warn("暂存内容与工具参数不一致，改为直接写入: {}", path);
+            deleteTempFile(stagedWrite);
+            return false;
+        }
+        if (stagedWrite.tempFile() == null) {
+            return true;
+        }
+        try {
+            moveAtomically(stagedWrite.tempFile(), path);
+            return true;
+        } catch (IOException e) {
+            log.warn("提交暂存文件失败，改为直接写入: {}", path, e);
+            deleteTempFile(stagedWrite);
+            return false;
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        Path parentDir = target.getParent();
+        if (parentDir != null) {
+            Files.createDirectories(parentDir);
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteTempFile(StagedWrite stagedWrite) {
+        if (stagedWrite.tempFile() == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(stagedWrite.tempFile());
+        } catch (IOException e) {
+            log.warn("删除暂存文件失败: {}", stagedWrite.tempFile(), e);
+        }
+    }
+
+    /**
+     * 相对路径处理，解析到基于 appId 的项目目录
+     */
+    private static Path resolvePath(String relativeFilePath, Long appId) {
+        Path path = Paths.get(relativeFilePath);
+        if (!path.isAbsolute()) {
+            String projectDirName = "vue_project_" + appId;
+            Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
+            path = projectRoot.resolve(relativeFilePath);
+        }
+        return path.normalize();
+    }
+
     @Override
     public String getToolName() {
         return "writeFile";
@@ -80,4 +248,12 @@ public class FileWriteTool extends BaseTool {
                         ```
                         """, getDisplayName(), relativeFilePath, suffix, content);
     }
+
+    /**
+     * 不同文件的写入可以并行，同一文件按顺序写入
+     */
+    @Override
+    public String getConcurrencyKey(JSONObject arguments) {
+        return fileConcurrencyKey(arguments.getStr("relativeFilePath"));
+    }
 }
@@ -0,0 +1,333 @@
+package cn.iamwsll.aicode.ai.tools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 工具参数的增量 JSON 解码器
+ * 工具调用的参数是一个 JSON 对象，按片段流式到达。这里对片段做单遍增量扫描：
+ * 指定的一个字符串字段（例如 writeFile 的 content）解码后的字符随片段到达立即交给消费者，不在内存中拼出完整字符串；
+ * 其他字符串字段解码后保留，非字符串的值跳过。转义序列（包括 \\uXXXX）可以被拆在两个片段之间。
+ * 同时累计流式字段的长度，用于和完整参数核对。
+ * 注意：有状态、非线程安全，一个工具调用对应一个实例
+ */
+public class IncrementalJsonArgumentDecoder {
+
+    private enum State {
+        /**
+         * 对象开始之前
+         */
+        BEFORE_OBJECT,
+        /**
+         * 等待字段名或对象结束
+         */
+        BEFORE_KEY,
+        /**
+         * 字段名内部
+         */
+        KEY,
+        /**
+         * 字段名之后、冒号之前
+         */
+        AFTER_KEY,
+        /**
+         * 冒号之后、值之前
+         */
+        BEFORE_VALUE,
+        /**
+         * 字符串值内部
+         */
+        STRING_VALUE,
+        /**
+         * 非字符串的值（数字、字面量、嵌套对象或数组）内部
+         */
+        OTHER_VALUE,
+        /**
+         * 值之后，等待逗号或对象结束
+         */
+        AFTER_VALUE,
+        /**
+         * 对象已经结束
+         */
+        DONE,
+        /**
+         * 格式错误，之后的片段全部忽略
+         */
+        MALFORMED
+    }
+
+    private final String streamedField;
+
+    private final Consumer<CharSequence> streamedConsumer;
+
+    private final Map<String, String> stringFields = new HashMap<>();
+
+    private final StringBuilder key = new StringBuilder();
+
+    /**
+     * 普通字符串字段的值，或流式字段在本次片段中解码出的字符
+     */
+    private final StringBuilder value = new StringBuilder();
+
+    private State state = State.BEFORE_OBJECT;
+
+    /**
+     * 当前字符串值是否是流式字段
+     */
+    private boolean streaming;
+
+    /**
+     * 转义状态：0 不在转义中，1 反斜杠之后，2~5 正在读取 \\u 后的第 1~4 个十六进制数字
+     */
+    private int escape;
+
+    private int unicode;
+
+    /**
+     * 非字符串值的嵌套深度，0 表示数字或字面量
+     */
+    private int depth;
+
+    private boolean nestedString;
+
+    private boolean nestedEscape;
+
+    private long fedLength;
+
+    private int streamedLength;
+
+    private boolean streamedFieldComplete;
+
+    /**
+     * @param streamedField    流式输出的字段名
+     * @param streamedConsumer 接收流式字段解码后的字符，参数只在调用期间有效
+     */
+    public IncrementalJsonArgumentDecoder(String streamedField, Consumer<CharSequence> streamedConsumer) {
+        this.streamedField = streamedField;
+        this.streamedConsumer = streamedConsumer;
+    }
+
+    /**
+     * 输入一个参数片段
+     *
+     * @param fragment 参数片段
+     */
+    public void feed(CharSequence fragment) {
+        fedLength += fragment.length();
+        for (int i = 0; i < fragment.length() && state != State.MALFORMED; i++) {
+            accept(fragment.charAt(i));
+        }
+        if (state == State.STRING_VALUE && streaming) {
+            flushStreamed();
+        }
+    }
+
+    /**
+     * 对象是否已经完整结束
+     */
+    public boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    public boolean isMalformed() {
+        return state == State.MALFORMED;
+    }
+
+    /**
+     * 获取已经解码完成的普通字符串字段
+     */
+    public String stringField(String name) {
+        return stringFields.get(name);
+    }
+
+    /**
+     * 已输入的参数字符数，用于确认没有遗漏片段
+     */
+    public long fedLength() {
+        return fedLength;
+    }
+
+    public int streamedLength() {
+        return streamedLength;
+    }
+
+    public boolean isStreamedFieldComplete() {
+        return streamedFieldComplete;
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case BEFORE_OBJECT -> {
+                if (c == '{') {
+                    state = State.BEFORE_KEY;
+                } else if (!isWhitespace(c)) {
+                    state = State.MALFORMED;
+                }
+            }
+            case BEFORE_KEY -> {
+                if (c == '"') {
+                    key.setLength(0);
+                    state = State.KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                } else if (!isWhitespace(c)) {
+                    state = State.MALFORMED;
+                }
+            }
+            case KEY -> {
+                if (string(c, key)) {
+                    state = State.AFTER_KEY;
+                }
+            }
+            case AFTER_KEY -> {
+                if (c == ':') {
+                    state = State.BEFORE_VALUE;
+                } else if (!isWhitespace(c)) {
+                    state = State.MALFORMED;
+                }
+            }
+            case BEFORE_VALUE -> beforeValue(c);
+            case STRING_VALUE -> {
+                if (string(c, value)) {
+                    endString();
+                }
+            }
+            case OTHER_VALUE -> otherValue(c);
+            case AFTER_VALUE -> {
+                if (c == ',') {
+                    state = State.BEFORE_KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                } else if (!isWhitespace(c)) {
+                    state = State.MALFORMED;
+                }
+            }
+            case DONE -> {
+                if (!isWhitespace(c)) {
+                    state = State.MALFORMED;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void beforeValue(char c) {
+        if (isWhitespace(c)) {
+            return;
+        }
+        if (c == '"') {
+            value.setLength(0);
+            streaming = streamedField.contentEquals(key);
+            state = State.STRING_VALUE;
+            return;
+        }
+        state = State.OTHER_VALUE;
+        nestedString = false;
+        nestedEscape = false;
+        depth = c == '{' || c == '[' ? 1 : 0;
+    }
+
+    private void otherValue(char c) {
+        if (depth == 0) {
+            // 数字或字面量，遇到分隔符结束
+            if (c == ',') {
+                state = State.BEFORE_KEY;
+            } else if (c == '}') {
+                state = State.DONE;
+            } else if (isWhitespace(c)) {
+                state = State.AFTER_VALUE;
+            }
+            return;
+        }
+        if (nestedString) {
+            if (nestedEscape) {
+                nestedEscape = false;
+            } else if (c == '\\') {
+                nestedEscape = true;
+            } else if (c == '"') {
+                nestedString = false;
+            }
+            return;
+        }
+        if (c == '"') {
+            nestedString = true;
+        } else if (c == '{' || c == '[') {
+            depth++;
+        } else if ((c == '}' || c == ']') && --depth == 0) {
+            state = State.AFTER_VALUE;
+        }
+    }
+
+    /**
+     * 处理字符串中的一个字符，解码后追加到 target
+     *
+     * @return 字符串是否在这个字符处结束
+     */
+    private boolean string(char c, StringBuilder target) {
+        if (escape == 0) {
+            if (c == '"') {
+                return true;
+            }
+            if (c == '\\') {
+                escape = 1;
+            } else {
+                target.append(c);
+            }
+            return false;
+        }
+        if (escape == 1) {
+            escape = 0;
+            switch (c) {
+                case '"', '\\', '/' -> target.append(c);
+                case 'b' -> target.append('\b');
+                case 'f' -> target.append('\f');
+                case 'n' -> target.append('\n');
+                case 'r' -> target.append('\r');
+                case 't' -> target.append('\t');
+                case 'u' -> {
+                    escape = 2;
+                    unicode = 0;
+                }
+                default -> state = State.MALFORMED;
+            }
+            return false;
+        }
+        int digit = Character.digit(c, 16);
+        if (digit < 0) {
+            state = State.MALFORMED;
+            return false;
+        }
+        unicode = unicode * 16 + digit;
+        if (++escape == 6) {
+            target.append((char) unicode);
+            escape = 0;
+        }
+        return false;
+    }
+
+    private void endString() {
+        if (streaming) {
+            flushStreamed();
+            streamedFieldComplete = true;
+            streaming = false;
+        } else {
+            stringFields.put(key.toString(), value.toString());
+        }
+        state = State.AFTER_VALUE;
+    }
+
+    private void flushStreamed() {
+        if (value.isEmpty()) {
+            return;
+        }
+        streamedLength += value.length();
+        streamedConsumer.accept(value);
+        value.setLength(0);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
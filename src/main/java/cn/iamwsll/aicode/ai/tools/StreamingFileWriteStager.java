@@ -0,0 +1,204 @@
+package cn.iamwsll.aicode.ai.tools;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * writeFile 参数的流式落盘
+ * 模型逐片输出 writeFile 的参数时，content 字段的字符随片段到达就解码写入暂存文件，不等整个工具调用生成完再一次性写入：
+ * 1. 工具调用完整后核对暂存内容与完整参数（长度、片段总长度），核对失败或参数格式错误时删除暂存文件；
+ *    同时记录暂存文件的 SHA-256，工具执行时用它确认内容一致
+ * 2. 目标文件不存在时立即原子重命名到目标路径，预览、构建等可以更早看到新文件；
+ *    生成结束时（取消、出错、护轨要求重新生成）工具仍没有执行的，删除这个提前写入的新文件
+ * 3. 目标文件已存在时保留暂存文件，到工具实际执行时再重命名，保证同一轮中先执行的读取、修改工具看到的仍是旧内容
+ * 工具执行时 FileWriteTool 发现内容一致的暂存写入就不再重复写文件，见 {@link FileWriteTool#writeFile}
+ * 注意：一次生成对应一个实例；模型回调在读取响应的线程上按顺序到达，结束清理可能来自其他线程，方法都加锁
+ */
+@Slf4j
+public class StreamingFileWriteStager {
+
+    private static final String STREAMED_FIELD = "content";
+
+    private final FileWriteTool fileWriteTool;
+
+    private final Long appId;
+
+    private final Path stagingDir;
+
+    /**
+     * 正在接收参数的工具调用，键为工具调用 ID（没有 ID 时为序号）
+     */
+    private final Map<String, StagedFile> stagingFiles = new HashMap<>();
+
+    /**
+     * 已登记到 FileWriteTool、等待工具执行的暂存写入，结束时清理没有执行的部分
+     */
+    private final List<FileWriteTool.StagedWrite> stagedWrites = new ArrayList<>();
+
+    private boolean closed;
+
+    StreamingFileWriteStager(FileWriteTool fileWriteTool, Long appId, Path stagingDir) {
+        this.fileWriteTool = fileWriteTool;
+        this.appId = appId;
+        this.stagingDir = stagingDir;
+    }
+
+    /**
+     * 接收一个工具调用的参数片段，只处理 writeFile
+     *
+     * @param index   工具调用在本次响应中的序号
+     * @param request 只包含本次片段参数的工具调用请求
+     */
+    public synchronized void onPartialToolCall(int index, ToolExecutionRequest request) {
+        if (closed || !fileWriteTool.getToolName().equals(request.name()) || StrUtil.isEmpty(request.arguments())) {
+            return;
+        }
+        StagedFile stagedFile = stagingFiles.computeIfAbsent(key(index, request.id()), key -> new StagedFile());
+        stagedFile.feed(request.arguments());
+    }
+
+    /**
+     * 工具调用的参数已经完整，核对后提交暂存文件
+     *
+     * @param index   工具调用在本次响应中的序号
+     * @param request 完整的工具调用请求
+     */
+    public synchronized void onCompleteToolCall(int index, ToolExecutionRequest request) {
+        StagedFile stagedFile = stagingFiles.remove(key(index, request.id()));
+        if (stagedFile == null) {
+            return;
+        }
+        if (closed) {
+            stagedFile.discard();
+            return;
+        }
+        stagedFile.commit(request.arguments());
+    }
+
+    /**
+     * 生成结束（完成、出错或取消），删除未完成的暂存文件，撤销没有执行的暂存写入（包括提前写入的新文件）
+     */
+    public synchronized void close() {
+        closed = true;
+        stagingFiles.values().forEach(StagedFile::discard);
+        stagingFiles.clear();
+        stagedWrites.forEach(fileWriteTool::discardStagedWrite);
+        stagedWrites.clear();
+    }
+
+    private static String key(int index, String id) {
+        return StrUtil.isNotEmpty(id) ? id : "#" + index;
+    }
+
+    /**
+     * 一个 writeFile 调用的暂存文件
+     */
+    private final class StagedFile {
+
+        private final IncrementalJsonArgumentDecoder decoder = new IncrementalJsonArgumentDecoder(STREAMED_FIELD, this::write);
+
+        private Path tempFile;
+
+        private Writer writer;
+
+        /**
+         * 暂存文件内容（UTF-8 字节）的摘要，随写入累计
+         */
+        private MessageDigest digest;
+
+        private boolean failed;
+
+        void feed(String fragment) {
+            if (!failed) {
+                decoder.feed(fragment);
+            }
+        }
+
+        private void write(CharSequence chars) {
+            if (failed) {
+                return;
+            }
+            try {
+                if (writer == null) {
+                    Files.createDirectories(stagingDir);
+                    tempFile = stagingDir.resolve(appId + "-" + IdUtil.fastSimpleUUID() + ".tmp");
+                    digest = FileWriteTool.newContentDigest();
+                    writer = new BufferedWriter(new OutputStreamWriter(
+                            new DigestOutputStream(Files.newOutputStream(tempFile), digest), StandardCharsets.UTF_8));
+                }
+                writer.append(chars);
+            } catch (IOException e) {
+                log.warn("写入暂存文件失败，改为工具执行时写入，appId: {}", appId, e);
+                failed = true;
+            }
+        }
+
+        void commit(String arguments) {
+            if (!closeWriter()) {
+                discard();
+                return;
+            }
+            String relativeFilePath = decoder.stringField("relativeFilePath");
+            if (failed || !decoder.isComplete() || !decoder.isStreamedFieldComplete() || StrUtil.isBlank(relativeFilePath)
+                    || arguments == null || decoder.fedLength() != arguments.length()) {
+                log.debug("writeFile 参数不完整或格式错误，丢弃暂存文件，appId: {}", appId);
+                discard();
+                return;
+            }
+            if (tempFile == null) {
+                // 内容为空时没有产生任何字符，交给工具执行时写入
+                return;
+            }
+            try {
+                FileWriteTool.StagedWrite stagedWrite = fileWriteTool.stage(appId, relativeFilePath, tempFile,
+                        decoder.streamedLength(), digest.digest());
+                stagedWrites.add(stagedWrite);
+            } catch (IOException | RuntimeException e) {
+                log.warn("提交暂存文件失败，改为工具执行时写入，appId: {}, 文件: {}", appId, relativeFilePath, e);
+                discard();
+            }
+        }
+
+        void discard() {
+            closeWriter();
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("删除暂存文件失败: {}", tempFile, e);
+                }
+            }
+        }
+
+        private boolean closeWriter() {
+            if (writer == null) {
+                return true;
+            }
+            try {
+                writer.close();
+                return true;
+            } catch (IOException e) {
+                log.warn("关闭暂存文件失败: {}", tempFile, e);
+                return false;
+            } finally {
+                writer = null;
+            }
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package cn.iamwsll.aicode.ai.tools;
 
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import cn.iamwsll.aicode.ai.model.message.ToolExecutedMessage;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,6 +38,8 @@ public class ToolManager {
      */
     @PostConstruct
     public void initTools() {
+        // 按名称排序：工具定义位于请求前缀中，顺序固定才能命中服务端的前缀缓存（Bean 注入顺序不保证稳定）
+        Arrays.sort(tools, Comparator.comparing(BaseTool::getToolName));
         for (BaseTool tool : tools) {
             toolMap.put(tool.getToolName(), tool);
             log.info("注册工具: {} -> {}", tool.getToolName(), tool.getDisplayName());
@@ -49,6 +57,40 @@ public class ToolManager {
         return toolMap.get(toolName);
     }
 
+    /**
+     * 生成工具执行结果的展示内容（前端展示和对话历史共用）
+     *
+     * @param toolExecutedMessage 工具执行结果消息
+     * @return 展示内容
+     */
+    public String formatToolExecuted(ToolExecutedMessage toolExecutedMessage) {
+        JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
+        // 根据工具名称获取工具实例并生成相应的结果格式
+        BaseTool tool = getTool(toolExecutedMessage.getName());
+        String result = tool.generateToolExecutedResult(jsonObject);
+        return String.format("\n\n%s\n\n", result);
+    }
+
+    /**
+     * 获取工具调用的并发键，供同一轮的多个工具调用并行执行时判断哪些可以同时执行
+     * 未知工具或参数无法解析时返回 null，该调用单独执行
+     *
+     * @param toolExecutionRequest 工具调用请求
+     * @return 并发键
+     */
+    public String getConcurrencyKey(ToolExecutionRequest toolExecutionRequest) {
+        BaseTool tool = getTool(toolExecutionRequest.name());
+        if (tool == null) {
+            return null;
+        }
+        try {
+            return tool.getConcurrencyKey(JSONUtil.parseObj(toolExecutionRequest.arguments()));
+        } catch (Exception e) {
+            log.warn("解析工具调用参数失败，按顺序执行: {}", toolExecutionRequest.name(), e);
+            return null;
+        }
+    }
+
     /**
      * 获取已注册的工具集合
      *
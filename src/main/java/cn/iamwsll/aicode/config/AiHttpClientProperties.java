@@ -0,0 +1,20 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模型调用共享 HTTP 客户端配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "langchain4j.http-client")
+public class AiHttpClientProperties {
+
+    /** 是否优先使用 HTTP/2（服务端不支持时自动回退到 HTTP/1.1） */
+    private boolean http2 = true;
+
+    /** 建立连接的超时时间（秒），对所有模型生效 */
+    private long connectTimeoutSeconds = 15;
+}
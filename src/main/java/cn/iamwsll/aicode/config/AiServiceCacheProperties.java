@@ -0,0 +1,26 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * AI 服务实例缓存配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ai-service-cache")
+public class AiServiceCacheProperties {
+
+    /** 最多缓存的实例个数 */
+    private long maximumSize = 1000;
+
+    /** 写入多少分钟后，再次访问时在后台重建实例（访问方继续使用旧实例，不等待） */
+    private long refreshAfterWriteMinutes = 20;
+
+    /** 多少分钟没有访问后过期 */
+    private long expireAfterAccessMinutes = 10;
+
+    /** 用户打开应用时是否在后台预先创建 AI 服务实例 */
+    private boolean prewarm = true;
+}
@@ -0,0 +1,35 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话历史异步批量写入配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat-history.write-behind")
+public class ChatHistoryWriteBehindProperties {
+
+    /** 是否开启异步批量写入，关闭后每条消息同步插入 */
+    private boolean enabled = true;
+
+    /** 内存队列容量，队列满时（MySQL 写入跟不上）新消息转存到 Redis */
+    private int queueCapacity = 10000;
+
+    /** 每批最多插入的条数（一条多行 INSERT 语句） */
+    private int batchSize = 200;
+
+    /** 攒批的最长等待时间（毫秒） */
+    private long flushIntervalMillis = 100;
+
+    /** 单批插入超过该耗时（毫秒）视为 MySQL 变慢，之后的消息先转存到 Redis，直到插入恢复正常 */
+    private long slowInsertMillis = 2000;
+
+    /** 插入失败或变慢后，新消息转存到 Redis 的持续时间（秒），到期后重新尝试写入数据库 */
+    private long slowBackoffSeconds = 30;
+
+    /** 关闭时等待刷盘的最长时间（秒），超时后剩余消息转存到 Redis */
+    private long shutdownTimeoutSeconds = 10;
+}
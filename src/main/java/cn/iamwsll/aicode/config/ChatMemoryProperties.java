@@ -0,0 +1,50 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话记忆配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory")
+public class ChatMemoryProperties {
+
+    /** 记忆中最多保留的消息条数，也是创建 AI 服务时从数据库加载的最多条数 */
+    private int maxMessages = 20;
+
+    /**
+     * 是否使用前缀稳定的记忆：消息只追加，超出上限时按块淘汰，请求前缀在多轮之间保持不变，提高服务端前缀缓存命中率
+     * 关闭时使用滑动窗口（每超出一条淘汰一条）
+     */
+    private boolean prefixStable = true;
+
+    /** 前缀稳定模式下每次淘汰的最少条数，数据库加载的起点也按该值对齐 */
+    private int evictBlockSize = 10;
+
+    /** 生成中记忆只在本地读写，每累计多少次写入提交一次到 Redis（检查点），小于等于 0 时只在生成结束时提交 */
+    private int turnCheckpointUpdates = 20;
+
+    /**
+     * 输入 token 预算，大于 0 时按本地估算的 token 数控制记忆大小（此时 maxMessages 只限制数据库加载条数），
+     * 超出预算时压缩超长消息、按轮次淘汰最老的消息，当前轮次仍放不下时拒绝请求
+     */
+    private int maxInputTokens = 0;
+
+    /** 超出 token 预算时淘汰到预算的多少比例，留出余量使后续若干次追加不再改动前缀 */
+    private double tokenLowWaterRatio = 0.75;
+
+    /** 超出 token 预算时，单条消息超过该 token 数的只保留首尾 */
+    private int maxMessageTokens = 4000;
+
+    /** Redis 记忆存储在本地保留的快照最多占用的内存（MB），用于计算增量写入、版本号未变时读取不传输整个列表，也是近端缓存命中时读取的唯一本地副本 */
+    private long snapshotCacheMb = 64;
+
+    /** 是否在 Redis 前面使用本地近端缓存：读取命中时不访问 Redis，写入同步写到 Redis，其他实例通过发布订阅失效 */
+    private boolean nearCache = true;
+
+    /** 本地近端缓存的条目写入后多少分钟过期，兜底失效通知丢失的情况 */
+    private long nearCacheExpireMinutes = 30;
+}
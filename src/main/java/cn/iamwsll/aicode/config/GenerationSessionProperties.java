@@ -0,0 +1,27 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成会话配置
+ * 一次代码生成对应一个会话，客户端断线重连时从会话中续传，而不是重新调用模型
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "generation.session")
+public class GenerationSessionProperties {
+
+    /** 内存中保留的最近事件个数，更早的事件转存到 Redis */
+    private int replayBufferSize = 256;
+
+    /** 生成结束后会话在内存中保留的时间（秒），期间重连不访问 Redis */
+    private long retainAfterFinishSeconds = 60;
+
+    /** 没有任何客户端订阅超过该时间（秒）后取消生成，避免为已关闭的页面继续消耗 token；小于等于 0 表示不取消 */
+    private long cancelAfterDetachedSeconds = 60;
+
+    /** Redis 中回放数据的过期时间（分钟） */
+    private long replayTtlMinutes = 30;
+}
@@ -0,0 +1,29 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成用量计量配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "generation.usage")
+public class GenerationUsageProperties {
+
+    /** 是否把每次生成的用量写入 generation_usage 表，关闭后只导出指标 */
+    private boolean persist = true;
+
+    /** 内存队列容量，队列满时丢弃新的用量记录（指标不受影响） */
+    private int queueCapacity = 10000;
+
+    /** 每批最多插入的条数 */
+    private int batchSize = 200;
+
+    /** 攒批的最长等待时间（毫秒），用量表只用于统计，不要求实时 */
+    private long flushIntervalMillis = 1000;
+
+    /** 关闭时等待刷盘的最长时间（秒） */
+    private long shutdownTimeoutSeconds = 10;
+}
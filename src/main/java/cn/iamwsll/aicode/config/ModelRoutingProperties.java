@@ -0,0 +1,37 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 多端点模型路由配置
+ * 某个角色（流式、推理流式、路由）配置了备用端点时，按健康评分选择端点：
+ * 评分 = 首 token 延迟的 EWMA + 近期错误率 × 错误惩罚，错误率随时间衰减，故障端点恢复后会重新被选中
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "langchain4j.routing")
+public class ModelRoutingProperties {
+
+    /** EWMA 平滑系数，越大越看重最近的请求 */
+    private double ewmaAlpha = 0.2;
+
+    /** 错误率为 1 时附加到评分上的惩罚（毫秒） */
+    private long errorPenaltyMillis = 30000;
+
+    /** 错误率衰减的半衰期（秒） */
+    private long errorHalfLifeSeconds = 60;
+
+    /** 是否对首 token 做对冲：超过截止时间还没有首 token，就向下一个端点再发一次请求，先出 token 的胜出 */
+    private boolean hedgeEnabled = false;
+
+    /** 对冲截止时间取端点近期首 token 延迟的百分位 */
+    private double hedgePercentile = 95;
+
+    /** 对冲截止时间下限（毫秒） */
+    private long hedgeMinDelayMillis = 1000;
+
+    /** 对冲截止时间上限（毫秒），样本不足时也使用该值 */
+    private long hedgeMaxDelayMillis = 15000;
+}
@@ -1,13 +1,21 @@
 package cn.iamwsll.aicode.config;
 
+import cn.hutool.core.util.StrUtil;
+import cn.iamwsll.aicode.ai.endpoint.ModelEndpoint;
+import cn.iamwsll.aicode.ai.endpoint.ModelEndpointRouter;
+import cn.iamwsll.aicode.ai.http.AiHttpClientProvider;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "langchain4j.open-ai.reasoning-streaming-chat-model")
 @Data
@@ -27,12 +35,39 @@ public class ReasoningStreamingChatModelConfig {
 
     private Boolean logResponses = false;
 
+    /**
+     * 是否允许模型在一轮中返回多个工具调用，不配置时使用模型服务的默认值
+     * 配合 langchain4j.tool-execution.parallel 并行执行
+     */
+    private Boolean parallelToolCalls;
+
+    /**
+     * 所有模型共用的 HTTP 客户端，每个原型模型不再各自建立连接
+     */
+    @Resource
+    private AiHttpClientProvider aiHttpClientProvider;
+
+    /**
+     * 备用端点，配置后按健康评分在主端点和备用端点之间路由，出错时故障转移
+     */
+    private List<ModelEndpoint> endpoints = new ArrayList<>();
+
+    @Resource
+    private ModelEndpointRouter modelEndpointRouter;
+
     /**
      * 推理流式模型（用于 Vue 项目生成，带工具调用）
      */
     @Bean
     @Scope("prototype")
     public StreamingChatModel reasoningStreamingChatModelPrototype() {
+        return modelEndpointRouter.streaming("reasoning", buildModel(baseUrl, apiKey, modelName), endpoints,
+                endpoint -> buildModel(endpoint.getBaseUrl(),
+                        StrUtil.blankToDefault(endpoint.getApiKey(), apiKey),
+                        StrUtil.blankToDefault(endpoint.getModelName(), modelName)));
+    }
+
+    private StreamingChatModel buildModel(String baseUrl, String apiKey, String modelName) {
         return OpenAiStreamingChatModel.builder()
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
@@ -41,6 +76,8 @@ public class ReasoningStreamingChatModelConfig {
                 .temperature(temperature)
                 .logRequests(logRequests)
                 .logResponses(logResponses)
+                .parallelToolCalls(parallelToolCalls)
+                .httpClientBuilder(aiHttpClientProvider.newBuilder())
                 .build();
     }
 }
@@ -1,8 +1,11 @@
 package cn.iamwsll.aicode.config;
 
-import cn.hutool.core.util.StrUtil;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import cn.iamwsll.aicode.ai.memory.NearCacheChatMemoryStore;
+import cn.iamwsll.aicode.ai.memory.RedisListChatMemoryStore;
+import cn.iamwsll.aicode.ai.memory.TurnBufferedChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Data;
+import org.redisson.api.RedissonClient;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,27 +15,35 @@ import org.springframework.context.annotation.Configuration;
 @Data
 public class RedisChatMemoryStoreConfig {
 
-    private String host;
-
-    private int port;
-
-    private String password;
-
     private long ttl;
 
+    /**
+     * 基于 Redis 列表的记忆存储，只写入增量，旧格式（RedisChatMemoryStore 写入的字符串）在读取时迁移
+     */
     @Bean
-    public RedisChatMemoryStore redisChatMemoryStore() {
-        RedisChatMemoryStore.Builder builder = RedisChatMemoryStore.builder()
-                .host(host)
-                .port(port)
-                .password(password)
-                .ttl(ttl);
+    public RedisListChatMemoryStore redisListChatMemoryStore(RedissonClient redissonClient,
+                                                             ChatMemoryProperties chatMemoryProperties) {
+        return new RedisListChatMemoryStore(redissonClient, ttl, chatMemoryProperties.getSnapshotCacheMb());
+    }
 
-        if (StrUtil.isNotBlank(password)) {
-            builder.user("default");
-        }
+    /**
+     * Redis 存储前面的本地近端缓存，命中时直接使用 Redis 存储的本地快照，写入同步写到 Redis，其他实例通过发布订阅失效
+     */
+    @Bean
+    public NearCacheChatMemoryStore nearCacheChatMemoryStore(RedisListChatMemoryStore redisListChatMemoryStore,
+                                                             RedissonClient redissonClient,
+                                                             MeterRegistry meterRegistry,
+                                                             ChatMemoryProperties chatMemoryProperties) {
+        return new NearCacheChatMemoryStore(redisListChatMemoryStore, redissonClient, meterRegistry,
+                chatMemoryProperties.isNearCache(), chatMemoryProperties.getNearCacheExpireMinutes());
+    }
 
-        return builder.build();
+    /**
+     * 按轮次缓冲的记忆存储，生成中的工具调用消息在本地累积，按检查点和生成结束时写入 Redis
+     */
+    @Bean
+    public TurnBufferedChatMemoryStore turnBufferedChatMemoryStore(NearCacheChatMemoryStore nearCacheChatMemoryStore,
+                                                                   ChatMemoryProperties chatMemoryProperties) {
+        return new TurnBufferedChatMemoryStore(nearCacheChatMemoryStore, chatMemoryProperties.getTurnCheckpointUpdates());
     }
 }
-
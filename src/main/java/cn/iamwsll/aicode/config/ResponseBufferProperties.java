@@ -0,0 +1,24 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成响应缓冲配置
+ * 一次生成的完整响应只保存一份，代码保存和对话历史共用；超过阈值后转存到内存映射的临时文件，不再占用堆内存
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "stream.response-buffer")
+public class ResponseBufferProperties {
+
+    /** 单个分段的最大字节数（UTF-8） */
+    private int segmentBytes = 64 * 1024;
+
+    /** 堆内最多保留的字节数，超过后转存到临时文件 */
+    private int spillThresholdBytes = 1024 * 1024;
+
+    /** 临时文件目录，为空时使用系统临时目录 */
+    private String spillDir;
+}
@@ -1,13 +1,21 @@
 package cn.iamwsll.aicode.config;
 
+import cn.hutool.core.util.StrUtil;
+import cn.iamwsll.aicode.ai.endpoint.ModelEndpoint;
+import cn.iamwsll.aicode.ai.endpoint.ModelEndpointRouter;
+import cn.iamwsll.aicode.ai.http.AiHttpClientProvider;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "langchain4j.open-ai.routing-chat-model")
 @Data
@@ -27,12 +35,33 @@ public class RoutingAiModelConfig {
 
     private Boolean logResponses = false;
 
+    /**
+     * 所有模型共用的 HTTP 客户端，每个原型模型不再各自建立连接
+     */
+    @Resource
+    private AiHttpClientProvider aiHttpClientProvider;
+
+    /**
+     * 备用端点，配置后按健康评分在主端点和备用端点之间路由，出错时故障转移
+     */
+    private List<ModelEndpoint> endpoints = new ArrayList<>();
+
+    @Resource
+    private ModelEndpointRouter modelEndpointRouter;
+
     /**
      * 创建用于路由判断的ChatModel
      */
     @Bean
     @Scope("prototype")
     public ChatModel routingChatModelPrototype() {
+        return modelEndpointRouter.chat("routing", buildModel(baseUrl, apiKey, modelName), endpoints,
+                endpoint -> buildModel(endpoint.getBaseUrl(),
+                        StrUtil.blankToDefault(endpoint.getApiKey(), apiKey),
+                        StrUtil.blankToDefault(endpoint.getModelName(), modelName)));
+    }
+
+    private ChatModel buildModel(String baseUrl, String apiKey, String modelName) {
         return OpenAiChatModel.builder()
                 .apiKey(apiKey)
                 .modelName(modelName)
@@ -41,6 +70,7 @@ public class RoutingAiModelConfig {
                 .temperature(temperature)
                 .logRequests(logRequests)
                 .logResponses(logResponses)
+                .httpClientBuilder(aiHttpClientProvider.newBuilder())
                 .build();
     }
 }
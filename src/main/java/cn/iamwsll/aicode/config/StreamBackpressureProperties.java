@@ -0,0 +1,39 @@
+package cn.iamwsll.aicode.config;
+
+import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
+import cn.iamwsll.aicode.model.enums.StreamOverflowPolicyEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流式输出背压配置
+ * 模型的生成速度不受客户端影响，客户端跟不上时积压的内容必须有上限
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "stream.backpressure")
+public class StreamBackpressureProperties {
+
+    /** 单个连接积压的最大字节数（UTF-8），超过即触发积压策略 */
+    private int maxBufferedBytes = 256 * 1024;
+
+    /** 客户端持续落后于模型的时间阈值（毫秒），超过即触发积压策略 */
+    private long slowClientThresholdMillis = 10_000;
+
+    /** 降级后两次进度事件的最小间隔（毫秒） */
+    private long progressIntervalMillis = 1_000;
+
+    /** 默认积压策略 */
+    private StreamOverflowPolicyEnum defaultPolicy = StreamOverflowPolicyEnum.DEGRADE;
+
+    /** 按代码生成类型覆盖积压策略，key 为 CodeGenTypeEnum 的 value */
+    private Map<String, StreamOverflowPolicyEnum> policies = new HashMap<>();
+
+    public StreamOverflowPolicyEnum getPolicy(CodeGenTypeEnum codeGenType) {
+        return policies.getOrDefault(codeGenType.getValue(), defaultPolicy);
+    }
+}
@@ -0,0 +1,25 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 流式输出合并配置
+ * 模型的增量往往只有 1~3 个字符，逐个作为 SSE 事件下发时帧开销和 flush 系统调用占了大头，
+ * 这里按时间窗口或字节数（先到者为准）把相邻的 AI 文本增量合并成一个事件
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "stream.coalesce")
+public class StreamCoalesceProperties {
+
+    /** 是否启用合并 */
+    private boolean enabled = true;
+
+    /** 合并窗口（毫秒），窗口到期即下发 */
+    private long flushIntervalMillis = 30;
+
+    /** 合并缓冲的最大字节数（UTF-8），达到即下发 */
+    private int maxBufferBytes = 2048;
+}
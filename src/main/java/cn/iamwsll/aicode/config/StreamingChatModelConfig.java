@@ -1,13 +1,21 @@
 package cn.iamwsll.aicode.config;
 
+import cn.hutool.core.util.StrUtil;
+import cn.iamwsll.aicode.ai.endpoint.ModelEndpoint;
+import cn.iamwsll.aicode.ai.endpoint.ModelEndpointRouter;
+import cn.iamwsll.aicode.ai.http.AiHttpClientProvider;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 非推理的流式模型
  */
@@ -30,9 +38,30 @@ public class StreamingChatModelConfig {
 
     private boolean logResponses;
 
+    /**
+     * 所有模型共用的 HTTP 客户端，每个原型模型不再各自建立连接
+     */
+    @Resource
+    private AiHttpClientProvider aiHttpClientProvider;
+
+    /**
+     * 备用端点，配置后按健康评分在主端点和备用端点之间路由，出错时故障转移
+     */
+    private List<ModelEndpoint> endpoints = new ArrayList<>();
+
+    @Resource
+    private ModelEndpointRouter modelEndpointRouter;
+
     @Bean
     @Scope("prototype")
     public StreamingChatModel streamingChatModelPrototype() {
+        return modelEndpointRouter.streaming("streaming", buildModel(baseUrl, apiKey, modelName), endpoints,
+                endpoint -> buildModel(endpoint.getBaseUrl(),
+                        StrUtil.blankToDefault(endpoint.getApiKey(), apiKey),
+                        StrUtil.blankToDefault(endpoint.getModelName(), modelName)));
+    }
+
+    private StreamingChatModel buildModel(String baseUrl, String apiKey, String modelName) {
         return OpenAiStreamingChatModel.builder()
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
@@ -41,6 +70,7 @@ public class StreamingChatModelConfig {
                 .temperature(temperature)
                 .logRequests(logRequests)
                 .logResponses(logResponses)
+                .httpClientBuilder(aiHttpClientProvider.newBuilder())
                 .build();
     }
 }
@@ -0,0 +1,27 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 流式输出护轨配置
+ * 护轨在流式输出的过程中检查最近输出的滑动窗口，输出只延迟 holdBackChars 个字符，不需要等完整响应生成
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "langchain4j.streaming-guardrail")
+public class StreamingGuardrailProperties {
+
+    /** 是否开启流式输出护轨 */
+    private boolean enabled = false;
+
+    /** 每次检查的最近字符数 */
+    private int windowSize = 256;
+
+    /** 暂缓输出的字符数，不超过该长度的违规内容在输出前就能被拦截 */
+    private int holdBackChars = 32;
+
+    /** 一次生成中最多重新生成的次数，用完后中止生成 */
+    private int maxReprompts = 1;
+}
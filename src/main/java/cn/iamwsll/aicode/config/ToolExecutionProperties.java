@@ -0,0 +1,25 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 工具执行配置
+ * 模型一轮返回多个工具调用（例如搭建 Vue 项目时一次写入多个文件）时，默认逐个执行；
+ * 开启并行后按工具声明的并发键在虚拟线程上同时执行，写入记忆的顺序不变
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "langchain4j.tool-execution")
+public class ToolExecutionProperties {
+
+    /** 是否并行执行同一轮的工具调用 */
+    private boolean parallel = false;
+
+    /** 同一轮中同时执行的工具调用数上限 */
+    private int maxConcurrency = 8;
+
+    /** 是否在 writeFile 参数流式到达时就把文件内容写入暂存文件，工具调用完整后提交 */
+    private boolean streamingFileWrite = true;
+}
@@ -0,0 +1,20 @@
+package cn.iamwsll.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Vue 项目构建队列配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "vue.build")
+public class VueBuildQueueProperties {
+
+    /** 同时进行的构建个数（npm install / vite build 都很吃 CPU 和内存） */
+    private int concurrency = 2;
+
+    /** 构建结束后状态保留的时间（分钟） */
+    private long statusRetainMinutes = 30;
+}
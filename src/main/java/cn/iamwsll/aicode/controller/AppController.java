@@ -9,17 +9,20 @@ import cn.iamwsll.aicode.common.DeleteRequest;
 import cn.iamwsll.aicode.common.ResultUtils;
 import cn.iamwsll.aicode.constant.AppConstant;
 import cn.iamwsll.aicode.constant.UserConstant;
+import cn.iamwsll.aicode.core.stream.StreamEvent;
 import cn.iamwsll.aicode.exception.BusinessException;
 import cn.iamwsll.aicode.exception.ErrorCode;
 import cn.iamwsll.aicode.exception.ThrowUtils;
 import cn.iamwsll.aicode.model.dto.app.AppAddRequest;
 import cn.iamwsll.aicode.model.dto.app.AppDeployRequest;
+import cn.iamwsll.aicode.model.dto.app.AppGenCancelRequest;
 import cn.iamwsll.aicode.model.dto.app.AppQueryRequest;
 import cn.iamwsll.aicode.model.dto.app.AppUpdateRequest;
 import cn.iamwsll.aicode.model.dto.user.AppAdminUpdateRequest;
 import cn.iamwsll.aicode.model.entity.App;
 import cn.iamwsll.aicode.model.entity.User;
 import cn.iamwsll.aicode.model.vo.AppVO;
+import cn.iamwsll.aicode.model.vo.VueBuildStatusVO;
 import cn.iamwsll.aicode.ratelimter.annotation.RateLimit;
 import cn.iamwsll.aicode.ratelimter.enums.RateLimitType;
 import cn.iamwsll.aicode.service.AppService;
@@ -30,6 +33,7 @@ import com.mybatisflex.core.query.QueryWrapper;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
@@ -139,14 +143,21 @@ public class AppController {
      * 根据 id 获取应用详情
      *
      * @param id 应用 id
+     * @param request 请求
      * @return 应用详情
      */
     @GetMapping("/get/vo")
-    public BaseResponse<AppVO> getAppVOById(long id) {
+    public BaseResponse<AppVO> getAppVOById(long id, HttpServletRequest request) {
         ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
         // 查询数据库
         App app = appService.getById(id);
         ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR);
+        // 创建者打开自己的应用时预热 AI 服务实例（只有创建者能发消息），未登录也能查看详情，这里不要求登录
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute(UserConstant.USER_LOGIN_STATE) instanceof User loginUser
+                && app.getUserId().equals(loginUser.getId())) {
+            appService.prewarmCodeGen(app);
+        }
         // 获取封装类（包含用户信息）
         return ResultUtils.success(appService.getAppVO(app));
     }
@@ -294,34 +305,125 @@ public class AppController {
 
     /**
      * 应用聊天生成代码（流式 SSE）
+     * 每个事件带有 id（"生成ID:序号"），断线后浏览器自动重连时会带上 Last-Event-ID 请求头，
+     * 此时从该事件之后续传，不会重新调用 AI
      *
-     * @param appId   应用 ID
-     * @param message 用户消息
-     * @param request 请求对象
+     * @param appId       应用 ID
+     * @param message     用户消息
+     * @param lastEventId 断线重连时浏览器带上的最后事件 id
+     * @param request     请求对象
      * @return 生成结果流
      */
     @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    @RateLimit(limitType = RateLimitType.USER, rate = 5, rateInterval = 60, message = "AI 对话请求过于频繁，请稍后再试")
+    @RateLimit(limitType = RateLimitType.USER, rate = 5, rateInterval = 60, skipOnResume = true, message = "AI 对话请求过于频繁，请稍后再试")
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                                        @RequestParam String message,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
                                                        HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 调用服务生成代码（流式）
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
-        // 转换为 ServerSentEvent 格式
-        return contentFlux
-                .map(chunk -> {
+        // 调用服务生成代码（流式），断线重连时续传
+        Flux<StreamEvent> eventFlux = StrUtil.isNotBlank(lastEventId)
+                ? appService.resumeGenCode(appId, lastEventId, loginUser)
+                : appService.chatToGenCode(appId, message, loginUser);
+        return toServerSentEvents(eventFlux);
+    }
+
+    /**
+     * 接入应用进行中的代码生成（流式 SSE）
+     * 用于新打开的标签页或管理员旁观，从头回放本次生成的输出，不会重新调用 AI
+     *
+     * @param appId       应用 ID
+     * @param lastEventId 断线重连时浏览器带上的最后事件 id
+     * @param request     请求对象
+     * @return 生成结果流
+     */
+    @GetMapping(value = "/chat/gen/attach", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> attachGenCode(@RequestParam Long appId,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                                       HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        Flux<StreamEvent> eventFlux = StrUtil.isNotBlank(lastEventId)
+                ? appService.resumeGenCode(appId, lastEventId, loginUser)
+                : appService.attachGenCode(appId, loginUser);
+        return toServerSentEvents(eventFlux);
+    }
+
+    /**
+     * 取消应用进行中的代码生成
+     * 中止正在进行的 AI 调用和工具调用，已生成的部分会记录到对话历史
+     *
+     * @param appGenCancelRequest 取消请求
+     * @param request             请求对象
+     * @return 是否有进行中的生成被取消
+     */
+    @PostMapping("/chat/gen/cancel")
+    public BaseResponse<Boolean> cancelGenCode(@RequestBody AppGenCancelRequest appGenCancelRequest, HttpServletRequest request) {
+        ThrowUtils.throwIf(appGenCancelRequest == null, ErrorCode.PARAMS_ERROR);
+        Long appId = appGenCancelRequest.getAppId();
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.cancelGenCode(appId, loginUser));
+    }
+
+    /**
+     * 查询应用最近一次的 Vue 项目构建状态
+     *
+     * @param appId   应用 ID
+     * @param request 请求对象
+     * @return 构建状态，没有构建任务时为 null
+     */
+    @GetMapping("/build/status")
+    public BaseResponse<VueBuildStatusVO> getBuildStatus(@RequestParam Long appId, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.getBuildStatus(appId, loginUser));
+    }
+
+    /**
+     * 订阅应用最近一次的 Vue 项目构建状态（流式 SSE）
+     * 每次状态变化（queued / installing / building / done / failed）推送一次，构建结束后发送 done 事件
+     *
+     * @param appId   应用 ID
+     * @param request 请求对象
+     * @return 构建状态流
+     */
+    @GetMapping(value = "/build/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> watchBuildStatus(@RequestParam Long appId, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return appService.watchBuildStatus(appId, loginUser)
+                .map(status -> ServerSentEvent.<String>builder()
+                        .data(JSONUtil.toJsonStr(status))
+                        .build())
+                .concatWith(Mono.just(
+                        // 发送结束事件
+                        ServerSentEvent.<String>builder()
+                                .event("done")
+                                .data("")
+                                .build()
+                ));
+    }
+
+    /**
+     * 转换为 ServerSentEvent 格式，事件 id 用于断线续传
+     * 生成失败时在流内发送 business-error 事件后正常结束：直接断开连接会让浏览器带着 Last-Event-ID 重连，
+     * 每次重连都再收到一遍同样的错误
+     */
+    private Flux<ServerSentEvent<String>> toServerSentEvents(Flux<StreamEvent> eventFlux) {
+        return eventFlux
+                .map(event -> {
                     // 将内容包装成JSON对象
-                    Map<String, String> wrapper = Map.of("d", chunk);
+                    Map<String, String> wrapper = Map.of("d", event.data());
                     String jsonData = JSONUtil.toJsonStr(wrapper);
                     return ServerSentEvent.<String>builder()
+                            .id(event.getEventId())
                             .data(jsonData)
                             .build();
                 })
+                .onErrorResume(error -> Mono.just(toBusinessErrorEvent(error)))
                 .concatWith(Mono.just(
                         // 发送结束事件
                         ServerSentEvent.<String>builder()
@@ -331,6 +433,24 @@ public class AppController {
                 ));
     }
 
+    /**
+     * 生成失败的业务错误事件，格式与 GlobalExceptionHandler 返回的 SSE 错误一致
+     */
+    private static ServerSentEvent<String> toBusinessErrorEvent(Throwable error) {
+        int code = error instanceof BusinessException businessException
+                ? businessException.getCode() : ErrorCode.SYSTEM_ERROR.getCode();
+        String message = error instanceof BusinessException ? error.getMessage() : "系统错误";
+        Map<String, Object> errorData = Map.of(
+                "error", true,
+                "code", code,
+                "message", message
+        );
+        return ServerSentEvent.<String>builder()
+                .event("business-error")
+                .data(JSONUtil.toJsonStr(errorData))
+                .build();
+    }
+
     /**
      * 应用部署
      *
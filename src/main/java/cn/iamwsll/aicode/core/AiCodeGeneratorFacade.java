@@ -1,21 +1,34 @@
 package cn.iamwsll.aicode.core;
 
-import cn.hutool.json.JSONUtil;
 import cn.iamwsll.aicode.ai.AiCodeGeneratorService;
 import cn.iamwsll.aicode.ai.AiCodeGeneratorServiceFactory;
+import cn.iamwsll.aicode.ai.guardrail.SensitiveContentStreamingGuardrail;
+import cn.iamwsll.aicode.ai.memory.NearCacheChatMemoryStore;
+import cn.iamwsll.aicode.ai.memory.TurnBufferedChatMemoryStore;
 import cn.iamwsll.aicode.ai.model.HtmlCodeResult;
 import cn.iamwsll.aicode.ai.model.MultiFileCodeResult;
 import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
 import cn.iamwsll.aicode.ai.model.message.ToolExecutedMessage;
 import cn.iamwsll.aicode.ai.model.message.ToolRequestMessage;
+import cn.iamwsll.aicode.ai.tools.FileWriteTool;
+import cn.iamwsll.aicode.ai.tools.StreamingFileWriteStager;
+import cn.iamwsll.aicode.ai.tools.ToolManager;
+import cn.iamwsll.aicode.config.StreamingGuardrailProperties;
+import cn.iamwsll.aicode.config.ToolExecutionProperties;
 import cn.iamwsll.aicode.constant.AppConstant;
-import cn.iamwsll.aicode.core.builder.VueProjectBuilder;
+import cn.iamwsll.aicode.core.builder.VueBuildQueue;
 import cn.iamwsll.aicode.core.parser.CodeParserExecutor;
+import cn.iamwsll.aicode.core.parser.StreamingCodeFenceParser;
 import cn.iamwsll.aicode.core.saver.CodeFileSaverExecutor;
+import cn.iamwsll.aicode.core.stream.ResponseBuffer;
+import cn.iamwsll.aicode.core.stream.ResponseBufferFactory;
 import cn.iamwsll.aicode.exception.BusinessException;
 import cn.iamwsll.aicode.exception.ErrorCode;
+import cn.iamwsll.aicode.manager.GenerationUsageRecorder;
 import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.StreamingOutputGuardrails;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
 import jakarta.annotation.Resource;
@@ -37,7 +50,31 @@ public class AiCodeGeneratorFacade {
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private VueBuildQueue vueBuildQueue;
+
+    @Resource
+    private ResponseBufferFactory responseBufferFactory;
+
+    @Resource
+    private ToolManager toolManager;
+
+    @Resource
+    private ToolExecutionProperties toolExecutionProperties;
+
+    @Resource
+    private FileWriteTool fileWriteTool;
+
+    @Resource
+    private GenerationUsageRecorder generationUsageRecorder;
+
+    @Resource
+    private TurnBufferedChatMemoryStore turnBufferedChatMemoryStore;
+
+    @Resource
+    private NearCacheChatMemoryStore nearCacheChatMemoryStore;
+
+    @Resource
+    private StreamingGuardrailProperties streamingGuardrailProperties;
 
     /**
      * 统一根据用户输入和代码生成类型生成并保存代码
@@ -69,57 +106,114 @@ public class AiCodeGeneratorFacade {
 
     /**
      * 统一根据用户输入和代码生成类型生成并保存代码(流式)
+     * 完整响应写入一个仅在本次调用内使用的响应缓冲
      *
      * @param userMessage
      * @param codeGenTypeEnum
      * @Param appId 应用ID
-     * @return
+     * @return 类型化的流式消息
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
+        if (codeGenTypeEnum == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "生成类型为空");
+        }
+        return Flux.using(responseBufferFactory::create,
+                responseBuffer -> generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId, null, responseBuffer),
+                ResponseBuffer::release);
+    }
+
+    /**
+     * 统一根据用户输入和代码生成类型生成并保存代码(流式)
+     * 所有类型都产出类型化的 StreamMessage,由处理器直接消费,不再在进程内做 JSON 序列化/反序列化
+     * 完整响应只写入 responseBuffer 一份:代码保存的兜底解析和对话历史都从中读取,流结束后释放引用
+     * 逐轮累计模型调用的 token 用量,流结束(完成、出错或取消)时记录本次生成的用量
+     * 生成期间对话记忆只在本地读写,流结束时一次性提交到 Redis
+     *
+     * @param userMessage
+     * @param codeGenTypeEnum
+     * @Param appId 应用ID
+     * @param userId          发起生成的用户ID,用于按用户统计用量,工作流调用时为空
+     * @param responseBuffer  共享的响应缓冲
+     * @return 类型化的流式消息
+     */
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum,Long appId,
+                                                         Long userId, ResponseBuffer responseBuffer) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "生成类型为空");
         }
         //获取对应的AI代码生成服务
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId,codeGenTypeEnum);
-        return switch (codeGenTypeEnum) {
+        GenerationUsageRecorder.Tracker usageTracker = generationUsageRecorder.start(appId, userId, codeGenTypeEnum);
+        Flux<StreamMessage> messageFlux = switch (codeGenTypeEnum) {
             case HTML -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateHTMLCodeStream(userMessage);
-                yield processCodeStream(codeStream, codeGenTypeEnum,appId);
+                Flux<String> codeStream = processTextTokenStream(aiCodeGeneratorService.generateHTMLCodeStream(userMessage), appId, usageTracker);
+                yield processCodeStream(codeStream, codeGenTypeEnum,appId, responseBuffer).map(AiResponseMessage::new);
             }
             case MULTI_FILE -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                yield processCodeStream(codeStream, codeGenTypeEnum,appId);
+                Flux<String> codeStream = processTextTokenStream(aiCodeGeneratorService.generateMultiFileCodeStream(userMessage), appId, usageTracker);
+                yield processCodeStream(codeStream, codeGenTypeEnum,appId, responseBuffer).map(AiResponseMessage::new);
             }
             case VUE_PROJECT -> {
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
-                yield processTokenStream(tokenStream, appId);//把tokenStream转换为Flux<String>
+                yield processTokenStream(tokenStream, appId, responseBuffer, usageTracker);//把tokenStream转换为Flux<StreamMessage>
             }
             default ->
                     throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的生成类型:" + codeGenTypeEnum.getValue());
         };
+        responseBuffer.retain();
+        return messageFlux.doFinally(signalType -> {
+            responseBuffer.release();
+            usageTracker.finish(signalType);
+            endMemoryTurn(appId);
+        });
+    }
+
+    /**
+     * 生成结束,把本轮缓冲的对话记忆提交到 Redis,并记录本轮对话记忆访问 Redis 的往返次数
+     * 提交失败只影响后续轮次的上下文,不影响本次生成的结果
+     */
+    private void endMemoryTurn(Long appId) {
+        try {
+            turnBufferedChatMemoryStore.endTurn(appId);
+        } catch (Exception e) {
+            log.error("提交对话记忆失败,appId: {}, 错误信息: {}", appId, e.getMessage(), e);
+        } finally {
+            nearCacheChatMemoryStore.recordTurn(appId);
+        }
     }
 
 
     /**
      * 统一处理代码流(流式)
+     * 边生成边解析:增量扫描代码块,每个 ```html / ```css / ```js 代码块一闭合就立即落盘,
+     * 生成过程中就能预览,结束时也不需要再对整个响应做一次正则解析
      *
      * @param codeStream      代码流
      * @param codeGenTypeEnum 代码生成类型枚举
      * @Param appId 应用ID
+     * @param responseBuffer  共享的响应缓冲,完整响应只写入这里
      * @return 流式结果.这个结果实际上还是原始的codestream,只是增加了一些额外的操作
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
-        //字符串拼接器
-        StringBuilder codeBuilder = new StringBuilder();
+    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum,Long appId,
+                                           ResponseBuffer responseBuffer) {
+        //增量代码块解析器,兜底原文从响应缓冲读取,解析器自身不再保留一份
+        StreamingCodeFenceParser fenceParser = new StreamingCodeFenceParser(false);
         return codeStream.doOnNext(chunk -> {
-            codeBuilder.append(chunk);
+            responseBuffer.append(chunk);
+            for (StreamingCodeFenceParser.CodeBlock codeBlock : fenceParser.append(chunk)) {
+                saveCodeBlock(codeBlock, codeGenTypeEnum, appId);
+            }
         }).doOnComplete(() -> {
+            //没有解析到 html 代码块,与 HtmlCodeParser 的兼容逻辑一致:把整个响应当作 HTML 保存
+            if (!fenceParser.needsFallback()) {
+                return;
+            }
+            if (codeGenTypeEnum != CodeGenTypeEnum.HTML) {
+                log.warn("未解析到 HTML 代码块,appId: {}", appId);
+                return;
+            }
             try {
-                //流式调用完成后，保存代码到文件
-                String completeCode = codeBuilder.toString();
-                //解析完成的总字符串
-                Object parserResult = CodeParserExecutor.executeParser(completeCode, codeGenTypeEnum);
-                //把Result保存起来
+                Object parserResult = CodeParserExecutor.executeParser(responseBuffer.toString(), codeGenTypeEnum);
                 File saveDir = CodeFileSaverExecutor.executeSaver(parserResult, codeGenTypeEnum,appId);
                 log.info("保存成功,目录为{}", saveDir.getAbsolutePath());
             } catch (Exception e) {
@@ -129,29 +223,92 @@ public class AiCodeGeneratorFacade {
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
-     * 适配器模式:使用适配器将 TokenStream 转换为 Flux<String>,就像插座转换一样.
+     * 保存一个已经闭合的代码块
+     * 单个代码块保存失败不影响流式输出
+     */
+    private void saveCodeBlock(StreamingCodeFenceParser.CodeBlock codeBlock, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+        try {
+            if (CodeFileSaverExecutor.executeCodeBlockSaver(codeBlock, codeGenTypeEnum, appId)) {
+                log.info("代码块已保存,appId: {}, 语言: {}", appId, codeBlock.language());
+            }
+        } catch (Exception e) {
+            log.error("代码块保存失败,appId: {}, 语言: {}, 错误信息: {}", appId, codeBlock.language(), e.getMessage());
+        }
+    }
+
+    /**
+     * 将纯文本的 TokenStream 转换为 Flux<String>
+     * 取消订阅时同时取消 TokenStream,中止正在进行的模型调用
      * @param tokenStream TokenStream 对象
+     * @param appId 应用ID,即对话记忆ID
+     * @param usageTracker 本次生成的用量计量器
      * @return Flux<String> 流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream,Long appId) {
+    private Flux<String> processTextTokenStream(TokenStream tokenStream, Long appId,
+                                               GenerationUsageRecorder.Tracker usageTracker) {
+        applyStreamingGuardrails(tokenStream);
         return Flux.create(sink -> {
+            sink.onCancel(tokenStream::cancel);
+            turnBufferedChatMemoryStore.beginTurn(appId);
+            tokenStream.onPartialResponse(sink::next)
+                    .onModelResponse(usageTracker::onModelResponse)
+                    .onCompleteResponse((ChatResponse response) -> sink.complete())
+                    .onError(sink::error)
+                    .start();
+        });
+    }
+
+    /**
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
+     * 适配器模式:使用适配器将 TokenStream 转换为 Flux<StreamMessage>,就像插座转换一样.
+     * 直接下发类型化消息,序列化只在 SSE 出口做一次
+     * 取消订阅时同时取消 TokenStream:中止正在进行的模型调用,不再执行后续的工具调用轮次
+     * AI 文本和格式化后的工具执行结果写入响应缓冲,供对话历史读取
+     * 开启并行工具执行时,同一轮的工具调用按工具声明的并发键并行执行
+     * 开启流式写文件时,writeFile 的参数边到达边写入暂存文件,工具调用完整后提交
+     * @param tokenStream TokenStream 对象
+     * @param responseBuffer 共享的响应缓冲
+     * @param usageTracker 本次生成的用量计量器,每轮模型调用结束时累加用量
+     * @return Flux<StreamMessage> 流式响应
+     */
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream,Long appId, ResponseBuffer responseBuffer,
+                                                   GenerationUsageRecorder.Tracker usageTracker) {
+        if (toolExecutionProperties.isParallel()) {
+            tokenStream.executeToolsConcurrently(toolManager::getConcurrencyKey, toolExecutionProperties.getMaxConcurrency());
+        }
+        applyStreamingGuardrails(tokenStream);
+        return Flux.create(sink -> {
+            sink.onCancel(tokenStream::cancel);
+            // 工具调用循环中的记忆读写都在本地进行,流结束时统一提交
+            turnBufferedChatMemoryStore.beginTurn(appId);
+            StreamingFileWriteStager fileWriteStager = toolExecutionProperties.isStreamingFileWrite()
+                    ? fileWriteTool.newStager(appId) : null;
+            if (fileWriteStager != null) {
+                tokenStream.onCompleteToolExecutionRequest(fileWriteStager::onCompleteToolCall);
+                sink.onDispose(fileWriteStager::close);
+            }
             tokenStream.onPartialResponse((String partialResponse) -> {
-                        AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                        responseBuffer.append(partialResponse);
+                        sink.next(new AiResponseMessage(partialResponse));
                     })
                     .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
-                        ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                        if (fileWriteStager != null) {
+                            fileWriteStager.onPartialToolCall(index, toolExecutionRequest);
+                        }
+                        sink.next(new ToolRequestMessage(toolExecutionRequest));
                     })
                     .onToolExecuted((ToolExecution toolExecution) -> {
                         ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                        toolExecutedMessage.setFormattedResult(toolManager.formatToolExecuted(toolExecutedMessage));
+                        responseBuffer.append(toolExecutedMessage.getFormattedResult());
+                        sink.next(toolExecutedMessage);
                     })
+                    .onModelResponse(usageTracker::onModelResponse)
                     .onCompleteResponse((ChatResponse response) -> {
-                        // 执行 Vue 项目构建（同步执行，确保预览时项目已就绪）
+                        // Vue 项目构建入队后立即结束生成流，构建进度通过构建状态接口查询，
+                        // 构建期间预览仍使用上一次成功的 dist
                         String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "vue_project_" + appId;
-                        vueProjectBuilder.buildProject(projectPath);
+                        vueBuildQueue.enqueue(appId, projectPath);
                         sink.complete();
                     })
                     .onError((Throwable error) -> {
@@ -162,4 +319,20 @@ public class AiCodeGeneratorFacade {
         });
     }
 
+    /**
+     * 开启流式输出护轨:边输出边检查最近输出的滑动窗口,输出只延迟一小段字符,
+     * 发现违规时中止本次模型调用,按护轨结果重新生成或结束生成
+     */
+    private void applyStreamingGuardrails(TokenStream tokenStream) {
+        if (!streamingGuardrailProperties.isEnabled()) {
+            return;
+        }
+        tokenStream.streamingOutputGuardrails(StreamingOutputGuardrails.builder()
+                .guardrails(new SensitiveContentStreamingGuardrail())
+                .windowSize(streamingGuardrailProperties.getWindowSize())
+                .holdBackChars(streamingGuardrailProperties.getHoldBackChars())
+                .maxReprompts(streamingGuardrailProperties.getMaxReprompts())
+                .build());
+    }
+
 }
@@ -0,0 +1,142 @@
+package cn.iamwsll.aicode.core.builder;
+
+import cn.hutool.core.util.IdUtil;
+import cn.iamwsll.aicode.model.enums.VueBuildStatusEnum;
+import cn.iamwsll.aicode.model.vo.VueBuildStatusVO;
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次 Vue 项目构建任务
+ * 记录构建状态和各阶段的时间，状态变化时推送给订阅者
+ */
+public class VueBuildJob {
+
+    @Getter
+    private final String buildId = IdUtil.getSnowflakeNextIdStr();
+
+    @Getter
+    private final long appId;
+
+    @Getter
+    private final String projectPath;
+
+    /**
+     * 状态推送，迟到的订阅者也能拿到最新状态
+     */
+    private final Sinks.Many<VueBuildStatusVO> statusSink = Sinks.many().replay().latest();
+
+    /**
+     * 构建结果，构建结束时完成
+     */
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    private VueBuildStatusEnum status = VueBuildStatusEnum.QUEUED;
+
+    private final long queuedTime = System.currentTimeMillis();
+
+    private Long startTime;
+
+    private Long installStartTime;
+
+    private Long buildStartTime;
+
+    private Long endTime;
+
+    private String errorMessage;
+
+    VueBuildJob(long appId, String projectPath) {
+        this.appId = appId;
+        this.projectPath = projectPath;
+        statusSink.tryEmitNext(toVO());
+    }
+
+    public synchronized VueBuildStatusEnum getStatus() {
+        return status;
+    }
+
+    /**
+     * 构建结果，构建成功为 true
+     */
+    public CompletableFuture<Boolean> getResult() {
+        return result;
+    }
+
+    /**
+     * 状态流，构建结束时完成
+     */
+    public Flux<VueBuildStatusVO> statusFlux() {
+        return statusSink.asFlux();
+    }
+
+    synchronized void start() {
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 是否还没有开始：开始之前入队的构建请求可以合并到这个任务，开始之后它读到的源码不一定包含新的修改
+     * 开始后到进入安装阶段之前状态仍是排队中，所以按开始时间判断
+     */
+    synchronized boolean isWaiting() {
+        return startTime == null && status == VueBuildStatusEnum.QUEUED;
+    }
+
+    /**
+     * 进入下一个阶段（INSTALLING / BUILDING）
+     */
+    synchronized void transition(VueBuildStatusEnum next) {
+        if (status.isFinished()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        switch (next) {
+            case INSTALLING -> installStartTime = now;
+            case BUILDING -> buildStartTime = now;
+            default -> {
+            }
+        }
+        status = next;
+        statusSink.tryEmitNext(toVO());
+    }
+
+    synchronized void succeed() {
+        finish(VueBuildStatusEnum.DONE, null);
+    }
+
+    synchronized void fail(String errorMessage) {
+        finish(VueBuildStatusEnum.FAILED, errorMessage);
+    }
+
+    public synchronized VueBuildStatusVO toVO() {
+        VueBuildStatusVO vo = new VueBuildStatusVO();
+        vo.setBuildId(buildId);
+        vo.setAppId(appId);
+        vo.setStatus(status.getValue());
+        vo.setQueuedTime(queuedTime);
+        vo.setQueueMillis(between(queuedTime, startTime));
+        vo.setInstallMillis(between(installStartTime, buildStartTime));
+        vo.setBuildMillis(between(buildStartTime, endTime));
+        vo.setTotalMillis(between(queuedTime, endTime));
+        vo.setErrorMessage(errorMessage);
+        return vo;
+    }
+
+    private void finish(VueBuildStatusEnum finalStatus, String errorMessage) {
+        if (status.isFinished()) {
+            return;
+        }
+        endTime = System.currentTimeMillis();
+        this.errorMessage = errorMessage;
+        status = finalStatus;
+        statusSink.tryEmitNext(toVO());
+        statusSink.tryEmitComplete();
+        result.complete(finalStatus == VueBuildStatusEnum.DONE);
+    }
+
+    private static Long between(Long from, Long to) {
+        return from == null || to == null ? null : to - from;
+    }
+}
@@ -0,0 +1,115 @@
+package cn.iamwsll.aicode.core.builder;
+
+import cn.iamwsll.aicode.config.VueBuildQueueProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vue 项目构建队列
+ * 代码生成结束后只需入队即可结束生成流，构建在独立的线程池中进行：
+ * 1. 同时进行的构建个数有上限
+ * 2. 同一个应用的构建串行执行；已有还没开始的构建时直接复用（它开始时会读到最新的源码），已经开始的构建之后再排一个
+ * 3. 构建状态和各阶段耗时可以查询或订阅
+ */
+@Slf4j
+@Component
+public class VueBuildQueue {
+
+    /**
+     * 每个应用最近一次的构建任务
+     */
+    private final Map<Long, VueBuildJob> latestJobs = new ConcurrentHashMap<>();
+
+    /**
+     * 每个应用最后一个构建任务的完成信号，用于同一应用的构建串行执行
+     */
+    private final Map<Long, CompletableFuture<Void>> appTails = new ConcurrentHashMap<>();
+
+    @Resource
+    private VueProjectBuilder vueProjectBuilder;
+
+    @Resource
+    private VueBuildQueueProperties vueBuildQueueProperties;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        // 构建主要在等待 npm 子进程，使用虚拟线程，并发数由线程池大小限制
+        executor = Executors.newFixedThreadPool(vueBuildQueueProperties.getConcurrency(),
+                Thread.ofVirtual().name("vue-builder-", 0).factory());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 构建任务入队
+     *
+     * @param appId       应用ID
+     * @param projectPath 项目根目录路径
+     * @return 构建任务（可能是已在排队中的任务）
+     */
+    public VueBuildJob enqueue(long appId, String projectPath) {
+        VueBuildJob[] created = new VueBuildJob[1];
+        VueBuildJob job = latestJobs.compute(appId, (key, existing) -> {
+            if (existing != null && existing.isWaiting()) {
+                return existing;
+            }
+            created[0] = new VueBuildJob(appId, projectPath);
+            return created[0];
+        });
+        if (created[0] == null) {
+            log.info("应用已有排队中的构建，复用该任务，appId: {}, buildId: {}", appId, job.getBuildId());
+            return job;
+        }
+        VueBuildJob newJob = created[0];
+        CompletableFuture<Void> tail = appTails.compute(appId, (key, previous) ->
+                (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous)
+                        .thenRunAsync(() -> run(newJob), executor));
+        tail.whenComplete((result, e) -> appTails.remove(appId, tail));
+        log.info("Vue 项目构建已入队，appId: {}, buildId: {}", appId, newJob.getBuildId());
+        return newJob;
+    }
+
+    /**
+     * 获取应用最近一次的构建任务
+     *
+     * @param appId 应用ID
+     * @return 构建任务，没有时返回 null
+     */
+    public VueBuildJob getLatestJob(long appId) {
+        return latestJobs.get(appId);
+    }
+
+    private void run(VueBuildJob job) {
+        job.start();
+        try {
+            boolean buildSuccess = vueProjectBuilder.buildProject(job.getProjectPath(), job::transition);
+            if (buildSuccess) {
+                job.succeed();
+            } else {
+                job.fail("Vue 项目构建失败，请检查代码和依赖");
+            }
+        } catch (Exception e) {
+            log.error("Vue 项目构建异常，appId: {}, 错误信息: {}", job.getAppId(), e.getMessage(), e);
+            job.fail("Vue 项目构建异常: " + e.getMessage());
+        }
+        log.info("Vue 项目构建结束，appId: {}, 状态: {}", job.getAppId(), job.getStatus().getValue());
+        // 状态保留一段时间后清理
+        CompletableFuture.runAsync(() -> latestJobs.remove(job.getAppId(), job),
+                CompletableFuture.delayedExecutor(vueBuildQueueProperties.getStatusRetainMinutes(), TimeUnit.MINUTES));
+    }
+}
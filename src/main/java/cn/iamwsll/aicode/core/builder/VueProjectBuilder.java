@@ -1,23 +1,36 @@
 package cn.iamwsll.aicode.core.builder;
 
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RuntimeUtil;
 import cn.iamwsll.aicode.config.RemoteBuildProperties;
+import cn.iamwsll.aicode.model.enums.VueBuildStatusEnum;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class VueProjectBuilder {
 
+    /**
+     * 构建产物先输出到临时目录，成功后再替换 dist，构建期间预览仍使用上一次成功的 dist
+     */
+    private static final String STAGING_DIST_DIR = "dist.building";
+
+    private static final String OLD_DIST_DIR = "dist.old";
+
     private final RemoteBuildProperties remoteProps;
 
     /**
@@ -43,6 +56,17 @@ public class VueProjectBuilder {
      * @return 是否构建成功
      */
     public boolean buildProject(String projectPath) {
+        return buildProject(projectPath, status -> {
+        });
+    }
+
+    /**
+     * 构建 Vue 项目，并通知构建阶段
+     * @param projectPath   项目根目录路径
+     * @param stageListener 构建阶段回调（INSTALLING / BUILDING）
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath, Consumer<VueBuildStatusEnum> stageListener) {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在: {}", projectPath);
@@ -57,30 +81,60 @@ public class VueProjectBuilder {
         log.info("开始构建 Vue 项目: {}，模式: {}", projectPath, remoteProps.isEnabled() ? "远程" : "本地");
 
         boolean buildSuccess = remoteProps.isEnabled()
-                ? remoteBuild(projectDir)
-                : localBuild(projectDir);
+                ? remoteBuild(projectDir, stageListener)
+                : localBuild(projectDir, stageListener);
 
         if (!buildSuccess) {
             return false;
         }
 
+        File stagingDir = new File(projectDir, STAGING_DIST_DIR);
+        if (!stagingDir.exists()) {
+            log.error("构建完成但构建产物目录未生成: {}", stagingDir.getAbsolutePath());
+            return false;
+        }
+        if (!publishDist(projectDir, stagingDir)) {
+            return false;
+        }
+        log.info("Vue 项目构建成功，dist 目录: {}", new File(projectDir, "dist").getAbsolutePath());
+        return true;
+    }
+
+    /**
+     * 用新的构建产物替换 dist
+     * 两次重命名之间只有极短的窗口，构建期间的预览请求都由旧的 dist 提供
+     */
+    private boolean publishDist(File projectDir, File stagingDir) {
         File distDir = new File(projectDir, "dist");
-        if (!distDir.exists()) {
-            log.error("构建完成但 dist 目录未生成: {}", distDir.getAbsolutePath());
+        File oldDistDir = new File(projectDir, OLD_DIST_DIR);
+        try {
+            FileUtil.del(oldDistDir);
+            if (distDir.exists()) {
+                Files.move(distDir.toPath(), oldDistDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(stagingDir.toPath(), distDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("替换 dist 目录失败: {}, 错误信息: {}", distDir.getAbsolutePath(), e.getMessage());
+            // 尽量恢复旧的 dist
+            if (!distDir.exists() && oldDistDir.exists()) {
+                FileUtil.rename(oldDistDir, "dist", true);
+            }
             return false;
         }
-        log.info("Vue 项目构建成功，dist 目录: {}", distDir.getAbsolutePath());
+        FileUtil.del(oldDistDir);
         return true;
     }
 
     /**
      * 本地构建流程
      */
-    private boolean localBuild(File projectDir) {
+    private boolean localBuild(File projectDir, Consumer<VueBuildStatusEnum> stageListener) {
+        stageListener.accept(VueBuildStatusEnum.INSTALLING);
         if (!executeNpmInstall(projectDir)) {
             log.error("npm install 执行失败");
             return false;
         }
+        stageListener.accept(VueBuildStatusEnum.BUILDING);
         if (!executeNpmBuild(projectDir)) {
             log.error("npm run build 执行失败");
             return false;
@@ -91,11 +145,13 @@ public class VueProjectBuilder {
     /**
      * 远程构建流程：rsync 推送 → 远端 npm ci/build → rsync 拉回 dist → 清理
      */
-    private boolean remoteBuild(File projectDir) {
+    private boolean remoteBuild(File projectDir, Consumer<VueBuildStatusEnum> stageListener) {
         if (!remoteProps.isConfigReady()) {
             log.error("远程构建配置不完整，请检查 remote.build.* 配置");
             return false;
         }
+        // 远端的 install 和 build 在同一条命令里完成，统一计为构建阶段
+        stageListener.accept(VueBuildStatusEnum.BUILDING);
 
         String projectName = projectDir.getName();
         String buildId = projectName + "_" + Instant.now().toEpochMilli();
@@ -143,7 +199,8 @@ public class VueProjectBuilder {
      */
     private boolean executeNpmBuild(File projectDir) {
         log.info("执行 npm run build...");
-        String command = String.format("%s run build", buildCommand("npm"));
+        // 产物输出到临时目录（vite 的 --outDir），构建成功后再替换 dist
+        String command = String.format("%s run build -- --outDir %s", buildCommand("npm"), STAGING_DIST_DIR);
         return executeCommand(projectDir, command, 180); // 3分钟超时
     }
 
@@ -265,6 +322,10 @@ public class VueProjectBuilder {
         cmd.add("--exclude");
         cmd.add("dist");
         cmd.add("--exclude");
+        cmd.add(STAGING_DIST_DIR);
+        cmd.add("--exclude");
+        cmd.add(OLD_DIST_DIR);
+        cmd.add("--exclude");
         cmd.add(".git");
         if (remoteProps.getExtraRsyncFlags() != null) {
             cmd.add(remoteProps.getExtraRsyncFlags());
@@ -309,7 +370,8 @@ public class VueProjectBuilder {
         }
         String remote = String.format("%s@%s:%s/dist/", remoteProps.getUser(), remoteProps.getHost(), remoteProjectPath);
         cmd.add(remote);
-        cmd.add(projectDir.getAbsolutePath() + "/dist/");
+        // 拉取到临时目录，构建成功后再替换 dist
+        cmd.add(projectDir.getAbsolutePath() + "/" + STAGING_DIST_DIR + "/");
         return executeCommand(projectDir, cmd, remoteProps.getFetchTimeoutSeconds());
     }
 
@@ -1,12 +1,11 @@
 package cn.iamwsll.aicode.core.handler;
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
 import cn.iamwsll.aicode.ai.model.message.*;
 import cn.iamwsll.aicode.ai.tools.BaseTool;
 import cn.iamwsll.aicode.ai.tools.ToolManager;
-import cn.iamwsll.aicode.core.builder.VueProjectBuilder;
+import cn.iamwsll.aicode.core.stream.ResponseBuffer;
+import cn.iamwsll.aicode.core.stream.StreamEvent;
 import cn.iamwsll.aicode.model.entity.User;
 import cn.iamwsll.aicode.model.enums.ChatHistoryMessageTypeEnum;
 import cn.iamwsll.aicode.service.ChatHistoryService;
@@ -26,100 +25,81 @@ import java.util.Set;
 @Component
 public class JsonMessageStreamHandler {
 
-    @Resource
-    private VueProjectBuilder vueProjectBuilder;
-
     @Resource
     private ToolManager toolManager;
     /**
-     * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 记录对话历史（VUE_PROJECT）
+     * 完整响应（AI 文本和工具执行结果）由生成方写入共享的响应缓冲，这里不再另存一份，
+     * 结束时从缓冲读取并写入对话历史；消息原样向下游传递，客户端是否跟得上不影响这里；生成被取消时记录已生成的部分
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
-     * @return 处理后的流
+     * @param responseBuffer     共享的响应缓冲
+     * @return 原始消息流
      */
-    public Flux<String> handle(Flux<String> originFlux,
-                               ChatHistoryService chatHistoryService,
-                               long appId, User loginUser) {
-        // 收集数据用于生成后端记忆格式
-        StringBuilder chatHistoryStringBuilder = new StringBuilder();
-        // 用于跟踪已经见过的工具ID，判断是否是第一次调用
-        Set<String> seenToolIds = new HashSet<>();
+    public Flux<StreamMessage> recordHistory(Flux<StreamMessage> originFlux,
+                                             ChatHistoryService chatHistoryService,
+                                             long appId, User loginUser, ResponseBuffer responseBuffer) {
+        responseBuffer.retain();
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
-                })
-                .filter(StrUtil::isNotEmpty) // 过滤空字串
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加 AI 消息到对话历史
-                    String aiResponse = chatHistoryStringBuilder.toString();
+                    String aiResponse = responseBuffer.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-
-//                    // 异步构造 Vue 项目 - 暂时这么写
-//                    String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
-//                    vueProjectBuilder.buildProjectAsync(projectPath);
                 })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
                     chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-                });
+                    // 这条回复不在记忆里，下次从对话历史重新加载
+                    chatHistoryService.markChatMemoryStale(appId);
+                })
+                .doOnCancel(() -> {
+                    // 生成被取消（取消可能来自其他线程），记录已生成的部分，已执行的工具调用也在其中
+                    String aiResponse = responseBuffer + "\n\n[生成已取消]";
+                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    chatHistoryService.markChatMemoryStale(appId);
+                })
+                .doFinally(signalType -> responseBuffer.release());
     }
 
     /**
-     * 解析并收集 TokenStream 数据
-     * ps:参考文档里的 JSON 消息格式
-     * @return 给前端的消息
+     * 把类型化消息渲染为给前端的事件
+     *
+     * @param messageFlux 消息流
+     * @return 给前端的事件流（未编号）
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
-                String data = aiMessage.getData();
-                // 直接拼接响应
-                chatHistoryStringBuilder.append(data);
-                return data;
-            }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+    public Flux<StreamEvent> render(Flux<StreamMessage> messageFlux) {
+        // 用于跟踪已经见过的工具ID，判断是否是第一次调用
+        Set<String> seenToolIds = new HashSet<>();
+        return messageFlux
+                .map(message -> renderStreamMessage(message, seenToolIds))
+                .filter(event -> StrUtil.isNotEmpty(event.data())); // 过滤空字串
+    }
+
+    /**
+     * 渲染单条消息
+     * StreamMessage 是密封类型,模式匹配即可覆盖所有消息类型
+     * @return 给前端的事件
+     */
+    private StreamEvent renderStreamMessage(StreamMessage streamMessage, Set<String> seenToolIds) {
+        return switch (streamMessage) {
+            case AiResponseMessage aiMessage -> StreamEvent.text(aiMessage.getData());
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
-                String toolName = toolRequestMessage.getName();
                 // 检查是否是第一次看到这个工具 ID
-                if (toolId != null && !seenToolIds.contains(toolId)) {
-                    // 第一次调用这个工具，记录 ID 并返回工具信息
-                    seenToolIds.add(toolId);
-                    // 根据工具名称获取工具实例
-                    BaseTool tool = toolManager.getTool(toolName);
-                    // 返回格式化的工具调用信息
-                    return tool.generateToolRequestResponse();
-                } else {
-                    // 不是第一次调用这个工具，直接返回空
-                    return "";
+                if (toolId != null && seenToolIds.add(toolId)) {
+                    // 第一次调用这个工具，根据工具名称获取工具实例，返回格式化的工具调用信息
+                    BaseTool tool = toolManager.getTool(toolRequestMessage.getName());
+                    yield StreamEvent.tool(tool.generateToolRequestResponse());
                 }
+                // 不是第一次调用这个工具，直接返回空
+                yield StreamEvent.tool("");
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
-                String toolName = toolExecutedMessage.getName();
-                JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
-                // 根据工具名称获取工具实例并生成相应的结果格式
-                BaseTool tool = toolManager.getTool(toolName);
-                String result = tool.generateToolExecutedResult(jsonObject);
-                // 输出前端和要持久化的内容
-                String output = String.format("\n\n%s\n\n", result);
-                chatHistoryStringBuilder.append(output);
-                return output;
-            }
-            default -> {
-                log.error("不支持的消息类型: {}", typeEnum);
-                return "";
-            }
-        }
+            // 展示内容已由生成方格式化（同一份也写入了对话历史），这里直接使用
+            case ToolExecutedMessage toolExecutedMessage -> StreamEvent.tool(toolExecutedMessage.getFormattedResult());
+        };
     }
 }
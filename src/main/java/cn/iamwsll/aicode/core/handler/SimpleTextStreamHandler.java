@@ -1,5 +1,9 @@
 package cn.iamwsll.aicode.core.handler;
 
+import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
+import cn.iamwsll.aicode.core.stream.ResponseBuffer;
+import cn.iamwsll.aicode.core.stream.StreamEvent;
 import cn.iamwsll.aicode.model.entity.User;
 import cn.iamwsll.aicode.model.enums.ChatHistoryMessageTypeEnum;
 import cn.iamwsll.aicode.service.ChatHistoryService;
@@ -14,34 +18,52 @@ import reactor.core.publisher.Flux;
 public class SimpleTextStreamHandler {
 
     /**
-     * 处理传统流（HTML, MULTI_FILE）
-     * 直接收集完整的文本响应
+     * 记录对话历史（HTML, MULTI_FILE）
+     * 完整响应由生成方写入共享的响应缓冲（代码保存也从中读取），这里不再另存一份，
+     * 结束时从缓冲读取并写入对话历史，消息原样向下游传递；生成被取消时记录已生成的部分
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
-     * @return 处理后的流
+     * @param responseBuffer     共享的响应缓冲
+     * @return 原始消息流
      */
-    public Flux<String> handle(Flux<String> originFlux,
-                               ChatHistoryService chatHistoryService,
-                               long appId, User loginUser) {
-        StringBuilder aiResponseBuilder = new StringBuilder();
+    public Flux<StreamMessage> recordHistory(Flux<StreamMessage> originFlux,
+                                             ChatHistoryService chatHistoryService,
+                                             long appId, User loginUser, ResponseBuffer responseBuffer) {
+        responseBuffer.retain();
         return originFlux
-                .map(chunk -> {
-                    // 收集AI响应内容
-                    aiResponseBuilder.append(chunk);
-                    return chunk;
-                })
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加AI消息到对话历史
-                    String aiResponse = aiResponseBuilder.toString();
+                    String aiResponse = responseBuffer.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
                     chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-                });
+                    // 这条回复不在记忆里，下次从对话历史重新加载
+                    chatHistoryService.markChatMemoryStale(appId);
+                })
+                .doOnCancel(() -> {
+                    // 生成被取消（取消可能来自其他线程），记录已生成的部分
+                    String aiResponse = responseBuffer + "\n\n[生成已取消]";
+                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    chatHistoryService.markChatMemoryStale(appId);
+                })
+                .doFinally(signalType -> responseBuffer.release());
+    }
+
+    /**
+     * 把消息渲染为给前端的事件
+     *
+     * @param messageFlux 消息流
+     * @return 给前端的事件流（未编号）
+     */
+    public Flux<StreamEvent> render(Flux<StreamMessage> messageFlux) {
+        return messageFlux
+                .ofType(AiResponseMessage.class)
+                .map(message -> StreamEvent.text(message.getData()));
     }
 }
@@ -1,5 +1,10 @@
 package cn.iamwsll.aicode.core.handler;
 
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
+import cn.iamwsll.aicode.core.stream.ResponseBuffer;
+import cn.iamwsll.aicode.core.stream.StreamCoalescer;
+import cn.iamwsll.aicode.core.stream.StreamEvent;
+import cn.iamwsll.aicode.core.stream.StreamEventMetrics;
 import cn.iamwsll.aicode.model.entity.User;
 import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
 import cn.iamwsll.aicode.service.ChatHistoryService;
@@ -11,8 +16,11 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
+ * 1. 传统的文本流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
  * 2. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 两者的输入都是类型化的 Flux<StreamMessage>，输出是尚未编号的前端事件
+ * 处理顺序：合并文本增量 -> 记录对话历史 -> 渲染为前端事件
+ * 整条链路以模型的速度运行，由生成会话订阅；客户端侧的背压桥和 SSE 指标在会话之后接入
  */
 @Slf4j
 @Component
@@ -21,6 +29,12 @@ public class StreamHandlerExecutor {
     @Resource
     private JsonMessageStreamHandler jsonMessageStreamHandler;
 
+    @Resource
+    private StreamCoalescer streamCoalescer;
+
+    @Resource
+    private StreamEventMetrics streamEventMetrics;
+
     /**
      * 创建流处理器并处理聊天历史记录
      *
@@ -29,16 +43,25 @@ public class StreamHandlerExecutor {
      * @param appId              应用ID
      * @param loginUser          登录用户
      * @param codeGenType        代码生成类型
-     * @return 处理后的流
+     * @param responseBuffer     生成方写入的共享响应缓冲，对话历史从中读取
+     * @return 渲染后的前端事件流
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
-                                  ChatHistoryService chatHistoryService,
-                                  long appId, User loginUser, CodeGenTypeEnum codeGenType) {
+    public Flux<StreamEvent> doExecute(Flux<StreamMessage> originFlux,
+                                       ChatHistoryService chatHistoryService,
+                                       long appId, User loginUser, CodeGenTypeEnum codeGenType,
+                                       ResponseBuffer responseBuffer) {
+        // 合并相邻的文本增量（按时间窗口/字节数，遇到工具边界和流结束立即下发）
+        Flux<StreamMessage> coalescedFlux = streamCoalescer.coalesce(
+                streamEventMetrics.recordModelDeltas(originFlux, codeGenType));
         return switch (codeGenType) {
             case VUE_PROJECT -> // 使用注入的组件实例
-                    jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser);
-            case HTML, MULTI_FILE -> // 简单文本处理器不需要依赖注入
-                    new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser);
+                    jsonMessageStreamHandler.render(
+                            jsonMessageStreamHandler.recordHistory(coalescedFlux, chatHistoryService, appId, loginUser, responseBuffer));
+            case HTML, MULTI_FILE -> { // 简单文本处理器不需要依赖注入
+                SimpleTextStreamHandler simpleTextStreamHandler = new SimpleTextStreamHandler();
+                yield simpleTextStreamHandler.render(
+                        simpleTextStreamHandler.recordHistory(coalescedFlux, chatHistoryService, appId, loginUser, responseBuffer));
+            }
         };
     }
 }
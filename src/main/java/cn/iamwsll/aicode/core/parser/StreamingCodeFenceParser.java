@@ -0,0 +1,224 @@
+package cn.iamwsll.aicode.core.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 流式代码块解析器
+ * 对流式到达的文本片段做单遍增量扫描，每当一个 ```lang 代码块的闭合围栏到达，就立即产出这个代码块，
+ * 不需要等整个响应结束后再用正则重新扫描全文。
+ * 语义与 HtmlCodeParser / MultiFileCodeParser 的正则保持一致：同一种语言只取第一个代码块，未闭合的代码块不产出。
+ * 注意：有状态、非线程安全，一个流对应一个实例
+ *
+ * @author iamwsll
+ */
+public class StreamingCodeFenceParser {
+
+    /**
+     * 围栏由三个反引号组成
+     */
+    private static final int FENCE_LENGTH = 3;
+
+    /**
+     * 语言标识的最大长度，超过则认为不是合法的围栏头
+     */
+    private static final int MAX_INFO_LENGTH = 32;
+
+    /**
+     * 解析出的代码块
+     *
+     * @param language 语言标识（小写，javascript 统一为 js）
+     * @param code     代码内容（已去除首尾空白）
+     */
+    public record CodeBlock(String language, String code) {
+    }
+
+    private enum State {
+        /**
+         * 代码块之外的普通文本
+         */
+        TEXT,
+        /**
+         * 开始围栏之后、换行之前的语言标识
+         */
+        FENCE_INFO,
+        /**
+         * 代码块内部
+         */
+        CODE
+    }
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续出现、尚未确定归属的反引号数量
+     */
+    private int pendingBackticks;
+
+    private final StringBuilder infoBuilder = new StringBuilder();
+
+    private final StringBuilder codeBuilder = new StringBuilder();
+
+    private String currentLanguage;
+
+    /**
+     * 已经产出过的语言，同一语言只产出第一个代码块
+     */
+    private final Set<String> emittedLanguages = new HashSet<>();
+
+    /**
+     * 兜底内容：在产出 html 代码块之前保留完整原文，用于"没有代码块时把整个内容当作 HTML"的兼容逻辑
+     */
+    private StringBuilder fallbackBuilder;
+
+    /**
+     * 是否已经产出非空的 html 代码块
+     */
+    private boolean htmlEmitted;
+
+    public StreamingCodeFenceParser() {
+        this(true);
+    }
+
+    /**
+     * @param keepFallback 是否自行保留兜底原文；调用方已经保存了完整响应时传 false，避免再存一份
+     */
+    public StreamingCodeFenceParser(boolean keepFallback) {
+        this.fallbackBuilder = keepFallback ? new StringBuilder() : null;
+    }
+
+    /**
+     * 追加一段流式文本
+     *
+     * @param chunk 文本片段
+     * @return 本次片段中闭合的代码块（可能为空）
+     */
+    public List<CodeBlock> append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (fallbackBuilder != null) {
+            fallbackBuilder.append(chunk);
+        }
+        List<CodeBlock> completedBlocks = null;
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            CodeBlock block = accept(c);
+            if (block != null) {
+                if (completedBlocks == null) {
+                    completedBlocks = new ArrayList<>(1);
+                }
+                completedBlocks.add(block);
+            }
+        }
+        return completedBlocks == null ? Collections.emptyList() : completedBlocks;
+    }
+
+    /**
+     * 是否已经产出过指定语言的代码块
+     *
+     * @param language 语言标识
+     */
+    public boolean hasBlock(String language) {
+        return emittedLanguages.contains(normalizeLanguage(language));
+    }
+
+    /**
+     * 是否需要兜底：还没有产出非空的 html 代码块
+     */
+    public boolean needsFallback() {
+        return !htmlEmitted;
+    }
+
+    /**
+     * 获取兜底内容（完整原文）
+     *
+     * @return 还没有产出 html 代码块时返回完整原文，否则（或不保留兜底原文时）返回 null
+     */
+    public String getFallbackContent() {
+        return fallbackBuilder == null ? null : fallbackBuilder.toString();
+    }
+
+    /**
+     * 处理单个字符
+     *
+     * @return 如果这个字符闭合了一个需要产出的代码块，返回该代码块
+     */
+    private CodeBlock accept(char c) {
+        switch (state) {
+            case TEXT -> {
+                if (c == '`') {
+                    if (++pendingBackticks == FENCE_LENGTH) {
+                        pendingBackticks = 0;
+                        infoBuilder.setLength(0);
+                        state = State.FENCE_INFO;
+                    }
+                } else {
+                    pendingBackticks = 0;
+                }
+                return null;
+            }
+            case FENCE_INFO -> {
+                if (c == '\n') {
+                    currentLanguage = normalizeLanguage(infoBuilder.toString());
+                    codeBuilder.setLength(0);
+                    state = State.CODE;
+                } else if (infoBuilder.length() < MAX_INFO_LENGTH) {
+                    infoBuilder.append(c);
+                }
+                return null;
+            }
+            case CODE -> {
+                if (c == '`') {
+                    if (++pendingBackticks == FENCE_LENGTH) {
+                        pendingBackticks = 0;
+                        state = State.TEXT;
+                        return completeBlock();
+                    }
+                    return null;
+                }
+                // 不足三个的反引号属于代码内容
+                for (; pendingBackticks > 0; pendingBackticks--) {
+                    codeBuilder.append('`');
+                }
+                codeBuilder.append(c);
+                return null;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 代码块闭合
+     */
+    private CodeBlock completeBlock() {
+        String language = currentLanguage;
+        currentLanguage = null;
+        if (language == null || language.isEmpty() || !emittedLanguages.add(language)) {
+            codeBuilder.setLength(0);
+            return null;
+        }
+        String code = codeBuilder.toString().trim();
+        codeBuilder.setLength(0);
+        if ("html".equals(language) && !code.isEmpty()) {
+            // 已经拿到 html 代码块，不再需要兜底原文
+            htmlEmitted = true;
+            fallbackBuilder = null;
+        }
+        return new CodeBlock(language, code);
+    }
+
+    /**
+     * 规范化语言标识：转小写，javascript 统一为 js
+     */
+    private static String normalizeLanguage(String info) {
+        String language = info.trim().toLowerCase(Locale.ROOT);
+        return "javascript".equals(language) ? "js" : language;
+    }
+}
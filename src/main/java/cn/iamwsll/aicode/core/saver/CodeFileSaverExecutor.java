@@ -2,6 +2,7 @@ package cn.iamwsll.aicode.core.saver;
 
 import cn.iamwsll.aicode.ai.model.HtmlCodeResult;
 import cn.iamwsll.aicode.ai.model.MultiFileCodeResult;
+import cn.iamwsll.aicode.core.parser.StreamingCodeFenceParser;
 import cn.iamwsll.aicode.exception.BusinessException;
 import cn.iamwsll.aicode.exception.ErrorCode;
 import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
@@ -35,4 +36,20 @@ public class CodeFileSaverExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 执行单个代码块的保存(流式生成过程中使用)
+     *
+     * @param codeBlock   闭合的代码块
+     * @param codeGenType 代码生成类型
+     * @param appId 应用ID
+     * @return 是否写入了文件
+     */
+    public static boolean executeCodeBlockSaver(StreamingCodeFenceParser.CodeBlock codeBlock, CodeGenTypeEnum codeGenType, Long appId) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver.saveCodeBlock(codeBlock.language(), codeBlock.code(), appId);
+            case MULTI_FILE -> multiFileCodeFileSaver.saveCodeBlock(codeBlock.language(), codeBlock.code(), appId);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
 }
\ No newline at end of file
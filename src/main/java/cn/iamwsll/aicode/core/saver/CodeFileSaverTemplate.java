@@ -38,6 +38,23 @@ public abstract class CodeFileSaverTemplate<T> {
         return new File(baseDirPath);
     }
 
+    /**
+     * 保存单个代码块(流式生成过程中,代码块一闭合就调用)
+     * @param language 代码块语言标识
+     * @param code 代码内容
+     * @param appId 应用ID
+     * @return 是否写入了文件(不关心的语言返回 false)
+     */
+    public final boolean saveCodeBlock(String language, String code, Long appId) {
+        String filename = resolveFilename(language);
+        if (filename == null || StrUtil.isBlank(code)) {
+            return false;
+        }
+        String baseDirPath = buildUniqueDir(appId);
+        writeToFile(baseDirPath, filename, code);
+        return true;
+    }
+
     /**
      * 验证输入(可以子类覆盖)
      *
@@ -88,6 +105,14 @@ public abstract class CodeFileSaverTemplate<T> {
         FileUtil.writeString(content, filePath, StandardCharsets.UTF_8);
     }
 
+    /**
+     * 根据代码块语言获取要保存的文件名(子类实现)
+     *
+     * @param language 代码块语言标识(小写)
+     * @return 文件名,不需要保存的语言返回 null
+     */
+    protected abstract String resolveFilename(String language);
+
     /**
      * 获取代码类型枚举(子类实现)
      *
@@ -0,0 +1,162 @@
+package cn.iamwsll.aicode.core.session;
+
+import cn.hutool.json.JSONUtil;
+import cn.iamwsll.aicode.config.GenerationSessionProperties;
+import cn.iamwsll.aicode.core.stream.StreamEvent;
+import cn.iamwsll.aicode.exception.BusinessException;
+import cn.iamwsll.aicode.exception.ErrorCode;
+import jakarta.annotation.Resource;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 生成会话的回放存储
+ * 内存里只保留最近的事件，更早的事件和会话结束信息存到 Redis，供断线较久的客户端或会话已从内存移除后续传
+ * 事件存在 Hash 里，field 为序号，value 为 "类型:内容"；事件按批转存，过期时间只在第一次转存和会话结束时设置
+ */
+@Slf4j
+@Component
+public class GenerationReplayStore {
+
+    private static final String EVENTS_KEY_PREFIX = "generation:replay:";
+
+    private static final String META_KEY_PREFIX = "generation:meta:";
+
+    /**
+     * 每次从 Redis 读取的事件个数
+     */
+    private static final int READ_BATCH_SIZE = 500;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private GenerationSessionProperties generationSessionProperties;
+
+    /**
+     * 转存一批事件（异步，不阻塞生成），一批只有一条写入命令
+     *
+     * @param generationId 生成会话 ID
+     * @param events       按序号排列的事件，可以为空
+     * @param refreshTtl   是否（重新）设置过期时间：第一次转存时设置，实例宕机也不会留下不过期的数据；
+     *                     会话结束时再设置一次，从结束开始计时
+     * @return 事件写入完成（失败时异常完成），调用方在此之前不能从内存中移除这些事件
+     */
+    public CompletionStage<Void> spill(String generationId, List<StreamEvent> events, boolean refreshTtl) {
+        RMap<String, String> eventsMap = getEventsMap(generationId);
+        CompletionStage<Void> written = CompletableFuture.completedFuture(null);
+        if (!events.isEmpty()) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (StreamEvent event : events) {
+                values.put(String.valueOf(event.seq()), event.kind().name() + ":" + event.data());
+            }
+            written = eventsMap.putAllAsync(values).whenComplete((result, e) -> {
+                if (e != null) {
+                    log.warn("转存生成事件失败，generationId: {}, seq: {}-{}", generationId,
+                            events.getFirst().seq(), events.getLast().seq(), e);
+                }
+            });
+        }
+        if (refreshTtl) {
+            eventsMap.expireAsync(getTtl());
+        }
+        return written;
+    }
+
+    /**
+     * 按序号读取转存的事件（包含两端）
+     * 有事件缺失（已过期或转存失败）时以错误结束，不会静默跳过，客户端不会拿到不完整的内容
+     */
+    public Flux<StreamEvent> read(String generationId, long fromSeq, long toSeq) {
+        RMap<String, String> events = getEventsMap(generationId);
+        return Flux.range(0, (int) ((toSeq - fromSeq) / READ_BATCH_SIZE + 1))
+                .concatMap(batch -> {
+                    long start = fromSeq + (long) batch * READ_BATCH_SIZE;
+                    long end = Math.min(toSeq, start + READ_BATCH_SIZE - 1);
+                    Set<String> keys = new LinkedHashSet<>();
+                    for (long seq = start; seq <= end; seq++) {
+                        keys.add(String.valueOf(seq));
+                    }
+                    return Mono.fromCompletionStage(events.getAllAsync(keys))
+                            .flatMap(found -> found.size() < keys.size()
+                                    ? Mono.error(new BusinessException(ErrorCode.SYSTEM_ERROR, "回放的生成事件已过期或丢失"))
+                                    : Mono.just(found))
+                            .flatMapIterable(Map::entrySet)
+                            .map(entry -> decode(generationId, Long.parseLong(entry.getKey()), entry.getValue()))
+                            .sort(Comparator.comparingLong(StreamEvent::seq));
+                });
+    }
+
+    /**
+     * 记录会话结束信息
+     */
+    public void markFinished(GenerationMeta meta) {
+        RBucket<String> bucket = redissonClient.getBucket(META_KEY_PREFIX + meta.getGenerationId(), StringCodec.INSTANCE);
+        bucket.setAsync(JSONUtil.toJsonStr(meta), getTtl());
+    }
+
+    /**
+     * 读取会话结束信息，不存在（未结束或已过期）时返回 null
+     */
+    public GenerationMeta readMeta(String generationId) {
+        RBucket<String> bucket = redissonClient.getBucket(META_KEY_PREFIX + generationId, StringCodec.INSTANCE);
+        String json = bucket.get();
+        return json == null ? null : JSONUtil.toBean(json, GenerationMeta.class);
+    }
+
+    private RMap<String, String> getEventsMap(String generationId) {
+        return redissonClient.getMap(EVENTS_KEY_PREFIX + generationId, StringCodec.INSTANCE);
+    }
+
+    private Duration getTtl() {
+        return Duration.ofMinutes(generationSessionProperties.getReplayTtlMinutes());
+    }
+
+    private static StreamEvent decode(String generationId, long seq, String value) {
+        int separator = value.indexOf(':');
+        StreamEvent.Kind kind = StreamEvent.Kind.valueOf(value.substring(0, separator));
+        return new StreamEvent(generationId, seq, kind, value.substring(separator + 1));
+    }
+
+    /**
+     * 会话结束信息
+     */
+    @Data
+    public static class GenerationMeta {
+
+        private String generationId;
+
+        private Long appId;
+
+        private Long userId;
+
+        private String codeGenType;
+
+        /**
+         * 最后一个事件的序号
+         */
+        private Long lastSeq;
+
+        /**
+         * 生成失败时的错误信息，成功时为 null
+         */
+        private String errorMessage;
+    }
+}
@@ -0,0 +1,268 @@
+package cn.iamwsll.aicode.core.session;
+
+import cn.iamwsll.aicode.core.stream.StreamEvent;
+import cn.iamwsll.aicode.exception.BusinessException;
+import cn.iamwsll.aicode.exception.ErrorCode;
+import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
+import lombok.Getter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 生成会话
+ * 一次代码生成的事件由会话订阅并编号，客户端只是会话的订阅者：
+ * 1. 最近的事件保存在内存缓冲里，超出的事件攒够一批再转存到 Redis，写入完成后才从内存移除
+ * 2. 客户端断开不会立即取消生成，重连时带上最后收到的事件序号，先回放缺失的事件，再接上实时事件
+ * 3. 取消会话时取消对生成流的订阅，取消一路传到模型调用和工具循环
+ */
+public class GenerationSession {
+
+    /**
+     * 每次转存到 Redis 的最多事件个数
+     */
+    private static final int SPILL_BATCH_SIZE = 64;
+
+    @Getter
+    private final String generationId;
+
+    @Getter
+    private final long appId;
+
+    @Getter
+    private final long userId;
+
+    @Getter
+    private final CodeGenTypeEnum codeGenType;
+
+    private final int replayBufferSize;
+
+    /**
+     * 缓冲里超出 replayBufferSize 的事件攒够这么多个再一起转存
+     */
+    private final int spillBatchSize;
+
+    private final GenerationReplayStore replayStore;
+
+    private final ArrayDeque<StreamEvent> recentEvents;
+
+    private final List<Sinks.Many<StreamEvent>> subscribers = new ArrayList<>();
+
+    private long lastSeq;
+
+    /**
+     * 已交给转存的最大序号，之后的事件还没有转存
+     */
+    private long spillingSeq;
+
+    /**
+     * 已写入 Redis、但前面还有未完成的批次而暂留在缓冲里的批次：起始序号 -> 结束序号
+     */
+    private final Map<Long, Long> spilledBatches = new HashMap<>();
+
+    private boolean finished;
+
+    private Throwable error;
+
+    /**
+     * 对生成流的订阅
+     */
+    private Disposable upstream;
+
+    public GenerationSession(String generationId, long appId, long userId, CodeGenTypeEnum codeGenType,
+                             int replayBufferSize, GenerationReplayStore replayStore) {
+        this.generationId = generationId;
+        this.appId = appId;
+        this.userId = userId;
+        this.codeGenType = codeGenType;
+        this.replayBufferSize = replayBufferSize;
+        this.spillBatchSize = Math.max(1, Math.min(SPILL_BATCH_SIZE, replayBufferSize));
+        this.replayStore = replayStore;
+        this.recentEvents = new ArrayDeque<>(replayBufferSize + spillBatchSize);
+    }
+
+    /**
+     * 发布一个事件：编号、写入缓冲并推送给当前的订阅者
+     */
+    synchronized void publish(StreamEvent event) {
+        if (finished) {
+            return;
+        }
+        StreamEvent sequenced = event.withSequence(generationId, ++lastSeq);
+        recentEvents.addLast(sequenced);
+        if (lastSeq - spillingSeq >= replayBufferSize + spillBatchSize) {
+            // 第一次转存时设置过期时间
+            boolean firstSpill = spillingSeq == 0;
+            List<StreamEvent> batch = takeUnspilled(spillBatchSize);
+            long fromSeq = batch.getFirst().seq();
+            long toSeq = batch.getLast().seq();
+            // 写入完成前这些事件仍在内存里，续传时从内存读取；写入失败时一直留在内存里
+            replayStore.spill(generationId, batch, firstSpill).thenRun(() -> onSpilled(fromSeq, toSeq));
+        }
+        for (Sinks.Many<StreamEvent> subscriber : subscribers) {
+            subscriber.tryEmitNext(sequenced);
+        }
+    }
+
+    synchronized void bindUpstream(Disposable upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * 取消生成，已订阅的客户端正常结束
+     */
+    public void cancel() {
+        Disposable current;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            current = upstream;
+        }
+        // 在锁外取消，取消过程中会写入对话历史
+        if (current != null) {
+            current.dispose();
+        }
+        complete();
+    }
+
+    /**
+     * 生成正常结束
+     */
+    synchronized void complete() {
+        if (finish(null)) {
+            subscribers.forEach(Sinks.Many::tryEmitComplete);
+            subscribers.clear();
+        }
+    }
+
+    /**
+     * 生成失败
+     */
+    synchronized void fail(Throwable throwable) {
+        if (finish(throwable)) {
+            subscribers.forEach(subscriber -> subscriber.tryEmitError(throwable));
+            subscribers.clear();
+        }
+    }
+
+    /**
+     * 订阅会话，从指定序号之后开始接收
+     *
+     * @param afterSeq 客户端最后收到的事件序号，新连接传 0
+     * @return 缺失事件的回放 + 实时事件
+     */
+    public Flux<StreamEvent> attach(long afterSeq) {
+        return Flux.defer(() -> {
+            Sinks.Many<StreamEvent> subscriber = Sinks.many().unicast().onBackpressureBuffer();
+            List<StreamEvent> snapshot = new ArrayList<>();
+            long oldestSeq;
+            Flux<StreamEvent> tail;
+            synchronized (this) {
+                for (StreamEvent event : recentEvents) {
+                    if (event.seq() > afterSeq) {
+                        snapshot.add(event);
+                    }
+                }
+                oldestSeq = recentEvents.isEmpty() ? lastSeq + 1 : recentEvents.peekFirst().seq();
+                if (finished) {
+                    tail = error == null ? Flux.empty() : Flux.error(error);
+                } else {
+                    // 在同一把锁内登记，快照之后发布的事件一定会进入这个订阅者
+                    subscribers.add(subscriber);
+                    tail = subscriber.asFlux();
+                }
+            }
+            Flux<StreamEvent> spilled = afterSeq + 1 < oldestSeq
+                    ? replayStore.read(generationId, afterSeq + 1, oldestSeq - 1)
+                    : Flux.empty();
+            return Flux.concat(spilled, Flux.fromIterable(snapshot), tail)
+                    .doFinally(signal -> removeSubscriber(subscriber));
+        });
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private synchronized void removeSubscriber(Sinks.Many<StreamEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * 取出最早的若干个还没有交给转存的事件，事件仍留在缓冲里
+     */
+    private List<StreamEvent> takeUnspilled(int count) {
+        List<StreamEvent> batch = new ArrayList<>(Math.min(count, recentEvents.size()));
+        // 缓冲开头是转存中的事件，数量很少
+        for (StreamEvent event : recentEvents) {
+            if (batch.size() == count) {
+                break;
+            }
+            if (event.seq() > spillingSeq) {
+                batch.add(event);
+            }
+        }
+        if (!batch.isEmpty()) {
+            spillingSeq = batch.getLast().seq();
+        }
+        return batch;
+    }
+
+    /**
+     * 一批事件已写入 Redis，从缓冲中移除
+     * 只从缓冲开头移除，缓冲里的事件始终连续，比它早的事件都可以从 Redis 读到；
+     * 先完成的批次等前面的批次完成后再一起移除
+     */
+    private synchronized void onSpilled(long fromSeq, long toSeq) {
+        spilledBatches.put(fromSeq, toSeq);
+        while (!recentEvents.isEmpty()) {
+            Long batchEnd = spilledBatches.remove(recentEvents.peekFirst().seq());
+            if (batchEnd == null) {
+                break;
+            }
+            while (!recentEvents.isEmpty() && recentEvents.peekFirst().seq() <= batchEnd) {
+                recentEvents.pollFirst();
+            }
+        }
+    }
+
+    /**
+     * 标记结束，内存中还没有转存的事件全部转存，写入完成后再记录结束信息，会话从内存移除后仍可以从 Redis 回放
+     * 结束后的缓冲保留到会话从内存移除，不再移除最后一批
+     *
+     * @return 是否是第一次结束
+     */
+    private boolean finish(Throwable throwable) {
+        if (finished) {
+            return false;
+        }
+        finished = true;
+        error = throwable;
+        CompletionStage<Void> spilled = replayStore.spill(generationId, takeUnspilled(Integer.MAX_VALUE), true);
+        GenerationReplayStore.GenerationMeta meta = new GenerationReplayStore.GenerationMeta();
+        meta.setGenerationId(generationId);
+        meta.setAppId(appId);
+        meta.setUserId(userId);
+        meta.setCodeGenType(codeGenType.getValue());
+        meta.setLastSeq(lastSeq);
+        if (throwable != null) {
+            meta.setErrorMessage(throwable instanceof BusinessException ? throwable.getMessage()
+                    : ErrorCode.SYSTEM_ERROR.getMessage());
+        }
+        // 转存失败时仍记录结束信息，回放时发现事件缺失会报错
+        spilled.whenComplete((result, e) -> replayStore.markFinished(meta));
+        return true;
+    }
+}
@@ -0,0 +1,212 @@
+package cn.iamwsll.aicode.core.session;
+
+import cn.hutool.core.util.IdUtil;
+import cn.iamwsll.aicode.config.GenerationSessionProperties;
+import cn.iamwsll.aicode.constant.UserConstant;
+import cn.iamwsll.aicode.core.stream.StreamBackpressureBridge;
+import cn.iamwsll.aicode.core.stream.StreamEvent;
+import cn.iamwsll.aicode.core.stream.StreamEventMetrics;
+import cn.iamwsll.aicode.exception.BusinessException;
+import cn.iamwsll.aicode.exception.ErrorCode;
+import cn.iamwsll.aicode.model.entity.User;
+import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成会话管理器
+ * 负责启动会话（服务端订阅生成流，生成不再随客户端断开而取消）、按 Last-Event-ID 续传，以及会话结束后的清理
+ * 会话同时按应用登记，同一个应用同时只有一个进行中的生成，其他客户端（新标签页、管理员）可以随时接入或离开，
+ * 不会产生新的模型调用；生成结束后的对话历史保存和项目构建与是否有客户端无关
+ * 所有客户端都离开且超过宽限时间没有重连时取消生成，用户也可以主动取消
+ * 客户端侧的背压桥和 SSE 指标在这里接入，每个连接各自一份
+ */
+@Slf4j
+@Component
+public class GenerationSessionManager {
+
+    private final Map<String, GenerationSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 每个应用最近一次的生成会话
+     */
+    private final Map<Long, GenerationSession> latestSessionByApp = new ConcurrentHashMap<>();
+
+    @Resource
+    private GenerationSessionProperties generationSessionProperties;
+
+    @Resource
+    private GenerationReplayStore generationReplayStore;
+
+    @Resource
+    private StreamBackpressureBridge streamBackpressureBridge;
+
+    @Resource
+    private StreamEventMetrics streamEventMetrics;
+
+    /**
+     * 为应用占用一个生成会话，应用已有进行中的生成时抛出异常
+     * 占用之后、启动之前接入的客户端会等到生成开始；没能启动时调用 {@link #abandon} 释放
+     *
+     * @param appId       应用ID
+     * @param userId      用户ID
+     * @param codeGenType 代码生成类型
+     * @return 还没有启动的生成会话
+     */
+    public GenerationSession reserve(long appId, long userId, CodeGenTypeEnum codeGenType) {
+        String generationId = IdUtil.getSnowflakeNextIdStr();
+        GenerationSession session = new GenerationSession(generationId, appId, userId, codeGenType,
+                generationSessionProperties.getReplayBufferSize(), generationReplayStore);
+        latestSessionByApp.compute(appId, (key, latest) -> {
+            if (latest != null && !latest.isFinished()) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "该应用正在生成中，请等待本次生成完成");
+            }
+            return session;
+        });
+        return session;
+    }
+
+    /**
+     * 启动占用的生成会话
+     *
+     * @param session   {@link #reserve} 得到的生成会话
+     * @param eventFlux 渲染后的事件流（未编号）
+     */
+    public void start(GenerationSession session, Flux<StreamEvent> eventFlux) {
+        sessions.put(session.getGenerationId(), session);
+        session.bindUpstream(eventFlux.doFinally(signal -> scheduleRemoval(session))
+                .subscribe(session::publish, session::fail, session::complete));
+        log.info("生成会话已启动，generationId: {}, appId: {}", session.getGenerationId(), session.getAppId());
+    }
+
+    /**
+     * 释放没能启动的生成会话，已接入的客户端收到错误
+     *
+     * @param session {@link #reserve} 得到的生成会话
+     * @param error   没能启动的原因
+     */
+    public void abandon(GenerationSession session, Throwable error) {
+        session.fail(error);
+        latestSessionByApp.remove(session.getAppId(), session);
+    }
+
+    /**
+     * 接入应用最近一次的生成（进行中或刚结束），从头回放
+     *
+     * @param appId     应用ID
+     * @param loginUser 登录用户（应用创建者或管理员）
+     * @return 事件流
+     */
+    public Flux<StreamEvent> attachByApp(long appId, User loginUser) {
+        GenerationSession session = latestSessionByApp.get(appId);
+        if (session == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "该应用当前没有进行中的生成");
+        }
+        checkOwner(session.getAppId(), session.getUserId(), appId, loginUser);
+        return attach(session, 0);
+    }
+
+    /**
+     * 订阅会话，返回给单个客户端连接的事件流
+     */
+    public Flux<StreamEvent> attach(GenerationSession session, long afterSeq) {
+        return toClient(session.attach(afterSeq), session.getCodeGenType())
+                .doFinally(signal -> scheduleDetachedCancel(session));
+    }
+
+    /**
+     * 取消应用进行中的生成
+     *
+     * @param appId     应用ID
+     * @param loginUser 登录用户（应用创建者或管理员）
+     * @return 是否有进行中的生成被取消
+     */
+    public boolean cancelByApp(long appId, User loginUser) {
+        GenerationSession session = latestSessionByApp.get(appId);
+        if (session == null || session.isFinished()) {
+            return false;
+        }
+        checkOwner(session.getAppId(), session.getUserId(), appId, loginUser);
+        log.info("用户取消生成，generationId: {}, appId: {}", session.getGenerationId(), appId);
+        session.cancel();
+        return true;
+    }
+
+    /**
+     * 断线续传：会话仍在内存中时直接订阅，否则从 Redis 回放已结束的会话
+     *
+     * @param generationId 生成会话ID
+     * @param afterSeq     客户端最后收到的事件序号
+     * @param appId        应用ID
+     * @param loginUser    登录用户
+     * @return 续传的事件流
+     */
+    public Flux<StreamEvent> resume(String generationId, long afterSeq, long appId, User loginUser) {
+        GenerationSession session = sessions.get(generationId);
+        if (session != null) {
+            checkOwner(session.getAppId(), session.getUserId(), appId, loginUser);
+            return attach(session, afterSeq);
+        }
+        GenerationReplayStore.GenerationMeta meta = generationReplayStore.readMeta(generationId);
+        if (meta == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "生成会话不存在或已过期");
+        }
+        checkOwner(meta.getAppId(), meta.getUserId(), appId, loginUser);
+        Flux<StreamEvent> replayFlux = afterSeq < meta.getLastSeq()
+                ? generationReplayStore.read(generationId, afterSeq + 1, meta.getLastSeq())
+                : Flux.empty();
+        if (meta.getErrorMessage() != null) {
+            replayFlux = replayFlux.concatWith(Flux.error(new BusinessException(ErrorCode.SYSTEM_ERROR, meta.getErrorMessage())));
+        }
+        return toClient(replayFlux, CodeGenTypeEnum.getEnumByValue(meta.getCodeGenType()));
+    }
+
+    private Flux<StreamEvent> toClient(Flux<StreamEvent> eventFlux, CodeGenTypeEnum codeGenType) {
+        return streamEventMetrics.recordSseEvents(streamBackpressureBridge.bridge(eventFlux, codeGenType), codeGenType);
+    }
+
+    private void checkOwner(long sessionAppId, long sessionUserId, long appId, User loginUser) {
+        if (sessionAppId != appId) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限访问该生成会话");
+        }
+        // 管理员可以旁观任意应用的生成
+        if (sessionUserId != loginUser.getId() && !UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限访问该生成会话");
+        }
+    }
+
+    /**
+     * 客户端离开后，若宽限时间内没有任何客户端重新订阅，则取消生成
+     */
+    private void scheduleDetachedCancel(GenerationSession session) {
+        long cancelAfterDetachedSeconds = generationSessionProperties.getCancelAfterDetachedSeconds();
+        if (cancelAfterDetachedSeconds <= 0 || session.isFinished()) {
+            return;
+        }
+        // 取消时会写入对话历史，放到可阻塞的线程池执行
+        Schedulers.boundedElastic().schedule(() -> {
+            if (!session.isFinished() && session.getSubscriberCount() == 0) {
+                log.info("生成会话长时间无人订阅，取消生成，generationId: {}, appId: {}",
+                        session.getGenerationId(), session.getAppId());
+                session.cancel();
+            }
+        }, cancelAfterDetachedSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 生成结束后在内存中保留一段时间，之后的续传走 Redis
+     */
+    private void scheduleRemoval(GenerationSession session) {
+        Schedulers.parallel().schedule(() -> {
+            sessions.remove(session.getGenerationId());
+            latestSessionByApp.remove(session.getAppId(), session);
+        }, generationSessionProperties.getRetainAfterFinishSeconds(), TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,260 @@
+package cn.iamwsll.aicode.core.stream;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * 单个客户端连接的有界积压缓冲
+ * 1. 积压的文本合并到队尾的文本条目里，不会为每个 token 保留一个对象，合并后的事件序号取最后一段文本的序号
+ * 2. 工具事件从不丢弃，降级前原样保留
+ * 3. 积压字节数超过上限、或持续落后超过阈值时进入降级状态：丢弃积压的文本，之后的文本只以进度事件的形式下发；
+ *    内容较长的工具事件（例如写入文件的完整内容）只保留第一行，降级后每个工具事件只占用很少的内存
+ * 4. 降级后积压字节数仍超过上限（工具事件过多）时再次报告超限，由调用方断开连接，积压始终受上限约束
+ * 注意：非线程安全，由调用方加锁
+ */
+final class BoundedStreamBuffer {
+
+    private static final String PROGRESS_TEMPLATE = "\n\n> 网络较慢，已切换为仅显示进度：已生成 %d 字，完整内容请在生成结束后刷新查看\n\n";
+
+    private static final String OMITTED_TOOL_TEMPLATE = "\n\n%s（内容已省略）\n\n";
+
+    /**
+     * 降级后工具事件超过该字节数时只保留第一行
+     */
+    private static final int DEGRADED_TOOL_MAX_BYTES = 256;
+
+    /**
+     * 省略内容时第一行最多保留的字符数
+     */
+    private static final int OMITTED_TOOL_LINE_MAX_CHARS = 80;
+
+    private final int maxBufferedBytes;
+
+    private final long slowClientThresholdMillis;
+
+    private final long progressIntervalMillis;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    private int bufferedBytes;
+
+    /**
+     * 本轮积压开始的时间，队列清空时重置
+     */
+    private long backlogSinceMillis = -1;
+
+    private boolean degraded;
+
+    private long lastProgressMillis;
+
+    /**
+     * 已生成的文本字数，用于进度展示
+     */
+    private long generatedChars;
+
+    /**
+     * 最近放入的事件，降级时的进度事件沿用它的序号
+     */
+    private StreamEvent lastOffered;
+
+    BoundedStreamBuffer(int maxBufferedBytes, long slowClientThresholdMillis, long progressIntervalMillis) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.slowClientThresholdMillis = slowClientThresholdMillis;
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /**
+     * 放入一个事件
+     *
+     * @return 是否超过积压阈值（由调用方按策略决定降级还是断开；已降级时说明只能断开）
+     */
+    boolean offer(StreamEvent event, long nowMillis) {
+        lastOffered = event;
+        if (event.kind() == StreamEvent.Kind.TEXT) {
+            offerText(event, nowMillis);
+        } else {
+            addEntry(toolEntry(event), nowMillis);
+        }
+        if (degraded) {
+            return bufferedBytes > maxBufferedBytes;
+        }
+        return isOverflow(nowMillis);
+    }
+
+    /**
+     * 取出队首事件
+     */
+    StreamEvent poll(long nowMillis) {
+        Entry entry = entries.pollFirst();
+        if (entry == null) {
+            return null;
+        }
+        bufferedBytes -= entry.bytes;
+        if (entries.isEmpty()) {
+            backlogSinceMillis = -1;
+        }
+        if (entry.progress) {
+            lastProgressMillis = nowMillis;
+            return new StreamEvent(entry.generationId, entry.seq, StreamEvent.Kind.PROGRESS,
+                    String.format(PROGRESS_TEMPLATE, generatedChars));
+        }
+        if (entry.text != null) {
+            return new StreamEvent(entry.generationId, entry.seq, StreamEvent.Kind.TEXT, entry.text.toString());
+        }
+        return entry.event;
+    }
+
+    /**
+     * 进入降级状态：丢弃积压的文本，改为进度事件，积压的工具事件省略较长的内容
+     */
+    void degrade(long nowMillis) {
+        if (degraded) {
+            return;
+        }
+        degraded = true;
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.text != null) {
+                bufferedBytes -= entry.bytes;
+                iterator.remove();
+            } else if (entry.event != null && entry.bytes > DEGRADED_TOOL_MAX_BYTES) {
+                Entry omitted = toolEntry(entry.event);
+                bufferedBytes -= entry.bytes - omitted.bytes;
+                entry.event = omitted.event;
+                entry.bytes = omitted.bytes;
+            }
+        }
+        // 降级时立即告知前端
+        if (lastOffered != null) {
+            addEntry(Entry.ofProgress(lastOffered.generationId(), lastOffered.seq()), nowMillis);
+        }
+    }
+
+    /**
+     * 丢弃所有积压
+     */
+    void clear() {
+        entries.clear();
+        bufferedBytes = 0;
+        backlogSinceMillis = -1;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    boolean isDegraded() {
+        return degraded;
+    }
+
+    int getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void offerText(StreamEvent event, long nowMillis) {
+        String data = event.data();
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        generatedChars += data.length();
+        Entry tail = entries.peekLast();
+        if (degraded) {
+            if (tail != null && tail.progress) {
+                // 续传时从这段文本之后开始
+                tail.seq = event.seq();
+            } else if (nowMillis - lastProgressMillis >= progressIntervalMillis) {
+                addEntry(Entry.ofProgress(event.generationId(), event.seq()), nowMillis);
+            }
+            return;
+        }
+        int bytes = StreamEventMetrics.utf8Length(data);
+        if (tail != null && tail.text != null) {
+            // 客户端还没取走上一段文本，直接合并
+            tail.text.append(data);
+            tail.seq = event.seq();
+            tail.bytes += bytes;
+            bufferedBytes += bytes;
+            return;
+        }
+        addEntry(Entry.ofText(event, bytes), nowMillis);
+    }
+
+    /**
+     * 工具事件的积压条目，降级后较长的内容只保留第一行
+     */
+    private Entry toolEntry(StreamEvent event) {
+        int bytes = StreamEventMetrics.utf8Length(event.data());
+        if (!degraded || bytes <= DEGRADED_TOOL_MAX_BYTES) {
+            return Entry.ofEvent(event, bytes);
+        }
+        String firstLine = event.data().strip().lines().findFirst().orElse("");
+        if (firstLine.length() > OMITTED_TOOL_LINE_MAX_CHARS) {
+            firstLine = firstLine.substring(0, OMITTED_TOOL_LINE_MAX_CHARS) + "…";
+        }
+        StreamEvent omitted = new StreamEvent(event.generationId(), event.seq(), event.kind(),
+                String.format(OMITTED_TOOL_TEMPLATE, firstLine));
+        return Entry.ofEvent(omitted, StreamEventMetrics.utf8Length(omitted.data()));
+    }
+
+    private void addEntry(Entry entry, long nowMillis) {
+        if (entries.isEmpty()) {
+            backlogSinceMillis = nowMillis;
+        }
+        entries.addLast(entry);
+        bufferedBytes += entry.bytes;
+    }
+
+    private boolean isOverflow(long nowMillis) {
+        if (bufferedBytes > maxBufferedBytes) {
+            return true;
+        }
+        return backlogSinceMillis >= 0 && nowMillis - backlogSinceMillis > slowClientThresholdMillis;
+    }
+
+    /**
+     * 积压条目：文本（可合并）、进度（下发时才生成内容）或原样透传的工具事件
+     */
+    private static final class Entry {
+
+        private String generationId;
+
+        private long seq;
+
+        private StringBuilder text;
+
+        private StreamEvent event;
+
+        private boolean progress;
+
+        private int bytes;
+
+        static Entry ofText(StreamEvent event, int bytes) {
+            Entry entry = new Entry();
+            entry.generationId = event.generationId();
+            entry.seq = event.seq();
+            entry.text = new StringBuilder(event.data());
+            entry.bytes = bytes;
+            return entry;
+        }
+
+        static Entry ofEvent(StreamEvent event, int bytes) {
+            Entry entry = new Entry();
+            entry.event = event;
+            entry.bytes = bytes;
+            return entry;
+        }
+
+        static Entry ofProgress(String generationId, long seq) {
+            Entry entry = new Entry();
+            entry.generationId = generationId;
+            entry.seq = seq;
+            entry.progress = true;
+            return entry;
+        }
+    }
+}
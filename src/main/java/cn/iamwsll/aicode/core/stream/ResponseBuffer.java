@@ -0,0 +1,219 @@
+package cn.iamwsll.aicode.core.stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 生成响应缓冲
+ * 一次生成的完整响应只在这里保存一份，代码保存（兜底解析）和对话历史都从这里读取
+ * 1. 内容按 UTF-8 编码存放在分段里，追加时不会像 StringBuilder 一样整体扩容复制
+ * 2. 总字节数超过阈值后，已有分段和之后的分段都转存到内存映射的临时文件，数据在页缓存里，不占用堆内存
+ * 3. 引用计数：每个使用方接入时 retain，结束时 release，计数归零后删除临时文件，之后不能再读写
+ * 线程安全：生成线程追加，取消可能来自其他线程读取，所有方法在对象锁内执行
+ */
+@Slf4j
+public final class ResponseBuffer {
+
+    /**
+     * 堆内分段的初始大小，响应较短时不必分配整个分段
+     */
+    private static final int INITIAL_HEAP_SEGMENT_BYTES = 1024;
+
+    private final int segmentBytes;
+
+    private final int spillThresholdBytes;
+
+    private final Path spillDir;
+
+    /**
+     * 分段列表，每个分段的 position 即已写入的字节数
+     */
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    private long totalBytes;
+
+    /**
+     * 上一次追加以高代理项结尾，等下一次追加凑成完整的字符再编码
+     */
+    private char pendingHighSurrogate;
+
+    private Path spillFile;
+
+    private FileChannel spillChannel;
+
+    private boolean spillFailed;
+
+    private int refCount = 1;
+
+    ResponseBuffer(int segmentBytes, int spillThresholdBytes, Path spillDir) {
+        this.segmentBytes = segmentBytes;
+        this.spillThresholdBytes = spillThresholdBytes;
+        this.spillDir = spillDir;
+    }
+
+    /**
+     * 增加一个引用
+     *
+     * @return 当前缓冲
+     */
+    public synchronized ResponseBuffer retain() {
+        ensureAlive();
+        refCount++;
+        return this;
+    }
+
+    /**
+     * 释放一个引用，计数归零时释放分段并删除临时文件
+     */
+    public synchronized void release() {
+        ensureAlive();
+        if (--refCount > 0) {
+            return;
+        }
+        segments.clear();
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+                // 映射区域在 GC 时才会解除，Linux 下可以直接删除，删除失败的在退出时删除
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("删除响应缓冲临时文件失败: {}", spillFile, e);
+                spillFile.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * 追加文本
+     * 已释放后的追加被忽略：生成取消后，模型和工具的回调仍可能晚到
+     *
+     * @param text 文本
+     */
+    public synchronized void append(CharSequence text) {
+        if (refCount <= 0 || text == null || text.isEmpty()) {
+            return;
+        }
+        String value = text.toString();
+        if (pendingHighSurrogate != 0) {
+            value = pendingHighSurrogate + value;
+            pendingHighSurrogate = 0;
+        }
+        if (Character.isHighSurrogate(value.charAt(value.length() - 1))) {
+            pendingHighSurrogate = value.charAt(value.length() - 1);
+            value = value.substring(0, value.length() - 1);
+        }
+        write(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 已写入的字节数（UTF-8）
+     */
+    public synchronized long byteSize() {
+        return totalBytes;
+    }
+
+    /**
+     * 是否已转存到临时文件
+     */
+    public synchronized boolean isSpilled() {
+        return spillChannel != null;
+    }
+
+    /**
+     * 读取完整内容
+     * 只在需要持久化时调用一次，结果是响应的唯一一份堆内副本
+     */
+    @Override
+    public synchronized String toString() {
+        ensureAlive();
+        byte[] bytes = new byte[Math.toIntExact(totalBytes)];
+        int offset = 0;
+        for (ByteBuffer segment : segments) {
+            ByteBuffer readable = segment.duplicate().flip();
+            int length = readable.remaining();
+            readable.get(bytes, offset, length);
+            offset += length;
+        }
+        String content = new String(bytes, StandardCharsets.UTF_8);
+        return pendingHighSurrogate == 0 ? content : content + pendingHighSurrogate;
+    }
+
+    private void write(ByteBuffer source) {
+        if (spillChannel == null && !spillFailed && totalBytes + source.remaining() > spillThresholdBytes) {
+            spill();
+        }
+        totalBytes += source.remaining();
+        while (source.hasRemaining()) {
+            ByteBuffer tail = segments.isEmpty() ? null : segments.getLast();
+            if (tail == null || !tail.hasRemaining()) {
+                tail = newSegment();
+                segments.add(tail);
+            }
+            int length = Math.min(tail.remaining(), source.remaining());
+            tail.put(source.slice(source.position(), length));
+            source.position(source.position() + length);
+        }
+    }
+
+    private ByteBuffer newSegment() {
+        if (spillChannel != null) {
+            return mapSegment((long) segments.size() * segmentBytes);
+        }
+        ByteBuffer tail = segments.isEmpty() ? null : segments.getLast();
+        if (tail != null && tail.capacity() < segmentBytes) {
+            // 堆内分段逐步扩大到分段上限：已满的小分段原样保留，不复制
+            return ByteBuffer.allocate(Math.min(segmentBytes, tail.capacity() * 2));
+        }
+        return ByteBuffer.allocate(tail == null ? Math.min(INITIAL_HEAP_SEGMENT_BYTES, segmentBytes) : segmentBytes);
+    }
+
+    /**
+     * 把堆内分段转存到临时文件，之后的分段直接映射到文件
+     * 转存后每个分段都是完整的 segmentBytes 大小，映射位置由分段下标决定
+     */
+    private void spill() {
+        try {
+            spillFile = spillDir == null
+                    ? Files.createTempFile("response-buffer-", ".tmp")
+                    : Files.createTempFile(Files.createDirectories(spillDir), "response-buffer-", ".tmp");
+            spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            // 转存失败不影响生成，继续留在堆内
+            log.error("创建响应缓冲临时文件失败，继续使用堆内存", e);
+            spillFailed = true;
+            return;
+        }
+        List<ByteBuffer> heapSegments = new ArrayList<>(segments);
+        segments.clear();
+        log.info("响应超过 {} 字节，转存到临时文件: {}", spillThresholdBytes, spillFile);
+        totalBytes = 0;
+        for (ByteBuffer heapSegment : heapSegments) {
+            write(heapSegment.flip());
+        }
+    }
+
+    private MappedByteBuffer mapSegment(long position) {
+        try {
+            return spillChannel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("映射响应缓冲临时文件失败", e);
+        }
+    }
+
+    private void ensureAlive() {
+        if (refCount <= 0) {
+            throw new IllegalStateException("响应缓冲已释放");
+        }
+    }
+}
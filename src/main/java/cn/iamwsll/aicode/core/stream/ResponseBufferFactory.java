@@ -0,0 +1,28 @@
+package cn.iamwsll.aicode.core.stream;
+
+import cn.hutool.core.util.StrUtil;
+import cn.iamwsll.aicode.config.ResponseBufferProperties;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * 生成响应缓冲工厂
+ */
+@Component
+public class ResponseBufferFactory {
+
+    @Resource
+    private ResponseBufferProperties responseBufferProperties;
+
+    /**
+     * 创建一个响应缓冲，调用方持有初始引用，用完后需要 release
+     */
+    public ResponseBuffer create() {
+        String spillDir = responseBufferProperties.getSpillDir();
+        return new ResponseBuffer(responseBufferProperties.getSegmentBytes(),
+                responseBufferProperties.getSpillThresholdBytes(),
+                StrUtil.isBlank(spillDir) ? null : Path.of(spillDir));
+    }
+}
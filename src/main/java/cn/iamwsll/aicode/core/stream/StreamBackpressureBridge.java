@@ -0,0 +1,144 @@
+package cn.iamwsll.aicode.core.stream;
+
+import cn.iamwsll.aicode.config.StreamBackpressureProperties;
+import cn.iamwsll.aicode.exception.BusinessException;
+import cn.iamwsll.aicode.exception.ErrorCode;
+import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
+import cn.iamwsll.aicode.model.enums.StreamOverflowPolicyEnum;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * 流式输出背压桥
+ * 对上游（生成会话）不限速地请求数据，对下游（客户端）只在有需求时下发，
+ * 两者之间的积压放在有界缓冲 BoundedStreamBuffer 里，客户端再慢也不会把整个会话的 token 堆在堆上。
+ * 积压超过阈值时按代码生成类型配置的策略处理：降级为仅显示进度，或断开慢客户端
+ */
+@Slf4j
+@Component
+public class StreamBackpressureBridge {
+
+    @Resource
+    private StreamBackpressureProperties streamBackpressureProperties;
+
+    @Resource
+    private StreamEventMetrics streamEventMetrics;
+
+    /**
+     * 在上游和客户端之间接入有界缓冲
+     *
+     * @param originFlux  上游流（会被无界请求）
+     * @param codeGenType 代码生成类型，决定积压策略
+     * @return 按客户端需求下发的流
+     */
+    public Flux<StreamEvent> bridge(Flux<StreamEvent> originFlux, CodeGenTypeEnum codeGenType) {
+        StreamOverflowPolicyEnum policy = streamBackpressureProperties.getPolicy(codeGenType);
+        return Flux.create(sink -> {
+            BoundedStreamBuffer buffer = new BoundedStreamBuffer(
+                    streamBackpressureProperties.getMaxBufferedBytes(),
+                    streamBackpressureProperties.getSlowClientThresholdMillis(),
+                    streamBackpressureProperties.getProgressIntervalMillis());
+            BridgeState state = new BridgeState(sink, buffer, policy, codeGenType);
+            sink.onRequest(n -> state.drain());
+            Disposable upstream = originFlux.subscribe(state::onNext, state::onError, state::onComplete);
+            sink.onDispose(upstream::dispose);
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    /**
+     * 单个连接的桥接状态
+     * 上游回调和下游 request 可能在不同线程，统一在对象锁内操作缓冲并下发
+     */
+    private final class BridgeState {
+
+        private final FluxSink<StreamEvent> sink;
+
+        private final BoundedStreamBuffer buffer;
+
+        private final StreamOverflowPolicyEnum policy;
+
+        private final CodeGenTypeEnum codeGenType;
+
+        private boolean upstreamDone;
+
+        private Throwable upstreamError;
+
+        private boolean terminated;
+
+        private boolean draining;
+
+        BridgeState(FluxSink<StreamEvent> sink, BoundedStreamBuffer buffer,
+                    StreamOverflowPolicyEnum policy, CodeGenTypeEnum codeGenType) {
+            this.sink = sink;
+            this.buffer = buffer;
+            this.policy = policy;
+            this.codeGenType = codeGenType;
+        }
+
+        synchronized void onNext(StreamEvent event) {
+            if (terminated) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (buffer.offer(event, now)) {
+                handleOverflow(now);
+            }
+            drain();
+        }
+
+        synchronized void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        synchronized void onError(Throwable error) {
+            upstreamDone = true;
+            upstreamError = error;
+            drain();
+        }
+
+        synchronized void drain() {
+            // 下发时下游可能同步 request，避免重入
+            if (draining || terminated) {
+                return;
+            }
+            draining = true;
+            try {
+                while (sink.requestedFromDownstream() > 0 && !buffer.isEmpty()) {
+                    sink.next(buffer.poll(System.currentTimeMillis()));
+                }
+                if (upstreamDone && buffer.isEmpty()) {
+                    terminated = true;
+                    if (upstreamError != null) {
+                        sink.error(upstreamError);
+                    } else {
+                        sink.complete();
+                    }
+                }
+            } finally {
+                draining = false;
+            }
+        }
+
+        private void handleOverflow(long now) {
+            // 已降级仍超限说明只剩工具事件的积压也超过了上限，只能断开
+            if (policy == StreamOverflowPolicyEnum.DEGRADE && !buffer.isDegraded()) {
+                log.warn("客户端持续跟不上生成速度，降级为仅显示进度，codeGenType: {}, 积压字节数: {}",
+                        codeGenType.getValue(), buffer.getBufferedBytes());
+                buffer.degrade(now);
+                streamEventMetrics.recordSlowClient(codeGenType, policy);
+                return;
+            }
+            log.warn("客户端持续跟不上生成速度，断开连接，codeGenType: {}, 积压字节数: {}",
+                    codeGenType.getValue(), buffer.getBufferedBytes());
+            buffer.clear();
+            terminated = true;
+            streamEventMetrics.recordSlowClient(codeGenType, StreamOverflowPolicyEnum.DISCONNECT);
+            sink.error(new BusinessException(ErrorCode.OPERATION_ERROR, "网络过慢，连接已断开，生成仍在后台进行，请稍后刷新查看结果"));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package cn.iamwsll.aicode.core.stream;
+
+import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
+import cn.iamwsll.aicode.config.StreamCoalesceProperties;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式消息合并器
+ * 把相邻的 AI 文本增量合并成一条消息，满足以下任一条件即下发：
+ * 1. 距离缓冲中第一个增量到达已经过了合并窗口
+ * 2. 缓冲字节数达到上限
+ * 3. 遇到工具调用消息（工具边界）
+ * 4. 流结束（完成或出错）
+ * 工具消息本身原样透传，顺序保持不变
+ */
+@Component
+public class StreamCoalescer {
+
+    @Resource
+    private StreamCoalesceProperties streamCoalesceProperties;
+
+    /**
+     * 对类型化消息流做合并
+     *
+     * @param originFlux 原始流
+     * @return 合并后的流
+     */
+    public Flux<StreamMessage> coalesce(Flux<StreamMessage> originFlux) {
+        if (!streamCoalesceProperties.isEnabled()) {
+            return originFlux;
+        }
+        long flushIntervalMillis = streamCoalesceProperties.getFlushIntervalMillis();
+        int maxBufferBytes = streamCoalesceProperties.getMaxBufferBytes();
+        return Flux.create(sink -> {
+            CoalescingBuffer buffer = new CoalescingBuffer(sink, flushIntervalMillis, maxBufferBytes);
+            Disposable upstream = originFlux.subscribe(buffer::onNext, buffer::onError, buffer::onComplete);
+            sink.onDispose(() -> {
+                buffer.dispose();
+                upstream.dispose();
+            });
+        });
+    }
+
+    /**
+     * 单个流的合并缓冲
+     * 上游回调和定时下发运行在不同线程，统一在对象锁内下发以保证顺序
+     */
+    private static final class CoalescingBuffer {
+
+        private final FluxSink<StreamMessage> sink;
+
+        private final long flushIntervalMillis;
+
+        private final int maxBufferBytes;
+
+        private final StringBuilder pending = new StringBuilder();
+
+        private int pendingBytes;
+
+        private Disposable flushTask;
+
+        private boolean terminated;
+
+        CoalescingBuffer(FluxSink<StreamMessage> sink, long flushIntervalMillis, int maxBufferBytes) {
+            this.sink = sink;
+            this.flushIntervalMillis = flushIntervalMillis;
+            this.maxBufferBytes = maxBufferBytes;
+        }
+
+        synchronized void onNext(StreamMessage message) {
+            if (terminated) {
+                return;
+            }
+            if (message instanceof AiResponseMessage aiResponseMessage) {
+                String data = aiResponseMessage.getData();
+                if (data == null || data.isEmpty()) {
+                    return;
+                }
+                pending.append(data);
+                pendingBytes += StreamEventMetrics.utf8Length(data);
+                if (pendingBytes >= maxBufferBytes) {
+                    flush();
+                } else if (flushTask == null) {
+                    // 窗口从缓冲中第一个增量开始计时
+                    flushTask = Schedulers.parallel().schedule(this::flushOnTimer, flushIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            // 工具边界：先下发已缓冲的文本，再透传工具消息
+            flush();
+            sink.next(message);
+        }
+
+        synchronized void onComplete() {
+            if (terminated) {
+                return;
+            }
+            flush();
+            terminated = true;
+            sink.complete();
+        }
+
+        synchronized void onError(Throwable error) {
+            if (terminated) {
+                return;
+            }
+            flush();
+            terminated = true;
+            sink.error(error);
+        }
+
+        synchronized void dispose() {
+            terminated = true;
+            cancelFlushTask();
+        }
+
+        private synchronized void flushOnTimer() {
+            flushTask = null;
+            if (!terminated) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            cancelFlushTask();
+            if (pending.isEmpty()) {
+                return;
+            }
+            String data = pending.toString();
+            pending.setLength(0);
+            pendingBytes = 0;
+            sink.next(new AiResponseMessage(data));
+        }
+
+        private void cancelFlushTask() {
+            if (flushTask != null) {
+                flushTask.dispose();
+                flushTask = null;
+            }
+        }
+    }
+}
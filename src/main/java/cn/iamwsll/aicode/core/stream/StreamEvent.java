@@ -0,0 +1,53 @@
+package cn.iamwsll.aicode.core.stream;
+
+/**
+ * 下发给前端的流式事件
+ * 由处理器渲染产生，进入生成会话时分配单调递增的序号，SSE 事件 id 为 "生成ID:序号"，断线重连时据此续传
+ *
+ * @param generationId 生成会话 ID（未编号时为 null）
+ * @param seq          会话内序号，从 1 开始（未编号时为 0）
+ * @param kind         事件类型
+ * @param data         给前端的文本
+ */
+public record StreamEvent(String generationId, long seq, Kind kind, String data) {
+
+    /**
+     * 事件类型
+     */
+    public enum Kind {
+        /**
+         * AI 文本，可以与相邻文本合并
+         */
+        TEXT,
+        /**
+         * 工具调用相关的展示内容，不合并、不丢弃
+         */
+        TOOL,
+        /**
+         * 慢客户端降级后的进度提示，只在单个连接上产生
+         */
+        PROGRESS
+    }
+
+    public static StreamEvent text(String data) {
+        return new StreamEvent(null, 0, Kind.TEXT, data);
+    }
+
+    public static StreamEvent tool(String data) {
+        return new StreamEvent(null, 0, Kind.TOOL, data);
+    }
+
+    /**
+     * 分配会话内序号
+     */
+    public StreamEvent withSequence(String generationId, long seq) {
+        return new StreamEvent(generationId, seq, kind, data);
+    }
+
+    /**
+     * SSE 事件 id
+     */
+    public String getEventId() {
+        return generationId + ":" + seq;
+    }
+}
@@ -0,0 +1,96 @@
+package cn.iamwsll.aicode.core.stream;
+
+import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
+import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
+import cn.iamwsll.aicode.model.enums.StreamOverflowPolicyEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * 流式输出指标
+ * ai.stream.model.deltas：模型下发的文本增量个数
+ * ai.stream.sse.events：实际下发给前端的 SSE 事件个数（按时间求速率即 events/sec）
+ * ai.stream.sse.event.bytes：每个 SSE 事件的字节数分布
+ * ai.stream.slow.clients：触发积压策略（降级/断开）的慢客户端个数
+ */
+@Component
+public class StreamEventMetrics {
+
+    private static final String TAG_CODE_GEN_TYPE = "codeGenType";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 统计模型下发的文本增量（合并前）
+     */
+    public Flux<StreamMessage> recordModelDeltas(Flux<StreamMessage> originFlux, CodeGenTypeEnum codeGenType) {
+        Counter deltaCounter = Counter.builder("ai.stream.model.deltas")
+                .description("模型下发的文本增量个数")
+                .tag(TAG_CODE_GEN_TYPE, codeGenType.getValue())
+                .register(meterRegistry);
+        return originFlux.doOnNext(message -> {
+            if (message instanceof AiResponseMessage) {
+                deltaCounter.increment();
+            }
+        });
+    }
+
+    /**
+     * 统计下发给前端的 SSE 事件
+     */
+    public Flux<StreamEvent> recordSseEvents(Flux<StreamEvent> eventFlux, CodeGenTypeEnum codeGenType) {
+        Counter eventCounter = Counter.builder("ai.stream.sse.events")
+                .description("下发给前端的 SSE 事件个数")
+                .tag(TAG_CODE_GEN_TYPE, codeGenType.getValue())
+                .register(meterRegistry);
+        DistributionSummary eventBytes = DistributionSummary.builder("ai.stream.sse.event.bytes")
+                .description("每个 SSE 事件的字节数")
+                .baseUnit("bytes")
+                .tag(TAG_CODE_GEN_TYPE, codeGenType.getValue())
+                .register(meterRegistry);
+        return eventFlux.doOnNext(event -> {
+            eventCounter.increment();
+            eventBytes.record(utf8Length(event.data()));
+        });
+    }
+
+    /**
+     * 记录一次慢客户端积压策略的触发
+     */
+    public void recordSlowClient(CodeGenTypeEnum codeGenType, StreamOverflowPolicyEnum policy) {
+        Counter.builder("ai.stream.slow.clients")
+                .description("触发积压策略的慢客户端个数")
+                .tag(TAG_CODE_GEN_TYPE, codeGenType.getValue())
+                .tag("policy", policy.getValue())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 计算字符串的 UTF-8 字节数，不产生临时数组
+     */
+    public static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
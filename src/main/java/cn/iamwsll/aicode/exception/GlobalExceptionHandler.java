@@ -13,6 +13,7 @@ import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 @Hidden
@@ -20,6 +21,11 @@ import java.util.Map;
 @Slf4j
 public class GlobalExceptionHandler {
 
+    /**
+     * 返回 SSE 流的接口，同一前缀下的 /chat/gen/cancel 返回普通 JSON，不能按前缀匹配
+     */
+    private static final List<String> SSE_PATHS = List.of("/chat/gen/code", "/chat/gen/attach");
+
     @ExceptionHandler(BusinessException.class)
     public BaseResponse<?> businessExceptionHandler(BusinessException e) {
         log.error("BusinessException", e);
@@ -59,7 +65,7 @@ public class GlobalExceptionHandler {
         String accept = request.getHeader("Accept");
         String uri = request.getRequestURI();
         if ((accept != null && accept.contains("text/event-stream")) ||
-                uri.contains("/chat/gen/code")) {
+                SSE_PATHS.stream().anyMatch(uri::endsWith)) {
             try {
                 // 设置SSE响应头
                 response.setContentType("text/event-stream");
@@ -0,0 +1,428 @@
+package cn.iamwsll.aicode.manager;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONUtil;
+import cn.iamwsll.aicode.config.ChatHistoryWriteBehindProperties;
+import cn.iamwsll.aicode.mapper.ChatHistoryMapper;
+import cn.iamwsll.aicode.model.entity.ChatHistory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RList;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对话历史异步批量写入（write-behind）
+ * 1. 消息先放入有界内存队列，由后台线程攒批后用一条多行 INSERT 写入，请求线程和流式回调不再等待数据库
+ * 2. 连接失败、超时等可重试的异常、MySQL 变慢或队列已满时，消息转存到 Redis 列表，MySQL 恢复后由后台线程补写
+ *    数据本身写不进去（如内容超出字段长度）时逐条写入，仍然失败的行移到死信列表，不影响同批的其他消息，也不会无限重试
+ * 3. 读取某个应用的对话历史前只把该应用的消息刷盘，并合并仍转存在 Redis 中的消息（见 {@link #listSpilled}），
+ *    保证读到自己刚写入的消息；应用关闭时把剩余消息刷盘
+ * 主键和创建时间在入队时就确定，批量写入和补写都不会打乱消息顺序，补写重复时按主键去重
+ */
+@Slf4j
+@Component
+public class ChatHistoryWriteBuffer {
+
+    private static final String SPILL_KEY = "chat_history:spill";
+
+    private static final String SPILL_LOCK_KEY = "chat_history:spill:lock";
+
+    /**
+     * 无法写入数据库的消息，保留原始 JSON 供人工处理
+     */
+    private static final String DEAD_LETTER_KEY = "chat_history:dead_letter";
+
+    /**
+     * 检查 Redis 中是否有待补写消息的间隔
+     */
+    private static final long RECOVER_INTERVAL_MILLIS = 5000;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private ChatHistoryWriteBehindProperties chatHistoryWriteBehindProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private LinkedBlockingQueue<ChatHistory> queue;
+
+    /**
+     * 刷盘锁：后台线程和读前刷盘互斥，持有锁时队列里取出的消息一定已写入（或已转存）
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 插入失败或过慢时设置为此后 slowBackoffSeconds 秒，在此之前新消息直接转存到 Redis；
+     * 到期后新消息重新进入队列，插入或补写正常时立即清除
+     */
+    private volatile long mysqlSlowUntilMillis;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    private Counter spilledCounter;
+
+    private Counter deadLetterCounter;
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(chatHistoryWriteBehindProperties.getQueueCapacity());
+        Gauge.builder("chat.history.write.queue", queue, Collection::size)
+                .description("等待写入数据库的对话历史条数")
+                .register(meterRegistry);
+        spilledCounter = Counter.builder("chat.history.write.spilled")
+                .description("转存到 Redis 的对话历史条数")
+                .register(meterRegistry);
+        deadLetterCounter = Counter.builder("chat.history.write.dead.letter")
+                .description("无法写入数据库、移到死信列表的对话历史条数")
+                .register(meterRegistry);
+        running = true;
+        flusher = Thread.ofVirtual().name("chat-history-flusher").start(this::runFlusher);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(chatHistoryWriteBehindProperties.getShutdownTimeoutSeconds()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 后台线程已退出（或超时），剩余消息在当前线程刷盘，失败的转存到 Redis
+        flush();
+        log.info("对话历史写入队列已关闭");
+    }
+
+    /**
+     * 添加一条消息（不等待写入数据库）
+     *
+     * @param chatHistory 对话历史
+     */
+    public void add(ChatHistory chatHistory) {
+        LocalDateTime now = LocalDateTime.now();
+        chatHistory.setId(IdUtil.getSnowflakeNextId());
+        chatHistory.setCreateTime(now);
+        chatHistory.setUpdateTime(now);
+        chatHistory.setIsDelete(0);
+        if (!isMysqlSlow() && running && queue.offer(chatHistory)) {
+            return;
+        }
+        if (!spill(List.of(chatHistory))) {
+            // Redis 也不可用，只能同步写入，异常交给调用方
+            chatHistoryMapper.insert(chatHistory);
+        }
+    }
+
+    /**
+     * 把队列中的消息全部写入数据库，读取对话历史前调用
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<ChatHistory> batch = new ArrayList<>();
+            while (queue.drainTo(batch, chatHistoryWriteBehindProperties.getBatchSize()) > 0) {
+                writeBatch(batch);
+                batch = new ArrayList<>();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 只把某个应用在队列中的消息写入数据库，读取该应用的对话历史前调用，不替其他应用刷盘
+     *
+     * @param appId 应用ID
+     */
+    public void flush(Long appId) {
+        flushLock.lock();
+        try {
+            List<ChatHistory> pending = new ArrayList<>();
+            // 按队列顺序取出
+            queue.removeIf(chatHistory -> appId.equals(chatHistory.getAppId()) && pending.add(chatHistory));
+            int batchSize = chatHistoryWriteBehindProperties.getBatchSize();
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                writeBatch(pending.subList(from, Math.min(from + batchSize, pending.size())));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 某个应用转存在 Redis 中的消息，其中可能有已经补写到数据库、还未从列表移除的
+     * MySQL 正常时转存列表为空，只有一次 Redis 往返
+     *
+     * @param appId 应用ID
+     * @return 按转存顺序排列的消息，读取失败时返回空列表
+     */
+    public List<ChatHistory> listSpilled(Long appId) {
+        List<String> values;
+        try {
+            values = getSpillList().readAll();
+        } catch (Exception e) {
+            log.warn("读取转存的对话历史失败，appId: {}", appId, e);
+            return List.of();
+        }
+        List<ChatHistory> spilled = new ArrayList<>();
+        for (String value : values) {
+            try {
+                ChatHistory chatHistory = JSONUtil.toBean(value, ChatHistory.class);
+                if (appId.equals(chatHistory.getAppId())) {
+                    spilled.add(chatHistory);
+                }
+            } catch (Exception ignored) {
+                // 无法解析的由补写移到死信列表
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * 丢弃某个应用还未写入的消息，删除应用的对话历史前调用
+     *
+     * @param appId 应用ID
+     */
+    public void discard(Long appId) {
+        // 持有刷盘锁，等待正在写入的批次完成，避免删除后又插入
+        flushLock.lock();
+        try {
+            queue.removeIf(chatHistory -> appId.equals(chatHistory.getAppId()));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(chatHistoryWriteBehindProperties.getFlushIntervalMillis());
+        // 启动时先补写上次遗留的转存消息
+        long nextRecoverMillis = 0;
+        while (running) {
+            // 队列里积压不足一批时等待一个攒批周期
+            if (queue.size() < chatHistoryWriteBehindProperties.getBatchSize()) {
+                LockSupport.parkNanos(intervalNanos);
+            }
+            try {
+                flushOneBatch();
+                if (queue.isEmpty() && System.currentTimeMillis() >= nextRecoverMillis) {
+                    nextRecoverMillis = System.currentTimeMillis() + RECOVER_INTERVAL_MILLIS;
+                    recoverSpilled();
+                }
+            } catch (Exception e) {
+                log.error("对话历史刷盘异常", e);
+            }
+        }
+    }
+
+    private void flushOneBatch() {
+        flushLock.lock();
+        try {
+            List<ChatHistory> batch = new ArrayList<>();
+            if (queue.drainTo(batch, chatHistoryWriteBehindProperties.getBatchSize()) > 0) {
+                writeBatch(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 写入一批消息，可重试的异常转存到 Redis
+     */
+    private void writeBatch(List<ChatHistory> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            insertBatch(batch);
+        } catch (Exception e) {
+            // 逐条写入中途失败时，已写入的行补写时按主键去重
+            log.error("批量写入对话历史失败，转存到 Redis，条数: {}", batch.size(), e);
+            markMysqlSlow();
+            if (!spill(batch)) {
+                log.error("对话历史转存 Redis 失败，丢失 {} 条消息", batch.size());
+            }
+            return;
+        }
+        updateMysqlSlow(System.currentTimeMillis() - start, batch.size());
+    }
+
+    /**
+     * 批量插入，批次中有已存在的行或数据本身写不进去的行时改为逐条插入：
+     * 已存在的跳过，写不进去的移到死信列表，其余照常写入
+     *
+     * @throws RuntimeException 连接失败、超时等可重试的异常，调用方整批重试
+     */
+    private void insertBatch(List<ChatHistory> batch) {
+        try {
+            chatHistoryMapper.insertBatch(batch);
+            return;
+        } catch (RuntimeException e) {
+            if (isRetryable(e)) {
+                throw e;
+            }
+            if (!(e instanceof DuplicateKeyException)) {
+                log.warn("批量写入对话历史失败，改为逐条写入，条数: {}", batch.size(), e);
+            }
+        }
+        for (ChatHistory chatHistory : batch) {
+            try {
+                chatHistoryMapper.insert(chatHistory);
+            } catch (DuplicateKeyException ignored) {
+                // 上次补写后未来得及移除，已写入过
+            } catch (RuntimeException e) {
+                if (isRetryable(e)) {
+                    throw e;
+                }
+                log.error("对话历史无法写入数据库，移到死信列表，id: {}, appId: {}",
+                        chatHistory.getId(), chatHistory.getAppId(), e);
+                deadLetter(JSONUtil.toJsonStr(chatHistory));
+            }
+        }
+    }
+
+    /**
+     * 只有连接失败、超时、锁等待这类与数据本身无关的异常才值得重试；
+     * 不是数据库异常（例如没有经过 Spring 转换）的也按可重试处理，由死信兜底的只有确定是数据问题的
+     */
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException) {
+            return true;
+        }
+        if (ExceptionUtil.isCausedBy(e, SQLTransientException.class, SQLRecoverableException.class,
+                SQLNonTransientConnectionException.class)) {
+            return true;
+        }
+        return !(e instanceof DataAccessException);
+    }
+
+    private boolean isMysqlSlow() {
+        return System.currentTimeMillis() < mysqlSlowUntilMillis;
+    }
+
+    private void markMysqlSlow() {
+        mysqlSlowUntilMillis = System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(chatHistoryWriteBehindProperties.getSlowBackoffSeconds());
+    }
+
+    /**
+     * 按本次插入的耗时设置或清除 MySQL 变慢的标记
+     */
+    private void updateMysqlSlow(long cost, int size) {
+        if (cost > chatHistoryWriteBehindProperties.getSlowInsertMillis()) {
+            log.warn("写入对话历史耗时 {} ms，新消息先转存到 Redis，条数: {}", cost, size);
+            markMysqlSlow();
+        } else {
+            mysqlSlowUntilMillis = 0;
+        }
+    }
+
+    /**
+     * 移到死信列表
+     */
+    private void deadLetter(String value) {
+        try {
+            redissonClient.<String>getList(DEAD_LETTER_KEY, StringCodec.INSTANCE).add(value);
+            deadLetterCounter.increment();
+        } catch (Exception e) {
+            log.error("对话历史移到死信列表失败，丢失消息: {}", value, e);
+        }
+    }
+
+    /**
+     * 转存到 Redis 列表
+     *
+     * @return 是否转存成功
+     */
+    private boolean spill(List<ChatHistory> chatHistories) {
+        try {
+            List<String> values = chatHistories.stream().map(JSONUtil::toJsonStr).toList();
+            getSpillList().addAll(values);
+            spilledCounter.increment(values.size());
+            return true;
+        } catch (Exception e) {
+            log.error("对话历史转存 Redis 失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 把 Redis 中转存的消息补写到数据库，多实例时只有拿到锁的实例补写
+     */
+    private void recoverSpilled() {
+        RList<String> spillList = getSpillList();
+        if (spillList.isEmpty()) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(SPILL_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            int batchSize = chatHistoryWriteBehindProperties.getBatchSize();
+            List<String> values;
+            while (running && !(values = spillList.range(0, batchSize - 1)).isEmpty()) {
+                List<ChatHistory> batch = new ArrayList<>(values.size());
+                for (String value : values) {
+                    try {
+                        batch.add(JSONUtil.toBean(value, ChatHistory.class));
+                    } catch (Exception e) {
+                        log.error("转存的对话历史无法解析，移到死信列表", e);
+                        deadLetter(value);
+                    }
+                }
+                long start = System.currentTimeMillis();
+                if (!batch.isEmpty()) {
+                    insertBatch(batch);
+                }
+                updateMysqlSlow(System.currentTimeMillis() - start, batch.size());
+                // 写入（或移到死信列表）后再从列表头部移除，中途宕机最多重复补写，按主键去重
+                spillList.trim(values.size(), -1);
+                log.info("已补写 {} 条转存的对话历史", values.size());
+            }
+        } catch (Exception e) {
+            // 只有可重试的异常会走到这里，出错的批次还在列表头部
+            log.warn("补写转存的对话历史失败，稍后重试", e);
+            markMysqlSlow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RList<String> getSpillList() {
+        return redissonClient.getList(SPILL_KEY, StringCodec.INSTANCE);
+    }
+}
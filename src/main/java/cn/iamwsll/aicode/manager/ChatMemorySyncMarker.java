@@ -0,0 +1,85 @@
+package cn.iamwsll.aicode.manager;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 对话记忆的同步标记：Redis 中的记忆已经从对话历史加载过，之后的每条对话历史也都在记忆里
+ * 1. 从对话历史全量加载到记忆后设置
+ * 2. 正常的对话不需要更新：用户消息由 AI 服务加入记忆，AI 回复对应的内容在生成中已经写入记忆，新增对话历史不访问 Redis
+ * 3. 生成失败或被取消时，写入对话历史的回复不在记忆里，删除标记
+ * 4. 标记不存在（记忆已过期、升级前的记忆、加载失败、生成失败）时，下次创建 AI 服务时全量加载
+ * 因此标记存在就说明记忆已是最新，创建 AI 服务时不需要访问数据库
+ * 与记忆的键使用同一个 hash tag，过期时间与记忆相同；记忆每次写入都会续期，标记先过期时只是多一次全量加载
+ */
+@Slf4j
+@Component
+public class ChatMemorySyncMarker {
+
+    private static final String KEY_PREFIX = "chat_memory:{";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 与对话记忆的过期时间相同
+     */
+    @Value("${spring.data.redis.ttl:0}")
+    private long ttlSeconds;
+
+    /**
+     * 记忆是否已同步
+     *
+     * @param appId 应用 ID
+     * @return 标记存在时返回 true，不存在或读取失败时返回 false
+     */
+    public boolean isPresent(Long appId) {
+        try {
+            return getBucket(appId).isExists();
+        } catch (RuntimeException e) {
+            log.warn("读取对话记忆同步标记失败，appId: {}", appId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 设置标记，在全量加载历史到记忆后调用
+     *
+     * @param appId 应用 ID
+     */
+    public void mark(Long appId) {
+        try {
+            if (ttlSeconds > 0) {
+                getBucket(appId).set("1", Duration.ofSeconds(ttlSeconds));
+            } else {
+                getBucket(appId).set("1");
+            }
+        } catch (RuntimeException e) {
+            log.warn("设置对话记忆同步标记失败，appId: {}", appId, e);
+        }
+    }
+
+    /**
+     * 删除标记，下次创建 AI 服务时全量加载
+     *
+     * @param appId 应用 ID
+     */
+    public void delete(Long appId) {
+        try {
+            getBucket(appId).delete();
+        } catch (RuntimeException e) {
+            log.warn("删除对话记忆同步标记失败，appId: {}", appId, e);
+        }
+    }
+
+    private RBucket<String> getBucket(Long appId) {
+        return redissonClient.getBucket(KEY_PREFIX + appId + "}:synced", StringCodec.INSTANCE);
+    }
+}
@@ -0,0 +1,318 @@
+package cn.iamwsll.aicode.manager;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.iamwsll.aicode.config.GenerationUsageProperties;
+import cn.iamwsll.aicode.mapper.GenerationUsageMapper;
+import cn.iamwsll.aicode.model.entity.GenerationUsage;
+import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 生成用量计量
+ * 1. 每次生成创建一个 Tracker，逐轮累加模型调用的输入、输出、缓存命中 token 数和工具调用轮数，生成结束时汇总
+ * 2. 汇总结果导出为 Micrometer 指标（按代码生成类型打标签），用于观察成本和延迟的整体趋势
+ * 3. 同时放入有界内存队列，由后台线程攒批写入 generation_usage 表，按应用、用户统计用量
+ * 4. 对话记忆按 token 预算控制时，记录请求前本地估算的输入 token 数，与模型返回的实际值对比，用于校准估算比例
+ * 用量表只用于统计，写入失败或队列已满时丢弃并计数，不影响生成
+ */
+@Slf4j
+@Component
+public class GenerationUsageRecorder {
+
+    @Resource
+    private GenerationUsageMapper generationUsageMapper;
+
+    @Resource
+    private GenerationUsageProperties generationUsageProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private LinkedBlockingQueue<GenerationUsage> queue;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    private Counter droppedCounter;
+
+    /**
+     * 每个应用最近一次请求前估算的输入 token 数，收到该应用的模型响应时取出对比
+     */
+    private final Map<Long, Integer> estimatedInputTokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(generationUsageProperties.getQueueCapacity());
+        Gauge.builder("ai.generation.usage.write.queue", queue, Collection::size)
+                .description("等待写入数据库的生成用量条数")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("ai.generation.usage.write.dropped")
+                .description("队列已满或写入失败而丢弃的生成用量条数")
+                .register(meterRegistry);
+        running = true;
+        flusher = Thread.ofVirtual().name("generation-usage-flusher").start(this::runFlusher);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(generationUsageProperties.getShutdownTimeoutSeconds()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("生成用量写入队列已关闭");
+    }
+
+    /**
+     * 开始计量一次生成，生成结束时调用 {@link Tracker#finish(SignalType)}
+     *
+     * @param appId           应用ID
+     * @param userId          发起生成的用户ID，工作流调用时为空
+     * @param codeGenTypeEnum 代码生成类型
+     * @return 本次生成的计量器
+     */
+    public Tracker start(Long appId, Long userId, CodeGenTypeEnum codeGenTypeEnum) {
+        return new Tracker(appId, userId, codeGenTypeEnum);
+    }
+
+    /**
+     * 记录一次模型请求前本地估算的输入 token 数
+     *
+     * @param appId           应用ID
+     * @param estimatedTokens 估算的输入 token 数
+     */
+    public void recordEstimate(Long appId, int estimatedTokens) {
+        estimatedInputTokens.put(appId, estimatedTokens);
+    }
+
+    /**
+     * 把队列中的用量全部写入数据库
+     */
+    public void flush() {
+        List<GenerationUsage> batch = new ArrayList<>();
+        while (queue.drainTo(batch, generationUsageProperties.getBatchSize()) > 0) {
+            writeBatch(batch);
+            batch = new ArrayList<>();
+        }
+    }
+
+    private void record(GenerationUsage usage) {
+        String codeGenType = usage.getCodeGenType();
+        String model = ObjUtil.defaultIfNull(usage.getModelName(), "unknown");
+        countTokens(codeGenType, model, "input", usage.getInputTokens());
+        countTokens(codeGenType, model, "output", usage.getOutputTokens());
+        countTokens(codeGenType, model, "cached", usage.getCachedTokens());
+        Timer.builder("ai.generation.duration")
+                .description("一次生成的耗时（含全部工具调用轮次）")
+                .tags("codeGenType", codeGenType, "status", usage.getStatus())
+                .register(meterRegistry)
+                .record(Duration.ofMillis(usage.getDurationMillis()));
+        if (usage.getInputTokens() > 0) {
+            // 服务端前缀缓存命中率，用于观察对话记忆的前缀是否稳定
+            DistributionSummary.builder("ai.generation.prompt.cache.ratio")
+                    .description("命中前缀缓存的输入 token 占比")
+                    .tag("codeGenType", codeGenType)
+                    .register(meterRegistry)
+                    .record((double) usage.getCachedTokens() / usage.getInputTokens());
+        }
+        DistributionSummary.builder("ai.generation.tool.rounds")
+                .description("一次生成的工具调用轮数")
+                .tag("codeGenType", codeGenType)
+                .register(meterRegistry)
+                .record(usage.getToolRounds());
+        if (!generationUsageProperties.isPersist()) {
+            return;
+        }
+        if (!running || !queue.offer(usage)) {
+            droppedCounter.increment();
+            log.warn("生成用量队列已满，丢弃 appId: {} 的用量记录", usage.getAppId());
+        }
+    }
+
+    private void countTokens(String codeGenType, String model, String type, long amount) {
+        if (amount <= 0) {
+            return;
+        }
+        Counter.builder("ai.generation.tokens")
+                .description("生成消耗的 token 数")
+                .tags("codeGenType", codeGenType, "model", model, "type", type)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    private void recordEstimateAccuracy(String codeGenType, int estimated, int actual) {
+        DistributionSummary.builder("ai.context.tokens.estimated")
+                .description("请求前本地估算的输入 token 数")
+                .tag("codeGenType", codeGenType)
+                .register(meterRegistry)
+                .record(estimated);
+        DistributionSummary.builder("ai.context.tokens.actual")
+                .description("模型返回的实际输入 token 数")
+                .tag("codeGenType", codeGenType)
+                .register(meterRegistry)
+                .record(actual);
+        if (estimated > 0) {
+            DistributionSummary.builder("ai.context.tokens.estimate.ratio")
+                    .description("实际输入 token 数与估算值的比例，大于 1 说明估算偏小")
+                    .tag("codeGenType", codeGenType)
+                    .register(meterRegistry)
+                    .record((double) actual / estimated);
+        }
+    }
+
+    private void runFlusher() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(generationUsageProperties.getFlushIntervalMillis());
+        while (running) {
+            if (queue.size() < generationUsageProperties.getBatchSize()) {
+                LockSupport.parkNanos(intervalNanos);
+            }
+            try {
+                List<GenerationUsage> batch = new ArrayList<>();
+                if (queue.drainTo(batch, generationUsageProperties.getBatchSize()) > 0) {
+                    writeBatch(batch);
+                }
+            } catch (Exception e) {
+                log.error("生成用量刷盘异常", e);
+            }
+        }
+    }
+
+    private void writeBatch(List<GenerationUsage> batch) {
+        try {
+            generationUsageMapper.insertBatch(batch);
+        } catch (Exception e) {
+            droppedCounter.increment(batch.size());
+            log.error("批量写入生成用量失败，丢弃 {} 条", batch.size(), e);
+        }
+    }
+
+    /**
+     * 一次生成的计量器
+     * 模型回调和流结束可能在不同线程，累加和汇总都在对象锁内进行
+     */
+    public final class Tracker {
+
+        private final Long appId;
+
+        private final Long userId;
+
+        private final CodeGenTypeEnum codeGenTypeEnum;
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private long inputTokens;
+
+        private long outputTokens;
+
+        private long cachedTokens;
+
+        private int toolRounds;
+
+        private String modelName;
+
+        private Tracker(Long appId, Long userId, CodeGenTypeEnum codeGenTypeEnum) {
+            this.appId = appId;
+            this.userId = userId;
+            this.codeGenTypeEnum = codeGenTypeEnum;
+        }
+
+        /**
+         * 累加一次模型调用，响应的用量只包含这一次调用
+         *
+         * @param response 模型响应
+         */
+        public synchronized void onModelResponse(ChatResponse response) {
+            if (response.aiMessage() != null && response.aiMessage().hasToolExecutionRequests()) {
+                toolRounds++;
+            }
+            if (response.modelName() != null) {
+                modelName = response.modelName();
+            }
+            Integer estimated = appId == null ? null : estimatedInputTokens.remove(appId);
+            TokenUsage tokenUsage = response.tokenUsage();
+            if (tokenUsage == null) {
+                return;
+            }
+            if (estimated != null && tokenUsage.inputTokenCount() != null) {
+                recordEstimateAccuracy(codeGenTypeEnum.getValue(), estimated, tokenUsage.inputTokenCount());
+            }
+            inputTokens += ObjUtil.defaultIfNull(tokenUsage.inputTokenCount(), 0);
+            outputTokens += ObjUtil.defaultIfNull(tokenUsage.outputTokenCount(), 0);
+            // OpenAI 兼容接口在 prompt_tokens_details 中返回命中前缀缓存的 token 数
+            if (tokenUsage instanceof OpenAiTokenUsage openAiTokenUsage
+                    && openAiTokenUsage.inputTokensDetails() != null) {
+                cachedTokens += ObjUtil.defaultIfNull(openAiTokenUsage.inputTokensDetails().cachedTokens(), 0);
+            }
+        }
+
+        /**
+         * 生成结束（完成、出错或取消），汇总并记录，只有第一次调用生效
+         *
+         * @param signalType 结束信号
+         */
+        public void finish(SignalType signalType) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            String status = switch (signalType) {
+                case ON_COMPLETE -> "success";
+                case ON_ERROR -> "error";
+                default -> "cancelled";
+            };
+            GenerationUsage usage;
+            synchronized (this) {
+                usage = GenerationUsage.builder()
+                        .id(IdUtil.getSnowflakeNextId())
+                        .appId(appId)
+                        .userId(userId)
+                        .codeGenType(codeGenTypeEnum.getValue())
+                        .modelName(modelName)
+                        .inputTokens(inputTokens)
+                        .outputTokens(outputTokens)
+                        .cachedTokens(cachedTokens)
+                        .toolRounds(toolRounds)
+                        .durationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos))
+                        .status(status)
+                        .createTime(LocalDateTime.now())
+                        .build();
+            }
+            try {
+                record(usage);
+            } catch (Exception e) {
+                log.error("记录生成用量失败，appId: {}", appId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package cn.iamwsll.aicode.mapper;
+
+import com.mybatisflex.core.BaseMapper;
+import cn.iamwsll.aicode.model.entity.GenerationUsage;
+
+/**
+ * 生成用量 映射层。
+ *
+ * @author <a href="https://github.com/iamwsll">iamwsll</a>
+ */
+public interface GenerationUsageMapper extends BaseMapper<GenerationUsage> {
+
+}
@@ -0,0 +1,18 @@
+package cn.iamwsll.aicode.model.dto.app;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+@Data
+public class AppGenCancelRequest implements Serializable {
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,105 @@
+package cn.iamwsll.aicode.model.entity;
+
+import com.mybatisflex.annotation.Column;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import java.io.Serial;
+
+import com.mybatisflex.core.keygen.KeyGenerators;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 生成用量 实体类。
+ * 每次生成（含多轮工具调用）一条记录，只追加不修改
+ *
+ * @author <a href="https://github.com/iamwsll">iamwsll</a>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("generation_usage")
+public class GenerationUsage implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * id
+     */
+    @Id(keyType = KeyType.Generator,value = KeyGenerators.snowFlakeId)
+    private Long id;
+
+    /**
+     * 应用id
+     */
+    @Column("appId")
+    private Long appId;
+
+    /**
+     * 发起生成的用户id
+     */
+    @Column("userId")
+    private Long userId;
+
+    /**
+     * 代码生成类型
+     */
+    @Column("codeGenType")
+    private String codeGenType;
+
+    /**
+     * 模型名称
+     */
+    @Column("modelName")
+    private String modelName;
+
+    /**
+     * 输入 token 数
+     */
+    @Column("inputTokens")
+    private Long inputTokens;
+
+    /**
+     * 输出 token 数
+     */
+    @Column("outputTokens")
+    private Long outputTokens;
+
+    /**
+     * 命中缓存的输入 token 数
+     */
+    @Column("cachedTokens")
+    private Long cachedTokens;
+
+    /**
+     * 工具调用轮数
+     */
+    @Column("toolRounds")
+    private Integer toolRounds;
+
+    /**
+     * 生成耗时（毫秒）
+     */
+    @Column("durationMillis")
+    private Long durationMillis;
+
+    /**
+     * success/error/cancelled
+     */
+    private String status;
+
+    /**
+     * 创建时间
+     */
+    @Column("createTime")
+    private LocalDateTime createTime;
+
+}
@@ -0,0 +1,41 @@
+package cn.iamwsll.aicode.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 流式输出积压时的处理策略
+ * 两种策略都会合并积压的文本、且从不丢弃工具事件，区别在于积压超过阈值之后
+ */
+@Getter
+public enum StreamOverflowPolicyEnum {
+
+    DEGRADE("降级为仅显示进度", "degrade"),
+    DISCONNECT("断开慢客户端", "disconnect");
+
+    private final String text;
+    private final String value;
+
+    StreamOverflowPolicyEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static StreamOverflowPolicyEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (StreamOverflowPolicyEnum anEnum : StreamOverflowPolicyEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
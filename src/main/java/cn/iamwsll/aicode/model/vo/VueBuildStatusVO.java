@@ -0,0 +1,61 @@
+package cn.iamwsll.aicode.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Vue 项目构建状态
+ */
+@Data
+public class VueBuildStatusVO implements Serializable {
+
+    /**
+     * 构建任务 id
+     */
+    private String buildId;
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    /**
+     * 构建状态（queued / installing / building / done / failed）
+     */
+    private String status;
+
+    /**
+     * 入队时间（毫秒时间戳）
+     */
+    private Long queuedTime;
+
+    /**
+     * 排队耗时（毫秒）
+     */
+    private Long queueMillis;
+
+    /**
+     * 安装依赖耗时（毫秒），远程构建时安装与构建合并计入构建耗时
+     */
+    private Long installMillis;
+
+    /**
+     * 构建耗时（毫秒）
+     */
+    private Long buildMillis;
+
+    /**
+     * 总耗时（毫秒），构建结束后才有
+     */
+    private Long totalMillis;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -35,4 +35,10 @@ public @interface RateLimit {
      * 限流提示信息
      */
     String message() default "请求过于频繁，请稍后再试";
+
+    /**
+     * 带有 Last-Event-ID 请求头的 SSE 断线重连请求是否跳过限流
+     * 重连只是续传已有的生成，不会产生新的 AI 调用
+     */
+    boolean skipOnResume() default false;
 }
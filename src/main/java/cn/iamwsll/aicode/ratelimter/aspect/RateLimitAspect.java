@@ -35,6 +35,9 @@ public class RateLimitAspect {
 
     @Before("@annotation(rateLimit)")
     public void doBefore(JoinPoint point, RateLimit rateLimit) {
+        if (rateLimit.skipOnResume() && isResumeRequest()) {
+            return;
+        }
         String key = generateRateLimitKey(point, rateLimit);
         // 使用Redisson的分布式限流器
         RRateLimiter rateLimiter = redissonClient.getRateLimiter(key);
@@ -90,6 +93,18 @@ public class RateLimitAspect {
         return keyBuilder.toString();
     }
 
+    /**
+     * 是否为 SSE 断线重连请求
+     */
+    private boolean isResumeRequest() {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return false;
+        }
+        String lastEventId = attributes.getRequest().getHeader("Last-Event-ID");
+        return lastEventId != null && !lastEventId.isEmpty();
+    }
+
     private String getClientIP() {
         ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
         if (attributes == null) {
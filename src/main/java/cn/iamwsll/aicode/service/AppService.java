@@ -1,10 +1,12 @@
 package cn.iamwsll.aicode.service;
 
+import cn.iamwsll.aicode.core.stream.StreamEvent;
 import cn.iamwsll.aicode.model.dto.app.AppAddRequest;
 import cn.iamwsll.aicode.model.dto.app.AppQueryRequest;
 import cn.iamwsll.aicode.model.entity.App;
 import cn.iamwsll.aicode.model.entity.User;
 import cn.iamwsll.aicode.model.vo.AppVO;
+import cn.iamwsll.aicode.model.vo.VueBuildStatusVO;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
 import reactor.core.publisher.Flux;
@@ -46,7 +48,54 @@ public interface AppService extends IService<App> {
      * @param loginUser
      * @return
      */
-    Flux<String> chatToGenCode(Long appId, String message, User loginUser);
+    Flux<StreamEvent> chatToGenCode(Long appId, String message, User loginUser);
+
+    /**
+     * 在后台预先创建应用的 AI 代码生成服务实例，发送消息时不用等待创建
+     * @param app 应用
+     */
+    void prewarmCodeGen(App app);
+
+    /**
+     * 接入应用进行中（或刚结束）的代码生成，从头回放，不会重新调用 AI
+     * @param appId 应用 ID
+     * @param loginUser 登录用户（应用创建者或管理员）
+     * @return 生成事件流
+     */
+    Flux<StreamEvent> attachGenCode(Long appId, User loginUser);
+
+    /**
+     * 取消应用进行中的代码生成
+     * @param appId 应用 ID
+     * @param loginUser 登录用户（应用创建者或管理员）
+     * @return 是否有进行中的生成被取消
+     */
+    boolean cancelGenCode(Long appId, User loginUser);
+
+    /**
+     * 断线重连后续传代码生成的输出，不会重新调用 AI
+     * @param appId 应用 ID
+     * @param lastEventId 客户端最后收到的 SSE 事件 id（"生成ID:序号"）
+     * @param loginUser 登录用户
+     * @return 从 lastEventId 之后开始的事件流
+     */
+    Flux<StreamEvent> resumeGenCode(Long appId, String lastEventId, User loginUser);
+
+    /**
+     * 获取应用最近一次的 Vue 项目构建状态
+     * @param appId 应用 ID
+     * @param loginUser 登录用户（应用创建者或管理员）
+     * @return 构建状态，没有构建任务时返回 null
+     */
+    VueBuildStatusVO getBuildStatus(Long appId, User loginUser);
+
+    /**
+     * 订阅应用最近一次的 Vue 项目构建状态，构建结束时流结束
+     * @param appId 应用 ID
+     * @param loginUser 登录用户（应用创建者或管理员）
+     * @return 构建状态流
+     */
+    Flux<VueBuildStatusVO> watchBuildStatus(Long appId, User loginUser);
 
     /**
      * 部署应用 的方法
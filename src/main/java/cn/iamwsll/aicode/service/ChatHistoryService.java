@@ -6,7 +6,7 @@ import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
 import cn.iamwsll.aicode.model.entity.ChatHistory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 
 import java.time.LocalDateTime;
 
@@ -19,6 +19,7 @@ public interface ChatHistoryService extends IService<ChatHistory> {
 
     /**
      * 添加聊天消息
+     * 开启异步批量写入时只做校验并入队，返回时消息不一定已写入数据库
      * @param appId
      * @param message
      * @param messageType
@@ -27,6 +28,13 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      */
     boolean addChatMessage(Long appId, String message, String messageType, Long userId);
 
+    /**
+     * 标记对话记忆与对话历史不一致（生成失败或被取消时，写入对话历史的回复不在记忆里）
+     * 下次创建 AI 服务时从对话历史全量加载记忆
+     * @param appId
+     */
+    void markChatMemoryStale(Long appId);
+
     /**
      * 根据应用ID删除聊天记录
      * @param appId
@@ -56,10 +64,26 @@ public interface ChatHistoryService extends IService<ChatHistory> {
 
     /**
      * 加载聊天历史到内存
+     * 加载起点（从最早一条消息算起的序号）按 alignment 对齐，多次加载时起点只会按块前移，加载出的前缀保持不变
+     * 最新一条是用户消息时不加载（它是正在发送的消息，由 AI 服务自己加入记忆）
      * @param appId
      * @param chatMemory
      * @param maxCount
+     * @param alignment 加载起点的对齐粒度，为 1 时加载最近的 maxCount 条
      * @return 加载的消息数量
      */
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount, int alignment);
+
+    /**
+     * 同步聊天历史到记忆
+     * 全量加载后设置同步标记，正常的对话都会进入记忆，标记存在时 Redis 中的记忆就是最新的，直接沿用，不访问数据库；
+     * 记忆或标记不存在（已过期、加载失败、生成失败或被取消）时只刷该应用的消息并全量加载（同 loadChatHistoryToMemory）
+     * @param appId
+     * @param chatMemory
+     * @param memoryPresent Redis 中是否已有该应用的记忆
+     * @param maxCount
+     * @param alignment 全量加载时加载起点的对齐粒度
+     * @return 加入记忆的消息数量
+     */
+    int syncChatHistoryToMemory(Long appId, ChatMemory chatMemory, boolean memoryPresent, int maxCount, int alignment);
 }
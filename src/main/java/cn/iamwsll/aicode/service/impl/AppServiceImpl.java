@@ -6,11 +6,20 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.iamwsll.aicode.ai.AiCodeGenTypeRoutingService;
+import cn.iamwsll.aicode.ai.AiCodeGeneratorServiceFactory;
 import cn.iamwsll.aicode.ai.AiCodeGenTypeRoutingServiceFactory;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
 import cn.iamwsll.aicode.constant.AppConstant;
+import cn.iamwsll.aicode.constant.UserConstant;
 import cn.iamwsll.aicode.core.AiCodeGeneratorFacade;
-import cn.iamwsll.aicode.core.builder.VueProjectBuilder;
+import cn.iamwsll.aicode.core.builder.VueBuildJob;
+import cn.iamwsll.aicode.core.builder.VueBuildQueue;
 import cn.iamwsll.aicode.core.handler.StreamHandlerExecutor;
+import cn.iamwsll.aicode.core.session.GenerationSession;
+import cn.iamwsll.aicode.core.session.GenerationSessionManager;
+import cn.iamwsll.aicode.core.stream.ResponseBuffer;
+import cn.iamwsll.aicode.core.stream.ResponseBufferFactory;
+import cn.iamwsll.aicode.core.stream.StreamEvent;
 import cn.iamwsll.aicode.exception.BusinessException;
 import cn.iamwsll.aicode.exception.ErrorCode;
 import cn.iamwsll.aicode.exception.ThrowUtils;
@@ -22,6 +31,7 @@ import cn.iamwsll.aicode.model.entity.User;
 import cn.iamwsll.aicode.model.enums.ChatHistoryMessageTypeEnum;
 import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
 import cn.iamwsll.aicode.model.vo.AppVO;
+import cn.iamwsll.aicode.model.vo.VueBuildStatusVO;
 import cn.iamwsll.aicode.model.vo.UserVO;
 import cn.iamwsll.aicode.service.AppService;
 import cn.iamwsll.aicode.service.ChatHistoryService;
@@ -61,6 +71,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private AiCodeGeneratorFacade aiCodeGeneratorFacade;
 
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
     @Resource
     private ChatHistoryService chatHistoryService;
 
@@ -68,7 +81,13 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     private StreamHandlerExecutor streamHandlerExecutor;
 
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private GenerationSessionManager generationSessionManager;
+
+    @Resource
+    private ResponseBufferFactory responseBufferFactory;
+
+    @Resource
+    private VueBuildQueue vueBuildQueue;
 
     @Resource
     private ScreenshotServiceImpl screenshotService;
@@ -141,7 +160,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     }
 
     @Override
-    public Flux<String> chatToGenCode(Long appId, String message, User loginUser) {
+    public Flux<StreamEvent> chatToGenCode(Long appId, String message, User loginUser) {
         // 1. 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
@@ -158,12 +177,92 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型");
         }
-        // 5. 通过校验后，添加用户消息到对话历史
-        chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        // 6. 调用 AI 生成代码（流式）
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
-        // 7. 收集AI响应内容并在完成后记录到对话历史
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum);
+        // 同一个应用同时只允许一个生成，其他客户端通过 attach 接入；先占用会话，占用失败时不会留下用户消息
+        GenerationSession session = generationSessionManager.reserve(appId, loginUser.getId(), codeGenTypeEnum);
+        ResponseBuffer responseBuffer = null;
+        try {
+            // 5. 占用成功后，添加用户消息到对话历史
+            chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
+            // 完整响应只保存在这一个缓冲里，代码保存和对话历史共用，各自持有引用，都结束后释放
+            responseBuffer = responseBufferFactory.create();
+            // 6. 调用 AI 生成代码（流式）
+            Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId, loginUser.getId(), responseBuffer);
+            // 7. 收集AI响应内容并在完成后记录到对话历史
+            Flux<StreamEvent> eventFlux = streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum, responseBuffer);
+            // 8. 由生成会话订阅，客户端断开不影响生成，重连时可以续传
+            generationSessionManager.start(session, eventFlux);
+        } catch (RuntimeException e) {
+            generationSessionManager.abandon(session, e);
+            throw e;
+        } finally {
+            if (responseBuffer != null) {
+                responseBuffer.release();
+            }
+        }
+        return generationSessionManager.attach(session, 0);
+    }
+
+    @Override
+    public void prewarmCodeGen(App app) {
+        CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+        if (codeGenTypeEnum == null) {
+            return;
+        }
+        aiCodeGeneratorServiceFactory.prewarm(app.getId(), codeGenTypeEnum);
+    }
+
+    @Override
+    public Flux<StreamEvent> attachGenCode(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        return generationSessionManager.attachByApp(appId, loginUser);
+    }
+
+    @Override
+    public boolean cancelGenCode(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        return generationSessionManager.cancelByApp(appId, loginUser);
+    }
+
+    @Override
+    public Flux<StreamEvent> resumeGenCode(Long appId, String lastEventId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        // Last-Event-ID 格式为 "生成ID:序号"
+        int separator = StrUtil.isBlank(lastEventId) ? -1 : lastEventId.lastIndexOf(':');
+        ThrowUtils.throwIf(separator <= 0, ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误");
+        String generationId = lastEventId.substring(0, separator);
+        long afterSeq;
+        try {
+            afterSeq = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误");
+        }
+        return generationSessionManager.resume(generationId, afterSeq, appId, loginUser);
+    }
+
+    @Override
+    public VueBuildStatusVO getBuildStatus(Long appId, User loginUser) {
+        VueBuildJob job = getBuildJob(appId, loginUser);
+        return job == null ? null : job.toVO();
+    }
+
+    @Override
+    public Flux<VueBuildStatusVO> watchBuildStatus(Long appId, User loginUser) {
+        VueBuildJob job = getBuildJob(appId, loginUser);
+        ThrowUtils.throwIf(job == null, ErrorCode.NOT_FOUND_ERROR, "该应用当前没有构建任务");
+        return job.statusFlux();
+    }
+
+    /**
+     * 获取应用最近一次的构建任务，仅本人或管理员可以查看
+     */
+    private VueBuildJob getBuildJob(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        App app = this.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        if (!app.getUserId().equals(loginUser.getId()) && !UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限查看该应用的构建状态");
+        }
+        return vueBuildQueue.getLatestJob(appId);
     }
 
     @Override
@@ -196,8 +295,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 7. Vue 项目特殊处理：执行构建.这里用户已经点了部署了,我们就不要异步了.
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
-            // Vue 项目需要构建
-            boolean buildSuccess = vueProjectBuilder.buildProject(sourceDirPath);
+            // Vue 项目需要构建，经过构建队列，避免与生成后的自动构建同时操作同一个目录
+            boolean buildSuccess = vueBuildQueue.enqueue(appId, sourceDirPath).getResult().join();
             ThrowUtils.throwIf(!buildSuccess, ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败，请检查代码和依赖");
             // 检查 dist 目录是否存在
             File distDir = new File(sourceDirPath, "dist");
@@ -2,9 +2,12 @@ package cn.iamwsll.aicode.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.iamwsll.aicode.config.ChatHistoryWriteBehindProperties;
 import cn.iamwsll.aicode.constant.UserConstant;
 import cn.iamwsll.aicode.exception.ErrorCode;
 import cn.iamwsll.aicode.exception.ThrowUtils;
+import cn.iamwsll.aicode.manager.ChatHistoryWriteBuffer;
+import cn.iamwsll.aicode.manager.ChatMemorySyncMarker;
 import cn.iamwsll.aicode.mapper.ChatHistoryMapper;
 import cn.iamwsll.aicode.model.dto.chathistory.ChatHistoryQueryRequest;
 import cn.iamwsll.aicode.model.entity.App;
@@ -17,14 +20,18 @@ import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 对话历史 服务层实现。
@@ -38,6 +45,15 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Lazy
     private AppServiceImpl appService;
 
+    @Resource
+    private ChatHistoryWriteBuffer chatHistoryWriteBuffer;
+
+    @Resource
+    private ChatHistoryWriteBehindProperties chatHistoryWriteBehindProperties;
+
+    @Resource
+    private ChatMemorySyncMarker chatMemorySyncMarker;
+
     @Override
     public boolean addChatMessage(Long appId, String message, String messageType, Long userId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
@@ -53,12 +69,25 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
                 .messageType(messageType)
                 .userId(userId)
                 .build();
+        if (chatHistoryWriteBehindProperties.isEnabled()) {
+            // 异步批量写入，不阻塞请求线程和流式回调
+            chatHistoryWriteBuffer.add(chatHistory);
+            return true;
+        }
         return this.save(chatHistory);
     }
 
+    @Override
+    public void markChatMemoryStale(Long appId) {
+        chatMemorySyncMarker.delete(appId);
+    }
+
     @Override
     public boolean deleteByAppId(Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        // 丢弃还未写入的消息，避免删除后又被插入
+        chatHistoryWriteBuffer.discard(appId);
+        chatMemorySyncMarker.delete(appId);
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq("appId", appId);
         return this.remove(queryWrapper);
@@ -117,49 +146,167 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
         boolean isCreator = app.getUserId().equals(loginUser.getId());
         ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+        // 先把该应用还未写入的消息刷盘，保证能看到刚发送的消息
+        chatHistoryWriteBuffer.flush(appId);
         // 构建查询条件
         ChatHistoryQueryRequest queryRequest = new ChatHistoryQueryRequest();
         queryRequest.setAppId(appId);
         queryRequest.setLastCreateTime(lastCreateTime);
         QueryWrapper queryWrapper = this.getQueryWrapper(queryRequest);
         // 查询数据
-        return this.page(Page.of(1, pageSize), queryWrapper);
+        Page<ChatHistory> page = this.page(Page.of(1, pageSize), queryWrapper);
+        // MySQL 异常期间转存到 Redis 的消息还不在数据库里，合并到这一页
+        // 与数据库查询使用同一个游标条件，总数也只加上合并进来的这部分
+        List<ChatHistory> candidates = listUnrecovered(appId).stream()
+                .filter(chatHistory -> lastCreateTime == null || chatHistory.getCreateTime().isBefore(lastCreateTime))
+                .toList();
+        if (!candidates.isEmpty()) {
+            List<ChatHistory> merged = merge(page.getRecords(), candidates).reversed();
+            page.setRecords(new ArrayList<>(merged.subList(0, Math.min(pageSize, merged.size()))));
+            page.setTotalRow(page.getTotalRow() + candidates.size());
+        }
+        return page;
+    }
+
+    @Override
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount, int alignment) {
+        try {
+            // 先刷盘，否则最新的用户消息可能还在队列里，下面排除的就不是它了
+            chatHistoryWriteBuffer.flush(appId);
+            return reloadChatHistory(appId, chatMemory, countByAppId(appId), listUnrecovered(appId),
+                    maxCount, alignment, true);
+        } catch (Exception e) {
+            log.error("加载历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
+            // 加载失败不影响系统运行，只是没有历史上下文；删除同步标记，下次重新全量加载
+            chatMemorySyncMarker.delete(appId);
+            return 0;
+        }
     }
 
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int syncChatHistoryToMemory(Long appId, ChatMemory chatMemory, boolean memoryPresent, int maxCount, int alignment) {
         try {
-            // 直接构造查询条件，起始点为 1 而不是 0，用于排除最新的用户消息
-            QueryWrapper queryWrapper = QueryWrapper.create()
-                    .eq(ChatHistory::getAppId, appId)
-                    .orderBy(ChatHistory::getCreateTime, false)
-                    .limit(1, maxCount);
-            List<ChatHistory> historyList = this.list(queryWrapper);
-            if (CollUtil.isEmpty(historyList)) {
+            // 同步标记存在就说明记忆包含了全部对话历史（包括还在队列里或转存在 Redis 中的），直接沿用，不刷盘也不查询数据库
+            if (memoryPresent && chatMemorySyncMarker.isPresent(appId)) {
+                log.info("appId: {} 的对话记忆已是最新，沿用 Redis 中的记忆", appId);
                 return 0;
             }
-            // 反转列表，确保按时间正序（老的在前，新的在后）
-            historyList = historyList.reversed();
-            // 按时间顺序添加到记忆中
-            int loadedCount = 0;
+            chatHistoryWriteBuffer.flush(appId);
+            return reloadChatHistory(appId, chatMemory, countByAppId(appId), listUnrecovered(appId),
+                    maxCount, alignment, memoryPresent);
+        } catch (Exception e) {
+            log.error("同步历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
+            // 可能只加载了一部分，删除同步标记，下次重新全量加载
+            chatMemorySyncMarker.delete(appId);
+            return 0;
+        }
+    }
+
+    /**
+     * 全量加载最近的历史消息到记忆，完成后设置同步标记
+     *
+     * @param persistedCount 数据库中的历史消息条数
+     * @param unrecovered    转存在 Redis、还未补写到数据库的消息
+     * @param clearMemory    是否先清空记忆（记忆中已有消息时）
+     */
+    private int reloadChatHistory(Long appId, ChatMemory chatMemory, long persistedCount, List<ChatHistory> unrecovered,
+                                  int maxCount, int alignment, boolean clearMemory) {
+        long historyCount = persistedCount + unrecovered.size();
+        List<ChatHistory> historyList = new ArrayList<>();
+        if (historyCount > 0) {
+            // 加载起点按 alignment 向后对齐：新消息不足一块时起点不变，加载出的前缀与上次相同
+            long start = 0;
+            if (historyCount > maxCount) {
+                start = (historyCount - maxCount + alignment - 1) / alignment * alignment;
+            }
+            long rows = historyCount - start;
+            // 合并后的最后 rows 条一定在数据库的最后 rows 条和未补写的消息之中
+            long persistedRows = Math.min(rows, persistedCount);
+            historyList = listByAppIdInOrder(appId, persistedCount - persistedRows, persistedRows);
+            if (!unrecovered.isEmpty()) {
+                List<ChatHistory> merged = merge(historyList, unrecovered);
+                historyList = new ArrayList<>(merged.subList((int) (merged.size() - rows), merged.size()));
+            }
+        }
+        if (clearMemory) {
             // 先清理历史缓存，防止重复加载
             chatMemory.clear();
-            for (ChatHistory history : historyList) {
-                if (ChatHistoryMessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(UserMessage.from(history.getMessage()));
-                    loadedCount++;
-                } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(AiMessage.from(history.getMessage()));
-                    loadedCount++;
-                }
+        }
+        int loadedCount = addToMemory(chatMemory, historyList);
+        chatMemorySyncMarker.mark(appId);
+        log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, loadedCount);
+        return loadedCount;
+    }
+
+    /**
+     * 按时间顺序把历史消息添加到记忆中
+     * 排除最新的用户消息：发送消息时它是本轮的输入，会由 AI 服务自己加入记忆；
+     * 打开应用时预热创建的实例，最新一条通常是 AI 回复，需要保留
+     *
+     * @param historyList 截止到最新一条的历史消息，按时间正序
+     * @return 加入记忆的消息数量
+     */
+    private int addToMemory(ChatMemory chatMemory, List<ChatHistory> historyList) {
+        if (CollUtil.isNotEmpty(historyList)
+                && ChatHistoryMessageTypeEnum.USER.getValue().equals(CollUtil.getLast(historyList).getMessageType())) {
+            historyList.removeLast();
+        }
+        int addedCount = 0;
+        for (ChatHistory history : historyList) {
+            if (ChatHistoryMessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
+                chatMemory.add(UserMessage.from(history.getMessage()));
+                addedCount++;
+            } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
+                chatMemory.add(AiMessage.from(history.getMessage()));
+                addedCount++;
             }
-            log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, loadedCount);
-            return loadedCount;
-        } catch (Exception e) {
-            log.error("加载历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
-            // 加载失败不影响系统运行，只是没有历史上下文
-            return 0;
         }
+        return addedCount;
+    }
+
+    /**
+     * 转存在 Redis、还未补写到数据库的消息（去掉已补写、还未从转存列表移除的）
+     */
+    private List<ChatHistory> listUnrecovered(Long appId) {
+        List<ChatHistory> spilled = chatHistoryWriteBuffer.listSpilled(appId);
+        if (spilled.isEmpty()) {
+            return spilled;
+        }
+        List<Long> ids = spilled.stream().map(ChatHistory::getId).toList();
+        Set<Long> persistedIds = this.list(QueryWrapper.create()
+                        .select(ChatHistory::getId)
+                        .in(ChatHistory::getId, ids))
+                .stream()
+                .map(ChatHistory::getId)
+                .collect(Collectors.toSet());
+        return spilled.stream().filter(chatHistory -> !persistedIds.contains(chatHistory.getId())).toList();
+    }
+
+    /**
+     * 合并两组消息，按创建时间、ID 正序
+     */
+    private static List<ChatHistory> merge(List<ChatHistory> first, List<ChatHistory> second) {
+        List<ChatHistory> merged = new ArrayList<>(first.size() + second.size());
+        merged.addAll(first);
+        merged.addAll(second);
+        merged.sort(Comparator.comparing(ChatHistory::getCreateTime).thenComparing(ChatHistory::getId));
+        return merged;
+    }
+
+    private long countByAppId(Long appId) {
+        return this.count(QueryWrapper.create().eq(ChatHistory::getAppId, appId));
+    }
+
+    /**
+     * 按时间正序（老的在前，新的在后）分页查询历史消息
+     */
+    private List<ChatHistory> listByAppIdInOrder(Long appId, long offset, long rows) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistory::getAppId, appId)
+                .orderBy(ChatHistory::getCreateTime, true)
+                .orderBy(ChatHistory::getId, true)
+                .limit(offset, rows);
+        return this.list(queryWrapper);
     }
 
 }
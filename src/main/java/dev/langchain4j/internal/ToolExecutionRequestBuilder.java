@@ -5,21 +5,24 @@ import dev.langchain4j.agent.tool.ToolExecutionRequest;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static dev.langchain4j.internal.Utils.isNotNullOrBlank;
 import static dev.langchain4j.internal.Utils.isNotNullOrEmpty;
 
+/**
+ * Assembles tool execution requests from the partial tool calls of one streaming response.
+ * Confined to the thread that reads the response, like {@code OpenAiStreamingResponseBuilder}.
+ */
 @Internal
 // TODO location
 // TODO name
 public class ToolExecutionRequestBuilder {
 
-    private final AtomicReference<Integer> index;
+    private int index;
 
-    private final AtomicReference<String> id = new AtomicReference<>();
-    private final AtomicReference<String> name = new AtomicReference<>();
-    private final StringBuffer arguments = new StringBuffer();
+    private String id;
+    private String name;
+    private final StringBuilder arguments = new StringBuilder();
 
     private final List<ToolExecutionRequest> allToolExecutionRequests = new ArrayList<>();
 
@@ -28,40 +31,40 @@ public class ToolExecutionRequestBuilder {
     }
 
     public ToolExecutionRequestBuilder(int index) {
-        this.index = new AtomicReference(index);
+        this.index = index;
     }
 
     public int index() {
-        return index.get();
+        return index;
     }
 
     public int updateIndex(Integer index) {
         if (index != null) {
-            this.index.set(index);
+            this.index = index;
         }
-        return this.index.get();
+        return this.index;
     }
 
     public String id() {
-        return id.get();
+        return id;
     }
 
     public String updateId(String id) {
         if (isNotNullOrBlank(id)) {
-            this.id.set(id);
+            this.id = id;
         }
-        return this.id.get();
+        return this.id;
     }
 
     public String name() {
-        return name.get();
+        return name;
     }
 
     public String updateName(String name) {
         if (isNotNullOrBlank(name)) {
-            this.name.set(name);
+            this.name = name;
         }
-        return this.name.get();
+        return this.name;
     }
 
     public void appendArguments(String partialArguments) {
@@ -70,12 +73,21 @@ public class ToolExecutionRequestBuilder {
         }
     }
 
+    /**
+     * Appends arguments without requiring a {@code String}; {@code partialArguments} may be a reused buffer.
+     */
+    public void appendArguments(CharSequence partialArguments) {
+        if (partialArguments != null && !partialArguments.isEmpty()) {
+            arguments.append(partialArguments);
+        }
+    }
+
     public ToolExecutionRequest build() {
         // TODO store it till complete response?
         String arguments = this.arguments.toString();
         ToolExecutionRequest toolExecutionRequest = ToolExecutionRequest.builder()
-                .id(id.get())
-                .name(name.get())
+                .id(id)
+                .name(name)
                 .arguments(arguments.isEmpty() ? "{}" : arguments)
                 .build();
         allToolExecutionRequests.add(toolExecutionRequest); // TODO method name, rethink
@@ -84,13 +96,13 @@ public class ToolExecutionRequestBuilder {
     }
 
     private void reset() {
-        id.set(null);
-        name.set(null);
+        id = null;
+        name = null;
         arguments.setLength(0);
     }
 
     public boolean hasToolExecutionRequests() {
-        return !allToolExecutionRequests.isEmpty() || name.get() != null;
+        return !allToolExecutionRequests.isEmpty() || name != null;
     }
 
     public List<ToolExecutionRequest> allToolExecutionRequests() {
@@ -55,6 +55,11 @@ public interface StreamingChatModel {
                 handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
             }
 
+            @Override
+            public void onPartialToolCall(int index, String id, String name, CharSequence partialArguments) {
+                handler.onPartialToolCall(index, id, name, partialArguments);
+            }
+
             @Override
             public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
                 handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
@@ -71,6 +76,11 @@ public interface StreamingChatModel {
                 ChatModelListenerUtils.onError(error, finalChatRequest, provider(), attributes, listeners);
                 handler.onError(error);
             }
+
+            @Override
+            public boolean isCancelled() {
+                return handler.isCancelled();
+            }
         };
 
         onRequest(finalChatRequest, provider(), attributes, listeners);
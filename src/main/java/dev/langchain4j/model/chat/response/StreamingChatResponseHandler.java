@@ -32,6 +32,25 @@ public interface StreamingChatResponseHandler {
     default void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
     }
 
+    /**
+     * Low-allocation form of {@link #onPartialToolExecutionRequest}, used by models that decode chunks into reused
+     * buffers. {@code partialArguments} is only valid during the call; copy it if it has to be kept.
+     * The default implementation builds a {@link ToolExecutionRequest} and delegates, so overriding it is only
+     * worthwhile for handlers that can skip (or defer) building the request.
+     *
+     * @param index            index of the tool call in the response
+     * @param id               id of the tool call so far, may be {@code null}
+     * @param name             name of the tool so far, may be {@code null}
+     * @param partialArguments the partial arguments carried by this chunk
+     */
+    default void onPartialToolCall(int index, String id, String name, CharSequence partialArguments) {
+        onPartialToolExecutionRequest(index, ToolExecutionRequest.builder()
+                .id(id)
+                .name(name)
+                .arguments(partialArguments.toString())
+                .build());
+    }
+
     /**
      * TODO
      * TODO this callback is called as soon as a single tool execution request is complete
@@ -58,4 +77,15 @@ public interface StreamingChatResponseHandler {
      * @param error The error that occurred
      */
     void onError(Throwable error);
+
+    /**
+     * Whether the consumer of the response has gone away.
+     * Models should check it while streaming: once it returns {@code true}, they should stop invoking this handler
+     * and close the underlying connection so that the provider stops generating (and billing) tokens.
+     *
+     * @return {@code true} if the response is no longer needed
+     */
+    default boolean isCancelled() {
+        return false;
+    }
 }
@@ -0,0 +1,165 @@
+package dev.langchain4j.model.openai;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilderLoader;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+import static dev.langchain4j.internal.Utils.getOrDefault;
+
+/**
+ * An {@link HttpClient} decorator that lets {@link OpenAiStreamingChatModel} close an in-flight streaming response.
+ * <p>
+ * {@code OpenAiClient} does not expose the response body of a streaming call, so the model binds an
+ * {@link AbortHandle} to the calling thread around {@code execute()}; the SSE parser of that call records the body
+ * stream in the handle. Closing the body makes the parser's read loop fail and releases the connection,
+ * which is the only way to make the provider stop generating.
+ * <p>
+ * The handle can also carry an {@link OpenAiSseChunkDecoder}; the call then decodes the body with it instead of the
+ * parser chosen by {@code OpenAiClient}.
+ */
+class CancellableHttpClient implements HttpClient {
+
+    private static final ThreadLocal<AbortHandle> CURRENT_HANDLE = new ThreadLocal<>();
+
+    private final HttpClient delegate;
+
+    private CancellableHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Runs {@code action} (which must start the streaming call synchronously) with {@code handle} bound to it.
+     */
+    static void withAbortHandle(AbortHandle handle, Runnable action) {
+        CURRENT_HANDLE.set(handle);
+        try {
+            action.run();
+        } finally {
+            CURRENT_HANDLE.remove();
+        }
+    }
+
+    static HttpClientBuilder wrap(HttpClientBuilder httpClientBuilder) {
+        return new Builder(getOrDefault(httpClientBuilder, HttpClientBuilderLoader::loadHttpClientBuilder));
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        AbortHandle handle = CURRENT_HANDLE.get();
+        if (handle == null) {
+            delegate.execute(request, parser, listener);
+            return;
+        }
+        delegate.execute(request, new ServerSentEventParser() {
+            @Override
+            public void parse(InputStream httpResponseBody, ServerSentEventListener eventListener) {
+                InputStream body = handle.track(httpResponseBody);
+                OpenAiSseChunkDecoder decoder = handle.decoder;
+                if (decoder != null) {
+                    decoder.parse(body, eventListener);
+                } else {
+                    parser.parse(body, eventListener);
+                }
+            }
+        }, listener);
+    }
+
+    /**
+     * Handle to the response body of one streaming call.
+     */
+    static class AbortHandle {
+
+        /**
+         * Set before the call starts, read by the thread that parses the response.
+         */
+        private OpenAiSseChunkDecoder decoder;
+
+        private volatile InputStream body;
+
+        private volatile boolean aborted;
+
+        void decodeWith(OpenAiSseChunkDecoder decoder) {
+            this.decoder = decoder;
+        }
+
+        InputStream track(InputStream body) {
+            this.body = body;
+            if (aborted) {
+                closeQuietly(body);
+            }
+            return body;
+        }
+
+        /**
+         * Closes the response body; safe to call before the response has arrived and more than once.
+         */
+        void abort() {
+            aborted = true;
+            InputStream current = body;
+            if (current != null) {
+                closeQuietly(current);
+            }
+        }
+
+        boolean isAborted() {
+            return aborted;
+        }
+
+        private static void closeQuietly(InputStream inputStream) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+                // the connection is being discarded anyway
+            }
+        }
+    }
+
+    private static class Builder implements HttpClientBuilder {
+
+        private final HttpClientBuilder delegate;
+
+        private Builder(HttpClientBuilder delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Duration connectTimeout() {
+            return delegate.connectTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            delegate.connectTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return delegate.readTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            delegate.readTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return new CancellableHttpClient(delegate.build());
+        }
+    }
+}
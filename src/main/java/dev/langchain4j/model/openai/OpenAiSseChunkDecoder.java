@@ -0,0 +1,685 @@
+package dev.langchain4j.model.openai;
+
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Decodes the SSE stream of a chat completion call straight from the response bytes into one reused
+ * {@link OpenAiStreamingDelta}, replacing {@code DefaultServerSentEventParser} + Jackson on the hot path.
+ * <p>
+ * The default path allocates a line {@code String}, a data {@code String}, a {@code ChatCompletionResponse} with its
+ * choice/delta/tool call records and a few boxed values for every chunk. Here the bytes are read into a reused buffer,
+ * scanned in place, and only the strings that reach the caller are materialized: {@code content}, tool call id/name,
+ * and {@code id}/{@code model}/... only when their bytes differ from the previous chunk. Tool call arguments are
+ * handed over as a view over a reused char buffer.
+ * <p>
+ * Anything outside the shape of an ordinary delta chunk (a non-null {@code usage}, an {@code error}, a legacy
+ * {@code function_call}, a named event or malformed JSON) is passed to the listener as a regular
+ * {@link ServerSentEvent}, so the default Jackson path still handles it.
+ * <p>
+ * Not thread safe: one decoder per streaming call, used only by the thread that reads the response.
+ */
+class OpenAiSseChunkDecoder {
+
+    private static final byte[] DATA_FIELD = ascii("data:");
+    private static final byte[] EVENT_FIELD = ascii("event:");
+    private static final byte[] DONE = ascii("[DONE]");
+
+    private static final byte[] ID = ascii("id");
+    private static final byte[] CREATED = ascii("created");
+    private static final byte[] MODEL = ascii("model");
+    private static final byte[] SERVICE_TIER = ascii("service_tier");
+    private static final byte[] SYSTEM_FINGERPRINT = ascii("system_fingerprint");
+    private static final byte[] CHOICES = ascii("choices");
+    private static final byte[] USAGE = ascii("usage");
+    private static final byte[] ERROR = ascii("error");
+    private static final byte[] DELTA = ascii("delta");
+    private static final byte[] FINISH_REASON = ascii("finish_reason");
+    private static final byte[] CONTENT = ascii("content");
+    private static final byte[] TOOL_CALLS = ascii("tool_calls");
+    private static final byte[] FUNCTION_CALL = ascii("function_call");
+    private static final byte[] INDEX = ascii("index");
+    private static final byte[] FUNCTION = ascii("function");
+    private static final byte[] NAME = ascii("name");
+    private static final byte[] ARGUMENTS = ascii("arguments");
+
+    /**
+     * Thrown (without a stack trace) when the chunk is not an ordinary delta chunk.
+     */
+    private static final RuntimeException UNSUPPORTED = new RuntimeException("unsupported chunk", null, false, false) {
+    };
+
+    private final Consumer<OpenAiStreamingDelta> consumer;
+
+    private final OpenAiStreamingDelta delta = new OpenAiStreamingDelta();
+
+    private final OpenAiStreamingDelta.CharBuffer text = new OpenAiStreamingDelta.CharBuffer();
+
+    private final CachedString id = new CachedString();
+    private final CachedString model = new CachedString();
+    private final CachedString serviceTier = new CachedString();
+    private final CachedString systemFingerprint = new CachedString();
+    private final CachedString finishReason = new CachedString();
+
+    /**
+     * Raw response bytes; lines are cut out of {@code [lineStart, limit)}.
+     */
+    private byte[] buffer = new byte[8192];
+
+    /**
+     * Data of the current event, collected until the blank line that dispatches it.
+     */
+    private byte[] data = new byte[8192];
+    private int dataLength = -1;
+    private String eventType;
+
+    /**
+     * JSON cursor over {@link #data}.
+     */
+    private int pos;
+    private int end;
+
+    OpenAiSseChunkDecoder(Consumer<OpenAiStreamingDelta> consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Same contract as {@code ServerSentEventParser.parse}: reads until the end of the body, reports events to
+     * {@code listener} (decoded deltas to the consumer) and read failures to {@code listener.onError}.
+     */
+    void parse(InputStream body, ServerSentEventListener listener) {
+        try (body) {
+            int lineStart = 0;
+            int limit = 0;
+            int scanned = 0;
+            while (true) {
+                int newline = indexOf(buffer, (byte) '\n', scanned, limit);
+                if (newline >= 0) {
+                    onLine(lineStart, newline, listener);
+                    lineStart = newline + 1;
+                    scanned = lineStart;
+                    continue;
+                }
+                // no complete line left: keep the partial line and read more
+                if (lineStart > 0) {
+                    System.arraycopy(buffer, lineStart, buffer, 0, limit - lineStart);
+                    limit -= lineStart;
+                    lineStart = 0;
+                }
+                if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                scanned = limit;
+                int read = body.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    if (limit > 0) {
+                        onLine(0, limit, listener);
+                    }
+                    dispatch(listener);
+                    return;
+                }
+                limit += read;
+            }
+        } catch (Exception e) {
+            listener.onError(e);
+        }
+    }
+
+    private void onLine(int start, int end, ServerSentEventListener listener) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        if (end == start) {
+            dispatch(listener);
+        } else if (startsWith(buffer, start, end, DATA_FIELD)) {
+            int valueStart = start + DATA_FIELD.length;
+            if (valueStart < end && buffer[valueStart] == ' ') {
+                valueStart++;
+            }
+            appendData(valueStart, end);
+        } else if (startsWith(buffer, start, end, EVENT_FIELD)) {
+            int valueStart = start + EVENT_FIELD.length;
+            if (valueStart < end && buffer[valueStart] == ' ') {
+                valueStart++;
+            }
+            eventType = new String(buffer, valueStart, end - valueStart, StandardCharsets.UTF_8);
+        }
+        // comments (":") and the id / retry fields are not used by OpenAI-compatible streams
+    }
+
+    private void appendData(int start, int end) {
+        int length = end - start;
+        // multi-line data is joined with '\n' as the SSE spec requires
+        int offset = dataLength < 0 ? 0 : dataLength + 1;
+        if (offset + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, offset + length));
+        }
+        if (dataLength >= 0) {
+            data[dataLength] = '\n';
+        }
+        System.arraycopy(buffer, start, data, offset, length);
+        dataLength = offset + length;
+    }
+
+    private void dispatch(ServerSentEventListener listener) {
+        if (dataLength < 0) {
+            eventType = null;
+            return;
+        }
+        int length = dataLength;
+        String event = eventType;
+        dataLength = -1;
+        eventType = null;
+        if (length == DONE.length && startsWith(data, 0, length, DONE)) {
+            return;
+        }
+        if (event == null && decode(length)) {
+            try {
+                consumer.accept(delta);
+            } catch (Exception e) {
+                listener.onError(e);
+            }
+            return;
+        }
+        listener.onEvent(new ServerSentEvent(event, new String(data, 0, length, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Decodes {@code data[0, length)} into {@link #delta}.
+     *
+     * @return false if the chunk has to go through the default path
+     */
+    private boolean decode(int length) {
+        delta.reset();
+        pos = 0;
+        end = length;
+        try {
+            expect('{');
+            if (consumeIf('}')) {
+                return true;
+            }
+            do {
+                int keyStart = readRawKey();
+                int keyEnd = pos - 1;
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (keyEquals(keyStart, keyEnd, ID)) {
+                    delta.id = readCachedString(id);
+                } else if (keyEquals(keyStart, keyEnd, MODEL)) {
+                    delta.model = readCachedString(model);
+                } else if (keyEquals(keyStart, keyEnd, CREATED)) {
+                    delta.created = readNullableLong();
+                } else if (keyEquals(keyStart, keyEnd, SERVICE_TIER)) {
+                    delta.serviceTier = readCachedString(serviceTier);
+                } else if (keyEquals(keyStart, keyEnd, SYSTEM_FINGERPRINT)) {
+                    delta.systemFingerprint = readCachedString(systemFingerprint);
+                } else if (keyEquals(keyStart, keyEnd, CHOICES)) {
+                    readChoices();
+                } else if (keyEquals(keyStart, keyEnd, USAGE)) {
+                    // usage only comes with the last chunk, let Jackson map it
+                    if (!consumeNull()) {
+                        throw UNSUPPORTED;
+                    }
+                } else if (keyEquals(keyStart, keyEnd, ERROR)) {
+                    throw UNSUPPORTED;
+                } else {
+                    skipValue();
+                }
+                skipWhitespace();
+            } while (consumeIf(','));
+            expect('}');
+            skipWhitespace();
+            return pos == end;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void readChoices() {
+        if (consumeNull()) {
+            return;
+        }
+        expect('[');
+        skipWhitespace();
+        if (consumeIf(']')) {
+            return;
+        }
+        boolean first = true;
+        do {
+            skipWhitespace();
+            if (first) {
+                readChoice();
+                first = false;
+            } else {
+                skipValue();
+            }
+            skipWhitespace();
+        } while (consumeIf(','));
+        expect(']');
+    }
+
+    private void readChoice() {
+        if (consumeNull()) {
+            return;
+        }
+        expect('{');
+        delta.hasChoice = true;
+        skipWhitespace();
+        if (consumeIf('}')) {
+            return;
+        }
+        do {
+            skipWhitespace();
+            int keyStart = readRawKey();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            if (keyEquals(keyStart, keyEnd, DELTA)) {
+                readDelta();
+            } else if (keyEquals(keyStart, keyEnd, FINISH_REASON)) {
+                delta.finishReason = readCachedString(finishReason);
+            } else {
+                skipValue();
+            }
+            skipWhitespace();
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    private void readDelta() {
+        if (consumeNull()) {
+            return;
+        }
+        expect('{');
+        skipWhitespace();
+        if (consumeIf('}')) {
+            return;
+        }
+        do {
+            skipWhitespace();
+            int keyStart = readRawKey();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            if (keyEquals(keyStart, keyEnd, CONTENT)) {
+                if (!consumeNull()) {
+                    readString(text);
+                    delta.content = text.length() == 0 ? null : text.toString();
+                }
+            } else if (keyEquals(keyStart, keyEnd, TOOL_CALLS)) {
+                readToolCalls();
+            } else if (keyEquals(keyStart, keyEnd, FUNCTION_CALL)) {
+                if (!consumeNull()) {
+                    throw UNSUPPORTED;
+                }
+            } else {
+                skipValue();
+            }
+            skipWhitespace();
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    private void readToolCalls() {
+        if (consumeNull()) {
+            return;
+        }
+        expect('[');
+        skipWhitespace();
+        if (consumeIf(']')) {
+            return;
+        }
+        do {
+            skipWhitespace();
+            OpenAiStreamingDelta.ToolCallDelta toolCall = delta.nextToolCall();
+            expect('{');
+            skipWhitespace();
+            if (!consumeIf('}')) {
+                do {
+                    skipWhitespace();
+                    int keyStart = readRawKey();
+                    int keyEnd = pos - 1;
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    if (keyEquals(keyStart, keyEnd, INDEX)) {
+                        Long index = readNullableLong();
+                        toolCall.index = index == null ? null : Math.toIntExact(index);
+                    } else if (keyEquals(keyStart, keyEnd, ID)) {
+                        toolCall.id = readNullableString();
+                    } else if (keyEquals(keyStart, keyEnd, FUNCTION)) {
+                        readFunction(toolCall);
+                    } else {
+                        skipValue();
+                    }
+                    skipWhitespace();
+                } while (consumeIf(','));
+                expect('}');
+            }
+            skipWhitespace();
+        } while (consumeIf(','));
+        expect(']');
+    }
+
+    private void readFunction(OpenAiStreamingDelta.ToolCallDelta toolCall) {
+        if (consumeNull()) {
+            return;
+        }
+        expect('{');
+        skipWhitespace();
+        if (consumeIf('}')) {
+            return;
+        }
+        do {
+            skipWhitespace();
+            int keyStart = readRawKey();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            if (keyEquals(keyStart, keyEnd, NAME)) {
+                toolCall.name = readNullableString();
+            } else if (keyEquals(keyStart, keyEnd, ARGUMENTS)) {
+                if (!consumeNull()) {
+                    readString(toolCall.arguments);
+                }
+            } else {
+                skipValue();
+            }
+            skipWhitespace();
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    // ---- JSON primitives over data[pos, end) ----
+
+    /**
+     * Reads a key without decoding it; keys are compared as raw bytes.
+     *
+     * @return start of the key bytes, {@code pos - 1} is the closing quote afterwards
+     */
+    private int readRawKey() {
+        expect('"');
+        int start = pos;
+        while (pos < end) {
+            byte b = data[pos++];
+            if (b == '"') {
+                return start;
+            }
+            if (b == '\\') {
+                // escaped keys never occur in OpenAI chunks
+                throw UNSUPPORTED;
+            }
+        }
+        throw UNSUPPORTED;
+    }
+
+    private String readNullableString() {
+        if (consumeNull()) {
+            return null;
+        }
+        readString(text);
+        return text.toString();
+    }
+
+    /**
+     * Reads a string, reusing the previous value when the bytes did not change.
+     */
+    private String readCachedString(CachedString cache) {
+        if (consumeNull()) {
+            return null;
+        }
+        int start = pos + 1;
+        int close = start;
+        while (close < end && data[close] != '"' && data[close] != '\\') {
+            close++;
+        }
+        if (close < end && data[close] == '"') {
+            pos = close + 1;
+            return cache.get(data, start, close);
+        }
+        readString(text);
+        return text.toString();
+    }
+
+    /**
+     * Decodes a JSON string (UTF-8 bytes, escapes) into {@code target}, which is cleared first.
+     */
+    private void readString(OpenAiStreamingDelta.CharBuffer target) {
+        expect('"');
+        target.clear();
+        while (pos < end) {
+            int b = data[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                readEscape(target);
+            } else if (b >= 0) {
+                target.append((char) b);
+            } else {
+                readMultiByte(b, target);
+            }
+        }
+        throw UNSUPPORTED;
+    }
+
+    private void readEscape(OpenAiStreamingDelta.CharBuffer target) {
+        if (pos >= end) {
+            throw UNSUPPORTED;
+        }
+        byte escaped = data[pos++];
+        switch (escaped) {
+            case '"', '\\', '/' -> target.append((char) escaped);
+            case 'b' -> target.append('\b');
+            case 'f' -> target.append('\f');
+            case 'n' -> target.append('\n');
+            case 'r' -> target.append('\r');
+            case 't' -> target.append('\t');
+            case 'u' -> {
+                // surrogate pairs arrive as two \\u escapes and are appended one char at a time
+                if (pos + 4 > end) {
+                    throw UNSUPPORTED;
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(data[pos++], 16);
+                    if (digit < 0) {
+                        throw UNSUPPORTED;
+                    }
+                    value = (value << 4) | digit;
+                }
+                target.append((char) value);
+            }
+            default -> throw UNSUPPORTED;
+        }
+    }
+
+    private void readMultiByte(int first, OpenAiStreamingDelta.CharBuffer target) {
+        int codePoint;
+        int continuation;
+        if ((first & 0xE0) == 0xC0) {
+            codePoint = first & 0x1F;
+            continuation = 1;
+        } else if ((first & 0xF0) == 0xE0) {
+            codePoint = first & 0x0F;
+            continuation = 2;
+        } else if ((first & 0xF8) == 0xF0) {
+            codePoint = first & 0x07;
+            continuation = 3;
+        } else {
+            throw UNSUPPORTED;
+        }
+        if (pos + continuation > end) {
+            throw UNSUPPORTED;
+        }
+        for (int i = 0; i < continuation; i++) {
+            int b = data[pos++];
+            if ((b & 0xC0) != 0x80) {
+                throw UNSUPPORTED;
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            target.append(Character.highSurrogate(codePoint));
+            target.append(Character.lowSurrogate(codePoint));
+        } else {
+            target.append((char) codePoint);
+        }
+    }
+
+    private Long readNullableLong() {
+        if (consumeNull()) {
+            return null;
+        }
+        boolean negative = consumeIf('-');
+        int start = pos;
+        long value = 0;
+        while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+            value = value * 10 + (data[pos++] - '0');
+        }
+        if (pos == start || pos - start > 18) {
+            throw UNSUPPORTED;
+        }
+        if (pos < end && (data[pos] == '.' || data[pos] == 'e' || data[pos] == 'E')) {
+            throw UNSUPPORTED;
+        }
+        return negative ? -value : value;
+    }
+
+    private void skipValue() {
+        if (pos >= end) {
+            throw UNSUPPORTED;
+        }
+        byte b = data[pos];
+        if (b == '"') {
+            pos++;
+            while (pos < end) {
+                byte c = data[pos++];
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '"') {
+                    return;
+                }
+            }
+            throw UNSUPPORTED;
+        }
+        if (b == '{' || b == '[') {
+            int depth = 0;
+            while (pos < end) {
+                byte c = data[pos];
+                if (c == '"') {
+                    skipValue();
+                    continue;
+                }
+                pos++;
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return;
+                    }
+                }
+            }
+            throw UNSUPPORTED;
+        }
+        // number, true, false, null
+        int start = pos;
+        while (pos < end && data[pos] != ',' && data[pos] != '}' && data[pos] != ']'
+                && data[pos] != ' ' && data[pos] != '\n' && data[pos] != '\r' && data[pos] != '\t') {
+            pos++;
+        }
+        if (pos == start) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    private boolean consumeNull() {
+        if (pos + 4 <= end && data[pos] == 'n' && data[pos + 1] == 'u' && data[pos + 2] == 'l' && data[pos + 3] == 'l') {
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consumeIf(char c) {
+        skipWhitespace();
+        if (pos < end && data[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consumeIf(c)) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = data[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean keyEquals(int start, int end, byte[] key) {
+        return end - start == key.length && startsWith(data, start, end, key);
+    }
+
+    private static boolean startsWith(byte[] bytes, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Last decoded value of a string field that is the same in every chunk of a stream.
+     */
+    private static final class CachedString {
+
+        private byte[] raw = new byte[0];
+
+        private String value;
+
+        String get(byte[] bytes, int start, int end) {
+            if (value != null && Arrays.equals(raw, 0, raw.length, bytes, start, end)) {
+                return value;
+            }
+            raw = Arrays.copyOfRange(bytes, start, end);
+            value = new String(raw, StandardCharsets.UTF_8);
+            return value;
+        }
+    }
+}
@@ -41,10 +41,15 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
     private final Boolean strictJsonSchema;
     private final Boolean strictTools;
     private final List<ChatModelListener> listeners;
+    /**
+     * Whether chunks are decoded by {@link OpenAiSseChunkDecoder}; response logging needs the per-event strings of the
+     * default parser, so it keeps the default path.
+     */
+    private final boolean decodeChunks;
 
     public OpenAiStreamingChatModel(OpenAiStreamingChatModelBuilder builder) {
         this.client = OpenAiClient.builder()
-                .httpClientBuilder(builder.httpClientBuilder)
+                .httpClientBuilder(CancellableHttpClient.wrap(builder.httpClientBuilder))
                 .baseUrl(getOrDefault(builder.baseUrl, DEFAULT_OPENAI_URL))
                 .apiKey(builder.apiKey)
                 .organizationId(builder.organizationId)
@@ -98,6 +103,7 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
         this.strictJsonSchema = getOrDefault(builder.strictJsonSchema, false);
         this.strictTools = getOrDefault(builder.strictTools, false);
         this.listeners = copy(builder.listeners);
+        this.decodeChunks = !getOrDefault(builder.logResponses, false);
     }
 
     @Override
@@ -121,13 +127,41 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
 
         OpenAiStreamingResponseBuilder openAiResponseBuilder = new OpenAiStreamingResponseBuilder();
         ToolExecutionRequestBuilder toolBuilder = new ToolExecutionRequestBuilder();
+        CancellableHttpClient.AbortHandle abortHandle = new CancellableHttpClient.AbortHandle();
+        if (decodeChunks) {
+            abortHandle.decodeWith(new OpenAiSseChunkDecoder(delta -> {
+                if (abortHandle.isAborted()) {
+                    return;
+                }
+                if (handler.isCancelled()) {
+                    abortHandle.abort();
+                    return;
+                }
+                openAiResponseBuilder.append(delta);
+                handle(delta, toolBuilder, handler);
+            }));
+        }
 
-        client.chatCompletion(openAiRequest)
+        if (handler.isCancelled()) {
+            return;
+        }
+        CancellableHttpClient.withAbortHandle(abortHandle, () -> client.chatCompletion(openAiRequest)
                 .onPartialResponse(partialResponse -> {
+                    if (abortHandle.isAborted()) {
+                        return;
+                    }
+                    if (handler.isCancelled()) {
+                        // the consumer is gone: close the HTTP stream so the provider stops generating
+                        abortHandle.abort();
+                        return;
+                    }
                     openAiResponseBuilder.append(partialResponse);
                     handle(partialResponse, toolBuilder, handler);
                 })
                 .onComplete(() -> {
+                    if (abortHandle.isAborted()) {
+                        return;
+                    }
                     if (toolBuilder.hasToolExecutionRequests()) {
                         try {
                             handler.onCompleteToolExecutionRequest(toolBuilder.index(), toolBuilder.build());
@@ -143,10 +177,62 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
                     }
                 })
                 .onError(throwable -> {
+                    if (abortHandle.isAborted()) {
+                        // reading fails once the body has been closed on purpose
+                        return;
+                    }
                     RuntimeException mappedException = ExceptionMapper.DEFAULT.mapException(throwable);
                     withLoggingExceptions(() -> handler.onError(mappedException));
                 })
-                .execute();
+                .execute());
+    }
+
+    /**
+     * Same as {@link #handle(ChatCompletionResponse, ToolExecutionRequestBuilder, StreamingChatResponseHandler)} for a
+     * chunk decoded by {@link OpenAiSseChunkDecoder}; partial tool calls go through
+     * {@link StreamingChatResponseHandler#onPartialToolCall} so no request is built unless the handler needs one.
+     */
+    private static void handle(OpenAiStreamingDelta delta,
+                               ToolExecutionRequestBuilder toolBuilder,
+                               StreamingChatResponseHandler handler) {
+        if (!delta.hasChoice) {
+            return;
+        }
+
+        String content = delta.content;
+        if (!isNullOrEmpty(content)) {
+            try {
+                handler.onPartialResponse(content);
+            } catch (Exception e) {
+                withLoggingExceptions(() -> handler.onError(e));
+            }
+        }
+        for (int i = 0; i < delta.toolCallCount; i++) {
+            OpenAiStreamingDelta.ToolCallDelta toolCall = delta.toolCalls[i];
+
+            int index = toolCall.index == null ? toolBuilder.index() : toolCall.index;
+            if (toolBuilder.index() != index) {
+                try {
+                    handler.onCompleteToolExecutionRequest(toolBuilder.index(), toolBuilder.build());
+                } catch (Exception e) {
+                    withLoggingExceptions(() -> handler.onError(e));
+                }
+                toolBuilder.updateIndex(index);
+            }
+
+            String id = toolBuilder.updateId(toolCall.id);
+            String name = toolBuilder.updateName(toolCall.name);
+
+            CharSequence partialArguments = toolCall.arguments;
+            if (!partialArguments.isEmpty()) {
+                toolBuilder.appendArguments(partialArguments);
+                try {
+                    handler.onPartialToolCall(index, id, name, partialArguments);
+                } catch (Exception e) {
+                    withLoggingExceptions(() -> handler.onError(e));
+                }
+            }
+        }
     }
 
     private static void handle(ChatCompletionResponse partialResponse,
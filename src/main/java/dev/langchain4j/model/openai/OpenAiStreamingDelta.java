@@ -0,0 +1,131 @@
+package dev.langchain4j.model.openai;
+
+/**
+ * One decoded chat completion chunk, reused for every chunk of a stream.
+ * <p>
+ * Only the fields that the streaming hot path needs are kept. The instance and everything reachable from it
+ * (including {@link ToolCallDelta#arguments}) is overwritten by the next chunk, so consumers must copy what they
+ * want to keep before returning.
+ */
+final class OpenAiStreamingDelta {
+
+    String id;
+
+    Long created;
+
+    String model;
+
+    String serviceTier;
+
+    String systemFingerprint;
+
+    /**
+     * Whether the chunk had a first choice; the remaining choice fields are only meaningful if it did.
+     */
+    boolean hasChoice;
+
+    String content;
+
+    String finishReason;
+
+    ToolCallDelta[] toolCalls = new ToolCallDelta[]{new ToolCallDelta()};
+
+    int toolCallCount;
+
+    void reset() {
+        id = null;
+        created = null;
+        model = null;
+        serviceTier = null;
+        systemFingerprint = null;
+        hasChoice = false;
+        content = null;
+        finishReason = null;
+        toolCallCount = 0;
+    }
+
+    /**
+     * Returns the next tool call slot, growing the slot array when a chunk carries more tool calls than seen so far.
+     */
+    ToolCallDelta nextToolCall() {
+        if (toolCallCount == toolCalls.length) {
+            ToolCallDelta[] grown = new ToolCallDelta[toolCalls.length * 2];
+            System.arraycopy(toolCalls, 0, grown, 0, toolCalls.length);
+            for (int i = toolCalls.length; i < grown.length; i++) {
+                grown[i] = new ToolCallDelta();
+            }
+            toolCalls = grown;
+        }
+        ToolCallDelta toolCall = toolCalls[toolCallCount++];
+        toolCall.reset();
+        return toolCall;
+    }
+
+    static final class ToolCallDelta {
+
+        Integer index;
+
+        String id;
+
+        String name;
+
+        /**
+         * Partial arguments of this chunk, a view over a reused buffer.
+         */
+        final CharBuffer arguments = new CharBuffer();
+
+        void reset() {
+            index = null;
+            id = null;
+            name = null;
+            arguments.clear();
+        }
+    }
+
+    /**
+     * Growable char buffer that is itself the {@link CharSequence} handed to consumers, so passing partial text
+     * along does not copy it.
+     */
+    static final class CharBuffer implements CharSequence {
+
+        private char[] chars = new char[256];
+
+        private int length;
+
+        void clear() {
+            length = 0;
+        }
+
+        void append(char c) {
+            if (length == chars.length) {
+                char[] grown = new char[chars.length * 2];
+                System.arraycopy(chars, 0, grown, 0, length);
+                chars = grown;
+            }
+            chars[length++] = c;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
@@ -6,8 +6,10 @@ import dev.langchain4j.agent.tool.ToolSpecification;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.guardrail.ChatExecutor;
 import dev.langchain4j.guardrail.GuardrailRequestParams;
+import dev.langchain4j.guardrail.OutputGuardrailException;
 import dev.langchain4j.guardrail.OutputGuardrailRequest;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
@@ -20,10 +22,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static dev.langchain4j.internal.Utils.copy;
 import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
@@ -35,6 +47,11 @@ import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
 @Internal
 class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler {
     private static final Logger LOG = LoggerFactory.getLogger(AiServiceStreamingResponseHandler.class);
+    private static final String CANCELLED_TOOL_RESULT = "Tool execution was cancelled by the user";
+
+    private static final String FAILED_TOOL_RESULT = "Tool execution failed: ";
+
+    private static final String SKIPPED_TOOL_RESULT = "Tool execution was skipped because an earlier tool call failed";
 
     private final ChatExecutor chatExecutor;
     private final AiServiceContext context;
@@ -47,6 +64,7 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     private final BiConsumer<Integer, ToolExecutionRequest> completeToolExecutionRequestHandler;
     private final Consumer<ToolExecution> toolExecutionHandler;
     private final Consumer<ChatResponse> completeResponseHandler;
+    private final Consumer<ChatResponse> modelResponseHandler;
 
     private final Consumer<Throwable> errorHandler;
 
@@ -57,6 +75,28 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     private final Map<String, ToolExecutor> toolExecutors;
     private final List<String> responseBuffer = new ArrayList<>();
     private final boolean hasOutputGuardrails;
+    private final AtomicBoolean cancelled;
+    /**
+     * Concurrency key of a tool call, {@code null} if the tool calls of a response are executed sequentially.
+     * See {@link TokenStream#executeToolsConcurrently}.
+     */
+    private final Function<ToolExecutionRequest, String> toolConcurrencyKey;
+    private final int maxToolConcurrency;
+    /**
+     * Streaming output guardrails, {@code null} if none. See {@link TokenStream#streamingOutputGuardrails}.
+     */
+    private final StreamingOutputGuardrails streamingOutputGuardrails;
+    private final int streamingReprompts;
+    private final StreamingGuardrailWindow guardrailWindow;
+    /**
+     * Indexes of the tool calls of this response whose arguments have been validated by the streaming guardrails.
+     */
+    private final Set<Integer> validatedToolCalls = new HashSet<>();
+    /**
+     * Set when a streaming guardrail stopped this model call: its remaining callbacks are dropped, while the token
+     * stream itself goes on (reprompt) or has been failed (abort).
+     */
+    private volatile boolean stoppedByGuardrail;
 
     AiServiceStreamingResponseHandler(
             ChatExecutor chatExecutor,
@@ -67,13 +107,19 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
             BiConsumer<Integer, ToolExecutionRequest> completeToolExecutionRequestHandler,
             Consumer<ToolExecution> toolExecutionHandler,
             Consumer<ChatResponse> completeResponseHandler,
+            Consumer<ChatResponse> modelResponseHandler,
             Consumer<Throwable> errorHandler,
             ChatMemory temporaryMemory,
             TokenUsage tokenUsage,
             List<ToolSpecification> toolSpecifications,
             Map<String, ToolExecutor> toolExecutors,
             GuardrailRequestParams commonGuardrailParams,
-            Object methodKey) {
+            Object methodKey,
+            AtomicBoolean cancelled,
+            Function<ToolExecutionRequest, String> toolConcurrencyKey,
+            int maxToolConcurrency,
+            StreamingOutputGuardrails streamingOutputGuardrails,
+            int streamingReprompts) {
         this.chatExecutor = ensureNotNull(chatExecutor, "chatExecutor");
         this.context = ensureNotNull(context, "context");
         this.memoryId = ensureNotNull(memoryId, "memoryId");
@@ -83,6 +129,7 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         this.partialToolExecutionRequestHandler = partialToolExecutionRequestHandler;
         this.completeToolExecutionRequestHandler = completeToolExecutionRequestHandler;
         this.completeResponseHandler = completeResponseHandler;
+        this.modelResponseHandler = modelResponseHandler;
         this.toolExecutionHandler = toolExecutionHandler;
         this.errorHandler = errorHandler;
 
@@ -93,10 +140,41 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         this.toolSpecifications = copy(toolSpecifications);
         this.toolExecutors = copy(toolExecutors);
         this.hasOutputGuardrails = context.guardrailService().hasOutputGuardrails(methodKey);
+        this.cancelled = ensureNotNull(cancelled, "cancelled");
+        this.toolConcurrencyKey = toolConcurrencyKey;
+        this.maxToolConcurrency = maxToolConcurrency;
+        this.streamingOutputGuardrails = streamingOutputGuardrails;
+        this.streamingReprompts = streamingReprompts;
+        this.guardrailWindow =
+                streamingOutputGuardrails == null ? null : new StreamingGuardrailWindow(streamingOutputGuardrails);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled.get() || stoppedByGuardrail;
     }
 
     @Override
     public void onPartialResponse(String partialResponse) {
+        if (isCancelled()) {
+            return;
+        }
+        if (guardrailWindow == null) {
+            emitPartialResponse(partialResponse);
+            return;
+        }
+        StreamingOutputGuardrailResult result = guardrailWindow.append(partialResponse);
+        if (!result.isPass()) {
+            onStreamingGuardrailViolation(result);
+            return;
+        }
+        String released = guardrailWindow.release();
+        if (released != null) {
+            emitPartialResponse(released);
+        }
+    }
+
+    private void emitPartialResponse(String partialResponse) {
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         if (hasOutputGuardrails) {
             responseBuffer.add(partialResponse);
@@ -107,35 +185,98 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+        if (isCancelled()) {
+            return;
+        }
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         partialToolExecutionRequestHandler.accept(index, partialToolExecutionRequest);
     }
 
+    @Override
+    public void onPartialToolCall(int index, String id, String name, CharSequence partialArguments) {
+        if (isCancelled() || partialToolExecutionRequestHandler == null) {
+            // nobody listens for partial tool calls: do not build a request per chunk
+            return;
+        }
+        partialToolExecutionRequestHandler.accept(index, ToolExecutionRequest.builder()
+                .id(id)
+                .name(name)
+                .arguments(partialArguments.toString())
+                .build());
+    }
+
+    @Override
+    public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+        if (isCancelled()) {
+            return;
+        }
+        if (guardrailWindow != null && !validateToolArguments(index, completeToolExecutionRequest)) {
+            return;
+        }
+        if (completeToolExecutionRequestHandler == null) {
+            return;
+        }
+        // called as soon as the arguments of one tool call are complete, before the response is complete
+        completeToolExecutionRequestHandler.accept(index, completeToolExecutionRequest);
+    }
+
     @Override
     public void onCompleteResponse(ChatResponse completeResponse) {
+        if (isCancelled()) {
+            LOG.debug("Token stream cancelled, dropping the complete response");
+            return;
+        }
+        if (guardrailWindow != null) {
+            // every partial response has been validated already, only the hold-back is left
+            String released = guardrailWindow.releaseAll();
+            if (released != null) {
+                emitPartialResponse(released);
+            }
+        }
+        if (modelResponseHandler != null) {
+            // the metadata still holds the usage of this call only
+            modelResponseHandler.accept(completeResponse);
+        }
         AiMessage aiMessage = completeResponse.aiMessage();
+        if (guardrailWindow != null && aiMessage.hasToolExecutionRequests()) {
+            List<ToolExecutionRequest> toolExecutionRequests = aiMessage.toolExecutionRequests();
+            for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                if (!validatedToolCalls.contains(i) && !validateToolArguments(i, toolExecutionRequests.get(i))) {
+                    return;
+                }
+            }
+        }
         addToMemory(aiMessage);
 
         if (aiMessage.hasToolExecutionRequests()) {
-            for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
-                String toolName = toolExecutionRequest.name();
-                ToolExecutor toolExecutor = toolExecutors.get(toolName);
-                String toolExecutionResult = toolExecutor.execute(toolExecutionRequest, memoryId);
-                ToolExecutionResultMessage toolExecutionResultMessage =
-                        ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult);
-                addToMemory(toolExecutionResultMessage);
-
-                if (toolExecutionHandler != null) {
-                    ToolExecution toolExecution = ToolExecution.builder()
-                            .request(toolExecutionRequest)
-                            .result(toolExecutionResult)
-                            .build();
-                    toolExecutionHandler.accept(toolExecution);
+            List<ToolExecutionRequest> toolExecutionRequests = aiMessage.toolExecutionRequests();
+            if (toolConcurrencyKey != null && toolExecutionRequests.size() > 1) {
+                executeToolsConcurrently(toolExecutionRequests);
+            } else {
+                for (ToolExecutionRequest toolExecutionRequest : toolExecutionRequests) {
+                    if (isCancelled()) {
+                        onToolCancelled(toolExecutionRequest);
+                        continue;
+                    }
+                    onToolExecuted(toolExecutionRequest, executeTool(toolExecutionRequest));
                 }
             }
 
+            if (isCancelled()) {
+                LOG.debug("Token stream cancelled, not starting the next model call");
+                return;
+            }
+
+            List<ChatMessage> messages;
+            try {
+                messages = messagesToSend(memoryId);
+            } catch (RuntimeException e) {
+                // e.g. the memory rejects a context over its token budget; the model callback would swallow it
+                onError(e);
+                return;
+            }
             ChatRequest chatRequest = ChatRequest.builder()
-                    .messages(messagesToSend(memoryId))
+                    .messages(messages)
                     .toolSpecifications(toolSpecifications)
                     .build();
 
@@ -148,13 +289,19 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                     completeToolExecutionRequestHandler,
                     toolExecutionHandler,
                     completeResponseHandler,
+                    modelResponseHandler,
                     errorHandler,
                     temporaryMemory,
                     TokenUsage.sum(tokenUsage, completeResponse.metadata().tokenUsage()),
                     toolSpecifications,
                     toolExecutors,
                     commonGuardrailParams,
-                    methodKey);
+                    methodKey,
+                    cancelled,
+                    toolConcurrencyKey,
+                    maxToolConcurrency,
+                    streamingOutputGuardrails,
+                    streamingReprompts);
 
             context.streamingChatModel.chat(chatRequest, handler);
         } else {
@@ -199,6 +346,208 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         }
     }
 
+    /**
+     * Executes the tool calls of one response concurrently, see {@link TokenStream#executeToolsConcurrently}.
+     * <p>
+     * The calls are cut into batches at every call with a {@code null} key, which runs alone. Within a batch, calls
+     * sharing a key form a lane that runs sequentially on its own virtual thread. Results are recorded on this thread
+     * in request order once the batch has finished, so the memory looks exactly as after sequential execution.
+     */
+    private void executeToolsConcurrently(List<ToolExecutionRequest> toolExecutionRequests) {
+        List<String> keys = toolExecutionRequests.stream().map(toolConcurrencyKey).toList();
+        int start = 0;
+        while (start < toolExecutionRequests.size()) {
+            if (keys.get(start) == null) {
+                ToolExecutionRequest toolExecutionRequest = toolExecutionRequests.get(start++);
+                if (isCancelled()) {
+                    onToolCancelled(toolExecutionRequest);
+                } else {
+                    onToolExecuted(toolExecutionRequest, executeTool(toolExecutionRequest));
+                }
+                continue;
+            }
+            int end = start;
+            while (end < toolExecutionRequests.size() && keys.get(end) != null) {
+                end++;
+            }
+            executeBatch(toolExecutionRequests.subList(start, end), keys.subList(start, end));
+            start = end;
+        }
+    }
+
+    private void executeBatch(List<ToolExecutionRequest> batch, List<String> keys) {
+        List<List<Integer>> lanes = new ArrayList<>();
+        Map<String, List<Integer>> keyToLane = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            String key = keys.get(i);
+            List<Integer> lane = key.isEmpty() ? null : keyToLane.get(key);
+            if (lane == null) {
+                lane = new ArrayList<>();
+                lanes.add(lane);
+                if (!key.isEmpty()) {
+                    keyToLane.put(key, lane);
+                }
+            }
+            lane.add(i);
+        }
+
+        String[] results = new String[batch.size()];
+        boolean[] executed = new boolean[batch.size()];
+        RuntimeException[] errors = new RuntimeException[batch.size()];
+        Semaphore permits = new Semaphore(maxToolConcurrency);
+        List<Future<?>> futures = new ArrayList<>(lanes.size());
+        // close() waits for every lane, which also makes the results visible to this thread
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<Integer> lane : lanes) {
+                futures.add(executor.submit(() -> {
+                    for (int i : lane) {
+                        if (isCancelled()) {
+                            return null;
+                        }
+                        permits.acquireUninterruptibly();
+                        try {
+                            results[i] = executeTool(batch.get(i));
+                            executed[i] = true;
+                        } catch (RuntimeException e) {
+                            errors[i] = e;
+                            throw e;
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtimeException
+                            ? runtimeException
+                            : new RuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // every call still gets a result: its own output, its error, or why it did not run
+        for (int i = 0; i < batch.size(); i++) {
+            if (executed[i]) {
+                onToolExecuted(batch.get(i), results[i]);
+            } else if (errors[i] != null) {
+                addToMemory(ToolExecutionResultMessage.from(batch.get(i), FAILED_TOOL_RESULT + errors[i].getMessage()));
+            } else if (isCancelled()) {
+                onToolCancelled(batch.get(i));
+            } else {
+                addToMemory(ToolExecutionResultMessage.from(batch.get(i), SKIPPED_TOOL_RESULT));
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops this model call. On a reprompt (if any is left) the reprompt message is added to the memory and the model
+     * is called again with a fresh window; otherwise the token stream fails.
+     * <p>
+     * A reprompt is only possible while nothing of this response has been released: the caller cannot take back text
+     * it has already consumed, and the new response would simply be appended to the rejected one.
+     */
+    private void onStreamingGuardrailViolation(StreamingOutputGuardrailResult result) {
+        stoppedByGuardrail = true;
+        if (result.action() != StreamingOutputGuardrailResult.Action.REPROMPT
+                || streamingReprompts >= streamingOutputGuardrails.maxReprompts()
+                || guardrailWindow.hasReleased()) {
+            LOG.debug("Streaming output guardrail stopped the response: {}", result.message());
+            reportError(new OutputGuardrailException(result.message()));
+            return;
+        }
+        LOG.debug("Streaming output guardrail reprompts the model: {}", result.message());
+        addToMemory(UserMessage.from(result.repromptMessage()));
+
+        ChatRequest chatRequest = ChatRequest.builder()
+                .messages(messagesToSend(memoryId))
+                .toolSpecifications(toolSpecifications)
+                .build();
+
+        var handler = new AiServiceStreamingResponseHandler(
+                chatExecutor,
+                context,
+                memoryId,
+                partialResponseHandler,
+                partialToolExecutionRequestHandler,
+                completeToolExecutionRequestHandler,
+                toolExecutionHandler,
+                completeResponseHandler,
+                modelResponseHandler,
+                errorHandler,
+                temporaryMemory,
+                tokenUsage,
+                toolSpecifications,
+                toolExecutors,
+                commonGuardrailParams,
+                methodKey,
+                cancelled,
+                toolConcurrencyKey,
+                maxToolConcurrency,
+                streamingOutputGuardrails,
+                streamingReprompts + 1);
+
+        context.streamingChatModel.chat(chatRequest, handler);
+    }
+
+    /**
+     * Validates the complete arguments of a tool call with the streaming guardrails, before the call is passed on or
+     * executed. A violation always aborts: the arguments have already been streamed to the caller as partial tool
+     * calls, so a reprompt could not take them back.
+     *
+     * @return whether the arguments pass
+     */
+    private boolean validateToolArguments(int index, ToolExecutionRequest toolExecutionRequest) {
+        validatedToolCalls.add(index);
+        String arguments = toolExecutionRequest.arguments();
+        if (arguments == null || arguments.isEmpty()) {
+            return true;
+        }
+        StreamingOutputGuardrailResult result =
+                StreamingGuardrailWindow.validateText(streamingOutputGuardrails, arguments);
+        if (result.isPass()) {
+            return true;
+        }
+        LOG.debug("Streaming output guardrail stopped tool call {}: {}", toolExecutionRequest.name(), result.message());
+        stoppedByGuardrail = true;
+        reportError(new OutputGuardrailException(result.message()));
+        return false;
+    }
+
+    private String executeTool(ToolExecutionRequest toolExecutionRequest) {
+        ToolExecutor toolExecutor = toolExecutors.get(toolExecutionRequest.name());
+        return toolExecutor.execute(toolExecutionRequest, memoryId);
+    }
+
+    private void onToolExecuted(ToolExecutionRequest toolExecutionRequest, String toolExecutionResult) {
+        addToMemory(ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult));
+
+        if (toolExecutionHandler != null) {
+            ToolExecution toolExecution = ToolExecution.builder()
+                    .request(toolExecutionRequest)
+                    .result(toolExecutionResult)
+                    .build();
+            toolExecutionHandler.accept(toolExecution);
+        }
+    }
+
+    private void onToolCancelled(ToolExecutionRequest toolExecutionRequest) {
+        // every tool call in memory must have a result, otherwise the next request is rejected
+        LOG.debug("Token stream cancelled, skipping tool execution {}", toolExecutionRequest.name());
+        addToMemory(ToolExecutionResultMessage.from(toolExecutionRequest, CANCELLED_TOOL_RESULT));
+    }
+
     private ChatMemory getMemory() {
         return getMemory(memoryId);
     }
@@ -217,6 +566,13 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onError(Throwable error) {
+        if (isCancelled()) {
+            return;
+        }
+        reportError(error);
+    }
+
+    private void reportError(Throwable error) {
         if (errorHandler != null) {
             try {
                 errorHandler.accept(error);
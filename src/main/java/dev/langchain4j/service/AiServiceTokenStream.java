@@ -17,10 +17,13 @@ import dev.langchain4j.service.tool.ToolExecutor;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static dev.langchain4j.internal.Utils.copy;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
 import static dev.langchain4j.internal.ValidationUtils.ensureNotEmpty;
 import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
 
@@ -35,14 +38,19 @@ public class AiServiceTokenStream implements TokenStream {
     private final Object memoryId;
     private final GuardrailRequestParams commonGuardrailParams;
     private final Object methodKey;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
 
     private Consumer<String> partialResponseHandler;
     private Consumer<List<Content>> contentsHandler;
     private Consumer<ToolExecution> toolExecutionHandler;
     private Consumer<ChatResponse> completeResponseHandler;
+    private Consumer<ChatResponse> modelResponseHandler;
     private Consumer<Throwable> errorHandler;
     private BiConsumer<Integer, ToolExecutionRequest> partialToolExecutionRequestHandler;
     private BiConsumer<Integer, ToolExecutionRequest> completeToolExecutionRequestHandler;
+    private Function<ToolExecutionRequest, String> toolConcurrencyKey;
+    private int maxToolConcurrency = 1;
+    private StreamingOutputGuardrails streamingOutputGuardrails;
 
     private int onPartialResponseInvoked;
     private int onCompleteResponseInvoked;
@@ -109,6 +117,12 @@ public class AiServiceTokenStream implements TokenStream {
         return this;
     }
 
+    @Override
+    public TokenStream onModelResponse(Consumer<ChatResponse> modelResponseHandler) {
+        this.modelResponseHandler = modelResponseHandler;
+        return this;
+    }
+
     @Override
     public TokenStream onError(Consumer<Throwable> errorHandler) {
         this.errorHandler = errorHandler;
@@ -123,6 +137,20 @@ public class AiServiceTokenStream implements TokenStream {
         return this;
     }
 
+    @Override
+    public TokenStream executeToolsConcurrently(Function<ToolExecutionRequest, String> concurrencyKey,
+                                                int maxConcurrency) {
+        this.toolConcurrencyKey = ensureNotNull(concurrencyKey, "concurrencyKey");
+        this.maxToolConcurrency = ensureGreaterThanZero(maxConcurrency, "maxConcurrency");
+        return this;
+    }
+
+    @Override
+    public TokenStream streamingOutputGuardrails(StreamingOutputGuardrails guardrails) {
+        this.streamingOutputGuardrails = guardrails;
+        return this;
+    }
+
     @Override
     public void start() {
         validateConfiguration();
@@ -146,13 +174,19 @@ public class AiServiceTokenStream implements TokenStream {
                 completeToolExecutionRequestHandler,
                 toolExecutionHandler,
                 completeResponseHandler,
+                modelResponseHandler,
                 errorHandler,
                 initTemporaryMemory(context, messages),
                 new TokenUsage(),
                 toolSpecifications,
                 toolExecutors,
                 commonGuardrailParams,
-                methodKey);
+                methodKey,
+                cancelled,
+                toolConcurrencyKey,
+                maxToolConcurrency,
+                streamingOutputGuardrails,
+                0);
 
         if (contentsHandler != null && retrievedContents != null) {
             contentsHandler.accept(retrievedContents);
@@ -161,6 +195,11 @@ public class AiServiceTokenStream implements TokenStream {
         context.streamingChatModel.chat(chatRequest, handler);
     }
 
+    @Override
+    public void cancel() {
+        cancelled.set(true);
+    }
+
     private void validateConfiguration() {
         if (onPartialResponseInvoked != 1) {
             throw new IllegalConfigurationException("onPartialResponse must be invoked on TokenStream exactly 1 time");
@@ -0,0 +1,101 @@
+package dev.langchain4j.service;
+
+/**
+ * The sliding window of one streaming model call, see {@link StreamingOutputGuardrail}.
+ * <p>
+ * Every partial response is appended to both the window (the last {@code windowSize} characters, passed to the
+ * guardrails) and the pending text (not yet passed to the caller). Once the window has been validated, everything but
+ * the last {@code holdBackChars} pending characters is released. Partial responses of one call arrive on one thread,
+ * so no synchronization is needed.
+ */
+class StreamingGuardrailWindow {
+
+    private final StreamingOutputGuardrails guardrails;
+    private final StringBuilder window;
+    private final StringBuilder pending = new StringBuilder();
+    /**
+     * Whether any text has been passed to the caller, after which the model can no longer be reprompted.
+     */
+    private boolean released;
+
+    StreamingGuardrailWindow(StreamingOutputGuardrails guardrails) {
+        this.guardrails = guardrails;
+        this.window = new StringBuilder(guardrails.windowSize() * 2);
+    }
+
+    /**
+     * Appends a partial response and validates the window.
+     *
+     * @return the first result that is not a pass, or a pass
+     */
+    StreamingOutputGuardrailResult append(String partialResponse) {
+        pending.append(partialResponse);
+        window.append(partialResponse);
+        int overflow = window.length() - guardrails.windowSize();
+        if (overflow > 0) {
+            window.delete(0, overflow);
+        }
+        return validate(guardrails, window);
+    }
+
+    /**
+     * Validates a complete text, such as the arguments of a tool call, with the same windows it would have been seen
+     * through when streamed: overlapping windows of {@code windowSize} characters, so that a violation of up to
+     * {@code holdBackChars + 1} characters (and at least half a window) lies within one of them.
+     *
+     * @return the first result that is not a pass, or a pass
+     */
+    static StreamingOutputGuardrailResult validateText(StreamingOutputGuardrails guardrails, String text) {
+        int windowSize = guardrails.windowSize();
+        int step = Math.max(1, Math.min(windowSize - guardrails.holdBackChars(), windowSize / 2));
+        for (int start = 0; ; start += step) {
+            int end = Math.min(start + windowSize, text.length());
+            StreamingOutputGuardrailResult result = validate(guardrails, text.subSequence(start, end));
+            if (!result.isPass() || end == text.length()) {
+                return result;
+            }
+        }
+    }
+
+    private static StreamingOutputGuardrailResult validate(StreamingOutputGuardrails guardrails, CharSequence window) {
+        for (StreamingOutputGuardrail guardrail : guardrails.guardrails()) {
+            StreamingOutputGuardrailResult result = guardrail.validate(window);
+            if (result != null && !result.isPass()) {
+                return result;
+            }
+        }
+        return StreamingOutputGuardrailResult.pass();
+    }
+
+    /**
+     * Releases the validated text beyond the hold-back.
+     *
+     * @return the released text, or {@code null} if nothing is released
+     */
+    String release() {
+        return release(pending.length() - guardrails.holdBackChars());
+    }
+
+    /**
+     * Releases all pending text, when the response is complete.
+     *
+     * @return the released text, or {@code null} if nothing is pending
+     */
+    String releaseAll() {
+        return release(pending.length());
+    }
+
+    boolean hasReleased() {
+        return released;
+    }
+
+    private String release(int length) {
+        if (length <= 0) {
+            return null;
+        }
+        String text = pending.substring(0, length);
+        pending.delete(0, length);
+        released = true;
+        return text;
+    }
+}
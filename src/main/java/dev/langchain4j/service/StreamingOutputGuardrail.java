@@ -0,0 +1,25 @@
+package dev.langchain4j.service;
+
+/**
+ * An output guardrail that validates a streamed text response while it is being streamed.
+ * <p>
+ * Regular output guardrails validate the complete response, so the whole answer has to be buffered before anything
+ * is shown to the user. A streaming guardrail instead sees a bounded sliding window over the most recent text (see
+ * {@link StreamingOutputGuardrails#windowSize()}) every time a partial response arrives. Text is passed on to the
+ * caller with a small fixed delay ({@link StreamingOutputGuardrails#holdBackChars()}), so a violation can still be
+ * caught before its first character has been emitted, as long as it is not longer than the hold-back.
+ * <p>
+ * Implementations must be cheap (they are invoked once per partial response) and stateless: the window is the only
+ * input.
+ */
+@FunctionalInterface
+public interface StreamingOutputGuardrail {
+
+    /**
+     * Validates the most recent text of the response.
+     *
+     * @param window the last {@code windowSize} characters streamed so far (fewer at the start of the response)
+     * @return the result of the validation
+     */
+    StreamingOutputGuardrailResult validate(CharSequence window);
+}
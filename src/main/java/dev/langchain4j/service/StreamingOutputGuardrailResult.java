@@ -0,0 +1,76 @@
+package dev.langchain4j.service;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotBlank;
+
+/**
+ * The result of a {@link StreamingOutputGuardrail} validation.
+ */
+public final class StreamingOutputGuardrailResult {
+
+    private static final StreamingOutputGuardrailResult PASS = new StreamingOutputGuardrailResult(Action.PASS, null, null);
+
+    /**
+     * What to do with the stream.
+     */
+    public enum Action {
+        /**
+         * Keep streaming.
+         */
+        PASS,
+        /**
+         * Stop the model call and report an error to the caller.
+         */
+        ABORT,
+        /**
+         * Stop the model call and call the model again with an additional user message, the text already emitted is
+         * kept. Falls back to {@link #ABORT} once the reprompts are exhausted.
+         */
+        REPROMPT
+    }
+
+    private final Action action;
+    private final String message;
+    private final String repromptMessage;
+
+    private StreamingOutputGuardrailResult(Action action, String message, String repromptMessage) {
+        this.action = action;
+        this.message = message;
+        this.repromptMessage = repromptMessage;
+    }
+
+    public static StreamingOutputGuardrailResult pass() {
+        return PASS;
+    }
+
+    /**
+     * @param message the reason, reported to the caller
+     */
+    public static StreamingOutputGuardrailResult abort(String message) {
+        return new StreamingOutputGuardrailResult(Action.ABORT, ensureNotBlank(message, "message"), null);
+    }
+
+    /**
+     * @param message         the reason, reported to the caller if no reprompt is left
+     * @param repromptMessage the user message sent to the model
+     */
+    public static StreamingOutputGuardrailResult reprompt(String message, String repromptMessage) {
+        return new StreamingOutputGuardrailResult(Action.REPROMPT, ensureNotBlank(message, "message"),
+                ensureNotBlank(repromptMessage, "repromptMessage"));
+    }
+
+    public Action action() {
+        return action;
+    }
+
+    public boolean isPass() {
+        return action == Action.PASS;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    public String repromptMessage() {
+        return repromptMessage;
+    }
+}
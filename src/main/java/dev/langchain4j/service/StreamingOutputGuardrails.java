@@ -0,0 +1,93 @@
+package dev.langchain4j.service;
+
+import java.util.List;
+
+import static dev.langchain4j.internal.Utils.copy;
+import static dev.langchain4j.internal.ValidationUtils.ensureBetween;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotEmpty;
+
+/**
+ * The {@link StreamingOutputGuardrail}s of a token stream and how the stream is windowed for them, see
+ * {@link TokenStream#streamingOutputGuardrails(StreamingOutputGuardrails)}.
+ */
+public final class StreamingOutputGuardrails {
+
+    private final List<StreamingOutputGuardrail> guardrails;
+    private final int windowSize;
+    private final int holdBackChars;
+    private final int maxReprompts;
+
+    private StreamingOutputGuardrails(Builder builder) {
+        this.guardrails = copy(ensureNotEmpty(builder.guardrails, "guardrails"));
+        this.windowSize = ensureGreaterThanZero(builder.windowSize, "windowSize");
+        this.holdBackChars = ensureBetween(builder.holdBackChars, 0, windowSize, "holdBackChars");
+        this.maxReprompts = ensureBetween(builder.maxReprompts, 0, Integer.MAX_VALUE, "maxReprompts");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<StreamingOutputGuardrail> guardrails() {
+        return guardrails;
+    }
+
+    /**
+     * Number of most recent characters passed to the guardrails.
+     */
+    public int windowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Number of most recent characters held back until they have been validated a few more times. A violation that
+     * is not longer than this (plus one character) is caught before any of it reaches the caller.
+     */
+    public int holdBackChars() {
+        return holdBackChars;
+    }
+
+    /**
+     * How many times the model may be reprompted within one token stream before a reprompt becomes an abort.
+     */
+    public int maxReprompts() {
+        return maxReprompts;
+    }
+
+    public static final class Builder {
+
+        private List<StreamingOutputGuardrail> guardrails;
+        private int windowSize = 256;
+        private int holdBackChars = 32;
+        private int maxReprompts = 1;
+
+        public Builder guardrails(List<StreamingOutputGuardrail> guardrails) {
+            this.guardrails = guardrails;
+            return this;
+        }
+
+        public Builder guardrails(StreamingOutputGuardrail... guardrails) {
+            return guardrails(List.of(guardrails));
+        }
+
+        public Builder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public Builder holdBackChars(int holdBackChars) {
+            this.holdBackChars = holdBackChars;
+            return this;
+        }
+
+        public Builder maxReprompts(int maxReprompts) {
+            this.maxReprompts = maxReprompts;
+            return this;
+        }
+
+        public StreamingOutputGuardrails build() {
+            return new StreamingOutputGuardrails(this);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import dev.langchain4j.service.tool.ToolExecution;
 import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Represents a token stream from the model to which you can subscribe and receive updates
@@ -59,6 +60,23 @@ public interface TokenStream {
      */
     TokenStream onCompleteResponse(Consumer<ChatResponse> completeResponseHandler);
 
+    /**
+     * The provided consumer will be invoked with the response of every call made to the language model, including the
+     * intermediate responses that request tool executions.
+     * <p>
+     * Unlike the response passed to {@link #onCompleteResponse(Consumer)}, whose token usage is summed over all calls,
+     * the metadata of each response describes only that call (its own token usage and model name). The invocation
+     * happens before the requested tools are executed.
+     * <p>
+     * The default implementation ignores it.
+     *
+     * @param modelResponseHandler lambda that consumes the response of each model call
+     * @return token stream instance used to configure or start stream processing
+     */
+    default TokenStream onModelResponse(Consumer<ChatResponse> modelResponseHandler) {
+        return this;
+    }
+
     /**
      * The provided consumer will be invoked when an error occurs during streaming.
      *
@@ -80,4 +98,55 @@ public interface TokenStream {
      * Will send a request to LLM and start response streaming.
      */
     void start();
+
+    /**
+     * Cancels the stream: the in-flight model call is aborted, no further tools are executed
+     * and no further model calls are made. None of the handlers are invoked after cancellation.
+     * <p>
+     * The default implementation does nothing.
+     */
+    default void cancel() {
+    }
+
+    /**
+     * Executes the tool calls of one model response concurrently (on virtual threads) instead of one after another.
+     * <p>
+     * {@code concurrencyKey} declares which calls may overlap: calls with different keys run concurrently, calls with
+     * the same key run one after another in request order, an empty key never conflicts with anything, and
+     * {@code null} marks a call that must not overlap with any other call (it runs alone, after the calls before it
+     * and before the calls after it). Tool results are still added to the memory, and reported to
+     * {@link #onToolExecuted(Consumer)}, in request order.
+     * <p>
+     * The default implementation ignores it and tools are executed sequentially.
+     *
+     * @param concurrencyKey maps a tool call to its concurrency key
+     * @param maxConcurrency maximum number of tools executing at the same time
+     * @return token stream instance used to configure or start stream processing
+     */
+    default TokenStream executeToolsConcurrently(Function<ToolExecutionRequest, String> concurrencyKey,
+                                                 int maxConcurrency) {
+        return this;
+    }
+
+    /**
+     * Validates the streamed text with {@link StreamingOutputGuardrail}s while it is being streamed, instead of
+     * buffering the whole answer as regular output guardrails do.
+     * <p>
+     * Partial responses are passed to {@link #onPartialResponse(Consumer)} with a delay of
+     * {@link StreamingOutputGuardrails#holdBackChars()} characters. When a guardrail aborts, the model call is stopped
+     * and {@link #onError(Consumer)} receives an {@link dev.langchain4j.guardrail.OutputGuardrailException}. When it
+     * reprompts before any text of the response has been passed on, the model call is stopped, the reprompt message is
+     * added to the memory and the model is called again; the stream simply continues with the new response. Once text
+     * has been passed on, a reprompt aborts instead. The arguments of every tool call are validated the same way once
+     * they are complete, before the call is passed to {@link #onCompleteToolExecutionRequest} or executed; a violation
+     * there always aborts.
+     * <p>
+     * The default implementation ignores it.
+     *
+     * @param guardrails the guardrails and their window
+     * @return token stream instance used to configure or start stream processing
+     */
+    default TokenStream streamingOutputGuardrails(StreamingOutputGuardrails guardrails) {
+        return this;
+    }
 }
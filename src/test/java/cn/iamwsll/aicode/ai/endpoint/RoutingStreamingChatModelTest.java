@@ -0,0 +1,129 @@
+package cn.iamwsll.aicode.ai.endpoint;
+
+import cn.iamwsll.aicode.config.ModelRoutingProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ConnectException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingStreamingChatModelTest {
+
+    private ModelRoutingProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ModelEndpointRouter router;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ModelRoutingProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        router = new ModelEndpointRouter();
+        ReflectionTestUtils.setField(router, "modelRoutingProperties", properties);
+        ReflectionTestUtils.setField(router, "meterRegistry", meterRegistry);
+        router.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.destroy();
+    }
+
+    @Test
+    void failsOverOnConnectError() throws Exception {
+        FakeModel backup = new FakeModel(handler -> respond(handler, "ok"));
+        StreamingChatModel model = routed(new FakeModel(handler -> handler.onError(new ConnectException("refused"))), backup);
+
+        assertEquals("ok", chat(model).get(1, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.counter("ai.model.route.failover", "role", "test").count());
+    }
+
+    @Test
+    void doesNotRetryRequestErrors() {
+        FakeModel backup = new FakeModel(handler -> respond(handler, "ok"));
+        StreamingChatModel model = routed(new FakeModel(handler -> handler.onError(new IllegalArgumentException("bad request"))), backup);
+
+        CompletableFuture<String> result = chat(model);
+        assertTrue(result.isCompletedExceptionally());
+        assertNull(backup.handler);
+    }
+
+    @Test
+    void hedgedRequestWinsAndCancelsTheSlowOne() throws Exception {
+        properties.setHedgeEnabled(true);
+        properties.setHedgeMaxDelayMillis(50);
+        // 主端点一直不出 token
+        FakeModel slow = new FakeModel(handler -> {
+        });
+        StreamingChatModel model = routed(slow, new FakeModel(handler -> respond(handler, "fast")));
+
+        assertEquals("fast", chat(model).get(1, TimeUnit.SECONDS));
+        assertTrue(slow.handler.isCancelled());
+        assertEquals(1, meterRegistry.counter("ai.model.route.hedge", "role", "test").count());
+    }
+
+    private StreamingChatModel routed(StreamingChatModel primary, StreamingChatModel backup) {
+        ModelEndpoint endpoint = new ModelEndpoint();
+        endpoint.setName("backup");
+        return router.streaming("test", primary, List.of(endpoint), e -> backup);
+    }
+
+    private static CompletableFuture<String> chat(StreamingChatModel model) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        StringBuilder text = new StringBuilder();
+        model.chat(ChatRequest.builder().messages(UserMessage.from("hi")).build(), new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                text.append(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                result.complete(text.toString());
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    private static void respond(StreamingChatResponseHandler handler, String text) {
+        handler.onPartialResponse(text);
+        handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from(text)).build());
+    }
+
+    private static class FakeModel implements StreamingChatModel {
+
+        private final Consumer<StreamingChatResponseHandler> behavior;
+
+        private volatile StreamingChatResponseHandler handler;
+
+        FakeModel(Consumer<StreamingChatResponseHandler> behavior) {
+            this.behavior = behavior;
+        }
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            this.handler = handler;
+            behavior.accept(handler);
+        }
+    }
+}
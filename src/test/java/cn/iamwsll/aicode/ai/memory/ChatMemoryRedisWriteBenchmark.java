@@ -0,0 +1,128 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
+
+/**
+ * 对话记忆写入 Redis 的字节数基准
+ * 模拟一次 Vue 项目会话：5 轮对话，每轮 100 次 writeFile 工具调用（参数约 3KB），对比每次写入都直接写 Redis（改动前）
+ * 和按轮次缓冲、每 20 次写入提交一次检查点（改动后）写入 Redis 的次数和字节数。
+ * 字节数按 RedisChatMemoryStore 的方式计算：每次写入把整个消息列表序列化为 JSON 后 SET；
+ * 增量写入按 RedisListChatMemoryStore 的方式计算：只计 LPUSH 放回和 RPUSH 追加的消息。运行 main 方法即可
+ */
+public class ChatMemoryRedisWriteBenchmark {
+
+    private static final int TURNS = 5;
+
+    private static final int TOOL_ROUNDS = 100;
+
+    private static final int ARGUMENT_CHARS = 3000;
+
+    public static void main(String[] args) {
+        CountingStore direct = new CountingStore();
+        runSession(direct, null);
+        CountingStore buffered = new CountingStore();
+        runSession(buffered, new TurnBufferedChatMemoryStore(buffered, 20));
+        CountingStore delta = new CountingStore(true);
+        runSession(delta, null);
+        System.out.printf("直接写入: %d 次, %,d 字节%n", direct.writes, direct.bytes);
+        System.out.printf("按轮次缓冲: %d 次, %,d 字节%n", buffered.writes, buffered.bytes);
+        System.out.printf("字节数降低为原来的 %.1f%%%n", 100.0 * buffered.bytes / direct.bytes);
+        System.out.printf("增量写入（Redis 列表）: %d 次, %,d 字节, 为直接写入的 %.1f%%%n",
+                delta.writes, delta.bytes, 100.0 * delta.bytes / direct.bytes);
+    }
+
+    /**
+     * 按流式处理器写入记忆的顺序模拟一次会话：系统消息、用户消息，每次工具调用一条 AI 消息和一条工具结果，最后一条 AI 回复
+     */
+    private static void runSession(CountingStore redis, TurnBufferedChatMemoryStore turnStore) {
+        Long memoryId = 1L;
+        ChatMemory chatMemory = new PrefixStableChatMemory(memoryId, turnStore == null ? redis : turnStore, 20, 10);
+        String arguments = "{\"relativeFilePath\":\"src/App.vue\",\"content\":\"" + "x".repeat(ARGUMENT_CHARS) + "\"}";
+        for (int turn = 0; turn < TURNS; turn++) {
+            chatMemory.add(SystemMessage.from("你是一位资深的 Vue3 前端架构师"));
+            chatMemory.add(UserMessage.from("第 " + turn + " 轮修改"));
+            if (turnStore != null) {
+                turnStore.beginTurn(memoryId);
+            }
+            for (int round = 0; round < TOOL_ROUNDS; round++) {
+                ToolExecutionRequest request = ToolExecutionRequest.builder()
+                        .id("call_" + turn + "_" + round)
+                        .name("writeFile")
+                        .arguments(arguments)
+                        .build();
+                chatMemory.add(AiMessage.from(List.of(request)));
+                chatMemory.add(ToolExecutionResultMessage.from(request, "文件写入成功: src/App.vue"));
+            }
+            chatMemory.add(AiMessage.from("修改完成"));
+            if (turnStore != null) {
+                turnStore.endTurn(memoryId);
+            }
+        }
+    }
+
+    /**
+     * 记录写入次数和序列化字节数的内存存储
+     */
+    private static final class CountingStore implements ChatMemoryStore {
+
+        private final Map<Object, List<ChatMessage>> data = new HashMap<>();
+
+        /**
+         * 是否按增量写入计算字节数
+         */
+        private final boolean delta;
+
+        private long writes;
+
+        private long bytes;
+
+        CountingStore() {
+            this(false);
+        }
+
+        CountingStore(boolean delta) {
+            this.delta = delta;
+        }
+
+        @Override
+        public List<ChatMessage> getMessages(Object memoryId) {
+            return new ArrayList<>(data.getOrDefault(memoryId, List.of()));
+        }
+
+        @Override
+        public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+            writes++;
+            if (delta) {
+                List<ChatMessage> old = data.getOrDefault(memoryId, List.of());
+                List<String> oldJson = old.stream().map(ChatMessageSerializer::messageToJson).toList();
+                ChatMessageListDelta change = ChatMessageListDelta.diff(old, oldJson, messages);
+                change.head().forEach(json -> bytes += json.getBytes(StandardCharsets.UTF_8).length);
+                change.tail().forEach(json -> bytes += json.getBytes(StandardCharsets.UTF_8).length);
+            } else {
+                bytes += messagesToJson(messages).getBytes(StandardCharsets.UTF_8).length;
+            }
+            data.put(memoryId, new ArrayList<>(messages));
+        }
+
+        @Override
+        public void deleteMessages(Object memoryId) {
+            data.remove(memoryId);
+        }
+    }
+}
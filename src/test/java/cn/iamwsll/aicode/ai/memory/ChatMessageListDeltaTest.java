@@ -0,0 +1,75 @@
+package cn.iamwsll.aicode.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatMessageListDeltaTest {
+
+    private static final ChatMessage SYSTEM = SystemMessage.from("你是一位资深的 Vue3 前端架构师");
+
+    @Test
+    void appendsOnlyNewMessages() {
+        List<ChatMessage> oldMessages = List.of(SYSTEM, UserMessage.from("u1"));
+        List<ChatMessage> newMessages = List.of(SYSTEM, UserMessage.from("u1"), AiMessage.from("a1"));
+
+        ChatMessageListDelta delta = ChatMessageListDelta.diff(oldMessages, toJson(oldMessages), newMessages);
+
+        assertEquals(0, delta.trimFrom());
+        assertEquals(List.of(), delta.head());
+        assertEquals(toJson(List.of(AiMessage.from("a1"))), delta.tail());
+        assertEquals(toJson(newMessages), delta.json());
+    }
+
+    @Test
+    void trimsEvictedBlockAfterPinnedSystemMessage() {
+        List<ChatMessage> oldMessages = List.of(SYSTEM, UserMessage.from("u1"), AiMessage.from("a1"),
+                UserMessage.from("u2"), AiMessage.from("a2"));
+        List<ChatMessage> newMessages = List.of(SYSTEM, UserMessage.from("u2"), AiMessage.from("a2"),
+                UserMessage.from("u3"));
+
+        ChatMessageListDelta delta = ChatMessageListDelta.diff(oldMessages, toJson(oldMessages), newMessages);
+
+        assertEquals(3, delta.trimFrom());
+        assertEquals(toJson(List.of(SYSTEM)), delta.head());
+        assertEquals(toJson(List.of(UserMessage.from("u3"))), delta.tail());
+        assertEquals(toJson(newMessages), delta.json());
+        assertEquals(toJson(newMessages), apply(toJson(oldMessages), delta));
+    }
+
+    @Test
+    void fallsBackToRewritingEverythingAfterCommonPrefix() {
+        List<ChatMessage> oldMessages = List.of(SYSTEM, UserMessage.from("u1"), AiMessage.from("a1"));
+        List<ChatMessage> newMessages = List.of(SYSTEM, UserMessage.from("u1 压缩后"), AiMessage.from("a1"));
+
+        ChatMessageListDelta delta = ChatMessageListDelta.diff(oldMessages, toJson(oldMessages), newMessages);
+
+        assertEquals(3, delta.trimFrom());
+        assertEquals(toJson(newMessages), apply(toJson(oldMessages), delta));
+    }
+
+    /**
+     * 按 Redis 脚本的方式在列表上执行增量修改
+     */
+    private static List<String> apply(List<String> list, ChatMessageListDelta delta) {
+        List<String> result = new ArrayList<>(list);
+        if (delta.trimFrom() > 0) {
+            result.subList(0, Math.min(delta.trimFrom(), result.size())).clear();
+            result.addAll(0, delta.head());
+        }
+        result.addAll(delta.tail());
+        return result;
+    }
+
+    private static List<String> toJson(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessageSerializer::messageToJson).toList();
+    }
+}
@@ -0,0 +1,72 @@
+package cn.iamwsll.aicode.ai.tools;
+
+import cn.hutool.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalJsonArgumentDecoderTest {
+
+    private static final String CONTENT = """
+            <template>
+              <div class="app">"引号" \\ 反斜杠	制表符 \u0001 😀</div>
+            </template>
+            """;
+
+    @Test
+    void decodesFieldsSplitAtEveryPosition() {
+        String arguments = new JSONObject()
+                .set("relativeFilePath", "src/App.vue")
+                .set("overwrite", true)
+                .set("content", CONTENT)
+                .toString();
+        // 每种切分位置都要能正确解码，包括把转义序列拆在两个片段之间
+        for (int split = 0; split <= arguments.length(); split++) {
+            StringBuilder streamed = new StringBuilder();
+            IncrementalJsonArgumentDecoder decoder = new IncrementalJsonArgumentDecoder("content", streamed::append);
+            decoder.feed(arguments.substring(0, split));
+            decoder.feed(arguments.substring(split));
+
+            assertTrue(decoder.isComplete(), "split at " + split);
+            assertEquals(CONTENT, streamed.toString(), "split at " + split);
+            assertEquals("src/App.vue", decoder.stringField("relativeFilePath"));
+            assertEquals(CONTENT.length(), decoder.streamedLength());
+            assertEquals(arguments.length(), decoder.fedLength());
+        }
+    }
+
+    @Test
+    void decodesUnicodeEscapesInRandomFragments() {
+        String arguments = "{\"content\": \"\\u4f60\\u597d\\ud83d\\ude00\\n\", \"nested\": {\"a\": [1, \"}\"]}, "
+                + "\"relativeFilePath\": \"index.html\"}";
+        Random random = new Random(42);
+        StringBuilder streamed = new StringBuilder();
+        IncrementalJsonArgumentDecoder decoder = new IncrementalJsonArgumentDecoder("content", streamed::append);
+        for (int start = 0; start < arguments.length(); ) {
+            int end = Math.min(arguments.length(), start + 1 + random.nextInt(5));
+            decoder.feed(arguments.substring(start, end));
+            start = end;
+        }
+
+        assertTrue(decoder.isComplete());
+        assertEquals("你好😀\n", streamed.toString());
+        assertEquals("index.html", decoder.stringField("relativeFilePath"));
+    }
+
+    @Test
+    void reportsMalformedAndIncompleteArguments() {
+        IncrementalJsonArgumentDecoder malformed = new IncrementalJsonArgumentDecoder("content", chars -> {
+        });
+        malformed.feed("{\"content\": \"bad \\x escape\"}");
+        assertTrue(malformed.isMalformed());
+        assertFalse(malformed.isComplete());
+
+        IncrementalJsonArgumentDecoder truncated = new IncrementalJsonArgumentDecoder("content", chars -> {
+        });
+        truncated.feed("{\"relativeFilePath\": \"a.js\", \"content\": \"console.log(1)");
+        assertFalse(truncated.isComplete());
+        assertFalse(truncated.isStreamedFieldComplete());
+    }
+}
@@ -0,0 +1,54 @@
+package cn.iamwsll.aicode.ai.tools;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolManagerTest {
+
+    private ToolManager toolManager;
+
+    @BeforeEach
+    void setUp() {
+        toolManager = new ToolManager();
+        BaseTool[] tools = {new FileWriteTool(), new FileReadTool(), new FileModifyTool(),
+                new FileDirReadTool(), new FileDeleteTool()};
+        ReflectionTestUtils.setField(toolManager, "tools", tools);
+        toolManager.initTools();
+    }
+
+    @Test
+    void readsAreKeyedLikeWritesToTheSameFile() {
+        String read = toolManager.getConcurrencyKey(request("readFile", "{\"relativeFilePath\":\"src/App.vue\"}"));
+        String write = toolManager.getConcurrencyKey(request("writeFile", "{\"relativeFilePath\":\"src/./App.vue\",\"content\":\"a\"}"));
+        String other = toolManager.getConcurrencyKey(request("readFile", "{\"relativeFilePath\":\"src/main.js\"}"));
+        assertNotNull(read);
+        assertEquals(write, read);
+        assertNotEquals(read, other);
+        // 目录结构涉及所有文件，单独执行
+        assertNull(toolManager.getConcurrencyKey(request("readDir", "{}")));
+    }
+
+    @Test
+    void writesToTheSameFileShareAKey() {
+        String write = toolManager.getConcurrencyKey(request("writeFile", "{\"relativeFilePath\":\"src/App.vue\",\"content\":\"a\"}"));
+        String modify = toolManager.getConcurrencyKey(request("modifyFile", "{\"relativeFilePath\":\"src/./App.vue\"}"));
+        String other = toolManager.getConcurrencyKey(request("writeFile", "{\"relativeFilePath\":\"src/main.js\",\"content\":\"b\"}"));
+        assertNotNull(write);
+        assertEquals(write, modify);
+        assertNotEquals(write, other);
+    }
+
+    @Test
+    void unknownToolsAndBrokenArgumentsRunAlone() {
+        assertNull(toolManager.getConcurrencyKey(request("exit", "{}")));
+        assertNull(toolManager.getConcurrencyKey(request("writeFile", "{\"relativeFilePath\":")));
+    }
+
+    private static ToolExecutionRequest request(String name, String arguments) {
+        return ToolExecutionRequest.builder().id("call_" + name).name(name).arguments(arguments).build();
+    }
+}
@@ -0,0 +1,482 @@
+package cn.iamwsll.aicode.benchmark;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import cn.iamwsll.aicode.ai.memory.LocalTokenEstimator;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地的 OpenAI 兼容模拟服务，用于离线压测和延迟测试
+ * 1. 实现 /v1/chat/completions 的流式（SSE）和非流式协议：文本增量、工具调用增量（首个分片带 id 和名称，之后只有参数分片）、
+ * finish_reason 和 stream_options.include_usage 要求的用量分片（含 prompt_tokens_details.cached_tokens）
+ * 2. 按系统提示词匹配 resources/mock-openai 下录制的会话（路由、HTML、多文件、Vue 工程、代码质检），
+ * 按最后一条用户消息之后的 AI 消息条数决定回放第几轮，Vue 工程会话因此会按 writeFile 工具循环逐轮回放
+ * 3. 首 token 延迟、token 间隔、抖动可配置，可以按比例注入请求失败（429/500）和流中途断开
+ * 4. 同一会话的请求与上一次请求的公共前缀计为缓存命中，用于观察前缀缓存相关的指标
+ * 可以在测试中嵌入启动，也可以运行 main 方法独立启动，应用以 mock profile 启动即可把所有模型指向它：
+ * --spring.profiles.active=local,mock
+ */
+@Slf4j
+public class MockOpenAiServer implements AutoCloseable {
+
+    private static final String[] SESSION_RESOURCES = {
+            "mock-openai/routing.json",
+            "mock-openai/html.json",
+            "mock-openai/multi-file.json",
+            "mock-openai/vue-project.json",
+            "mock-openai/code-quality-check.json"
+    };
+
+    /**
+     * 服务端前缀缓存的块大小，命中的 token 数按块向下取整
+     */
+    private static final int CACHE_BLOCK_TOKENS = 64;
+
+    private final Options options;
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    private final Session fallbackSession;
+
+    private final LocalTokenEstimator estimator;
+
+    /**
+     * 每个会话上一次请求的消息（序列化后），用于计算前缀缓存命中
+     */
+    private final Cache<String, List<String>> lastRequests = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .build();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private MockOpenAiServer(Options options) throws IOException {
+        this.options = options;
+        this.estimator = LocalTokenEstimator.forModel(options.getModelName());
+        for (String resource : SESSION_RESOURCES) {
+            sessions.add(Session.load(resource));
+        }
+        this.fallbackSession = new Session("fallback", List.of(), List.of(new Turn("好的。", List.of())));
+        this.server = HttpServer.create(new InetSocketAddress(options.getPort()), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * 启动模拟服务
+     *
+     * @param options 配置，端口为 0 时随机选择
+     * @return 已启动的服务，通过 {@link #baseUrl()} 获取地址
+     */
+    public static MockOpenAiServer start(Options options) throws IOException {
+        MockOpenAiServer mockServer = new MockOpenAiServer(options);
+        mockServer.server.start();
+        log.info("模拟模型服务已启动: {}, {}", mockServer.baseUrl(), options);
+        return mockServer;
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/v1";
+    }
+
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 参数形如 --port=18080 --token-interval-millis=20，对应 {@link Options} 的字段
+     */
+    public static void main(String[] args) throws IOException {
+        Options options = new Options();
+        options.setPort(18080);
+        for (String arg : args) {
+            String[] pair = StrUtil.removePrefix(arg, "--").split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+            }
+            String value = pair[1];
+            switch (pair[0]) {
+                case "port" -> options.setPort(Integer.parseInt(value));
+                case "model-name" -> options.setModelName(value);
+                case "first-token-delay-millis" -> options.setFirstTokenDelayMillis(Long.parseLong(value));
+                case "token-interval-millis" -> options.setTokenIntervalMillis(Long.parseLong(value));
+                case "jitter-millis" -> options.setJitterMillis(Long.parseLong(value));
+                case "chunk-chars" -> options.setChunkChars(Integer.parseInt(value));
+                case "error-rate" -> options.setErrorRate(Double.parseDouble(value));
+                case "abort-rate" -> options.setAbortRate(Double.parseDouble(value));
+                default -> throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+        MockOpenAiServer mockServer = start(options);
+        Runtime.getRuntime().addShutdownHook(new Thread(mockServer::close));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith("/chat/completions")) {
+            sendJson(exchange, 404, error("not_found", "只支持 POST /v1/chat/completions"));
+            return;
+        }
+        requestCount.incrementAndGet();
+        JSONObject request = JSONUtil.parseObj(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        JSONArray messages = request.getJSONArray("messages");
+        Session session = selectSession(messages);
+        Turn turn = session.turn(assistantMessagesSinceLastUser(messages));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < options.getErrorRate()) {
+            if (random.nextBoolean()) {
+                sendJson(exchange, 429, error("rate_limit_exceeded", "mock rate limit"));
+            } else {
+                sendJson(exchange, 500, error("server_error", "mock server error"));
+            }
+            return;
+        }
+        String model = request.getStr("model", options.getModelName());
+        String id = "chatcmpl-" + IdUtil.fastSimpleUUID();
+        List<ToolCall> toolCalls = turn.toolCalls().stream()
+                .map(toolCall -> new ToolCall("call_" + IdUtil.fastSimpleUUID().substring(0, 24), toolCall.name(), toolCall.arguments()))
+                .toList();
+        JSONObject usage = usage(session, messages, turn);
+        if (request.getBool("stream", false)) {
+            boolean includeUsage = request.getByPath("stream_options.include_usage", Boolean.class) == Boolean.TRUE;
+            stream(exchange, id, model, turn.content(), toolCalls, includeUsage ? usage : null);
+        } else {
+            complete(exchange, id, model, turn.content(), toolCalls, usage);
+        }
+    }
+
+    /**
+     * 按系统提示词匹配录制的会话
+     */
+    private Session selectSession(JSONArray messages) {
+        String systemPrompt = "";
+        for (JSONObject message : messages.jsonIter(JSONObject.class)) {
+            if ("system".equals(message.getStr("role"))) {
+                systemPrompt = message.getStr("content", "");
+                break;
+            }
+        }
+        for (Session session : sessions) {
+            for (String keyword : session.match()) {
+                if (systemPrompt.contains(keyword)) {
+                    return session;
+                }
+            }
+        }
+        return fallbackSession;
+    }
+
+    /**
+     * 最后一条用户消息之后已有的 AI 消息条数，即当前是本轮的第几次模型调用
+     */
+    private static int assistantMessagesSinceLastUser(JSONArray messages) {
+        int count = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            String role = messages.getJSONObject(i).getStr("role");
+            if ("user".equals(role)) {
+                break;
+            }
+            if ("assistant".equals(role)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private JSONObject usage(Session session, JSONArray messages, Turn turn) {
+        List<String> serialized = new ArrayList<>(messages.size());
+        String firstUserMessage = "";
+        int promptTokens = 0;
+        for (JSONObject message : messages.jsonIter(JSONObject.class)) {
+            String json = message.toString();
+            serialized.add(json);
+            promptTokens += estimator.estimate(json);
+            if (firstUserMessage.isEmpty() && "user".equals(message.getStr("role"))) {
+                firstUserMessage = message.getStr("content", "");
+            }
+        }
+        // 与同一会话上一次请求的公共前缀计为缓存命中
+        String cacheKey = session.name() + ":" + firstUserMessage;
+        List<String> previous = lastRequests.getIfPresent(cacheKey);
+        lastRequests.put(cacheKey, serialized);
+        int cachedTokens = 0;
+        if (previous != null) {
+            for (int i = 0; i < Math.min(previous.size(), serialized.size()) && previous.get(i).equals(serialized.get(i)); i++) {
+                cachedTokens += estimator.estimate(serialized.get(i));
+            }
+            cachedTokens = cachedTokens / CACHE_BLOCK_TOKENS * CACHE_BLOCK_TOKENS;
+        }
+        int completionTokens = estimator.estimate(turn.content());
+        for (ToolCall toolCall : turn.toolCalls()) {
+            completionTokens += estimator.estimate(toolCall.name()) + estimator.estimate(toolCall.arguments());
+        }
+        return JSONUtil.createObj()
+                .set("prompt_tokens", promptTokens)
+                .set("completion_tokens", completionTokens)
+                .set("total_tokens", promptTokens + completionTokens)
+                .set("prompt_tokens_details", JSONUtil.createObj().set("cached_tokens", cachedTokens));
+    }
+
+    private void stream(HttpExchange exchange, String id, String model, String content, List<ToolCall> toolCalls,
+                        JSONObject usage) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // 按比例在流的中途断开连接，不发送 [DONE]
+        int totalChunks = chunkCount(content) + toolCalls.stream().mapToInt(toolCall -> 1 + chunkCount(toolCall.arguments())).sum();
+        int abortAt = random.nextDouble() < options.getAbortRate() ? random.nextInt(Math.max(1, totalChunks)) : -1;
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        long created = System.currentTimeMillis() / 1000;
+        sleep(options.getFirstTokenDelayMillis());
+        writeEvent(out, chunk(id, model, created, JSONUtil.createObj().set("role", "assistant").set("content", ""), null));
+        int sent = 0;
+        for (String piece : split(content)) {
+            pace(out, sent++, abortAt);
+            writeEvent(out, chunk(id, model, created, JSONUtil.createObj().set("content", piece), null));
+        }
+        for (int index = 0; index < toolCalls.size(); index++) {
+            ToolCall toolCall = toolCalls.get(index);
+            pace(out, sent++, abortAt);
+            JSONObject header = JSONUtil.createObj()
+                    .set("index", index)
+                    .set("id", toolCall.id())
+                    .set("type", "function")
+                    .set("function", JSONUtil.createObj().set("name", toolCall.name()).set("arguments", ""));
+            writeEvent(out, chunk(id, model, created, JSONUtil.createObj().set("tool_calls", JSONUtil.createArray().set(header)), null));
+            for (String piece : split(toolCall.arguments())) {
+                pace(out, sent++, abortAt);
+                JSONObject delta = JSONUtil.createObj()
+                        .set("index", index)
+                        .set("function", JSONUtil.createObj().set("arguments", piece));
+                writeEvent(out, chunk(id, model, created, JSONUtil.createObj().set("tool_calls", JSONUtil.createArray().set(delta)), null));
+            }
+        }
+        String finishReason = toolCalls.isEmpty() ? "stop" : "tool_calls";
+        writeEvent(out, chunk(id, model, created, JSONUtil.createObj(), finishReason));
+        if (usage != null) {
+            writeEvent(out, JSONUtil.createObj()
+                    .set("id", id)
+                    .set("object", "chat.completion.chunk")
+                    .set("created", created)
+                    .set("model", model)
+                    .set("choices", JSONUtil.createArray())
+                    .set("usage", usage)
+                    .toString());
+        }
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        exchange.close();
+    }
+
+    private void complete(HttpExchange exchange, String id, String model, String content, List<ToolCall> toolCalls,
+                          JSONObject usage) throws IOException {
+        sleep(options.getFirstTokenDelayMillis());
+        // 非流式请求按总 token 间隔一次性返回
+        sleep(options.getTokenIntervalMillis() * chunkCount(content));
+        JSONObject message = JSONUtil.createObj().set("role", "assistant").set("content", content);
+        if (!toolCalls.isEmpty()) {
+            JSONArray calls = JSONUtil.createArray();
+            for (ToolCall toolCall : toolCalls) {
+                calls.add(JSONUtil.createObj()
+                        .set("id", toolCall.id())
+                        .set("type", "function")
+                        .set("function", JSONUtil.createObj()
+                                .set("name", toolCall.name())
+                                .set("arguments", toolCall.arguments())));
+            }
+            message.set("tool_calls", calls);
+        }
+        JSONObject response = JSONUtil.createObj()
+                .set("id", id)
+                .set("object", "chat.completion")
+                .set("created", System.currentTimeMillis() / 1000)
+                .set("model", model)
+                .set("choices", JSONUtil.createArray().set(JSONUtil.createObj()
+                        .set("index", 0)
+                        .set("message", message)
+                        .set("finish_reason", toolCalls.isEmpty() ? "stop" : "tool_calls")))
+                .set("usage", usage);
+        sendJson(exchange, 200, response);
+    }
+
+    /**
+     * 发送分片之前等待 token 间隔（含抖动），到达断开位置时直接抛出异常，由 HttpServer 关闭连接
+     */
+    private void pace(OutputStream out, int index, int abortAt) throws IOException {
+        if (index == abortAt) {
+            out.flush();
+            throw new IOException("模拟流中途断开");
+        }
+        long jitter = options.getJitterMillis() > 0
+                ? ThreadLocalRandom.current().nextLong(-options.getJitterMillis(), options.getJitterMillis() + 1)
+                : 0;
+        sleep(options.getTokenIntervalMillis() + jitter);
+    }
+
+    private static String chunk(String id, String model, long created, JSONObject delta, String finishReason) {
+        JSONObject choice = JSONUtil.createObj().set("index", 0).set("delta", delta);
+        if (finishReason != null) {
+            choice.set("finish_reason", finishReason);
+        }
+        return JSONUtil.createObj()
+                .set("id", id)
+                .set("object", "chat.completion.chunk")
+                .set("created", created)
+                .set("model", model)
+                .set("choices", JSONUtil.createArray().set(choice))
+                .toString();
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static JSONObject error(String code, String message) {
+        return JSONUtil.createObj().set("error", JSONUtil.createObj()
+                .set("message", message)
+                .set("type", code)
+                .set("code", code));
+    }
+
+    private int chunkCount(String text) {
+        return text == null || text.isEmpty() ? 0 : (text.length() + options.getChunkChars() - 1) / options.getChunkChars();
+    }
+
+    /**
+     * 按固定字符数切分，模拟 token 增量，不拆开代理对
+     */
+    private List<String> split(String text) {
+        List<String> pieces = new ArrayList<>();
+        if (text == null) {
+            return pieces;
+        }
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + options.getChunkChars());
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end++;
+            }
+            pieces.add(text.substring(start, end));
+            start = end;
+        }
+        return pieces;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 模拟服务配置
+     */
+    @Data
+    public static class Options {
+
+        /** 监听端口，0 表示随机 */
+        private int port = 0;
+
+        /** 请求未指定模型时响应中的模型名称，也决定用量估算按哪个模型系列 */
+        private String modelName = "deepseek-chat";
+
+        /** 首 token 延迟 */
+        private long firstTokenDelayMillis = 300;
+
+        /** 相邻两个分片的间隔 */
+        private long tokenIntervalMillis = 20;
+
+        /** 分片间隔的随机抖动（正负） */
+        private long jitterMillis = 10;
+
+        /** 每个分片的字符数 */
+        private int chunkChars = 3;
+
+        /** 请求直接失败（429 或 500）的比例 */
+        private double errorRate = 0;
+
+        /** 流式响应中途断开的比例 */
+        private double abortRate = 0;
+    }
+
+    /**
+     * 录制的会话
+     *
+     * @param name  会话名称
+     * @param match 系统提示词包含其中任意一个关键字时使用该会话
+     * @param turns 每次模型调用的响应，超出时重复最后一轮
+     */
+    private record Session(String name, List<String> match, List<Turn> turns) {
+
+        static Session load(String resource) {
+            JSONObject json = JSONUtil.parseObj(ResourceUtil.readUtf8Str(resource));
+            List<Turn> turns = new ArrayList<>();
+            for (JSONObject turn : json.getJSONArray("turns").jsonIter(JSONObject.class)) {
+                List<ToolCall> toolCalls = new ArrayList<>();
+                JSONArray calls = turn.getJSONArray("toolCalls");
+                if (calls != null) {
+                    for (JSONObject call : calls.jsonIter(JSONObject.class)) {
+                        // 录制文件中参数是 JSON 对象，发送时按协议转为字符串
+                        toolCalls.add(new ToolCall(null, call.getStr("name"), call.getJSONObject("arguments").toString()));
+                    }
+                }
+                turns.add(new Turn(turn.getStr("content", ""), toolCalls));
+            }
+            return new Session(json.getStr("name"), json.getJSONArray("match").toList(String.class), turns);
+        }
+
+        Turn turn(int index) {
+            return turns.get(Math.min(index, turns.size() - 1));
+        }
+    }
+
+    private record Turn(String content, List<ToolCall> toolCalls) {
+    }
+
+    private record ToolCall(String id, String name, String arguments) {
+    }
+}
@@ -0,0 +1,102 @@
+package cn.iamwsll.aicode.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用项目中的 OpenAiStreamingChatModel 访问模拟服务，确认回放的流能被正常解析
+ */
+class MockOpenAiServerTest {
+
+    private static final SystemMessage VUE_SYSTEM_MESSAGE = SystemMessage.from("你是一位资深的 Vue3 前端架构师");
+
+    private MockOpenAiServer server;
+
+    private StreamingChatModel model;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockOpenAiServer.Options options = new MockOpenAiServer.Options();
+        options.setFirstTokenDelayMillis(0);
+        options.setTokenIntervalMillis(0);
+        options.setJitterMillis(0);
+        options.setChunkChars(16);
+        server = MockOpenAiServer.start(options);
+        model = OpenAiStreamingChatModel.builder()
+                .baseUrl(server.baseUrl())
+                .apiKey("mock")
+                .modelName("deepseek-chat")
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void replaysToolLoopRoundByRound() throws Exception {
+        ChatResponse first = chat(ChatRequest.builder()
+                .messages(VUE_SYSTEM_MESSAGE, UserMessage.from("做一个咖啡店官网"))
+                .build());
+        ToolExecutionRequest request = first.aiMessage().toolExecutionRequests().getFirst();
+        assertEquals("writeFile", request.name());
+        assertEquals("package.json", JSONUtil.parseObj(request.arguments()).getStr("relativeFilePath"));
+        assertTrue(first.tokenUsage().inputTokenCount() > 0);
+
+        // 第二次调用带上第一轮的工具结果，回放第二轮，与上一次请求的公共前缀计为缓存命中
+        ChatResponse second = chat(ChatRequest.builder()
+                .messages(VUE_SYSTEM_MESSAGE, UserMessage.from("做一个咖啡店官网"), first.aiMessage(),
+                        ToolExecutionResultMessage.from(request, "文件写入成功: package.json"))
+                .build());
+        assertEquals("vite.config.js", JSONUtil.parseObj(second.aiMessage().toolExecutionRequests().getFirst().arguments())
+                .getStr("relativeFilePath"));
+        OpenAiTokenUsage usage = (OpenAiTokenUsage) second.tokenUsage();
+        assertNotNull(usage.inputTokensDetails().cachedTokens());
+    }
+
+    @Test
+    void fallsBackToPlainTextForUnknownPrompts() throws Exception {
+        AiMessage aiMessage = chat(ChatRequest.builder().messages(UserMessage.from("你好")).build()).aiMessage();
+        assertFalse(aiMessage.hasToolExecutionRequests());
+        assertEquals("好的。", aiMessage.text());
+    }
+
+    private ChatResponse chat(ChatRequest chatRequest) throws Exception {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        model.chat(chatRequest, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,145 @@
+package cn.iamwsll.aicode.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessageTypeEnum;
+import cn.iamwsll.aicode.ai.model.message.ToolExecutedMessage;
+import cn.iamwsll.aicode.ai.model.message.ToolRequestMessage;
+import cn.iamwsll.aicode.ai.tools.BaseTool;
+import cn.iamwsll.aicode.ai.tools.FileDeleteTool;
+import cn.iamwsll.aicode.ai.tools.FileDirReadTool;
+import cn.iamwsll.aicode.ai.tools.FileModifyTool;
+import cn.iamwsll.aicode.ai.tools.FileReadTool;
+import cn.iamwsll.aicode.ai.tools.FileWriteTool;
+import cn.iamwsll.aicode.ai.tools.ToolManager;
+import cn.iamwsll.aicode.config.ResponseBufferProperties;
+import cn.iamwsll.aicode.core.handler.JsonMessageStreamHandler;
+import cn.iamwsll.aicode.core.stream.ResponseBuffer;
+import cn.iamwsll.aicode.core.stream.ResponseBufferFactory;
+import cn.iamwsll.aicode.core.stream.StreamEvent;
+import cn.iamwsll.aicode.model.entity.User;
+import cn.iamwsll.aicode.service.ChatHistoryService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VUE_PROJECT 流式消息链路基准测试
+ * 对比一次 10k token 的 Vue 工程生成会话经过"门面 -> 处理器 -> SSE 包装"的开销：
+ * legacyJsonRoundTrip：原链路，门面把每个消息序列化成 JSON，处理器先按基类解析 type、再按具体类型解析一次
+ * typedMessages：类型化消息直接交给处理器，只在 SSE 出口序列化一次
+ * 结果按单个 token 归一化。运行 main 方法即可，GC profiler 的 gc.alloc.rate.norm 即为每 token 的分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamMessageBenchmark {
+
+    private static final int TOKEN_COUNT = 10_000;
+
+    private List<StreamMessage> session;
+
+    private JsonMessageStreamHandler jsonMessageStreamHandler;
+
+    private ChatHistoryService chatHistoryService;
+
+    private User loginUser;
+
+    private ResponseBufferFactory responseBufferFactory;
+
+    @Setup
+    public void setUp() {
+        session = StreamSessionFixtures.vueSession(TOKEN_COUNT, 42L);
+        ToolManager toolManager = new ToolManager();
+        BaseTool[] tools = {new FileWriteTool(), new FileReadTool(), new FileModifyTool(),
+                new FileDirReadTool(), new FileDeleteTool()};
+        ReflectionTestUtils.setField(toolManager, "tools", tools);
+        toolManager.initTools();
+        // 与生成方一致，工具执行结果的展示内容在产生消息时格式化
+        for (StreamMessage message : session) {
+            if (message instanceof ToolExecutedMessage toolExecutedMessage) {
+                toolExecutedMessage.setFormattedResult(toolManager.formatToolExecuted(toolExecutedMessage));
+            }
+        }
+        jsonMessageStreamHandler = new JsonMessageStreamHandler();
+        ReflectionTestUtils.setField(jsonMessageStreamHandler, "toolManager", toolManager);
+        chatHistoryService = Mockito.mock(ChatHistoryService.class);
+        loginUser = new User();
+        loginUser.setId(1L);
+        responseBufferFactory = new ResponseBufferFactory();
+        ReflectionTestUtils.setField(responseBufferFactory, "responseBufferProperties", new ResponseBufferProperties());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKEN_COUNT)
+    public void legacyJsonRoundTrip(Blackhole blackhole) {
+        Flux<StreamMessage> decoded = Flux.fromIterable(session)
+                .map(JSONUtil::toJsonStr)
+                .map(StreamMessageBenchmark::legacyDecode);
+        ResponseBuffer responseBuffer = responseBufferFactory.create();
+        toSse(jsonMessageStreamHandler.render(
+                jsonMessageStreamHandler.recordHistory(decoded, chatHistoryService, 1L, loginUser, responseBuffer)), blackhole);
+        responseBuffer.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKEN_COUNT)
+    public void typedMessages(Blackhole blackhole) {
+        ResponseBuffer responseBuffer = responseBufferFactory.create();
+        toSse(jsonMessageStreamHandler.render(
+                jsonMessageStreamHandler.recordHistory(Flux.fromIterable(session), chatHistoryService, 1L, loginUser, responseBuffer)), blackhole);
+        responseBuffer.release();
+    }
+
+    /**
+     * SSE 出口的 JSON 包装，与 AppController 一致
+     */
+    private static void toSse(Flux<StreamEvent> eventFlux, Blackhole blackhole) {
+        eventFlux.map(event -> JSONUtil.toJsonStr(Map.of("d", event.data())))
+                .doOnNext(blackhole::consume)
+                .blockLast();
+    }
+
+    /**
+     * 原处理器的解析方式：先解析出 type，再按具体类型完整解析一次
+     */
+    private static StreamMessage legacyDecode(String chunk) {
+        String type = JSONUtil.parseObj(chunk).getStr("type");
+        return switch (StreamMessageTypeEnum.getEnumByValue(type)) {
+            case AI_RESPONSE -> JSONUtil.toBean(chunk, AiResponseMessage.class);
+            case TOOL_REQUEST -> JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case TOOL_EXECUTED -> JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StreamMessageBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package cn.iamwsll.aicode.benchmark;
+
+import cn.hutool.json.JSONObject;
+import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
+import cn.iamwsll.aicode.ai.model.message.ToolExecutedMessage;
+import cn.iamwsll.aicode.ai.model.message.ToolRequestMessage;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.service.tool.ToolExecution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的流式会话样本
+ * 按真实 Vue 工程生成会话的形态合成：大段文本 token，穿插 writeFile 工具调用（参数按增量分片到达）及其执行结果。
+ * 固定随机种子，保证每次生成的会话完全一致
+ */
+public final class StreamSessionFixtures {
+
+    private static final String[] TEXT_TOKENS = {
+            "我", "将", "为你", "创建", "一个", "Vue", " 项目", "，", "包含", "组件", "路由", "和", "样式", "。", "\n",
+            "首先", "配置", " package", ".json", "，", "然后", "编写", "页面", "。"
+    };
+
+    private static final String[] CODE_TOKENS = {
+            "<template>", "\n  ", "<div", " class=", "\"app\"", ">", "\n    ", "<router-view", " />", "\n  ", "</div>",
+            "\n", "</template>", "\n", "<script", " setup", ">", "\n", "import", " { ref }", " from", " 'vue'", "\n",
+            "const", " count", " = ", "ref(", "0", ")", "\n", "</script>", "\n"
+    };
+
+    private static final String[] FILE_PATHS = {
+            "package.json", "vite.config.js", "index.html", "src/main.js", "src/App.vue",
+            "src/router/index.js", "src/pages/Home.vue", "src/pages/About.vue", "src/components/Header.vue"
+    };
+
+    private StreamSessionFixtures() {
+    }
+
+    /**
+     * 生成一次 Vue 工程生成会话的消息序列
+     *
+     * @param tokenCount 总 token 数（文本 token 与工具参数分片都计入）
+     * @param seed       随机种子
+     * @return 按到达顺序排列的流式消息
+     */
+    public static List<StreamMessage> vueSession(int tokenCount, long seed) {
+        Random random = new Random(seed);
+        List<StreamMessage> messages = new ArrayList<>(tokenCount + tokenCount / 100);
+        int emitted = 0;
+        int toolIndex = 0;
+        while (emitted < tokenCount) {
+            // 一段说明文字
+            int textTokens = Math.min(tokenCount - emitted, 20 + random.nextInt(60));
+            for (int i = 0; i < textTokens; i++) {
+                messages.add(new AiResponseMessage(TEXT_TOKENS[random.nextInt(TEXT_TOKENS.length)]));
+            }
+            emitted += textTokens;
+            if (emitted >= tokenCount) {
+                break;
+            }
+            // 一次 writeFile 工具调用，参数分片到达
+            int codeTokens = Math.min(tokenCount - emitted, 300 + random.nextInt(600));
+            emitted += codeTokens;
+            appendWriteFileCall(messages, "call_" + toolIndex, FILE_PATHS[toolIndex % FILE_PATHS.length],
+                    codeTokens, random);
+            toolIndex++;
+        }
+        return messages;
+    }
+
+    private static void appendWriteFileCall(List<StreamMessage> messages, String toolId, String path,
+                                            int codeTokens, Random random) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < codeTokens; i++) {
+            content.append(CODE_TOKENS[random.nextInt(CODE_TOKENS.length)]);
+        }
+        String arguments = new JSONObject()
+                .set("relativeFilePath", path)
+                .set("content", content.toString())
+                .toString();
+        // 按 token 数把完整参数切成增量分片
+        int step = Math.max(1, arguments.length() / codeTokens);
+        for (int start = 0, parts = 0; start < arguments.length() && parts < codeTokens; parts++) {
+            int end = parts == codeTokens - 1 ? arguments.length() : Math.min(arguments.length(), start + step);
+            ToolExecutionRequest partialRequest = ToolExecutionRequest.builder()
+                    .id(toolId)
+                    .name("writeFile")
+                    .arguments(arguments.substring(start, end))
+                    .build();
+            messages.add(new ToolRequestMessage(partialRequest));
+            start = end;
+        }
+        ToolExecutionRequest fullRequest = ToolExecutionRequest.builder()
+                .id(toolId)
+                .name("writeFile")
+                .arguments(arguments)
+                .build();
+        ToolExecution toolExecution = ToolExecution.builder()
+                .request(fullRequest)
+                .result("文件写入成功: " + path)
+                .build();
+        messages.add(new ToolExecutedMessage(toolExecution));
+    }
+}
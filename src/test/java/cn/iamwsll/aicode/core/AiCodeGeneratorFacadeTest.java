@@ -1,5 +1,7 @@
 package cn.iamwsll.aicode.core;
 
+import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
 import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
 import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
@@ -9,6 +11,7 @@ import reactor.core.publisher.Flux;
 
 import java.io.File;
 import java.util.List;
+import java.util.stream.Collectors;
 @SpringBootTest
 class AiCodeGeneratorFacadeTest {
 
@@ -22,26 +25,31 @@ class AiCodeGeneratorFacadeTest {
 
     @Test
     void generateAndSaveCodeStream() {
-        Flux<String> result = aiCodeGeneratorFacade.generateAndSaveCodeStream("生成一个登录页面,尽可能短", CodeGenTypeEnum.MULTI_FILE,1L);
+        Flux<StreamMessage> result = aiCodeGeneratorFacade.generateAndSaveCodeStream("生成一个登录页面,尽可能短", CodeGenTypeEnum.MULTI_FILE,1L);
         //阻塞等待所有数据输出完成
 //        result.subscribe(System.out::println);
 //        Assertions.assertNotNull(result);
-        List<String> list = result.collectList().block();
+        List<StreamMessage> list = result.collectList().block();
         Assertions.assertNotNull(list);
-        String completeContent = String.join(" ", list);
+        String completeContent = list.stream()
+                .map(message -> ((AiResponseMessage) message).getData())
+                .collect(Collectors.joining(" "));
         Assertions.assertNotNull(completeContent);
     }
 
     @Test
     void generateVueProjectCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
                 "简单的任务记录网站，总代码量不超过 200 行",
                 CodeGenTypeEnum.VUE_PROJECT, 1L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<StreamMessage> result = codeStream.collectList().block();
         // 验证结果
         Assertions.assertNotNull(result);
-        String completeContent = String.join("", result);
+        String completeContent = result.stream()
+                .filter(message -> message instanceof AiResponseMessage)
+                .map(message -> ((AiResponseMessage) message).getData())
+                .collect(Collectors.joining());
         Assertions.assertNotNull(completeContent);
     }
 
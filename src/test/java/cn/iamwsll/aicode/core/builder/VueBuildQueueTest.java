@@ -0,0 +1,114 @@
+package cn.iamwsll.aicode.core.builder;
+
+import cn.iamwsll.aicode.config.VueBuildQueueProperties;
+import cn.iamwsll.aicode.model.enums.VueBuildStatusEnum;
+import cn.iamwsll.aicode.model.vo.VueBuildStatusVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VueBuildQueueTest {
+
+    private VueProjectBuilder vueProjectBuilder;
+
+    private VueBuildQueue vueBuildQueue;
+
+    private final CountDownLatch releaseBuild = new CountDownLatch(1);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        vueProjectBuilder = Mockito.mock(VueProjectBuilder.class);
+        when(vueProjectBuilder.buildProject(anyString(), any(Consumer.class))).thenAnswer(invocation -> {
+            Consumer<VueBuildStatusEnum> stageListener = invocation.getArgument(1);
+            stageListener.accept(VueBuildStatusEnum.INSTALLING);
+            stageListener.accept(VueBuildStatusEnum.BUILDING);
+            return releaseBuild.await(5, TimeUnit.SECONDS);
+        });
+        vueBuildQueue = new VueBuildQueue();
+        ReflectionTestUtils.setField(vueBuildQueue, "vueProjectBuilder", vueProjectBuilder);
+        ReflectionTestUtils.setField(vueBuildQueue, "vueBuildQueueProperties", new VueBuildQueueProperties());
+        vueBuildQueue.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        vueBuildQueue.destroy();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void buildsOfSameAppRunSeriallyAndQueuedBuildIsReused() throws Exception {
+        VueBuildJob running = vueBuildQueue.enqueue(1L, "/tmp/vue_project_1");
+        waitForStatus(running, VueBuildStatusEnum.BUILDING);
+        // 第一个构建进行中，后续的入队请求合并为一个排队中的任务
+        VueBuildJob queued = vueBuildQueue.enqueue(1L, "/tmp/vue_project_1");
+        assertNotSame(running, queued);
+        assertSame(queued, vueBuildQueue.enqueue(1L, "/tmp/vue_project_1"));
+        assertEquals(VueBuildStatusEnum.QUEUED, queued.getStatus());
+
+        releaseBuild.countDown();
+        assertTrue(running.getResult().get(5, TimeUnit.SECONDS));
+        assertTrue(queued.getResult().get(5, TimeUnit.SECONDS));
+        verify(vueProjectBuilder, times(2)).buildProject(anyString(), any(Consumer.class));
+        assertSame(queued, vueBuildQueue.getLatestJob(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void startedBuildIsNotReusedBeforeItLeavesQueued() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(vueProjectBuilder.buildProject(anyString(), any(Consumer.class))).thenAnswer(invocation -> {
+            started.countDown();
+            return releaseBuild.await(5, TimeUnit.SECONDS);
+        });
+        VueBuildJob running = vueBuildQueue.enqueue(3L, "/tmp/vue_project_3");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 已经开始读源码，虽然还没进入安装阶段，也要另排一个构建
+        assertEquals(VueBuildStatusEnum.QUEUED, running.getStatus());
+        VueBuildJob followUp = vueBuildQueue.enqueue(3L, "/tmp/vue_project_3");
+        assertNotSame(running, followUp);
+
+        releaseBuild.countDown();
+        assertTrue(followUp.getResult().get(5, TimeUnit.SECONDS));
+        verify(vueProjectBuilder, times(2)).buildProject(anyString(), any(Consumer.class));
+    }
+
+    @Test
+    void statusFluxReportsEveryStageWithTimings() throws Exception {
+        VueBuildJob job = vueBuildQueue.enqueue(2L, "/tmp/vue_project_2");
+        releaseBuild.countDown();
+        job.getResult().get(5, TimeUnit.SECONDS);
+        // 构建结束后订阅，只拿到最终状态
+        List<VueBuildStatusVO> statuses = job.statusFlux().collectList().block();
+        assertNotNull(statuses);
+        VueBuildStatusVO last = statuses.getLast();
+        assertEquals(VueBuildStatusEnum.DONE.getValue(), last.getStatus());
+        assertNotNull(last.getQueueMillis());
+        assertNotNull(last.getInstallMillis());
+        assertNotNull(last.getBuildMillis());
+        assertNotNull(last.getTotalMillis());
+    }
+
+    private static void waitForStatus(VueBuildJob job, VueBuildStatusEnum status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (job.getStatus() != status && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(status, job.getStatus());
+    }
+}
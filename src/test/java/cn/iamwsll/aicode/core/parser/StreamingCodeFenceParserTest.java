@@ -0,0 +1,102 @@
+package cn.iamwsll.aicode.core.parser;
+
+import cn.iamwsll.aicode.ai.model.MultiFileCodeResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCodeFenceParserTest {
+
+    private static final String MULTI_FILE_CONTENT = """
+            创建一个完整的网页：
+            ```html
+            <!DOCTYPE html>
+            <html>
+            <head>
+                <title>多文件示例</title>
+                <link rel="stylesheet" href="style.css">
+            </head>
+            <body>
+                <h1>欢迎使用 `code`</h1>
+                <script src="script.js"></script>
+            </body>
+            </html>
+            ```
+            ```css
+            h1 {
+                color: blue;
+                text-align: center;
+            }
+            ```
+            ```javascript
+            console.log(`页面加载完成`);
+            ```
+            ```css
+            h1 { color: red; }
+            ```
+            文件创建完成！
+            """;
+
+    @Test
+    void parseMultiFileCodeInRandomChunks() {
+        MultiFileCodeResult expected = new MultiFileCodeParser().parseCode(MULTI_FILE_CONTENT);
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            StreamingCodeFenceParser parser = new StreamingCodeFenceParser();
+            Map<String, String> blocks = new HashMap<>();
+            for (String chunk : randomChunks(MULTI_FILE_CONTENT, random)) {
+                for (StreamingCodeFenceParser.CodeBlock block : parser.append(chunk)) {
+                    assertNull(blocks.put(block.language(), block.code()), "同一语言只能产出一次");
+                }
+            }
+            assertEquals(expected.getHtmlCode(), blocks.get("html"));
+            assertEquals(expected.getCssCode(), blocks.get("css"));
+            assertEquals(expected.getJsCode(), blocks.get("js"));
+            assertNull(parser.getFallbackContent());
+        }
+    }
+
+    @Test
+    void emitBlockAsSoonAsFenceCloses() {
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser();
+        assertTrue(parser.append("说明文字\n```html\n<h1>hi</h1>\n``").isEmpty());
+        List<StreamingCodeFenceParser.CodeBlock> blocks = parser.append("`\n后续说明");
+        assertEquals(1, blocks.size());
+        assertEquals("html", blocks.get(0).language());
+        assertEquals("<h1>hi</h1>", blocks.get(0).code());
+        assertTrue(parser.hasBlock("HTML"));
+    }
+
+    @Test
+    void keepFallbackContentWithoutHtmlBlock() {
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser();
+        parser.append("<!DOCTYPE html><html>");
+        parser.append("<body>没有代码块</body></html>");
+        assertEquals("<!DOCTYPE html><html><body>没有代码块</body></html>", parser.getFallbackContent());
+        assertFalse(parser.hasBlock("html"));
+    }
+
+    @Test
+    void ignoreUnclosedBlock() {
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser();
+        assertTrue(parser.append("```css\nh1 { color: blue; }").isEmpty());
+        assertFalse(parser.hasBlock("css"));
+    }
+
+    private static List<String> randomChunks(String content, Random random) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < content.length()) {
+            int end = Math.min(content.length(), start + 1 + random.nextInt(6));
+            chunks.add(content.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+}
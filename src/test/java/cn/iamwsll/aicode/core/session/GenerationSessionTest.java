@@ -0,0 +1,118 @@
+package cn.iamwsll.aicode.core.session;
+
+import cn.iamwsll.aicode.core.stream.StreamEvent;
+import cn.iamwsll.aicode.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GenerationSessionTest {
+
+    private static GenerationReplayStore mockReplayStore() {
+        GenerationReplayStore replayStore = Mockito.mock(GenerationReplayStore.class);
+        when(replayStore.spill(any(), anyList(), anyBoolean())).thenReturn(CompletableFuture.completedFuture(null));
+        return replayStore;
+    }
+
+    @Test
+    void resumeReplaysMissedEventsThenFollowsLive() {
+        GenerationReplayStore replayStore = mockReplayStore();
+        GenerationSession session = new GenerationSession("g", 1L, 1L, CodeGenTypeEnum.HTML, 16, replayStore);
+        session.publish(StreamEvent.text("a"));
+        session.publish(StreamEvent.text("b"));
+        session.publish(StreamEvent.tool("c"));
+
+        List<String> received = new ArrayList<>();
+        boolean[] completed = {false};
+        session.attach(1).subscribe(event -> received.add(event.data()), e -> {
+        }, () -> completed[0] = true);
+        assertEquals(List.of("b", "c"), received);
+        session.publish(StreamEvent.text("d"));
+        assertEquals(List.of("b", "c", "d"), received);
+        session.complete();
+        assertTrue(completed[0]);
+        verify(replayStore, times(1)).markFinished(any());
+    }
+
+    @Test
+    void evictedEventsAreReadFromReplayStore() {
+        GenerationReplayStore replayStore = mockReplayStore();
+        GenerationSession session = new GenerationSession("g", 1L, 1L, CodeGenTypeEnum.HTML, 2, replayStore);
+        for (String data : new String[]{"a", "b", "c", "d"}) {
+            session.publish(StreamEvent.text(data));
+        }
+        // 序号 1、2 被挤出内存，一批转存，第一次转存时设置过期时间
+        verify(replayStore, times(1)).spill(eq("g"), argThat(events -> events.size() == 2
+                && events.getFirst().seq() == 1 && events.getLast().seq() == 2), eq(true));
+        when(replayStore.read(eq("g"), eq(1L), eq(2L))).thenReturn(Flux.just(
+                new StreamEvent("g", 1, StreamEvent.Kind.TEXT, "a"),
+                new StreamEvent("g", 2, StreamEvent.Kind.TEXT, "b")));
+        session.complete();
+
+        assertEquals(List.of("g:1", "g:2", "g:3", "g:4"),
+                session.attach(0).map(StreamEvent::getEventId).collectList().block());
+    }
+
+    @Test
+    void eventsStayInMemoryUntilTheSpillIsWritten() {
+        GenerationReplayStore replayStore = Mockito.mock(GenerationReplayStore.class);
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        when(replayStore.spill(any(), anyList(), anyBoolean())).thenReturn(written);
+        GenerationSession session = new GenerationSession("g", 1L, 1L, CodeGenTypeEnum.HTML, 2, replayStore);
+        for (String data : new String[]{"a", "b", "c", "d"}) {
+            session.publish(StreamEvent.text(data));
+        }
+
+        // 转存还没有完成，全部事件从内存回放
+        List<String> received = new ArrayList<>();
+        session.attach(0).subscribe(event -> received.add(event.data()));
+        assertEquals(List.of("a", "b", "c", "d"), received);
+        verify(replayStore, never()).read(any(), anyLong(), anyLong());
+
+        written.complete(null);
+        when(replayStore.read(eq("g"), eq(1L), eq(2L))).thenReturn(Flux.just(
+                new StreamEvent("g", 1, StreamEvent.Kind.TEXT, "a"),
+                new StreamEvent("g", 2, StreamEvent.Kind.TEXT, "b")));
+        assertEquals(List.of("g:1", "g:2", "g:3", "g:4"),
+                session.attach(0).take(4).map(StreamEvent::getEventId).collectList().block());
+        verify(replayStore, times(1)).read(eq("g"), eq(1L), eq(2L));
+    }
+
+    @Test
+    void cancelDisposesUpstreamAndCompletesSubscribers() {
+        GenerationReplayStore replayStore = mockReplayStore();
+        GenerationSession session = new GenerationSession("g", 1L, 1L, CodeGenTypeEnum.VUE_PROJECT, 16, replayStore);
+        boolean[] upstreamCancelled = {false};
+        session.bindUpstream(Flux.<StreamEvent>never()
+                .doOnCancel(() -> upstreamCancelled[0] = true)
+                .subscribe(session::publish, session::fail, session::complete));
+        boolean[] completed = {false};
+        session.attach(0).subscribe(event -> {
+        }, e -> {
+        }, () -> completed[0] = true);
+        assertEquals(1, session.getSubscriberCount());
+
+        session.cancel();
+        assertTrue(upstreamCancelled[0]);
+        assertTrue(completed[0]);
+        assertTrue(session.isFinished());
+        assertEquals(0, session.getSubscriberCount());
+    }
+}
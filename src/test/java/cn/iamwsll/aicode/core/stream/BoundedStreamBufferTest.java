@@ -0,0 +1,138 @@
+package cn.iamwsll.aicode.core.stream;
+
+import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
+import cn.iamwsll.aicode.ai.model.message.ToolExecutedMessage;
+import cn.iamwsll.aicode.ai.model.message.ToolRequestMessage;
+import cn.iamwsll.aicode.benchmark.StreamSessionFixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedStreamBufferTest {
+
+    private static final int MAX_BUFFERED_BYTES = 64 * 1024;
+
+    @Test
+    void coalesceTextWhileClientIsBehind() {
+        BoundedStreamBuffer buffer = new BoundedStreamBuffer(MAX_BUFFERED_BYTES, 10_000, 1_000);
+        long seq = 0;
+        for (String token : List.of("你", "好", "，", "世界")) {
+            assertFalse(buffer.offer(StreamEvent.text(token).withSequence("g", ++seq), 0));
+        }
+        assertEquals(1, buffer.size());
+        StreamEvent merged = buffer.poll(0);
+        assertEquals("你好，世界", merged.data());
+        // 合并后的事件序号取最后一段，续传时从它之后开始
+        assertEquals("g:4", merged.getEventId());
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getBufferedBytes());
+    }
+
+    @Test
+    void stalledClientKeepsBufferFlat() {
+        BoundedStreamBuffer buffer = new BoundedStreamBuffer(MAX_BUFFERED_BYTES, 10_000, 1_000);
+        // 客户端一条都不取，模型持续生成 200k token
+        List<StreamEvent> events = toEvents(StreamSessionFixtures.vueSession(200_000, 7L));
+        long toolEventCount = events.stream().filter(event -> event.kind() == StreamEvent.Kind.TOOL).count();
+        long now = 0;
+        for (StreamEvent event : events) {
+            if (buffer.offer(event, now++)) {
+                // 降级后不应再超限，否则调用方会断开连接
+                assertFalse(buffer.isDegraded());
+                buffer.degrade(now);
+            }
+        }
+        assertTrue(buffer.isDegraded());
+        // 文本只剩进度占位，工具事件省略了文件内容，积压字节数不超过上限
+        assertTrue(buffer.getBufferedBytes() <= MAX_BUFFERED_BYTES);
+        // 工具事件一个都不丢
+        long drainedToolEvents = 0;
+        StreamEvent event;
+        while ((event = buffer.poll(now)) != null) {
+            if (event.kind() == StreamEvent.Kind.TOOL) {
+                drainedToolEvents++;
+            }
+        }
+        assertEquals(toolEventCount, drainedToolEvents);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void textBacklogIsBoundedBeforeDegrade() {
+        BoundedStreamBuffer buffer = new BoundedStreamBuffer(1024, 10_000, 1_000);
+        boolean overflow = false;
+        long seq = 0;
+        while (!overflow) {
+            overflow = buffer.offer(StreamEvent.text("abc").withSequence("g", ++seq), 0);
+        }
+        long offered = seq;
+        assertTrue(buffer.getBufferedBytes() <= 1024 + 3);
+        buffer.degrade(0);
+        // 降级后文本不再进入积压
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(buffer.offer(StreamEvent.text("abc").withSequence("g", ++seq), 0));
+        }
+        assertEquals(1, buffer.size());
+        StreamEvent progress = buffer.poll(0);
+        assertEquals(StreamEvent.Kind.PROGRESS, progress.kind());
+        assertEquals(seq, progress.seq());
+        assertTrue(progress.data().contains(String.valueOf((offered + 10_000) * 3)));
+    }
+
+    @Test
+    void degradedBufferReportsOverflowWhenToolEventsExceedLimit() {
+        BoundedStreamBuffer buffer = new BoundedStreamBuffer(1024, 10_000, 1_000);
+        String fileContent = "[工具调用] 写入文件 src/App.vue\n" + "<template></template>\n".repeat(100);
+        long seq = 0;
+        assertTrue(buffer.offer(StreamEvent.tool(fileContent).withSequence("g", ++seq), 0));
+        buffer.degrade(0);
+        // 积压的工具事件只保留第一行
+        assertTrue(buffer.getBufferedBytes() < 256);
+        boolean overflow = false;
+        while (!overflow) {
+            overflow = buffer.offer(StreamEvent.tool(fileContent).withSequence("g", ++seq), 0);
+        }
+        assertTrue(buffer.getBufferedBytes() <= 1024 + 256);
+        StreamEvent first = buffer.poll(0);
+        assertTrue(first.data().contains("[工具调用] 写入文件 src/App.vue"));
+        assertFalse(first.data().contains("<template>"));
+    }
+
+    @Test
+    void slowClientDetectedByLag() {
+        BoundedStreamBuffer buffer = new BoundedStreamBuffer(MAX_BUFFERED_BYTES, 100, 1_000);
+        assertFalse(buffer.offer(StreamEvent.text("a").withSequence("g", 1), 0));
+        assertFalse(buffer.offer(StreamEvent.text("b").withSequence("g", 2), 50));
+        assertTrue(buffer.offer(StreamEvent.text("c").withSequence("g", 3), 150));
+        // 客户端追上之后重新计时
+        buffer.poll(150);
+        assertFalse(buffer.offer(StreamEvent.text("d").withSequence("g", 4), 200));
+    }
+
+    /**
+     * 按处理器的渲染规则把消息转换为编号后的事件
+     */
+    private static List<StreamEvent> toEvents(List<StreamMessage> messages) {
+        List<StreamEvent> events = new ArrayList<>(messages.size());
+        Set<String> seenToolIds = new HashSet<>();
+        long seq = 0;
+        for (StreamMessage message : messages) {
+            StreamEvent event = switch (message) {
+                case AiResponseMessage aiResponseMessage -> StreamEvent.text(aiResponseMessage.getData());
+                case ToolRequestMessage toolRequestMessage -> seenToolIds.add(toolRequestMessage.getId())
+                        ? StreamEvent.tool("[选择工具] " + toolRequestMessage.getName()) : null;
+                case ToolExecutedMessage toolExecutedMessage -> StreamEvent.tool(toolExecutedMessage.getArguments());
+            };
+            if (event != null) {
+                events.add(event.withSequence("g", ++seq));
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,75 @@
+package cn.iamwsll.aicode.core.stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseBufferTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void smallResponseStaysOnHeap() {
+        ResponseBuffer buffer = new ResponseBuffer(64, 1024, spillDir);
+        buffer.append("<html>");
+        buffer.append("你好");
+        assertEquals("<html>你好", buffer.toString());
+        assertEquals("<html>你好".getBytes(StandardCharsets.UTF_8).length, buffer.byteSize());
+        assertFalse(buffer.isSpilled());
+        buffer.release();
+    }
+
+    @Test
+    void largeResponseSpillsToFileAndIsReadBackAcrossSegments() throws IOException {
+        ResponseBuffer buffer = new ResponseBuffer(64, 256, spillDir);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            // 混合单字节、三字节和四字节字符，覆盖字符跨分段的情况
+            String chunk = "line " + i + " 生成😀\n";
+            buffer.append(chunk);
+            expected.append(chunk);
+        }
+        assertTrue(buffer.isSpilled());
+        assertEquals(expected.toString(), buffer.toString());
+        assertEquals(1, countFiles());
+        buffer.release();
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void surrogatePairSplitAcrossAppendsIsKept() {
+        ResponseBuffer buffer = new ResponseBuffer(64, 1024, spillDir);
+        String emoji = "😀";
+        buffer.append("a" + emoji.charAt(0));
+        buffer.append(emoji.charAt(1) + "b");
+        assertEquals("a😀b", buffer.toString());
+        buffer.release();
+    }
+
+    @Test
+    void bufferIsFreedOnlyWhenLastReferenceIsReleased() {
+        ResponseBuffer buffer = new ResponseBuffer(64, 1024, spillDir);
+        buffer.retain();
+        buffer.append("代码");
+        buffer.release();
+        assertEquals("代码", buffer.toString());
+        buffer.release();
+        assertThrows(IllegalStateException.class, buffer::toString);
+        // 取消后晚到的追加被忽略
+        assertDoesNotThrow(() -> buffer.append("晚到的内容"));
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package cn.iamwsll.aicode.core.stream;
+
+import cn.iamwsll.aicode.ai.model.message.AiResponseMessage;
+import cn.iamwsll.aicode.ai.model.message.StreamMessage;
+import cn.iamwsll.aicode.ai.model.message.ToolRequestMessage;
+import cn.iamwsll.aicode.config.StreamCoalesceProperties;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamCoalescerTest {
+
+    private StreamCoalesceProperties properties;
+
+    private StreamCoalescer streamCoalescer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StreamCoalesceProperties();
+        streamCoalescer = new StreamCoalescer();
+        ReflectionTestUtils.setField(streamCoalescer, "streamCoalesceProperties", properties);
+    }
+
+    @Test
+    void flushOnToolBoundaryAndCompletion() {
+        // 窗口足够长，只由工具边界和流结束触发下发
+        properties.setFlushIntervalMillis(60_000);
+        ToolRequestMessage toolRequest = new ToolRequestMessage(ToolExecutionRequest.builder()
+                .id("call_0").name("writeFile").arguments("{").build());
+        Flux<StreamMessage> origin = Flux.just(
+                new AiResponseMessage("你"), new AiResponseMessage("好"), toolRequest,
+                new AiResponseMessage("完"), new AiResponseMessage("成"));
+        List<StreamMessage> result = streamCoalescer.coalesce(origin).collectList().block();
+        assertNotNull(result);
+        assertEquals(3, result.size());
+        assertEquals("你好", ((AiResponseMessage) result.get(0)).getData());
+        assertSame(toolRequest, result.get(1));
+        assertEquals("完成", ((AiResponseMessage) result.get(2)).getData());
+    }
+
+    @Test
+    void flushWhenBufferIsFull() {
+        properties.setFlushIntervalMillis(60_000);
+        properties.setMaxBufferBytes(4);
+        Flux<StreamMessage> origin = Flux.just("ab", "cd", "ef").map(AiResponseMessage::new);
+        List<StreamMessage> result = streamCoalescer.coalesce(origin).collectList().block();
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertEquals("abcd", ((AiResponseMessage) result.get(0)).getData());
+        assertEquals("ef", ((AiResponseMessage) result.get(1)).getData());
+    }
+
+    @Test
+    void flushWhenWindowExpires() {
+        properties.setFlushIntervalMillis(20);
+        Flux<StreamMessage> origin = Flux.concat(
+                Flux.just(new AiResponseMessage("a"), new AiResponseMessage("b")),
+                Flux.<StreamMessage>just(new AiResponseMessage("c")).delaySubscription(Duration.ofMillis(200)));
+        List<StreamMessage> result = streamCoalescer.coalesce(origin).collectList().block();
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertEquals("ab", ((AiResponseMessage) result.get(0)).getData());
+        assertEquals("c", ((AiResponseMessage) result.get(1)).getData());
+    }
+}
@@ -0,0 +1,174 @@
+package cn.iamwsll.aicode.manager;
+
+import cn.hutool.json.JSONUtil;
+import cn.iamwsll.aicode.config.ChatHistoryWriteBehindProperties;
+import cn.iamwsll.aicode.mapper.ChatHistoryMapper;
+import cn.iamwsll.aicode.model.entity.ChatHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.redisson.api.RList;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatHistoryWriteBufferTest {
+
+    private ChatHistoryMapper chatHistoryMapper;
+
+    private RList<String> spillList;
+
+    private RList<String> deadLetterList;
+
+    private ChatHistoryWriteBuffer chatHistoryWriteBuffer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        chatHistoryMapper = Mockito.mock(ChatHistoryMapper.class);
+        spillList = Mockito.mock(RList.class);
+        when(spillList.isEmpty()).thenReturn(true);
+        deadLetterList = Mockito.mock(RList.class);
+        RLock lock = Mockito.mock(RLock.class);
+        when(lock.tryLock()).thenReturn(true);
+        RedissonClient redissonClient = Mockito.mock(RedissonClient.class);
+        when(redissonClient.<String>getList(anyString(), any(Codec.class))).thenReturn(spillList);
+        when(redissonClient.<String>getList(eq("chat_history:dead_letter"), any(Codec.class))).thenReturn(deadLetterList);
+        when(redissonClient.getLock(anyString())).thenReturn(lock);
+        ChatHistoryWriteBehindProperties properties = new ChatHistoryWriteBehindProperties();
+        // 攒批周期设得很长，由测试主动刷盘
+        properties.setFlushIntervalMillis(60_000);
+        chatHistoryWriteBuffer = new ChatHistoryWriteBuffer();
+        ReflectionTestUtils.setField(chatHistoryWriteBuffer, "chatHistoryMapper", chatHistoryMapper);
+        ReflectionTestUtils.setField(chatHistoryWriteBuffer, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(chatHistoryWriteBuffer, "chatHistoryWriteBehindProperties", properties);
+        ReflectionTestUtils.setField(chatHistoryWriteBuffer, "meterRegistry", new SimpleMeterRegistry());
+        chatHistoryWriteBuffer.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatHistoryWriteBuffer.destroy();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWritesQueuedMessagesInOneBatch() {
+        for (int i = 0; i < 3; i++) {
+            chatHistoryWriteBuffer.add(newChatHistory("消息" + i));
+        }
+        verify(chatHistoryMapper, never()).insert(any(ChatHistory.class));
+
+        chatHistoryWriteBuffer.flush();
+
+        ArgumentCaptor<List<ChatHistory>> captor = ArgumentCaptor.forClass(List.class);
+        verify(chatHistoryMapper, times(1)).insertBatch(captor.capture());
+        List<ChatHistory> batch = List.copyOf(captor.getValue());
+        assertEquals(3, batch.size());
+        assertEquals("消息0", batch.getFirst().getMessage());
+        // 主键和创建时间在入队时确定
+        batch.forEach(chatHistory -> {
+            assertNotNull(chatHistory.getId());
+            assertNotNull(chatHistory.getCreateTime());
+            assertEquals(0, chatHistory.getIsDelete());
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushByAppIdWritesOnlyThatApp() {
+        chatHistoryWriteBuffer.add(newChatHistory("消息0"));
+        ChatHistory otherApp = newChatHistory("其他应用的消息");
+        otherApp.setAppId(2L);
+        chatHistoryWriteBuffer.add(otherApp);
+
+        chatHistoryWriteBuffer.flush(1L);
+
+        ArgumentCaptor<List<ChatHistory>> captor = ArgumentCaptor.forClass(List.class);
+        verify(chatHistoryMapper, times(1)).insertBatch(captor.capture());
+        assertEquals(List.of("消息0"), captor.getValue().stream().map(ChatHistory::getMessage).toList());
+    }
+
+    @Test
+    void failedBatchIsSpilledAndLaterMessagesGoToRedis() {
+        when(chatHistoryMapper.insertBatch(anyList())).thenThrow(new RuntimeException("mysql down"));
+        chatHistoryWriteBuffer.add(newChatHistory("消息0"));
+        chatHistoryWriteBuffer.flush();
+        verify(spillList, times(1)).addAll(anyList());
+
+        // MySQL 异常期间新消息直接转存，不再进入内存队列
+        chatHistoryWriteBuffer.add(newChatHistory("消息1"));
+        verify(spillList, times(2)).addAll(anyList());
+        chatHistoryWriteBuffer.flush();
+        verify(chatHistoryMapper, times(1)).insertBatch(anyList());
+    }
+
+    @Test
+    void poisonRowIsDeadLetteredAndRestOfBatchIsWritten() {
+        DataIntegrityViolationException tooLong = new DataIntegrityViolationException("Data too long for column 'message'");
+        when(chatHistoryMapper.insertBatch(anyList())).thenThrow(tooLong);
+        when(chatHistoryMapper.insert(argThat((ChatHistory chatHistory) -> chatHistory != null
+                && "超长回复".equals(chatHistory.getMessage())))).thenThrow(tooLong);
+        chatHistoryWriteBuffer.add(newChatHistory("消息0"));
+        chatHistoryWriteBuffer.add(newChatHistory("超长回复"));
+        chatHistoryWriteBuffer.add(newChatHistory("消息1"));
+
+        chatHistoryWriteBuffer.flush();
+
+        // 同批的其他消息逐条写入，写不进去的移到死信列表，不转存、不重试
+        verify(chatHistoryMapper, times(3)).insert(any(ChatHistory.class));
+        verify(deadLetterList, times(1)).add(argThat(value -> value.contains("超长回复")));
+        verify(spillList, never()).addAll(anyList());
+        // 数据问题不算 MySQL 变慢，新消息仍进入内存队列
+        chatHistoryWriteBuffer.add(newChatHistory("消息2"));
+        chatHistoryWriteBuffer.flush();
+        verify(chatHistoryMapper, times(2)).insertBatch(anyList());
+        verify(spillList, never()).addAll(anyList());
+    }
+
+    @Test
+    void poisonRowInSpillListIsDeadLetteredAndTrimmed() {
+        DataIntegrityViolationException tooLong = new DataIntegrityViolationException("Data too long for column 'message'");
+        when(chatHistoryMapper.insertBatch(anyList())).thenThrow(tooLong);
+        when(chatHistoryMapper.insert(any(ChatHistory.class))).thenThrow(tooLong);
+        ChatHistory poison = newChatHistory("超长回复");
+        poison.setId(1L);
+        when(spillList.isEmpty()).thenReturn(false);
+        when(spillList.range(0, 199)).thenReturn(List.of(JSONUtil.toJsonStr(poison)), List.of());
+
+        ReflectionTestUtils.invokeMethod(chatHistoryWriteBuffer, "recoverSpilled");
+
+        verify(deadLetterList, times(1)).add(anyString());
+        verify(spillList, times(1)).trim(1, -1);
+        // 补写没有遇到可重试的异常，新消息不再转存
+        chatHistoryWriteBuffer.add(newChatHistory("消息0"));
+        verify(spillList, never()).addAll(anyList());
+    }
+
+    private static ChatHistory newChatHistory(String message) {
+        return ChatHistory.builder()
+                .appId(1L)
+                .userId(1L)
+                .message(message)
+                .messageType("user")
+                .build();
+    }
+}
@@ -0,0 +1,231 @@
+package dev.langchain4j.model.openai;
+
+import dev.langchain4j.http.client.sse.DefaultServerSentEventParser;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.openai.internal.Json;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionChoice;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionResponse;
+import dev.langchain4j.model.openai.internal.chat.Delta;
+import dev.langchain4j.model.openai.internal.chat.ToolCall;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs recorded chunk streams through {@link OpenAiSseChunkDecoder} and through the default path
+ * ({@link DefaultServerSentEventParser} + Jackson) and expects the same chunks and the same final response.
+ */
+class OpenAiSseChunkDecoderTest {
+
+    private static final String USAGE_CHUNK = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\","
+            + "\"created\":1760000000,\"model\":\"deepseek-chat\",\"system_fingerprint\":\"fp_1\",\"choices\":[],"
+            + "\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":20,\"total_tokens\":30}}";
+
+    private static final String ERROR_CHUNK = "{\"error\":{\"message\":\"Rate limit reached\",\"type\":\"rate_limit_error\"}}";
+
+    private static final String FUNCTION_CALL_CHUNK = "{\"id\":\"chatcmpl-1\",\"choices\":[{\"index\":0,"
+            + "\"delta\":{\"function_call\":{\"name\":\"writeFile\",\"arguments\":\"{}\"}},\"finish_reason\":null}]}";
+
+    @Test
+    void decodesTheSameAsJackson() {
+        byte[] body = recordedStream();
+        Result expected = jackson(body);
+        assertEquals(10, expected.chunks().size());
+        // every read size splits the multi-byte characters differently, 1 splits all of them
+        for (int readSize : new int[]{1, 2, 3, 7, 64, 8192}) {
+            Result decoded = decode(body, readSize);
+            assertEquals(expected.chunks(), decoded.chunks(), "read size " + readSize);
+            assertEquals(expected.response(), decoded.response(), "read size " + readSize);
+            // only the usage chunk takes the default path
+            assertEquals(List.of(USAGE_CHUNK), decoded.fallbacks(), "read size " + readSize);
+        }
+    }
+
+    @Test
+    void unsupportedChunksAreHandedOnUnchanged() {
+        String body = "data: " + ERROR_CHUNK + "\n\n"
+                + "data: " + FUNCTION_CALL_CHUNK + "\n\n"
+                + "event: ping\ndata: {}\n\n"
+                + "data: [DONE]\n\n";
+        List<String> decodedChunks = new ArrayList<>();
+        List<String> fallbacks = new ArrayList<>();
+        new OpenAiSseChunkDecoder(delta -> decodedChunks.add(describe(delta)))
+                .parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), new ServerSentEventListener() {
+                    @Override
+                    public void onEvent(ServerSentEvent event) {
+                        fallbacks.add(event.event() + ":" + event.data());
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        throw new IllegalStateException(throwable);
+                    }
+                });
+        assertTrue(decodedChunks.isEmpty());
+        assertEquals(List.of("null:" + ERROR_CHUNK, "null:" + FUNCTION_CALL_CHUNK, "ping:{}"), fallbacks);
+    }
+
+    /**
+     * A stream in the format of OpenAI-compatible providers: text with every kind of escape, raw multi-byte
+     * characters, keys out of order, two tool calls whose arguments arrive in fragments, the finish reason, the usage
+     * chunk and {@code [DONE]}.
+     */
+    private static byte[] recordedStream() {
+        String stream = chunk("{\"role\":\"assistant\",\"content\":\"\"}", null)
+                + chunk("{\"content\":\"<div class=\\\"app\\\">\\n\\t\\\\ \\/ \\b\\f\\r \\u00e9 \\ud83d\\ude00\"}", null)
+                // CRLF line endings
+                + chunk("{\"content\":\"组件 😀 é\"}", null).replace("\n", "\r\n")
+                + "data: { \"choices\" : [ { \"delta\" : { \"content\" : \"页面\" } , \"index\" : 0 } ] , "
+                + "\"id\" : \"chatcmpl-1\" }\n\n"
+                + chunk("{\"tool_calls\":[{\"index\":0,\"id\":\"call_0\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"writeFile\",\"arguments\":\"\"}}]}", null)
+                + chunk("{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"{\\\"relativeFilePath\\\":"
+                + "\\\"src/App.vue\\\",\"}}]}", null)
+                + chunk("{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"\\\"content\\\":"
+                + "\\\"<h1>\\\\u4f60\\\\u597d</h1>\\\\n组件 😀\\\"}\"}}]}", null)
+                + chunk("{\"tool_calls\":[{\"index\":1,\"id\":\"call_1\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"readFile\",\"arguments\":\"{\\\"relativeFilePath\\\":\\\"index.html\\\"}\"}}]}", null)
+                + chunk("{}", "tool_calls")
+                + "data: " + USAGE_CHUNK + "\n\n"
+                + "data: [DONE]\n\n";
+        return stream.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String chunk(String delta, String finishReason) {
+        return "data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1760000000,"
+                + "\"model\":\"deepseek-chat\",\"system_fingerprint\":\"fp_1\",\"choices\":[{\"index\":0,\"delta\":"
+                + delta + ",\"logprobs\":null,\"finish_reason\":"
+                + (finishReason == null ? "null" : "\"" + finishReason + "\"") + "}]}\n\n";
+    }
+
+    private static Result jackson(byte[] body) {
+        OpenAiStreamingResponseBuilder responseBuilder = new OpenAiStreamingResponseBuilder();
+        List<String> chunks = new ArrayList<>();
+        new DefaultServerSentEventParser().parse(new ByteArrayInputStream(body), new ServerSentEventListener() {
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                if ("[DONE]".equals(event.data())) {
+                    return;
+                }
+                ChatCompletionResponse response = Json.fromJson(event.data(), ChatCompletionResponse.class);
+                responseBuilder.append(response);
+                chunks.add(describe(response));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        return new Result(chunks, responseBuilder.build(), List.of());
+    }
+
+    /**
+     * Decodes as {@code OpenAiStreamingChatModel} does: decoded deltas directly, fallbacks through Jackson.
+     */
+    private static Result decode(byte[] body, int readSize) {
+        OpenAiStreamingResponseBuilder responseBuilder = new OpenAiStreamingResponseBuilder();
+        List<String> chunks = new ArrayList<>();
+        List<String> fallbacks = new ArrayList<>();
+        new OpenAiSseChunkDecoder(delta -> {
+            responseBuilder.append(delta);
+            chunks.add(describe(delta));
+        }).parse(new LimitedReadInputStream(body, readSize), new ServerSentEventListener() {
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                fallbacks.add(event.data());
+                ChatCompletionResponse response = Json.fromJson(event.data(), ChatCompletionResponse.class);
+                responseBuilder.append(response);
+                chunks.add(describe(response));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        return new Result(chunks, responseBuilder.build(), fallbacks);
+    }
+
+    private static String describe(OpenAiStreamingDelta delta) {
+        StringBuilder description = new StringBuilder()
+                .append(delta.id).append('|').append(delta.model).append('|').append(delta.created)
+                .append('|').append(delta.systemFingerprint);
+        if (delta.hasChoice) {
+            description.append(" finish=").append(delta.finishReason);
+            if (delta.content != null) {
+                description.append(" content=").append(delta.content);
+            }
+            for (int i = 0; i < delta.toolCallCount; i++) {
+                OpenAiStreamingDelta.ToolCallDelta toolCall = delta.toolCalls[i];
+                description.append(" tool=").append(toolCall.index).append('|').append(toolCall.id)
+                        .append('|').append(toolCall.name).append('|').append(toolCall.arguments);
+            }
+        }
+        return description.toString();
+    }
+
+    private static String describe(ChatCompletionResponse response) {
+        StringBuilder description = new StringBuilder()
+                .append(response.id()).append('|').append(response.model()).append('|').append(response.created())
+                .append('|').append(response.systemFingerprint());
+        if (response.choices() != null && !response.choices().isEmpty() && response.choices().get(0) != null) {
+            ChatCompletionChoice choice = response.choices().get(0);
+            description.append(" finish=").append(choice.finishReason());
+            Delta delta = choice.delta();
+            if (delta != null && delta.content() != null && !delta.content().isEmpty()) {
+                description.append(" content=").append(delta.content());
+            }
+            if (delta != null && delta.toolCalls() != null) {
+                for (ToolCall toolCall : delta.toolCalls()) {
+                    String name = toolCall.function() == null ? null : toolCall.function().name();
+                    String arguments = toolCall.function() == null || toolCall.function().arguments() == null
+                            ? "" : toolCall.function().arguments();
+                    description.append(" tool=").append(toolCall.index()).append('|').append(toolCall.id())
+                            .append('|').append(name).append('|').append(arguments);
+                }
+            }
+        }
+        if (response.usage() != null) {
+            description.append(" usage=").append(response.usage().totalTokens());
+        }
+        return description.toString();
+    }
+
+    private record Result(List<String> chunks, ChatResponse response, List<String> fallbacks) {
+    }
+
+    /**
+     * Returns at most {@code readSize} bytes per read, like a network stream.
+     */
+    private static final class LimitedReadInputStream extends InputStream {
+
+        private final ByteArrayInputStream delegate;
+
+        private final int readSize;
+
+        LimitedReadInputStream(byte[] bytes, int readSize) {
+            this.delegate = new ByteArrayInputStream(bytes);
+            this.readSize = readSize;
+        }
+
+        @Override
+        public int read() {
+            return delegate.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return delegate.read(b, off, Math.min(len, readSize));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package dev.langchain4j.model.openai;
+
+import dev.langchain4j.http.client.sse.DefaultServerSentEventParser;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.model.openai.internal.Json;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionResponse;
+import dev.langchain4j.model.openai.internal.chat.Delta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenAI 流式响应解析基准测试
+ * 录制格式的 10 万个 chunk（约 7 成文本增量、3 成 writeFile 工具参数增量）作为一个 SSE 响应体，对比：
+ * legacyParser：DefaultServerSentEventParser 逐行解析 + Jackson 反序列化为 ChatCompletionResponse，
+ * 再累积到改动前的线程安全响应构建器（BaselineOpenAiStreamingResponseBuilder）
+ * chunkDecoder：OpenAiSseChunkDecoder 直接从字节解码到复用的 OpenAiStreamingDelta，再累积到响应构建器
+ * 结果按单个 chunk 归一化。运行 main 方法即可，GC profiler 的 gc.alloc.rate.norm 即为每个 chunk 的分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenAiStreamingChunkBenchmark {
+
+    private static final int CHUNK_COUNT = 100_000;
+
+    private static final String[] TOKENS = {"<div", " class", "=\\\"", "app", "\\\">", "\\n  ", "组件", "页面",
+            "const", " ref", "(", ")", ";", "\\n", "import", " {", " }", "布局", "按钮", "</template>"};
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        body = recordedStream(CHUNK_COUNT, 42L);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_COUNT)
+    public void legacyParser(Blackhole blackhole) {
+        BaselineOpenAiStreamingResponseBuilder responseBuilder = new BaselineOpenAiStreamingResponseBuilder();
+        new DefaultServerSentEventParser().parse(new ByteArrayInputStream(body), new ServerSentEventListener() {
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                if ("[DONE]".equals(event.data())) {
+                    return;
+                }
+                ChatCompletionResponse response = Json.fromJson(event.data(), ChatCompletionResponse.class);
+                responseBuilder.append(response);
+                Delta delta = response.choices().get(0).delta();
+                blackhole.consume(delta.content());
+                blackhole.consume(delta.toolCalls());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        blackhole.consume(responseBuilder.build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_COUNT)
+    public void chunkDecoder(Blackhole blackhole) {
+        OpenAiStreamingResponseBuilder responseBuilder = new OpenAiStreamingResponseBuilder();
+        new OpenAiSseChunkDecoder(delta -> {
+            responseBuilder.append(delta);
+            blackhole.consume(delta.content);
+            blackhole.consume(delta.toolCallCount);
+        }).parse(new ByteArrayInputStream(body), new ServerSentEventListener() {
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                throw new IllegalStateException("unexpected fallback: " + event.data());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        blackhole.consume(responseBuilder.build());
+    }
+
+    /**
+     * 按 OpenAI 兼容接口的真实格式生成响应体：每个 chunk 带 id、created、model 等公共字段
+     */
+    private static byte[] recordedStream(int chunkCount, long seed) {
+        Random random = new Random(seed);
+        String prefix = "data: {\"id\":\"chatcmpl-5f1c2a\",\"object\":\"chat.completion.chunk\",\"created\":1760000000,"
+                + "\"model\":\"deepseek-chat\",\"system_fingerprint\":\"fp_8802369eaa\",\"choices\":[{\"index\":0,\"delta\":";
+        String suffix = ",\"logprobs\":null,\"finish_reason\":null}]}\n\n";
+        StringBuilder stream = new StringBuilder(chunkCount * 220);
+        boolean toolStarted = false;
+        for (int i = 0; i < chunkCount; i++) {
+            String token = TOKENS[random.nextInt(TOKENS.length)];
+            stream.append(prefix);
+            if (random.nextInt(10) < 7) {
+                stream.append("{\"content\":\"").append(token).append("\"}");
+            } else if (!toolStarted) {
+                toolStarted = true;
+                stream.append("{\"tool_calls\":[{\"index\":0,\"id\":\"call_0\",\"type\":\"function\",")
+                        .append("\"function\":{\"name\":\"writeFile\",\"arguments\":\"\"}}]}");
+            } else {
+                stream.append("{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"")
+                        .append(token).append("\"}}]}");
+            }
+            stream.append(suffix);
+        }
+        stream.append("data: [DONE]\n\n");
+        return stream.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OpenAiStreamingChunkBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,62 @@
+package dev.langchain4j.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingGuardrailWindowTest {
+
+    private static final StreamingOutputGuardrail NO_SECRET = window -> window.toString().contains("secret")
+            ? StreamingOutputGuardrailResult.abort("secret")
+            : StreamingOutputGuardrailResult.pass();
+
+    private final StreamingGuardrailWindow window = new StreamingGuardrailWindow(StreamingOutputGuardrails.builder()
+            .guardrails(NO_SECRET)
+            .windowSize(16)
+            .holdBackChars(6)
+            .build());
+
+    @Test
+    void releasesTextBeyondTheHoldBack() {
+        assertTrue(window.append("hello").isPass());
+        assertNull(window.release());
+        assertFalse(window.hasReleased());
+        assertTrue(window.append(" world").isPass());
+        assertEquals("hello", window.release());
+        assertEquals(" world", window.releaseAll());
+        assertTrue(window.hasReleased());
+    }
+
+    @Test
+    void catchesAViolationBeforeAnyOfItIsReleased() {
+        assertTrue(window.append("the ").isPass());
+        assertNull(window.release());
+        assertTrue(window.append("sec").isPass());
+        assertEquals("t", window.release());
+        StreamingOutputGuardrailResult result = window.append("ret");
+        assertEquals(StreamingOutputGuardrailResult.Action.ABORT, result.action());
+        assertTrue(window.hasReleased());
+    }
+
+    @Test
+    void validatesACompleteTextThroughOverlappingWindows() {
+        StreamingOutputGuardrails guardrails = StreamingOutputGuardrails.builder()
+                .guardrails(NO_SECRET)
+                .windowSize(16)
+                .holdBackChars(6)
+                .build();
+        assertTrue(StreamingGuardrailWindow.validateText(guardrails, "x".repeat(100)).isPass());
+        // the word straddles the boundary of the first two windows
+        StreamingOutputGuardrailResult result =
+                StreamingGuardrailWindow.validateText(guardrails, "x".repeat(13) + "secret" + "x".repeat(40));
+        assertEquals(StreamingOutputGuardrailResult.Action.ABORT, result.action());
+    }
+
+    @Test
+    void onlyTheLastWindowIsValidated() {
+        window.append("secre");
+        window.release();
+        // the window has slid past the earlier text
+        assertTrue(window.append("x".repeat(20)).isPass());
+    }
+}